@@ -311,6 +311,10 @@ public abstract class Command {
             try {
                 // Try to map the arguments and execute the pattern
                 List<Object> args = pattern.tryMap(module, arguments);
+                // The warm-up stops at the mapping, the command may send requests
+                if (CommandModule.WARMING_UP.get())
+                    return true;
+
                 pattern.execute(event, options, args);
                 return true;
 
@@ -2,21 +2,27 @@ package com.jesus_crie.modularbot.command;
 
 import com.jesus_crie.modularbot.command.listener.CommandListener;
 import com.jesus_crie.modularbot.command.listener.DiscordCommandListener;
+import com.jesus_crie.modularbot.command.exception.CommandProcessingException;
 import com.jesus_crie.modularbot.command.processing.CommandProcessor;
 import com.jesus_crie.modularbot.core.ModularBotBuildInfo;
 import com.jesus_crie.modularbot.core.ModularBotBuilder;
+import com.jesus_crie.modularbot.core.cache.RequiresCache;
 import com.jesus_crie.modularbot.core.dependencyinjection.InjectorTarget;
 import com.jesus_crie.modularbot.core.module.Module;
 import com.jesus_crie.modularbot.core.module.ModuleManager;
+import com.jesus_crie.modularbot.core.module.WarmUp;
 import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.utils.cache.CacheFlag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 
+@RequiresCache(CacheFlag.EMOTE)
 public class CommandModule extends Module {
 
     private static final Logger LOG = LoggerFactory.getLogger("Command");
@@ -65,7 +71,11 @@ public class CommandModule extends Module {
     private CommandProcessor processor = new CommandProcessor();
     private int flags = 0;
 
-    private List<CommandListener> listeners = new ArrayList<>();
+    private final List<CommandListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Warm-up
+    static final ThreadLocal<Boolean> WARMING_UP = ThreadLocal.withInitial(() -> false);
+    private final List<String> warmUpMessages = new ArrayList<>();
 
     @InjectorTarget
     public CommandModule() {
@@ -78,6 +88,37 @@ public class CommandModule extends Module {
         builder.addListeners(new DiscordCommandListener(this));
     }
 
+    @Override
+    public void onWarmUp(@Nonnull final WarmUp warmUp) {
+        final List<String> samples = new ArrayList<>();
+        commandStorage.forEach(command -> samples.addAll(command.getAliases()));
+
+        warmUp.register("Command processing", () -> {
+            try {
+                processor.process("first \"second argument\" --explicit-option arg -i -o \"implicit options\"");
+            } catch (CommandProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+            samples.forEach(this::getCommand);
+        });
+
+        if (!warmUpMessages.isEmpty())
+            warmUp.register("Command pipeline", new CommandWarmUp(this, new ArrayList<>(warmUpMessages)));
+    }
+
+    /**
+     * Register some messages that will be replayed through the pipeline, from the prefix to the mapping of the
+     * arguments on the patterns of the command, during the warm-up.
+     * They are sent by a fake user in a fake private channel and the command itself isn't executed, so any command
+     * can be used.
+     *
+     * @param contents The raw contents of the messages, like {@code "!help"}.
+     * @see ModularBotBuilder#enableWarmUp(int, long)
+     */
+    public void registerWarmUpMessages(@Nonnull final String... contents) {
+        Collections.addAll(warmUpMessages, contents);
+    }
+
     public void registerCommands(@Nonnull final Command... commands) {
         Collections.addAll(commandStorage, commands);
         if ((flags & FLAG_NORMALIZE_ALIASES) != 0)
@@ -188,6 +229,8 @@ public class CommandModule extends Module {
     }
 
     public void triggerListeners(@Nonnull final Consumer<CommandListener> action) {
+        if (WARMING_UP.get())
+            return;
         listeners.forEach(action);
     }
 }
@@ -0,0 +1,137 @@
+package com.jesus_crie.modularbot.command;
+
+import com.jesus_crie.modularbot.command.listener.DiscordCommandListener;
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.entities.ChannelType;
+import net.dv8tion.jda.core.entities.Message;
+import net.dv8tion.jda.core.entities.PrivateChannel;
+import net.dv8tion.jda.core.entities.SelfUser;
+import net.dv8tion.jda.core.entities.User;
+import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Warm-up workload that replays synthetic messages through the command pipeline, from the prefix to the mapping of
+ * the arguments on the patterns of the command.
+ * <p>
+ * The messages come from a fake user in a fake private channel of a fake shard: the entities only answer the methods
+ * used by the pipeline and return {@code null} otherwise. The commands themselves aren't executed since their
+ * requests would need a real shard, see {@link Command#execute(CommandModule, CommandEvent, com.jesus_crie.modularbot.command.processing.Options, List)}.
+ * The {@link com.jesus_crie.modularbot.command.listener.CommandListener CommandListener}s aren't notified.
+ */
+class CommandWarmUp implements Runnable {
+
+    // Not 0, the default id of the creator
+    private static final long AUTHOR_ID = -1;
+    private static final long SELF_ID = -2;
+
+    private final DiscordCommandListener listener;
+    private final List<MessageReceivedEvent> events;
+
+    CommandWarmUp(@Nonnull final CommandModule module, @Nonnull final List<String> contents) {
+        listener = new DiscordCommandListener(module);
+
+        final Map<String, Object> selfAnswers = new HashMap<>();
+        selfAnswers.put("getIdLong", SELF_ID);
+        selfAnswers.put("getId", Long.toString(SELF_ID));
+        final SelfUser self = stub(SelfUser.class, selfAnswers);
+
+        final Map<String, Object> jdaAnswers = new HashMap<>();
+        jdaAnswers.put("getSelfUser", self);
+        final JDA jda = stub(JDA.class, jdaAnswers);
+
+        final Map<String, Object> authorAnswers = new HashMap<>();
+        authorAnswers.put("getIdLong", AUTHOR_ID);
+        authorAnswers.put("getId", Long.toString(AUTHOR_ID));
+        authorAnswers.put("getName", "WarmUp");
+        authorAnswers.put("getJDA", jda);
+        final User author = stub(User.class, authorAnswers);
+
+        final Map<String, Object> channelAnswers = new HashMap<>();
+        channelAnswers.put("getType", ChannelType.PRIVATE);
+        channelAnswers.put("getUser", author);
+        channelAnswers.put("getJDA", jda);
+        final PrivateChannel channel = stub(PrivateChannel.class, channelAnswers);
+
+        events = contents.stream()
+                .map(content -> {
+                    final Map<String, Object> messageAnswers = new HashMap<>();
+                    messageAnswers.put("getContentRaw", content);
+                    messageAnswers.put("getContentDisplay", content);
+                    messageAnswers.put("getContentStripped", content);
+                    messageAnswers.put("getAuthor", author);
+                    messageAnswers.put("getChannel", channel);
+                    messageAnswers.put("getPrivateChannel", channel);
+                    messageAnswers.put("getChannelType", ChannelType.PRIVATE);
+                    messageAnswers.put("getJDA", jda);
+                    return new MessageReceivedEvent(jda, -1, stub(Message.class, messageAnswers));
+                })
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void run() {
+        CommandModule.WARMING_UP.set(true);
+        try {
+            for (final MessageReceivedEvent event : events)
+                listener.onMessageReceived(event);
+        } finally {
+            CommandModule.WARMING_UP.set(false);
+        }
+    }
+
+    /**
+     * Create a fake entity.
+     *
+     * @param type    - The interface of the entity.
+     * @param answers - The values returned by the methods, by name.
+     * @return The fake entity, the other methods return {@code null}, 0 or false.
+     */
+    @Nonnull
+    private static <T> T stub(@Nonnull final Class<T> type, @Nonnull final Map<String, Object> answers) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "WarmUp" + type.getSimpleName();
+                case "isFromType":
+                    return args[0] == ChannelType.PRIVATE;
+                default:
+                    if (answers.containsKey(method.getName()))
+                        return answers.get(method.getName());
+            }
+
+            final Class<?> returnType = method.getReturnType();
+            if (returnType == boolean.class)
+                return false;
+            if (returnType == char.class)
+                return '\0';
+            if (returnType.isPrimitive() && returnType != void.class)
+                return zero(returnType);
+            return null;
+        }));
+    }
+
+    private static Object zero(@Nonnull final Class<?> type) {
+        if (type == long.class)
+            return 0L;
+        if (type == int.class)
+            return 0;
+        if (type == short.class)
+            return (short) 0;
+        if (type == byte.class)
+            return (byte) 0;
+        if (type == float.class)
+            return 0f;
+        return 0d;
+    }
+}
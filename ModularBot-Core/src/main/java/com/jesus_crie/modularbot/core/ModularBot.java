@@ -1,18 +1,39 @@
 package com.jesus_crie.modularbot.core;
 
-import com.jesus_crie.modularbot.core.module.Lifecycle;
+import com.jesus_crie.modularbot.core.cache.CachePolicy;
+import com.jesus_crie.modularbot.core.cache.CacheRequirements;
+import com.jesus_crie.modularbot.core.cache.EntityIndex;
+import com.jesus_crie.modularbot.core.cluster.ClusterNode;
 import com.jesus_crie.modularbot.core.module.ModuleManager;
+import com.jesus_crie.modularbot.core.module.WarmUp;
+import com.jesus_crie.modularbot.core.stats.BootProfiler;
+import com.jesus_crie.modularbot.core.stats.DispatchWatchdog;
+import com.jesus_crie.modularbot.core.stats.EventStatistics;
+import com.jesus_crie.modularbot.core.stats.EventStatisticsSnapshot;
 import com.jesus_crie.modularbot.core.utils.IStateProvider;
+import com.jesus_crie.modularbot.core.utils.ModularSessionController;
+import com.jesus_crie.modularbot.core.utils.ModularThreadFactory;
+import com.jesus_crie.modularbot.core.utils.TimingWheel;
+import com.jesus_crie.modularbot.core.utils.TrainingRun;
+import com.jesus_crie.modularbot.core.utils.WaiterRegistry;
 import com.neovisionaries.ws.client.WebSocketFactory;
 import net.dv8tion.jda.bot.sharding.DefaultShardManager;
 import net.dv8tion.jda.bot.sharding.DefaultShardManagerBuilder;
 import net.dv8tion.jda.bot.sharding.ThreadPoolProvider;
+import net.dv8tion.jda.core.JDA;
 import net.dv8tion.jda.core.OnlineStatus;
 import net.dv8tion.jda.core.audio.factory.IAudioSendFactory;
+import net.dv8tion.jda.core.entities.Category;
+import net.dv8tion.jda.core.entities.Emote;
 import net.dv8tion.jda.core.entities.Game;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.Role;
+import net.dv8tion.jda.core.entities.TextChannel;
+import net.dv8tion.jda.core.entities.VoiceChannel;
 import net.dv8tion.jda.core.events.ReadyEvent;
 import net.dv8tion.jda.core.hooks.IEventManager;
 import net.dv8tion.jda.core.hooks.ListenerAdapter;
+import net.dv8tion.jda.core.utils.MiscUtil;
 import net.dv8tion.jda.core.utils.SessionController;
 import net.dv8tion.jda.core.utils.cache.CacheFlag;
 import okhttp3.OkHttpClient;
@@ -22,13 +43,18 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.security.auth.login.LoginException;
+import java.io.IOException;
 import java.net.SocketTimeoutException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.IntFunction;
 
 public class ModularBot extends DefaultShardManager {
@@ -36,15 +62,27 @@ public class ModularBot extends DefaultShardManager {
     // Note: LOG is already define
     private static final Logger logger = LoggerFactory.getLogger("Core");
 
-    private final AtomicInteger receivedReady = new AtomicInteger();
+    // The ids of the shards that have been ready at least once
+    private final Set<Integer> readyShards = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean shardsReady = new AtomicBoolean(false);
 
     protected final ModuleManager moduleManager;
-    protected final ScheduledExecutorService mainPool = Executors.newScheduledThreadPool(1, r -> {
-        final Thread t = new Thread(r);
-        t.setDaemon(true);
-        t.setName("Main Pool #" + t.getId());
-        return t;
-    });
+    protected final EventStatistics eventStatistics;
+    protected ClusterNode cluster = null;
+    protected CachePolicy cachePolicy = null;
+    protected final EntityIndex entityIndex = new EntityIndex();
+    protected EnumSet<CacheFlag> disabledCacheFlags = null;
+    protected WarmUp warmUp = null;
+    private volatile CompletableFuture<Void> warmedUp = null;
+    protected boolean trainingRun = false;
+    protected Path trainingClassList = null;
+    private volatile Set<Integer> assignedShards = null;
+    private volatile boolean loggedIn = false;
+    private volatile boolean online = false;
+    private volatile boolean resharding = false;
+    private final List<JDA> retiringShards = new CopyOnWriteArrayList<>();
+    protected final ScheduledExecutorService mainPool;
+    private final boolean ownsMainPool;
 
     /**
      * @param shardsTotal               The total amount of shards or {@code -1} to retrieve the recommended amount from discord.
@@ -80,6 +118,9 @@ public class ModularBot extends DefaultShardManager {
      * @param contextProvider           The MDC context provider new JDA instances should use on startup
      * @param cacheFlags                The enabled cache flags
      * @param enableCompression         Enable the compression
+     * @param eventStatistics           The statistics filled by the event managers of the shards
+     * @param mainPool                  The pool returned by {@link #getMainPool()}, shared with other bots, or {@code null} to
+     *                                  create one for this bot
      */
     public ModularBot(final int shardsTotal, @Nullable final Collection<Integer> shardIds,
                @Nullable final SessionController controller,
@@ -98,7 +139,8 @@ public class ModularBot extends DefaultShardManager {
                final boolean retryOnTimeout, final boolean useShutdownNow,
                final boolean enableMDC, @Nullable final IntFunction<? extends ConcurrentMap<String, String>> contextProvider,
                @Nullable final EnumSet<CacheFlag> cacheFlags, final boolean enableCompression,
-               @Nonnull final ModuleManager moduleManager) {
+               @Nonnull final ModuleManager moduleManager, @Nonnull final EventStatistics eventStatistics,
+               @Nullable final ScheduledExecutorService mainPool) {
 
         super(shardsTotal, shardIds, controller,
                 listeners, listenerProviders,
@@ -113,15 +155,88 @@ public class ModularBot extends DefaultShardManager {
                 cacheFlags, enableCompression);
 
         this.moduleManager = moduleManager;
-        moduleManager.initialize();
+        this.eventStatistics = eventStatistics;
+        // First, so the index is up to date when the other listeners receive the creation events
+        this.listeners.add(0, entityIndex);
+        ownsMainPool = mainPool == null;
+        this.mainPool = mainPool != null ? mainPool : Executors.newScheduledThreadPool(1, r -> {
+            final Thread t = new Thread(r);
+            t.setDaemon(true);
+            t.setName("Main Pool #" + t.getId());
+            return t;
+        });
+        moduleManager.initialize(this);
 
         logger.info("ModularBot initialized !");
     }
 
+    /**
+     * Same as the full constructor, with a main pool dedicated to this bot.
+     *
+     * @see #ModularBot(int, Collection, SessionController, List, List, String, IntFunction, IAudioSendFactory, IntFunction, IntFunction, OkHttpClient.Builder, OkHttpClient, ThreadPoolProvider, ThreadPoolProvider, ThreadPoolProvider, WebSocketFactory, ThreadFactory, int, int, boolean, boolean, boolean, boolean, IntFunction, boolean, boolean, boolean, IntFunction, EnumSet, boolean, ModuleManager, EventStatistics, ScheduledExecutorService)
+     */
+    public ModularBot(final int shardsTotal, @Nullable final Collection<Integer> shardIds,
+               @Nullable final SessionController controller,
+               @Nullable final List<Object> listeners, @Nullable final List<IntFunction<Object>> listenerProviders,
+               @Nonnull final String token, @Nullable final IntFunction<? extends IEventManager> eventManagerProvider,
+               @Nullable final IAudioSendFactory audioSendFactory, @Nullable final IntFunction<? extends Game> gameProvider,
+               @Nullable final IntFunction<OnlineStatus> statusProvider,
+               @Nullable final OkHttpClient.Builder httpClientBuilder, @Nullable final OkHttpClient httpClient,
+               @Nullable final ThreadPoolProvider<? extends ScheduledExecutorService> rateLimitPoolProvider,
+               @Nullable final ThreadPoolProvider<? extends ScheduledExecutorService> gatewayPoolProvider,
+               @Nullable final ThreadPoolProvider<? extends ExecutorService> callbackPoolProvider,
+               @Nullable final WebSocketFactory wsFactory, @Nullable final ThreadFactory threadFactory,
+               final int maxReconnectDelay, final int corePoolSize, final boolean enableVoice,
+               final boolean enableShutdownHook, final boolean enableBulkDeleteSplitting,
+               final boolean autoReconnect, @Nullable final IntFunction<Boolean> idleProvider,
+               final boolean retryOnTimeout, final boolean useShutdownNow,
+               final boolean enableMDC, @Nullable final IntFunction<? extends ConcurrentMap<String, String>> contextProvider,
+               @Nullable final EnumSet<CacheFlag> cacheFlags, final boolean enableCompression,
+               @Nonnull final ModuleManager moduleManager, @Nonnull final EventStatistics eventStatistics) {
+        this(shardsTotal, shardIds, controller, listeners, listenerProviders, token, eventManagerProvider,
+                audioSendFactory, gameProvider, statusProvider, httpClientBuilder, httpClient,
+                rateLimitPoolProvider, gatewayPoolProvider, callbackPoolProvider, wsFactory, threadFactory,
+                maxReconnectDelay, corePoolSize, enableVoice, enableShutdownHook, enableBulkDeleteSplitting,
+                autoReconnect, idleProvider, retryOnTimeout, useShutdownNow, enableMDC, contextProvider,
+                cacheFlags, enableCompression, moduleManager, eventStatistics, null);
+    }
+
+    /**
+     * Same as the full constructor, with statistics that are only filled if the event managers are given to them.
+     *
+     * @see #ModularBot(int, Collection, SessionController, List, List, String, IntFunction, IAudioSendFactory, IntFunction, IntFunction, OkHttpClient.Builder, OkHttpClient, ThreadPoolProvider, ThreadPoolProvider, ThreadPoolProvider, WebSocketFactory, ThreadFactory, int, int, boolean, boolean, boolean, boolean, IntFunction, boolean, boolean, boolean, IntFunction, EnumSet, boolean, ModuleManager, EventStatistics)
+     */
+    public ModularBot(final int shardsTotal, @Nullable final Collection<Integer> shardIds,
+               @Nullable final SessionController controller,
+               @Nullable final List<Object> listeners, @Nullable final List<IntFunction<Object>> listenerProviders,
+               @Nonnull final String token, @Nullable final IntFunction<? extends IEventManager> eventManagerProvider,
+               @Nullable final IAudioSendFactory audioSendFactory, @Nullable final IntFunction<? extends Game> gameProvider,
+               @Nullable final IntFunction<OnlineStatus> statusProvider,
+               @Nullable final OkHttpClient.Builder httpClientBuilder, @Nullable final OkHttpClient httpClient,
+               @Nullable final ThreadPoolProvider<? extends ScheduledExecutorService> rateLimitPoolProvider,
+               @Nullable final ThreadPoolProvider<? extends ScheduledExecutorService> gatewayPoolProvider,
+               @Nullable final ThreadPoolProvider<? extends ExecutorService> callbackPoolProvider,
+               @Nullable final WebSocketFactory wsFactory, @Nullable final ThreadFactory threadFactory,
+               final int maxReconnectDelay, final int corePoolSize, final boolean enableVoice,
+               final boolean enableShutdownHook, final boolean enableBulkDeleteSplitting,
+               final boolean autoReconnect, @Nullable final IntFunction<Boolean> idleProvider,
+               final boolean retryOnTimeout, final boolean useShutdownNow,
+               final boolean enableMDC, @Nullable final IntFunction<? extends ConcurrentMap<String, String>> contextProvider,
+               @Nullable final EnumSet<CacheFlag> cacheFlags, final boolean enableCompression,
+               @Nonnull final ModuleManager moduleManager) {
+        this(shardsTotal, shardIds, controller, listeners, listenerProviders, token, eventManagerProvider,
+                audioSendFactory, gameProvider, statusProvider, httpClientBuilder, httpClient,
+                rateLimitPoolProvider, gatewayPoolProvider, callbackPoolProvider, wsFactory, threadFactory,
+                maxReconnectDelay, corePoolSize, enableVoice, enableShutdownHook, enableBulkDeleteSplitting,
+                autoReconnect, idleProvider, retryOnTimeout, useShutdownNow, enableMDC, contextProvider,
+                cacheFlags, enableCompression, moduleManager, new EventStatistics());
+    }
+
     /**
      * A constructor with some defaults.
      *
      * @param shardsTotal               The total amount of shards or {@code -1} to retrieve the recommended amount from discord.
+     * @param shardIds                  The ids of the shards to start or {@code null} to start all of them.
      * @param controller                The {@link SessionController SessionController}.
      * @param listenerProviders         Providers of event listeners for JDA instances. Each will have the shard id applied to them upon.
      *                                  shard creation (including shard restarts) and must return an event listener.
@@ -142,8 +257,12 @@ public class ModularBot extends DefaultShardManager {
      * @param enableMDC                 Whether MDC should be enabled.
      * @param contextProvider           The MDC context provider new JDA instances should use on startup.
      * @param cacheFlags                The enabled cache flags.
+     * @param eventStatistics           The statistics filled by the event managers of the shards.
+     * @param httpClient                The {@link OkHttpClient OkHttpClient} or {@code null} to create one.
+     * @param mainPool                  The main pool or {@code null} to create one.
      */
-    ModularBot(final int shardsTotal, @Nullable final SessionController controller,
+    ModularBot(final int shardsTotal, @Nullable final Collection<Integer> shardIds,
+               @Nullable final SessionController controller,
                @Nonnull final List<IntFunction<Object>> listenerProviders,
                @Nonnull final String token,
                @Nullable final IntFunction<? extends IEventManager> eventManagerProvider,
@@ -157,16 +276,17 @@ public class ModularBot extends DefaultShardManager {
                final boolean enableBulkDeleteSplitting, final boolean useShutdownNow,
                final boolean enableMDC, @Nullable final IntFunction<? extends ConcurrentMap<String, String>> contextProvider,
                @Nullable final EnumSet<CacheFlag> cacheFlags,
-               @Nonnull final ModuleManager moduleManager) {
+               @Nonnull final ModuleManager moduleManager, @Nonnull final EventStatistics eventStatistics,
+               @Nullable final OkHttpClient httpClient, @Nullable final ScheduledExecutorService mainPool) {
 
-        this(shardsTotal, null, controller, new ArrayList<>(), listenerProviders, token, eventManagerProvider,
+        this(shardsTotal, shardIds, controller, new ArrayList<>(), listenerProviders, token, eventManagerProvider,
                 audioSendFactory, stateProvider == null ? null : stateProvider.getGameProvider(),
                 stateProvider == null ? null : stateProvider.getOnlineStatusProvider(),
-                null, null, rateLimitPoolProvider, gatewayPoolProvider, callbackPoolProvider,
+                null, httpClient, rateLimitPoolProvider, gatewayPoolProvider, callbackPoolProvider,
                 null, threadFactory, maxReconnectDelay, corePoolSize, enableVoice, true,
                 enableBulkDeleteSplitting, true,
                 stateProvider == null ? null : stateProvider.getIdleProvider(), true, useShutdownNow,
-                enableMDC, contextProvider, cacheFlags, true, moduleManager);
+                enableMDC, contextProvider, cacheFlags, true, moduleManager, eventStatistics, mainPool);
     }
 
     /**
@@ -178,43 +298,470 @@ public class ModularBot extends DefaultShardManager {
         return moduleManager;
     }
 
+    /**
+     * Get the statistics of the events received by the shards, per event type, per listener and per shard.
+     * They are only filled by the default {@link ModularEventManager ModularEventManager}.
+     *
+     * @return An immutable snapshot of the current statistics.
+     */
+    @Nonnull
+    public EventStatisticsSnapshot getEventStatistics() {
+        return eventStatistics.snapshot();
+    }
+
+    /**
+     * Get the watchdog that reports the listeners blocking the event threads.
+     *
+     * @return The watchdog or {@code null} if it hasn't been enabled.
+     * @see ModularBotBuilder#enableDispatchWatchdog(long)
+     */
+    @Nullable
+    public DispatchWatchdog getDispatchWatchdog() {
+        return eventStatistics.getWatchdog();
+    }
+
     /**
      * Start the bot by connecting it to discord and finalize the initialization of modules.
+     * During a training run, the bot doesn't connect and is unloaded before this method returns.
      *
      * @throws LoginException If the credentials are wrong.
+     * @see #isTrainingRun()
      */
     @Override
     public void login() throws LoginException {
+        if (trainingRun) {
+            train();
+            return;
+        }
+
         logger.info("Starting shards...");
-        moduleManager.dispatch(Lifecycle::onPrepareShards);
+        moduleManager.prepareShards();
 
         // Add onReady on every shard
         listeners.add(new ListenerAdapter() {
             @Override
             public void onReady(ReadyEvent event) {
-                receivedReady.getAndIncrement();
+                readyShards.add(event.getJDA().getShardInfo().getShardId());
                 ModularBot.this.onReady();
-                removeEventListener(this);
+                // Only for this shard, the others may not be ready yet
+                event.getJDA().removeEventListener(this);
             }
         });
 
-        super.login();
+        // Notify the modules of the shards started later
+        listeners.add(new ListenerAdapter() {
+            @Override
+            public void onReady(ReadyEvent event) {
+                if (online)
+                    moduleManager.shardStarted(event.getJDA());
+            }
+        });
+
+        // Created before the shards so a shard can't report ready before it exists
+        if (warmUp != null)
+            warmedUp = new CompletableFuture<>();
+
+        try (final BootProfiler.Span ignored = moduleManager.getBootProfiler().start("phase", "login")) {
+            super.login();
+        }
+        loggedIn = true;
+        if (assignedShards != null)
+            reconcileShards();
 
         logger.info(shards.size() + " shards successfully spawned !");
-        moduleManager.dispatch(Lifecycle::onShardsCreated);
+        moduleManager.shardsCreated();
+
+        if (warmUp != null)
+            startWarmUp();
+    }
+
+    /**
+     * Go through the startup without connecting to discord, load the classes that the bot will need and unload the
+     * modules. Exiting the JVM is left to the caller.
+     *
+     * @see TrainingRun
+     */
+    private void train() {
+        logger.info("Training run, the bot won't connect to discord.");
+        moduleManager.prepareShards();
+        TrainingRun.simulateLogin(controller);
+        if (warmUp != null)
+            moduleManager.warmUp(warmUp);
+
+        final Collection<Class<?>> anchors = new ConcurrentLinkedQueue<>();
+        anchors.add(ModularBot.class);
+        moduleManager.dispatch(module -> anchors.add(module.getClass()));
+        final Set<String> classes = TrainingRun.preloadClasses(anchors);
+
+        if (trainingClassList != null) {
+            try {
+                TrainingRun.writeClassList(classes, trainingClassList);
+            } catch (IOException e) {
+                logger.error("Failed to write the class list", e);
+            }
+        }
+
+        moduleManager.getBootProfiler().finish();
+        logger.info(String.format("Training run done in %d ms since the start of the JVM.", TrainingRun.getUptime()));
+
+        moduleManager.preUnload();
+        moduleManager.unload();
+    }
+
+    /**
+     * @return True if {@link #login()} is a training run that doesn't connect to discord.
+     * @see ModularBotBuilder#enableTrainingRun(Path)
+     */
+    public boolean isTrainingRun() {
+        return trainingRun;
+    }
+
+    /**
+     * Run the warm-up of the modules in the background while the shards connect.
+     */
+    private void startWarmUp() {
+        final CompletableFuture<Void> future = warmedUp;
+        new ModularThreadFactory("Warm Up", true).newThread(() -> {
+            try {
+                moduleManager.warmUp(warmUp);
+            } catch (RuntimeException e) {
+                logger.error("The warm-up has failed", e);
+            }
+            future.complete(null);
+        }).start();
     }
 
     /**
      * Triggered when a shard is ready.
      */
     private void onReady() {
-        if (receivedReady.get() == shardsTotal) {
+        if (shardsReady.get())
+            return;
+
+        final Collection<Integer> expected = assignedShards != null ? assignedShards : shardIds;
+        final boolean ready = expected != null
+                ? readyShards.containsAll(expected)
+                : readyShards.size() >= shardsTotal;
+        if (ready && shardsReady.compareAndSet(false, true)) {
             logger.info("Shards ready !");
-            moduleManager.finalizeInitialization(this);
+            final CompletableFuture<Void> warmedUp = this.warmedUp;
+            if (warmedUp != null && !warmedUp.isDone()) {
+                logger.info("Waiting for the end of the warm-up...");
+                warmedUp.thenRun(this::completeStartup);
+            } else {
+                completeStartup();
+            }
+        }
+    }
+
+    /**
+     * Finalize the startup once the shards are ready and the warm-up is done.
+     */
+    private void completeStartup() {
+        logCacheSavings();
+        moduleManager.finalizeInitialization(this);
+        online = true;
+        finishBootProfile();
+
+        logger.info("Modules initialisation finalized.");
+        logger.info("ModularBot successfully started and ready !");
+    }
+
+    /**
+     * Run exactly the given shards in this process, the other shards are stopped.
+     * Before {@link #login()} the shards are only recorded and started by the login.
+     *
+     * @param shardIds The ids of the shards to run.
+     */
+    public void assignShards(@Nonnull final Collection<Integer> shardIds) {
+        assignedShards = new HashSet<>(shardIds);
+        if (loggedIn)
+            reconcileShards();
+    }
+
+    /**
+     * Start and stop the shards to match the assigned ones.
+     */
+    private synchronized void reconcileShards() {
+        final Set<Integer> target = assignedShards;
+        final Set<Integer> running = new HashSet<>(queue);
+        for (final JDA shard : getShards())
+            running.add(shard.getShardInfo().getShardId());
+
+        for (final int shardId : running) {
+            if (!target.contains(shardId)) {
+                queue.remove(shardId);
+                final JDA shard = getShardById(shardId);
+                if (shard != null) {
+                    moduleManager.shardStopped(shard);
+                    shutdown(shardId);
+                }
+                readyShards.remove(shardId);
+            }
+        }
+
+        for (final int shardId : target) {
+            if (!running.contains(shardId))
+                start(shardId);
+        }
+
+        logger.info(String.format("Running %d shards: %s", target.size(), target));
+
+        // The last shard we were waiting for may have been moved to another node
+        onReady();
+    }
+
+    /**
+     * Restart a single shard, for example when it is degraded, while the other shards keep running.
+     * The modules are notified when the shard is stopped and when the new one is ready.
+     *
+     * @param shardId The id of the shard.
+     * @throws IllegalArgumentException If the shard isn't running.
+     * @see com.jesus_crie.modularbot.core.module.Lifecycle#onShardStopped(ModularBot, JDA)
+     * @see com.jesus_crie.modularbot.core.module.Lifecycle#onShardStarted(ModularBot, JDA)
+     */
+    public synchronized void restartShard(final int shardId) {
+        final JDA shard = getShardById(shardId);
+        if (shard == null)
+            throw new IllegalArgumentException("The shard " + shardId + " isn't running !");
+
+        logger.info("Restarting shard " + shardId + "...");
+        moduleManager.shardStopped(shard);
+        restart(shardId);
+    }
+
+    /**
+     * Change the amount of shards while the bot keeps running.
+     * The new shards have 30 seconds plus 10 seconds per shard to connect.
+     *
+     * @param newTotal The new amount of shards.
+     * @return A future completed when the old shards have been shut down.
+     * @see #reshard(int, long)
+     */
+    @Nonnull
+    public CompletableFuture<Void> reshard(final int newTotal) {
+        return reshard(newTotal, TimeUnit.SECONDS.toMillis(30 + 10L * newTotal));
+    }
+
+    /**
+     * Change the amount of shards while the bot keeps running.
+     * <p>
+     * The new shards are started next to the old ones but don't handle any event until all of them are connected.
+     * Then the listeners are moved to the new shards, the modules are notified to migrate their state and the old
+     * shards are shut down. During the reshard, the shards returned by {@link #getShards()} are the new ones and
+     * their cache may still be loading.
+     * <p>
+     * If the new shards aren't all connected before the timeout, they are shut down, the old shards are restored
+     * and the future is completed exceptionally with a {@link TimeoutException}.
+     *
+     * @param newTotal The new amount of shards.
+     * @param timeout  The time given to the new shards to connect, in milliseconds.
+     * @return A future completed when the old shards have been shut down.
+     * @throws IllegalStateException If the bot isn't online, is a node of a cluster or is already resharding.
+     * @see com.jesus_crie.modularbot.core.module.Lifecycle#onReshard(ModularBot, int, int)
+     */
+    @Nonnull
+    public synchronized CompletableFuture<Void> reshard(final int newTotal, final long timeout) {
+        if (newTotal < 1)
+            throw new IllegalArgumentException("The amount of shards must be at least 1 !");
+        if (!online)
+            throw new IllegalStateException("The bot must be online to reshard !");
+        if (cluster != null)
+            throw new IllegalStateException("A node of a cluster can't reshard alone !");
+        if (resharding)
+            throw new IllegalStateException("A reshard is already in progress !");
+
+        final int previousTotal = shardsTotal;
+        logger.info(String.format("Resharding from %d to %d shards...", previousTotal, newTotal));
+        resharding = true;
+
+        // The old shards keep handling the events until the new ones are connected
+        retiringShards.addAll(getShards());
+        shards.getMap().clear();
+
+        final List<Object> stashedListeners = new ArrayList<>(listeners);
+        final List<IntFunction<Object>> stashedProviders = new ArrayList<>(listenerProviders);
+        listeners.clear();
+        listenerProviders.clear();
+
+        shardsTotal = newTotal;
+        for (int shardId = 0; shardId < newTotal; shardId++)
+            start(shardId);
+
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        final long deadline = System.currentTimeMillis() + timeout;
+        final ScheduledFuture<?>[] check = new ScheduledFuture<?>[1];
+        check[0] = mainPool.scheduleWithFixedDelay(() -> {
+            try {
+                if (getShards().size() < newTotal || !getShards().stream().allMatch(shard -> shard.getStatus() == JDA.Status.CONNECTED)) {
+                    if (System.currentTimeMillis() < deadline)
+                        return;
+
+                    check[0].cancel(false);
+                    abortReshard(previousTotal, stashedListeners, stashedProviders);
+                    future.completeExceptionally(new TimeoutException("The new shards haven't connected in time !"));
+                    return;
+                }
+
+                check[0].cancel(false);
+                switchShards(previousTotal, stashedListeners, stashedProviders);
+                future.complete(null);
+            } catch (RuntimeException e) {
+                check[0].cancel(false);
+                future.completeExceptionally(e);
+            }
+        }, 500, 500, TimeUnit.MILLISECONDS);
+
+        return future;
+    }
 
-            logger.info("Modules initialisation finalized.");
-            logger.info("ModularBot successfully started and ready !");
+    /**
+     * Move the listeners from the old shards to the new ones and shut down the old shards.
+     */
+    private synchronized void switchShards(final int previousTotal, @Nonnull final List<Object> stashedListeners,
+                                           @Nonnull final List<IntFunction<Object>> stashedProviders) {
+        final Object[] added = listeners.toArray();
+        listeners.clear();
+        listeners.addAll(stashedListeners);
+        listeners.addAll(Arrays.asList(added));
+        listenerProviders.addAll(stashedProviders);
+
+        for (final JDA old : retiringShards) {
+            // The registry won't receive the shutdown of its shard once removed
+            WaiterRegistry.dispose(old);
+            old.removeEventListener(old.getRegisteredListeners().toArray());
+        }
+
+        for (final JDA shard : getShards()) {
+            shard.addEventListener(stashedListeners.toArray());
+            for (final IntFunction<Object> provider : stashedProviders)
+                shard.addEventListener(provider.apply(shard.getShardInfo().getShardId()));
         }
+        resharding = false;
+
+        retiringShards.forEach(moduleManager::shardStopped);
+        moduleManager.reshard(previousTotal, shardsTotal);
+        getShards().forEach(moduleManager::shardStarted);
+
+        retiringShards.forEach(JDA::shutdown);
+        retiringShards.clear();
+        logger.info(String.format("Resharded from %d to %d shards !", previousTotal, shardsTotal));
+    }
+
+    /**
+     * Shut down the new shards that haven't connected in time and put the old shards back.
+     */
+    private synchronized void abortReshard(final int previousTotal, @Nonnull final List<Object> stashedListeners,
+                                           @Nonnull final List<IntFunction<Object>> stashedProviders) {
+        final int newTotal = shardsTotal;
+        for (int shardId = 0; shardId < newTotal; shardId++)
+            queue.remove(shardId);
+
+        final List<JDA> newShards = new ArrayList<>(getShards());
+        shards.getMap().clear();
+        newShards.forEach(JDA::shutdown);
+
+        // The listeners added meanwhile are only registered on the new shards
+        final Object[] added = listeners.toArray();
+        listeners.clear();
+        listeners.addAll(stashedListeners);
+        listeners.addAll(Arrays.asList(added));
+        final List<IntFunction<Object>> addedProviders = new ArrayList<>(listenerProviders);
+        listenerProviders.clear();
+        listenerProviders.addAll(stashedProviders);
+        listenerProviders.addAll(addedProviders);
+
+        shardsTotal = previousTotal;
+        for (final JDA old : retiringShards) {
+            shards.getMap().put(old.getShardInfo().getShardId(), old);
+            old.addEventListener(added);
+            for (final IntFunction<Object> provider : addedProviders)
+                old.addEventListener(provider.apply(old.getShardInfo().getShardId()));
+        }
+        retiringShards.clear();
+        resharding = false;
+
+        logger.warn(String.format("The %d new shards haven't connected in time, keeping the %d old ones !", newTotal, previousTotal));
+    }
+
+    /**
+     * Get the node of the cluster run by this process.
+     *
+     * @return The node or {@code null} if the cluster mode isn't enabled.
+     * @see ModularBotBuilder#enableCluster(com.jesus_crie.modularbot.core.cluster.ClusterCoordinator)
+     */
+    @Nullable
+    public ClusterNode getCluster() {
+        return cluster;
+    }
+
+    /**
+     * Get the policy that reports the size of the cache against its memory budget.
+     *
+     * @return The policy or {@code null} if none has been set.
+     * @see ModularBotBuilder#setCachePolicy(CachePolicy)
+     */
+    @Nullable
+    public CachePolicy getCachePolicy() {
+        return cachePolicy;
+    }
+
+    /**
+     * Get the index of the guild of each channel, role and emote, used to query a single shard in the lookups by id.
+     *
+     * @return The index.
+     */
+    @Nonnull
+    public EntityIndex getEntityIndex() {
+        return entityIndex;
+    }
+
+    /**
+     * Get the shard of a guild, computed from its id and the total amount of shards.
+     *
+     * @param guildId The id of the guild.
+     * @return The shard or {@code null} if it isn't running in this process.
+     */
+    @Nullable
+    public JDA getShardForGuild(final long guildId) {
+        if (shards == null || shardsTotal < 1)
+            return null;
+        return getShardById((int) ((guildId >>> 22) % shardsTotal));
+    }
+
+    /**
+     * Add the connection of the shards to the timeline of the startup and end it.
+     */
+    private void finishBootProfile() {
+        final BootProfiler profiler = moduleManager.getBootProfiler();
+        if (!profiler.isEnabled())
+            return;
+
+        if (controller instanceof ModularSessionController) {
+            for (final ModularSessionController.ConnectTiming timing : ((ModularSessionController) controller).getConnectTimings().values()) {
+                final String track = "Shard " + timing.getShardId();
+                // Keep the shards apart from the threads
+                final long trackId = 1_000_000L + timing.getShardId();
+                profiler.record("shard", "queued", trackId, track, timing.getQueued(), timing.getIdentifyStart());
+                profiler.record("shard", "identify", trackId, track, timing.getIdentifyStart(), timing.getConnected());
+                profiler.record("shard", "ready", trackId, track, timing.getConnected(), timing.getReady());
+            }
+        }
+
+        profiler.finish();
+    }
+
+    /**
+     * Log the memory saved by the cache flags disabled because no module requires them.
+     */
+    private void logCacheSavings() {
+        if (disabledCacheFlags == null || disabledCacheFlags.isEmpty())
+            return;
+
+        final long guilds = getGuildCache().size();
+        final long members = getGuildCache().stream().mapToLong(guild -> guild.getMemberCache().size()).sum();
+        logger.info(String.format("Disabling the cache flags %s saves about %dKB",
+                disabledCacheFlags, CacheRequirements.estimateSavings(disabledCacheFlags, guilds, members) / 1024));
     }
 
     /**
@@ -228,6 +775,43 @@ public class ModularBot extends DefaultShardManager {
         return mainPool;
     }
 
+    /**
+     * Get the session controller that schedules the connection of the shards.
+     * The default {@link com.jesus_crie.modularbot.core.utils.ModularSessionController ModularSessionController}
+     * records the connection timings of each shard.
+     *
+     * @return The session controller.
+     */
+    @Nonnull
+    public SessionController getSessionController() {
+        return controller;
+    }
+
+    /**
+     * Get the timing wheel that can be used to schedule a large amount of short tasks like timeouts cheaply.
+     * It is shared with the {@link com.jesus_crie.modularbot.core.utils.Waiter Waiter}.
+     *
+     * @return The shared {@link TimingWheel TimingWheel}.
+     */
+    @Nonnull
+    public TimingWheel getTimingWheel() {
+        return TimingWheel.getShared();
+    }
+
+    /**
+     * Schedule a task in the {@link #getTimingWheel() timing wheel}.
+     * The precision is 1 millisecond, prefer {@link #getMainPool()} for long or periodic tasks.
+     *
+     * @param task  The task to run.
+     * @param delay The delay before running the task.
+     * @param unit  The unit of the delay.
+     * @return A handle that can be used to cancel the task.
+     */
+    @Nonnull
+    public TimingWheel.Timeout schedule(@Nonnull final Runnable task, final long delay, @Nonnull final TimeUnit unit) {
+        return getTimingWheel().schedule(task, delay, unit);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -269,21 +853,171 @@ public class ModularBot extends DefaultShardManager {
             super.removeEventListener(listeners);
     }
 
+    /**
+     * {@inheritDoc}
+     * Only queries the shard of the guild.
+     */
+    @Override
+    public Guild getGuildById(final long id) {
+        final JDA shard = getShardForGuild(id);
+        return shard == null ? null : shard.getGuildById(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only queries the shard of the guild.
+     */
+    @Override
+    public Guild getGuildById(@Nonnull final String id) {
+        return getGuildById(MiscUtil.parseSnowflake(id));
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only queries the shard of the guild of the channel, or every shard if it isn't indexed.
+     */
+    @Override
+    public TextChannel getTextChannelById(final long id) {
+        final long guildId = entityIndex.getGuildId(id);
+        if (guildId == 0)
+            return super.getTextChannelById(id);
+
+        final JDA shard = getShardForGuild(guildId);
+        return shard == null ? null : shard.getTextChannelById(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only queries the shard of the guild of the channel, or every shard if it isn't indexed.
+     */
+    @Override
+    public TextChannel getTextChannelById(@Nonnull final String id) {
+        return getTextChannelById(MiscUtil.parseSnowflake(id));
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only queries the shard of the guild of the channel, or every shard if it isn't indexed.
+     */
+    @Override
+    public VoiceChannel getVoiceChannelById(final long id) {
+        final long guildId = entityIndex.getGuildId(id);
+        if (guildId == 0)
+            return super.getVoiceChannelById(id);
+
+        final JDA shard = getShardForGuild(guildId);
+        return shard == null ? null : shard.getVoiceChannelById(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only queries the shard of the guild of the channel, or every shard if it isn't indexed.
+     */
+    @Override
+    public VoiceChannel getVoiceChannelById(@Nonnull final String id) {
+        return getVoiceChannelById(MiscUtil.parseSnowflake(id));
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only queries the shard of the guild of the category, or every shard if it isn't indexed.
+     */
+    @Override
+    public Category getCategoryById(final long id) {
+        final long guildId = entityIndex.getGuildId(id);
+        if (guildId == 0)
+            return super.getCategoryById(id);
+
+        final JDA shard = getShardForGuild(guildId);
+        return shard == null ? null : shard.getCategoryById(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only queries the shard of the guild of the category, or every shard if it isn't indexed.
+     */
+    @Override
+    public Category getCategoryById(@Nonnull final String id) {
+        return getCategoryById(MiscUtil.parseSnowflake(id));
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only queries the shard of the guild of the role, or every shard if it isn't indexed.
+     */
+    @Override
+    public Role getRoleById(final long id) {
+        final long guildId = entityIndex.getGuildId(id);
+        if (guildId == 0)
+            return super.getRoleById(id);
+
+        final JDA shard = getShardForGuild(guildId);
+        return shard == null ? null : shard.getRoleById(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only queries the shard of the guild of the role, or every shard if it isn't indexed.
+     */
+    @Override
+    public Role getRoleById(@Nonnull final String id) {
+        return getRoleById(MiscUtil.parseSnowflake(id));
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only queries the shard of the guild of the emote, or every shard if it isn't indexed.
+     */
+    @Override
+    public Emote getEmoteById(final long id) {
+        final long guildId = entityIndex.getGuildId(id);
+        if (guildId == 0)
+            return super.getEmoteById(id);
+
+        final JDA shard = getShardForGuild(guildId);
+        return shard == null ? null : shard.getEmoteById(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only queries the shard of the guild of the emote, or every shard if it isn't indexed.
+     */
+    @Override
+    public Emote getEmoteById(@Nonnull final String id) {
+        return getEmoteById(MiscUtil.parseSnowflake(id));
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void shutdown() {
         logger.info("Shutting down...");
+        if (cluster != null)
+            cluster.leave();
+
         moduleManager.preUnload();
-        receivedReady.set(0);
+        readyShards.clear();
+        shardsReady.set(false);
 
-        if (useShutdownNow) mainPool.shutdownNow();
-        else mainPool.shutdown();
+        // A shared pool is shut down by its owner
+        if (ownsMainPool) {
+            if (useShutdownNow) mainPool.shutdownNow();
+            else mainPool.shutdown();
+        }
 
         super.shutdown();
+        retiringShards.forEach(JDA::shutdown);
+        retiringShards.clear();
         moduleManager.unload();
 
+        if (cachePolicy != null)
+            cachePolicy.shutdown();
+
+        final DispatchWatchdog watchdog = eventStatistics.getWatchdog();
+        if (watchdog != null)
+            watchdog.shutdown();
+
         logger.info("Bot powered off successfully !");
     }
 }
@@ -1,23 +1,39 @@
 package com.jesus_crie.modularbot.core;
 
+import com.jesus_crie.modularbot.core.cache.CachePolicy;
+import com.jesus_crie.modularbot.core.cache.RequiresCache;
+import com.jesus_crie.modularbot.core.cluster.ClusterCoordinator;
+import com.jesus_crie.modularbot.core.cluster.ClusterNode;
 import com.jesus_crie.modularbot.core.dependencyinjection.exception.*;
+import com.jesus_crie.modularbot.core.event.PartitionedEventPipeline;
 import com.jesus_crie.modularbot.core.module.Module;
 import com.jesus_crie.modularbot.core.module.ModuleManager;
 import com.jesus_crie.modularbot.core.module.ModuleSettingsProvider;
+import com.jesus_crie.modularbot.core.module.WarmUp;
+import com.jesus_crie.modularbot.core.stats.BootProfiler;
+import com.jesus_crie.modularbot.core.stats.DispatchWatchdog;
+import com.jesus_crie.modularbot.core.stats.EventStatistics;
 import com.jesus_crie.modularbot.core.utils.IStateProvider;
 import com.jesus_crie.modularbot.core.utils.ModularSessionController;
 import com.jesus_crie.modularbot.core.utils.ModularThreadFactory;
+import com.jesus_crie.modularbot.core.utils.TrainingRun;
 import net.dv8tion.jda.bot.sharding.ThreadPoolProvider;
 import net.dv8tion.jda.core.JDA;
 import net.dv8tion.jda.core.audio.factory.IAudioSendFactory;
 import net.dv8tion.jda.core.hooks.IEventManager;
+import net.dv8tion.jda.core.utils.SessionController;
 import net.dv8tion.jda.core.utils.cache.CacheFlag;
+import okhttp3.OkHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.concurrent.ConcurrentMap;
@@ -37,6 +53,8 @@ public class ModularBotBuilder {
     protected final String token;
     protected int shards = -1;
     protected IStateProvider stateProvider = null;
+    protected SessionController sessionController = null;
+    protected ClusterCoordinator clusterCoordinator = null;
     protected boolean enableVoice = false;
     protected boolean enableBulkDeleteSplitting = true;
     protected boolean useShutdownNow = false;
@@ -46,12 +64,21 @@ public class ModularBotBuilder {
     protected IAudioSendFactory audioSendFactory = null;
     protected final List<IntFunction<Object>> listenersProvider = new ArrayList<>();
     protected IntFunction<? extends ConcurrentMap<String, String>> contextProvider = null;
-    protected IntFunction<? extends IEventManager> eventManagerProvider = i -> new ModularEventManager();
+    protected final EventStatistics eventStatistics = new EventStatistics();
+    protected IntFunction<? extends IEventManager> eventManagerProvider = i -> new ModularEventManager(eventStatistics.forShard(i));
     protected ThreadPoolProvider<? extends ScheduledExecutorService> rateLimitPoolProvider = null;
     protected ThreadPoolProvider<? extends ScheduledExecutorService> gatewayPoolProvider = null;
     protected ThreadPoolProvider<? extends ExecutorService> callbackPoolProvider = null;
     protected EnumSet<CacheFlag> cacheFlags = EnumSet.allOf(CacheFlag.class);
     protected ThreadFactory threadFactory = new ModularThreadFactory("General", false);
+    protected OkHttpClient httpClient = null;
+    protected ScheduledExecutorService mainPool = null;
+    protected CachePolicy cachePolicy = null;
+    protected boolean minimalCache = false;
+    protected boolean strictCache = false;
+    protected WarmUp warmUp = null;
+    protected boolean trainingRun = TrainingRun.isRequested();
+    protected Path trainingClassList = TrainingRun.getRequestedClassList();
 
     protected final ModuleManager moduleManager = new ModuleManager();
     protected final ModuleManager.InjectionContext injectionContext = moduleManager.newContext();
@@ -72,6 +99,31 @@ public class ModularBotBuilder {
         return this;
     }
 
+    /**
+     * Identify multiple shards at the same time, in buckets of {@code shardId % maxConcurrency}.
+     * Only use a value higher than 1 if discord allows it for your bot.
+     * (default) 1, the shards identify one after the other.
+     *
+     * @param maxConcurrency The amount of shards that can identify at the same time.
+     * @see ModularSessionController
+     */
+    public ModularBotBuilder setIdentifyConcurrency(final int maxConcurrency) {
+        sessionController = new ModularSessionController(maxConcurrency);
+        return this;
+    }
+
+    /**
+     * Set the session controller that schedules the connection of the shards, like a
+     * {@link ModularSessionController ModularSessionController} with some shard weights.
+     *
+     * @param sessionController The session controller, {@code null} for the default one.
+     * @see net.dv8tion.jda.bot.sharding.DefaultShardManagerBuilder#setSessionController(SessionController)
+     */
+    public ModularBotBuilder setSessionController(@Nullable final SessionController sessionController) {
+        this.sessionController = sessionController;
+        return this;
+    }
+
     /**
      * Used to provide the state of the bot at startup.
      *
@@ -179,6 +231,113 @@ public class ModularBotBuilder {
         return this;
     }
 
+    /**
+     * Dispatch the events of every shard on the workers of the given pipeline instead of the event threads of the
+     * shards, while still recording the event statistics.
+     *
+     * @param pipeline The pipeline to use.
+     * @see #setEventManagerProvider(IntFunction)
+     */
+    public ModularBotBuilder usePartitionedEventPipeline(@Nonnull final PartitionedEventPipeline pipeline) {
+        return setEventManagerProvider(pipeline.provider(eventStatistics));
+    }
+
+    /**
+     * Set the sampling rate of the listener latencies recorded by the default event manager.
+     * The events are always counted, but only one event out of this amount will be timed.
+     * (default) {@link EventStatistics#DEFAULT_SAMPLING_RATE}, use 1 to time every event.
+     *
+     * @param samplingRate The sampling rate, 0 to disable the timings.
+     * @see ModularBot#getEventStatistics()
+     */
+    public ModularBotBuilder setEventStatisticsSamplingRate(final int samplingRate) {
+        eventStatistics.setSamplingRate(samplingRate);
+        return this;
+    }
+
+    /**
+     * Watch the event threads and report the listeners that block them for longer than the threshold, with the
+     * stack of the blocked thread and the module that has registered the listener.
+     * Only the default event managers and the partitioned pipeline are watched.
+     *
+     * @param threshold The time after which a listener is considered blocked, in milliseconds.
+     * @see ModularBot#getDispatchWatchdog()
+     */
+    public ModularBotBuilder enableDispatchWatchdog(final long threshold) {
+        final DispatchWatchdog previous = eventStatistics.getWatchdog();
+        if (previous != null)
+            previous.shutdown();
+
+        final DispatchWatchdog watchdog = new DispatchWatchdog(threshold);
+        watchdog.setOwnerResolver(listener -> {
+            final Class<? extends Module> owner = moduleManager.findOwner(listener);
+            return owner == null ? null : owner.getName();
+        });
+
+        eventStatistics.setWatchdog(watchdog);
+        return this;
+    }
+
+    /**
+     * Record a timeline of the startup until the bot is ready: the resolution, the construction and the lifecycle
+     * hooks of the modules, the login and the connection of each shard.
+     * A summary of the slowest items is logged when the bot is ready.
+     * Should be called before resolving the modules to include them.
+     *
+     * @param output (Optional) The file where the timeline is written as a Chrome trace.
+     * @see BootProfiler
+     */
+    public ModularBotBuilder enableBootProfiler(@Nullable final Path output) {
+        moduleManager.setBootProfiler(new BootProfiler(output));
+        return this;
+    }
+
+    /**
+     * Run the warm-up workloads registered by the modules in {@link com.jesus_crie.modularbot.core.module.Lifecycle#onWarmUp(WarmUp)}
+     * while the shards connect, the bot only reports ready once they are done.
+     * The latency of the first and the last iterations of each workload is logged.
+     *
+     * @param iterations The maximum amount of iterations of each workload.
+     * @param timeBudget The maximum time spent to run all of the workloads, in milliseconds.
+     * @see WarmUp
+     */
+    public ModularBotBuilder enableWarmUp(final int iterations, final long timeBudget) {
+        warmUp = new WarmUp(iterations, timeBudget);
+        return this;
+    }
+
+    /**
+     * Make {@link ModularBot#login()} a training run: the modules go through the startup, a login is simulated
+     * without connecting to discord, the classes of the bot are loaded and the modules are unloaded, then the login
+     * returns. Run it with {@code -XX:DumpLoadedClassList} to create an AppCDS archive, see the script
+     * {@code appcds.sh} that launches the bot through {@link TrainingRun#main(String[])} to exit afterwards.
+     * Can also be enabled with the system property {@code -Dmodularbot.training=true} or
+     * {@code -Dmodularbot.training=<class list>} without changing the code.
+     *
+     * @param classList (Optional) The file where the classes loaded from the jars of the bot are listed.
+     * @see TrainingRun
+     */
+    public ModularBotBuilder enableTrainingRun(@Nullable final Path classList) {
+        trainingRun = true;
+        trainingClassList = classList;
+        return this;
+    }
+
+    /**
+     * Share the shards with the other processes of the cluster, this process will only run a part of them.
+     * The shards are rebalanced when a process joins or leaves and the requests that need a shard of another process
+     * can be sent to it, see {@link ClusterNode ClusterNode}.
+     * Requires a fixed amount of shards, the builder joins the cluster when building the bot.
+     *
+     * @param coordinator The coordinator of the cluster, like a
+     *                    {@link com.jesus_crie.modularbot.core.cluster.FileClusterCoordinator FileClusterCoordinator}.
+     * @see ModularBot#getCluster()
+     */
+    public ModularBotBuilder enableCluster(@Nonnull final ClusterCoordinator coordinator) {
+        clusterCoordinator = coordinator;
+        return this;
+    }
+
     /**
      * Provide thread pools to use instead of the default ones.
      * USE WITH CAUTION this can alter the behaviour of JDA in many ways !
@@ -201,6 +360,59 @@ public class ModularBotBuilder {
         return this;
     }
 
+    /**
+     * Use an existing HTTP client for the requests of the shards, typically shared between multiple bots.
+     * (default) {@code null}, every bot creates its own client.
+     *
+     * @param httpClient The HTTP client.
+     * @see ModularBotHost
+     */
+    public ModularBotBuilder setHttpClient(@Nullable final OkHttpClient httpClient) {
+        this.httpClient = httpClient;
+        return this;
+    }
+
+    /**
+     * Use an existing pool as the {@link ModularBot#getMainPool() main pool}, typically shared between multiple bots.
+     * The bot won't shut it down.
+     * (default) {@code null}, every bot creates its own pool.
+     *
+     * @param mainPool The pool.
+     * @see ModularBotHost
+     */
+    public ModularBotBuilder setMainPool(@Nullable final ScheduledExecutorService mainPool) {
+        this.mainPool = mainPool;
+        return this;
+    }
+
+    /**
+     * Watch the estimated size of the entity cache against a memory budget and advise how to reduce it when it is
+     * exceeded. The policy is registered as a listener of every shard.
+     * (default) {@code null}, everything allowed by the {@link #setDisableCacheFlags(EnumSet) cache flags} is cached.
+     *
+     * @param cachePolicy The policy.
+     * @see CachePolicy
+     */
+    public ModularBotBuilder setCachePolicy(@Nullable final CachePolicy cachePolicy) {
+        this.cachePolicy = cachePolicy;
+        return this;
+    }
+
+    /**
+     * Only enable the cache flags declared by the modules with {@link RequiresCache}, the others are disabled when
+     * building. The flags disabled with {@link #setDisableCacheFlags(EnumSet)} stay disabled.
+     * In strict mode, building fails if a flag required by a module has been disabled and creating a listener of
+     * a module that subscribes to events of a cache that the module hasn't declared fails.
+     *
+     * @param strict Whether the declarations are enforced or not.
+     * @see com.jesus_crie.modularbot.core.module.ModuleManager#getRequiredCacheFlags()
+     */
+    public ModularBotBuilder enableMinimalCache(final boolean strict) {
+        minimalCache = true;
+        strictCache = strict;
+        return this;
+    }
+
     /**
      * Set the parameters related to MDC.
      *
@@ -261,6 +473,18 @@ public class ModularBotBuilder {
         return this;
     }
 
+    /**
+     * Get the listener providers registered so far.
+     * The list is shared with the bot, the providers added after the creation of the shards needs to be
+     * registered with {@link ModularBot#addEventListeners(IntFunction)} instead.
+     *
+     * @return The mutable list of the listener providers.
+     */
+    @Nonnull
+    public List<IntFunction<Object>> getListenerProviders() {
+        return listenersProvider;
+    }
+
     /**
      * Request the builder to load these modules.
      *
@@ -391,17 +615,71 @@ public class ModularBotBuilder {
         if (!injectionContext.isResolved())
             throw new IllegalStateException("You need to resolve the injection context before building !");
 
+        final SessionController controller = sessionController != null ? sessionController : new ModularSessionController();
+
+        ClusterNode cluster = null;
+        Collection<Integer> shardIds = null;
+        if (clusterCoordinator != null) {
+            if (shards < 1)
+                throw new IllegalStateException("The cluster mode requires a fixed amount of shards !");
+
+            cluster = new ClusterNode(clusterCoordinator, shards);
+            try {
+                shardIds = cluster.join();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to join the cluster !", e);
+            }
+        }
+
+        moduleManager.setStrictCache(strictCache);
         moduleManager.loadModules(this);
 
-        return new ModularBot(
-                shards, new ModularSessionController(),
-                listenersProvider, token, eventManagerProvider,
-                audioSendFactory, stateProvider, rateLimitPoolProvider,
-                gatewayPoolProvider, callbackPoolProvider, threadFactory,
-                maxReconnectDelay, corePoolSize, enableVoice,
-                enableBulkDeleteSplitting, useShutdownNow, enableMdcContext, contextProvider,
-                cacheFlags, moduleManager
-        );
+        EnumSet<CacheFlag> cacheFlags = this.cacheFlags;
+        EnumSet<CacheFlag> disabledCacheFlags = null;
+        if (minimalCache) {
+            final EnumSet<CacheFlag> required = moduleManager.getRequiredCacheFlags();
+            if (strictCache && !this.cacheFlags.containsAll(required)) {
+                required.removeAll(this.cacheFlags);
+                throw new IllegalStateException(String.format("The cache flags %s are required by the modules but have been disabled !", required));
+            }
+
+            cacheFlags = EnumSet.copyOf(required);
+            cacheFlags.retainAll(this.cacheFlags);
+            disabledCacheFlags = EnumSet.complementOf(cacheFlags);
+            LOG.info(String.format("Disabled the cache flags %s that no module requires", disabledCacheFlags));
+        }
+
+        final List<IntFunction<Object>> listenersProvider = new ArrayList<>(this.listenersProvider);
+        if (cachePolicy != null) {
+            cachePolicy.setCacheFlags(cacheFlags, moduleManager.getRequiredCacheFlags());
+            listenersProvider.add(shard -> cachePolicy);
+        }
+
+        final ModularBot bot;
+        try (final BootProfiler.Span ignored = moduleManager.getBootProfiler().start("phase", "new ModularBot")) {
+            bot = new ModularBot(
+                    shards, shardIds, controller,
+                    listenersProvider, token, eventManagerProvider,
+                    audioSendFactory, stateProvider, rateLimitPoolProvider,
+                    gatewayPoolProvider, callbackPoolProvider, threadFactory,
+                    maxReconnectDelay, corePoolSize, enableVoice,
+                    enableBulkDeleteSplitting, useShutdownNow, enableMdcContext, contextProvider,
+                    cacheFlags, moduleManager, eventStatistics, httpClient, mainPool
+            );
+        }
+
+        if (cluster != null) {
+            bot.cluster = cluster;
+            cluster.bind(bot);
+        }
+
+        bot.cachePolicy = cachePolicy;
+        bot.disabledCacheFlags = disabledCacheFlags;
+        bot.warmUp = warmUp;
+        bot.trainingRun = trainingRun;
+        bot.trainingClassList = trainingClassList;
+
+        return bot;
     }
 
     /**
@@ -0,0 +1,131 @@
+package com.jesus_crie.modularbot.core;
+
+import com.jesus_crie.modularbot.core.utils.ModularThreadFactory;
+import okhttp3.OkHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.security.auth.login.LoginException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Runs multiple bots in the same JVM with a single set of thread pools and a single HTTP client, instead of a set
+ * per bot. Each bot keeps its own modules, module manager and state.
+ * <p>
+ * The timeouts of the {@link com.jesus_crie.modularbot.core.utils.Waiter Waiter} and the
+ * {@link com.jesus_crie.modularbot.core.utils.TimingWheel TimingWheel} are already shared by the whole JVM, as well as
+ * the metadata of the listeners and the modules.
+ * <pre>{@code
+ * final ModularBotHost host = new ModularBotHost(4);
+ * host.add(new ModularBotBuilder(token1).requestBaseModules().resolveModulesSilently());
+ * host.add(new ModularBotBuilder(token2).resolveModulesSilently());
+ * host.loginAll();
+ * }</pre>
+ */
+public class ModularBotHost {
+
+    private static final Logger LOG = LoggerFactory.getLogger("ModularBotHost");
+
+    private final ScheduledExecutorService rateLimitPool;
+    private final ScheduledExecutorService gatewayPool;
+    private final ExecutorService callbackPool;
+    private final ScheduledExecutorService mainPool;
+    private final OkHttpClient httpClient;
+
+    private final List<ModularBot> bots = new CopyOnWriteArrayList<>();
+
+    /**
+     * Create a host with pools of the size of the amount of processors.
+     */
+    public ModularBotHost() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param poolSize The amount of threads of each shared pool.
+     */
+    public ModularBotHost(final int poolSize) {
+        this(poolSize, new OkHttpClient.Builder().build());
+    }
+
+    /**
+     * @param poolSize   The amount of threads of each shared pool.
+     * @param httpClient The HTTP client shared by the bots.
+     */
+    public ModularBotHost(final int poolSize, @Nonnull final OkHttpClient httpClient) {
+        rateLimitPool = Executors.newScheduledThreadPool(poolSize, new ModularThreadFactory("Host RateLimit", true));
+        gatewayPool = Executors.newScheduledThreadPool(poolSize, new ModularThreadFactory("Host Gateway", true));
+        callbackPool = Executors.newFixedThreadPool(poolSize, new ModularThreadFactory("Host Callback", true));
+        mainPool = Executors.newScheduledThreadPool(1, new ModularThreadFactory("Host Main Pool", true));
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * Build a bot that uses the shared resources of this host.
+     * The custom thread pools, HTTP client and main pool of the builder are replaced.
+     *
+     * @param builder A builder whose modules are resolved.
+     * @return The new bot, not logged in yet.
+     */
+    @Nonnull
+    public ModularBot add(@Nonnull final ModularBotBuilder builder) {
+        builder.setCustomThreadPools(shardId -> rateLimitPool, shardId -> gatewayPool, shardId -> callbackPool)
+                .setHttpClient(httpClient)
+                .setMainPool(mainPool);
+
+        final ModularBot bot = builder.build();
+        bots.add(bot);
+        LOG.info(String.format("Hosting %d bots", bots.size()));
+        return bot;
+    }
+
+    /**
+     * Log in every bot that has been added, one after the other.
+     *
+     * @throws LoginException If the credentials of a bot are wrong, the next bots aren't logged in.
+     */
+    public void loginAll() throws LoginException {
+        for (final ModularBot bot : bots)
+            bot.login();
+    }
+
+    /**
+     * Shut down a bot and stop hosting it. The shared resources stay alive.
+     *
+     * @param bot The bot.
+     */
+    public void remove(@Nonnull final ModularBot bot) {
+        if (bots.remove(bot))
+            bot.shutdown();
+    }
+
+    /**
+     * @return The hosted bots.
+     */
+    @Nonnull
+    public List<ModularBot> getBots() {
+        return Collections.unmodifiableList(bots);
+    }
+
+    /**
+     * Shut down every bot, then the shared resources.
+     */
+    public void shutdown() {
+        LOG.info("Shutting down " + bots.size() + " bots...");
+        bots.forEach(ModularBot::shutdown);
+        bots.clear();
+
+        rateLimitPool.shutdown();
+        gatewayPool.shutdown();
+        callbackPool.shutdown();
+        mainPool.shutdown();
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+}
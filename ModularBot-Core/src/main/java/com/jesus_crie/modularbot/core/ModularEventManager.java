@@ -1,13 +1,254 @@
 package com.jesus_crie.modularbot.core;
 
+import com.jesus_crie.modularbot.core.event.TypedEventListener;
+import com.jesus_crie.modularbot.core.stats.DispatchWatchdog;
+import com.jesus_crie.modularbot.core.stats.ShardEventStatistics;
 import net.dv8tion.jda.core.events.Event;
+import net.dv8tion.jda.core.hooks.EventListener;
 import net.dv8tion.jda.core.hooks.InterfacedEventManager;
+import net.dv8tion.jda.core.hooks.ListenerAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Event manager that only calls the listeners interested in the type of the event.
+ * <p>
+ * The event types of a listener are derived from the methods that it overrides if it is a {@link ListenerAdapter},
+ * from the types declared by a {@link TypedEventListener} like the waiters, or every event otherwise.
+ * The listeners of every concrete event class are resolved once and cached until a listener that could receive
+ * it is registered or unregistered, and events that nobody listens to are dropped immediately.
+ * <p>
+ * If some {@link ShardEventStatistics} are provided, every event is counted and the time taken by each listener
+ * is recorded for a sample of the events. If they have a {@link DispatchWatchdog}, every call to a listener is watched
+ * to report the ones that block the event thread.
+ */
 public class ModularEventManager extends InterfacedEventManager {
 
+    private static final Logger LOG = LoggerFactory.getLogger("EventManager");
+
+    private static final EventListener[] NO_LISTENERS = new EventListener[0];
+
+    // Subscriptions of the ListenerAdapter subclasses, shared between the shards and released with their class
+    private static final ClassValue<Class<?>[]> ADAPTER_SUBSCRIPTIONS = new ClassValue<Class<?>[]>() {
+        @Override
+        protected Class<?>[] computeValue(final Class<?> type) {
+            return getAdapterSubscriptions(type);
+        }
+    };
+
+    private final List<EventListener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<EventListener, Class<?>[]> subscriptions = new ConcurrentHashMap<>();
+    private final Map<Class<?>, EventListener[]> dispatchCache = new ConcurrentHashMap<>();
+
+    private final Object lock = new Object();
+
+    private final ShardEventStatistics statistics;
+
+    public ModularEventManager() {
+        this(null);
+    }
+
+    /**
+     * @param statistics - (Optional) The statistics where the events of this shard will be recorded.
+     */
+    public ModularEventManager(@Nullable final ShardEventStatistics statistics) {
+        this.statistics = statistics;
+    }
+
     @Override
-    public void handle(Event event) {
-        // TODO 10/03/18 stats and check ReadyEvent
-        super.handle(event);
+    public void register(final Object listener) {
+        if (!(listener instanceof EventListener))
+            throw new IllegalArgumentException("Listener must implement EventListener");
+
+        final EventListener eventListener = (EventListener) listener;
+        final Class<?>[] types = getSubscriptions(eventListener);
+
+        synchronized (lock) {
+            listeners.add(eventListener);
+            subscriptions.put(eventListener, types);
+            invalidate(types);
+        }
+    }
+
+    @Override
+    public void unregister(final Object listener) {
+        synchronized (lock) {
+            if (!listeners.remove(listener))
+                return;
+
+            // The listener can be registered multiple times
+            final Class<?>[] types = listeners.contains(listener)
+                    ? subscriptions.get(listener)
+                    : subscriptions.remove(listener);
+            invalidate(types);
+        }
+    }
+
+    @Override
+    public List<Object> getRegisteredListeners() {
+        return Collections.unmodifiableList(new ArrayList<>(listeners));
+    }
+
+    @Override
+    public void handle(final Event event) {
+        EventListener[] targets = dispatchCache.get(event.getClass());
+        if (targets == null)
+            targets = resolve(event.getClass());
+
+        if (statistics == null) {
+            for (final EventListener listener : targets)
+                dispatch(listener, event);
+            return;
+        }
+
+        statistics.recordEvent(event.getClass());
+        if (targets.length == 0)
+            return;
+
+        final boolean sample = statistics.shouldSample();
+        final DispatchWatchdog.Slot slot = statistics.enterDispatch();
+        if (!sample && slot == null) {
+            for (final EventListener listener : targets)
+                dispatch(listener, event);
+            return;
+        }
+
+        for (final EventListener listener : targets) {
+            final long start = System.nanoTime();
+            if (slot != null)
+                slot.begin(listener, event, start);
+
+            dispatch(listener, event);
+
+            final long end = System.nanoTime();
+            if (slot != null)
+                slot.end(end);
+            if (sample)
+                statistics.recordListener(listener, end - start);
+        }
+    }
+
+    private static void dispatch(@Nonnull final EventListener listener, @Nonnull final Event event) {
+        try {
+            listener.onEvent(event);
+        } catch (Throwable t) {
+            LOG.error("One of the EventListeners had an uncaught exception", t);
+        }
+    }
+
+    /**
+     * Compute the listeners that needs to receive the events of the given class, in the order of their registration.
+     *
+     * @param eventClass - The concrete class of the event.
+     * @return An array of the interested listeners, possibly empty.
+     */
+    @Nonnull
+    private EventListener[] resolve(@Nonnull final Class<?> eventClass) {
+        synchronized (lock) {
+            final EventListener[] cached = dispatchCache.get(eventClass);
+            if (cached != null)
+                return cached;
+
+            final List<EventListener> targets = new ArrayList<>();
+            for (final EventListener listener : listeners) {
+                if (isSubscribed(subscriptions.get(listener), eventClass))
+                    targets.add(listener);
+            }
+
+            final EventListener[] resolved = targets.isEmpty() ? NO_LISTENERS : targets.toArray(NO_LISTENERS);
+            dispatchCache.put(eventClass, resolved);
+            return resolved;
+        }
+    }
+
+    /**
+     * Remove the cached resolutions of the event classes matched by the given subscriptions.
+     *
+     * @param types - The subscriptions of the listener that has changed.
+     */
+    private void invalidate(final Class<?>[] types) {
+        if (types == null)
+            return;
+
+        dispatchCache.keySet().removeIf(eventClass -> isSubscribed(types, eventClass));
+    }
+
+    private static boolean isSubscribed(final Class<?>[] types, @Nonnull final Class<?> eventClass) {
+        if (types == null)
+            return false;
+
+        for (final Class<?> type : types) {
+            if (type.isAssignableFrom(eventClass))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Compute the event types that a listener is interested in.
+     *
+     * @param listener - The listener.
+     * @return The types of event that should be delivered to the listener.
+     */
+    @Nonnull
+    public static Class<?>[] getSubscriptions(@Nonnull final EventListener listener) {
+        if (listener instanceof TypedEventListener)
+            return ((TypedEventListener) listener).getEventTypes();
+
+        if (listener instanceof ListenerAdapter)
+            return ADAPTER_SUBSCRIPTIONS.get(listener.getClass());
+
+        return new Class<?>[]{Event.class};
+    }
+
+    /**
+     * Look for the methods of {@link ListenerAdapter} that are overridden by the given class.
+     *
+     * @param clazz - A subclass of {@link ListenerAdapter}.
+     * @return The parameter types of the overridden methods.
+     */
+    @Nonnull
+    private static Class<?>[] getAdapterSubscriptions(@Nonnull final Class<?> clazz) {
+        final Set<Class<?>> types = new LinkedHashSet<>();
+
+        for (Class<?> current = clazz; current != ListenerAdapter.class && current != null; current = current.getSuperclass()) {
+            for (final Method method : current.getDeclaredMethods()) {
+                if (method.isSynthetic() || method.isBridge() || Modifier.isStatic(method.getModifiers())
+                        || method.getParameterCount() != 1 || !method.getName().startsWith("on"))
+                    continue;
+
+                final Class<?> parameter = method.getParameterTypes()[0];
+                // Some hooks take an interface, like onGenericUpdate
+                if (!Event.class.isAssignableFrom(parameter) && !parameter.isInterface())
+                    continue;
+
+                try {
+                    ListenerAdapter.class.getMethod(method.getName(), parameter);
+                    types.add(parameter);
+                } catch (NoSuchMethodException ignore) {
+                    // Not an override
+                }
+            }
+        }
+
+        // onGenericEvent receives everything anyway
+        if (types.contains(Event.class))
+            return new Class<?>[]{Event.class};
+
+        return types.toArray(new Class<?>[0]);
     }
 }
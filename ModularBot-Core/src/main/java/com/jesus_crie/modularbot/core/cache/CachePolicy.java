@@ -0,0 +1,247 @@
+package com.jesus_crie.modularbot.core.cache;
+
+import com.jesus_crie.modularbot.core.utils.ModularThreadFactory;
+import net.dv8tion.jda.bot.sharding.ShardManager;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.events.ReadyEvent;
+import net.dv8tion.jda.core.events.guild.GuildLeaveEvent;
+import net.dv8tion.jda.core.events.guild.member.GuildMemberJoinEvent;
+import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.core.events.message.react.MessageReactionAddEvent;
+import net.dv8tion.jda.core.hooks.ListenerAdapter;
+import net.dv8tion.jda.core.utils.cache.CacheFlag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Watches the estimated size of the entity cache against a memory budget.
+ * <p>
+ * The activity of each guild is tracked from the messages, reactions and joins. Periodically, if the estimated size
+ * of the cache exceeds the budget, a warning is logged with the cache flags that no module requires and the memory
+ * that disabling them would save, followed by the inactive guilds that use the most memory.
+ * <p>
+ * This is only a report, nothing is evicted: JDA 3 can't restrict the members to some guilds or load them on demand,
+ * and it holds back the events of the entities missing from its cache until they are cached again, so removing
+ * members would drop their events, the commands included, and grow that other cache instead.
+ *
+ * @see com.jesus_crie.modularbot.core.ModularBotBuilder#setCachePolicy(CachePolicy)
+ */
+public class CachePolicy extends ListenerAdapter {
+
+    private static final Logger LOG = LoggerFactory.getLogger("CachePolicy");
+
+    // Rough retained sizes, measured on a 64 bits JVM with compressed oops
+    static final long GUILD_BYTES = 4096;
+    static final long MEMBER_BYTES = 720;
+    static final long ROLE_BYTES = 320;
+    static final long CHANNEL_BYTES = 480;
+    static final long EMOTE_BYTES = 240;
+
+    private static final int REPORTED_GUILDS = 5;
+
+    private final long heapBudget;
+    private volatile long activeWindow = TimeUnit.HOURS.toMillis(1);
+    private volatile long checkInterval = TimeUnit.MINUTES.toMillis(1);
+    private volatile EnumSet<CacheFlag> enabledFlags = EnumSet.allOf(CacheFlag.class);
+    private volatile EnumSet<CacheFlag> requiredFlags = EnumSet.allOf(CacheFlag.class);
+
+    private final Map<Long, Long> lastActivities = new ConcurrentHashMap<>();
+    private volatile ShardManager shardManager = null;
+    private ScheduledExecutorService scheduler = null;
+
+    /**
+     * @param heapBudget - The memory that the entity cache can use, in bytes.
+     */
+    public CachePolicy(final long heapBudget) {
+        this.heapBudget = heapBudget;
+    }
+
+    /**
+     * A guild without activity during this window is reported as inactive when the budget is exceeded.
+     * (default) 1 hour.
+     *
+     * @param activeWindow - The window in milliseconds.
+     * @return The current object for chaining convenience.
+     */
+    public CachePolicy setActiveWindow(final long activeWindow) {
+        this.activeWindow = activeWindow;
+        return this;
+    }
+
+    /**
+     * (default) 1 minute.
+     *
+     * @param checkInterval - The interval between two checks of the size of the cache, in milliseconds.
+     * @return The current object for chaining convenience.
+     */
+    public CachePolicy setCheckInterval(final long checkInterval) {
+        this.checkInterval = checkInterval;
+        return this;
+    }
+
+    /**
+     * Set the cache flags used by the shards and the ones required by the modules, to advise which ones can be
+     * disabled. Called by the builder.
+     * (default) Every flag is enabled and required, nothing is advised.
+     *
+     * @param enabled  - The cache flags enabled on the shards.
+     * @param required - The cache flags declared by the modules.
+     */
+    public void setCacheFlags(@Nonnull final EnumSet<CacheFlag> enabled, @Nonnull final EnumSet<CacheFlag> required) {
+        enabledFlags = EnumSet.copyOf(enabled);
+        requiredFlags = EnumSet.copyOf(required);
+    }
+
+    public long getHeapBudget() {
+        return heapBudget;
+    }
+
+    @Override
+    public synchronized void onReady(final ReadyEvent event) {
+        if (scheduler != null)
+            return;
+
+        shardManager = event.getJDA().asBot().getShardManager();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ModularThreadFactory("Cache Policy", true));
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                check();
+            } catch (RuntimeException e) {
+                LOG.error("Failed to check the cache policy", e);
+            }
+        }, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onMessageReceived(final MessageReceivedEvent event) {
+        if (event.getGuild() != null)
+            touch(event.getGuild().getIdLong());
+    }
+
+    @Override
+    public void onMessageReactionAdd(final MessageReactionAddEvent event) {
+        if (event.getGuild() != null)
+            touch(event.getGuild().getIdLong());
+    }
+
+    @Override
+    public void onGuildMemberJoin(final GuildMemberJoinEvent event) {
+        touch(event.getGuild().getIdLong());
+    }
+
+    @Override
+    public void onGuildLeave(final GuildLeaveEvent event) {
+        lastActivities.remove(event.getGuild().getIdLong());
+    }
+
+    /**
+     * Estimate the memory used by the cache of a guild.
+     *
+     * @param guild - The guild.
+     * @return The estimate.
+     */
+    @Nonnull
+    public GuildCacheEstimate estimate(@Nonnull final Guild guild) {
+        final long members = guild.getMemberCache().size();
+        final long bytes = GUILD_BYTES
+                + members * MEMBER_BYTES
+                + guild.getRoles().size() * ROLE_BYTES
+                + (guild.getTextChannels().size() + guild.getVoiceChannels().size() + guild.getCategories().size()) * CHANNEL_BYTES
+                + guild.getEmotes().size() * EMOTE_BYTES;
+
+        return new GuildCacheEstimate(guild.getIdLong(), members, bytes, lastActivities.getOrDefault(guild.getIdLong(), 0L));
+    }
+
+    /**
+     * @return The estimate of every guild, the biggest first.
+     */
+    @Nonnull
+    public List<GuildCacheEstimate> getReport() {
+        final List<GuildCacheEstimate> report = new ArrayList<>();
+        if (shardManager != null)
+            shardManager.getGuildCache().forEach(guild -> report.add(estimate(guild)));
+
+        report.sort(Comparator.comparingLong(GuildCacheEstimate::getBytes).reversed());
+        return report;
+    }
+
+    /**
+     * @return The estimated memory used by the cache of every guild, in bytes.
+     */
+    public long getEstimatedSize() {
+        return getReport().stream().mapToLong(GuildCacheEstimate::getBytes).sum();
+    }
+
+    /**
+     * @return The cache flags that are enabled but that no module requires.
+     */
+    @Nonnull
+    public EnumSet<CacheFlag> getAdvisedFlags() {
+        final EnumSet<CacheFlag> advised = EnumSet.copyOf(enabledFlags);
+        advised.removeAll(requiredFlags);
+        return advised;
+    }
+
+    /**
+     * Check the size of the cache and log what can be done to reduce it if it exceeds the budget.
+     * Called periodically once the bot is ready.
+     *
+     * @return True if the cache exceeds its budget.
+     */
+    public boolean check() {
+        final List<GuildCacheEstimate> report = getReport();
+
+        // Also forget the guilds left while their shard was disconnected
+        final Set<Long> cached = report.stream().map(GuildCacheEstimate::getGuildId).collect(Collectors.toSet());
+        lastActivities.keySet().retainAll(cached);
+
+        final long size = report.stream().mapToLong(GuildCacheEstimate::getBytes).sum();
+        if (size <= heapBudget)
+            return false;
+
+        LOG.warn(String.format("The cache uses about %dKB, which exceeds its budget of %dKB",
+                size / 1024, heapBudget / 1024));
+
+        final EnumSet<CacheFlag> advised = getAdvisedFlags();
+        if (!advised.isEmpty()) {
+            final long members = report.stream().mapToLong(GuildCacheEstimate::getMembers).sum();
+            LOG.warn(String.format("No module requires the cache flags %s, disabling them would save about %dKB",
+                    advised, CacheRequirements.estimateSavings(advised, report.size(), members) / 1024));
+        }
+
+        final long activeSince = System.currentTimeMillis() - activeWindow;
+        final List<GuildCacheEstimate> inactive = report.stream()
+                .filter(estimate -> estimate.getLastActivity() < activeSince)
+                .limit(REPORTED_GUILDS)
+                .collect(Collectors.toList());
+        if (!inactive.isEmpty())
+            LOG.warn("The inactive guilds using the most memory: " + inactive);
+
+        return true;
+    }
+
+    /**
+     * Stop checking the size of the cache.
+     */
+    public synchronized void shutdown() {
+        if (scheduler != null)
+            scheduler.shutdownNow();
+    }
+
+    private void touch(final long guildId) {
+        lastActivities.put(guildId, System.currentTimeMillis());
+    }
+}
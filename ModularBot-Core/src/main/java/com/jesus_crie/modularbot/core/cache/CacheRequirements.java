@@ -0,0 +1,109 @@
+package com.jesus_crie.modularbot.core.cache;
+
+import com.jesus_crie.modularbot.core.ModularEventManager;
+import com.jesus_crie.modularbot.core.module.Module;
+import net.dv8tion.jda.core.hooks.EventListener;
+import net.dv8tion.jda.core.utils.cache.CacheFlag;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Utility class linking the modules and the events to the cache flags they need.
+ */
+public final class CacheRequirements {
+
+    // Rough retained sizes, measured on a 64 bits JVM with compressed oops
+    static final long PRESENCE_BYTES = 160;
+    static final long VOICE_STATE_BYTES = 120;
+    // The emotes aren't counted when their cache is disabled, assume an average amount
+    static final long EMOTES_PER_GUILD = 25;
+
+    private CacheRequirements() {
+    }
+
+    /**
+     * @param moduleClass - The class of the module.
+     * @return The cache flags declared by the module with {@link RequiresCache}.
+     */
+    @Nonnull
+    public static EnumSet<CacheFlag> getDeclaredFlags(@Nonnull final Class<?> moduleClass) {
+        final RequiresCache annotation = moduleClass.getAnnotation(RequiresCache.class);
+        if (annotation == null || annotation.value().length == 0)
+            return EnumSet.noneOf(CacheFlag.class);
+        return EnumSet.copyOf(Arrays.asList(annotation.value()));
+    }
+
+    /**
+     * @param moduleClasses - The classes of the modules.
+     * @return The union of the cache flags declared by the modules.
+     */
+    @Nonnull
+    public static EnumSet<CacheFlag> getDeclaredFlags(@Nonnull final Collection<Class<? extends Module>> moduleClasses) {
+        final EnumSet<CacheFlag> flags = EnumSet.noneOf(CacheFlag.class);
+        moduleClasses.forEach(clazz -> flags.addAll(getDeclaredFlags(clazz)));
+        return flags;
+    }
+
+    /**
+     * Get the cache flags without which an event isn't fired.
+     * The generic events that are also fired for other entities don't require anything.
+     *
+     * @param eventType - The class of the event.
+     * @return The cache flags needed to receive this event.
+     */
+    @Nonnull
+    public static EnumSet<CacheFlag> getRequiredFlags(@Nonnull final Class<?> eventType) {
+        final String name = eventType.getName();
+        if (name.equals("net.dv8tion.jda.core.events.user.update.UserUpdateGameEvent"))
+            return EnumSet.of(CacheFlag.GAME);
+        if (name.startsWith("net.dv8tion.jda.core.events.guild.voice."))
+            return EnumSet.of(CacheFlag.VOICE_STATE);
+        if (name.startsWith("net.dv8tion.jda.core.events.emote."))
+            return EnumSet.of(CacheFlag.EMOTE);
+        return EnumSet.noneOf(CacheFlag.class);
+    }
+
+    /**
+     * Check that a module has declared the caches needed by the events its listener subscribes to.
+     *
+     * @param moduleClass - The class of the module that has registered the listener.
+     * @param listener    - The listener.
+     * @throws IllegalStateException If the listener needs a cache that the module hasn't declared.
+     */
+    public static void checkListener(@Nonnull final Class<?> moduleClass, @Nonnull final Object listener) {
+        if (!(listener instanceof EventListener))
+            return;
+
+        final EnumSet<CacheFlag> declared = getDeclaredFlags(moduleClass);
+        for (final Class<?> type : ModularEventManager.getSubscriptions((EventListener) listener)) {
+            final EnumSet<CacheFlag> missing = getRequiredFlags(type);
+            missing.removeAll(declared);
+            if (!missing.isEmpty())
+                throw new IllegalStateException(String.format("The module %s listens to %s which requires the undeclared cache flags %s !",
+                        moduleClass.getSimpleName(), type.getSimpleName(), missing));
+        }
+    }
+
+    /**
+     * Estimate the memory saved by disabling some cache flags.
+     *
+     * @param disabled - The disabled cache flags.
+     * @param guilds   - The amount of guilds.
+     * @param members  - The amount of members across all guilds.
+     * @return The estimated memory saved in bytes.
+     */
+    public static long estimateSavings(@Nonnull final Set<CacheFlag> disabled, final long guilds, final long members) {
+        long bytes = 0;
+        if (disabled.contains(CacheFlag.GAME))
+            bytes += members * PRESENCE_BYTES;
+        if (disabled.contains(CacheFlag.VOICE_STATE))
+            bytes += members * VOICE_STATE_BYTES;
+        if (disabled.contains(CacheFlag.EMOTE))
+            bytes += guilds * EMOTES_PER_GUILD * CachePolicy.EMOTE_BYTES;
+        return bytes;
+    }
+}
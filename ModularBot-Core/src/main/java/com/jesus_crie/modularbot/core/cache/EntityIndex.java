@@ -0,0 +1,182 @@
+package com.jesus_crie.modularbot.core.cache;
+
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.ISnowflake;
+import net.dv8tion.jda.core.events.channel.category.CategoryCreateEvent;
+import net.dv8tion.jda.core.events.channel.category.CategoryDeleteEvent;
+import net.dv8tion.jda.core.events.channel.text.TextChannelCreateEvent;
+import net.dv8tion.jda.core.events.channel.text.TextChannelDeleteEvent;
+import net.dv8tion.jda.core.events.channel.voice.VoiceChannelCreateEvent;
+import net.dv8tion.jda.core.events.channel.voice.VoiceChannelDeleteEvent;
+import net.dv8tion.jda.core.events.emote.EmoteAddedEvent;
+import net.dv8tion.jda.core.events.emote.EmoteRemovedEvent;
+import net.dv8tion.jda.core.events.guild.GuildAvailableEvent;
+import net.dv8tion.jda.core.events.guild.GuildJoinEvent;
+import net.dv8tion.jda.core.events.guild.GuildLeaveEvent;
+import net.dv8tion.jda.core.events.guild.GuildReadyEvent;
+import net.dv8tion.jda.core.events.guild.GuildUnavailableEvent;
+import net.dv8tion.jda.core.events.role.RoleCreateEvent;
+import net.dv8tion.jda.core.events.role.RoleDeleteEvent;
+import net.dv8tion.jda.core.hooks.ListenerAdapter;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+
+/**
+ * Index of the guild of every channel, role and emote received by the shards, so a lookup by id only has to query
+ * the shard of that guild, which is computed from its id.
+ * <p>
+ * The index is filled when a guild is ready, joined or becomes available again and kept up to date with the
+ * creation and deletion events. It stores the guild and not the shard so it stays valid after a reshard.
+ * The ids are stored unboxed, the map is guarded by its own monitor.
+ *
+ * @see com.jesus_crie.modularbot.core.ModularBot#getShardForGuild(long)
+ */
+public class EntityIndex extends ListenerAdapter {
+
+    // Returns 0 for the missing ids
+    private final TLongLongMap guilds = new TLongLongHashMap();
+
+    /**
+     * Get the guild of a channel, a role or an emote.
+     *
+     * @param entityId - The id of the entity.
+     * @return The id of its guild or 0 if the entity isn't known.
+     */
+    public long getGuildId(final long entityId) {
+        synchronized (guilds) {
+            return guilds.get(entityId);
+        }
+    }
+
+    /**
+     * @return The amount of indexed entities.
+     */
+    public int size() {
+        synchronized (guilds) {
+            return guilds.size();
+        }
+    }
+
+    private void index(@Nonnull final Guild guild) {
+        final long guildId = guild.getIdLong();
+        synchronized (guilds) {
+            put(guild.getTextChannels(), guildId);
+            put(guild.getVoiceChannels(), guildId);
+            put(guild.getCategories(), guildId);
+            put(guild.getRoles(), guildId);
+            put(guild.getEmotes(), guildId);
+        }
+    }
+
+    private void put(@Nonnull final Collection<? extends ISnowflake> entities, final long guildId) {
+        for (final ISnowflake entity : entities)
+            guilds.put(entity.getIdLong(), guildId);
+    }
+
+    private void unindex(@Nonnull final Guild guild) {
+        // The guild still holds its entities when it is left or becomes unavailable
+        synchronized (guilds) {
+            remove(guild.getTextChannels());
+            remove(guild.getVoiceChannels());
+            remove(guild.getCategories());
+            remove(guild.getRoles());
+            remove(guild.getEmotes());
+        }
+    }
+
+    private void remove(@Nonnull final Collection<? extends ISnowflake> entities) {
+        for (final ISnowflake entity : entities)
+            guilds.remove(entity.getIdLong());
+    }
+
+    private void put(final long entityId, final long guildId) {
+        synchronized (guilds) {
+            guilds.put(entityId, guildId);
+        }
+    }
+
+    private void remove(final long entityId) {
+        synchronized (guilds) {
+            guilds.remove(entityId);
+        }
+    }
+
+    @Override
+    public void onGuildReady(final GuildReadyEvent event) {
+        index(event.getGuild());
+    }
+
+    @Override
+    public void onGuildJoin(final GuildJoinEvent event) {
+        index(event.getGuild());
+    }
+
+    @Override
+    public void onGuildAvailable(final GuildAvailableEvent event) {
+        index(event.getGuild());
+    }
+
+    @Override
+    public void onGuildLeave(final GuildLeaveEvent event) {
+        unindex(event.getGuild());
+    }
+
+    @Override
+    public void onGuildUnavailable(final GuildUnavailableEvent event) {
+        // Indexed again once available, without the entities deleted meanwhile
+        unindex(event.getGuild());
+    }
+
+    @Override
+    public void onTextChannelCreate(final TextChannelCreateEvent event) {
+        put(event.getChannel().getIdLong(), event.getGuild().getIdLong());
+    }
+
+    @Override
+    public void onTextChannelDelete(final TextChannelDeleteEvent event) {
+        remove(event.getChannel().getIdLong());
+    }
+
+    @Override
+    public void onVoiceChannelCreate(final VoiceChannelCreateEvent event) {
+        put(event.getChannel().getIdLong(), event.getGuild().getIdLong());
+    }
+
+    @Override
+    public void onVoiceChannelDelete(final VoiceChannelDeleteEvent event) {
+        remove(event.getChannel().getIdLong());
+    }
+
+    @Override
+    public void onCategoryCreate(final CategoryCreateEvent event) {
+        put(event.getCategory().getIdLong(), event.getGuild().getIdLong());
+    }
+
+    @Override
+    public void onCategoryDelete(final CategoryDeleteEvent event) {
+        remove(event.getCategory().getIdLong());
+    }
+
+    @Override
+    public void onRoleCreate(final RoleCreateEvent event) {
+        put(event.getRole().getIdLong(), event.getGuild().getIdLong());
+    }
+
+    @Override
+    public void onRoleDelete(final RoleDeleteEvent event) {
+        remove(event.getRole().getIdLong());
+    }
+
+    @Override
+    public void onEmoteAdded(final EmoteAddedEvent event) {
+        put(event.getEmote().getIdLong(), event.getGuild().getIdLong());
+    }
+
+    @Override
+    public void onEmoteRemoved(final EmoteRemovedEvent event) {
+        remove(event.getEmote().getIdLong());
+    }
+}
@@ -0,0 +1,50 @@
+package com.jesus_crie.modularbot.core.cache;
+
+/**
+ * The estimated memory used by the cache of a guild.
+ */
+public class GuildCacheEstimate {
+
+    private final long guildId;
+    private final long members;
+    private final long bytes;
+    private final long lastActivity;
+
+    GuildCacheEstimate(final long guildId, final long members, final long bytes, final long lastActivity) {
+        this.guildId = guildId;
+        this.members = members;
+        this.bytes = bytes;
+        this.lastActivity = lastActivity;
+    }
+
+    public long getGuildId() {
+        return guildId;
+    }
+
+    /**
+     * @return The amount of members currently cached.
+     */
+    public long getMembers() {
+        return members;
+    }
+
+    /**
+     * @return The estimated memory used by the cache of this guild, in bytes.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return The time of the last activity seen in this guild in epoch milliseconds, or 0.
+     */
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GuildCacheEstimate[guild=%d, members=%d, size=%dKB]",
+                guildId, members, bytes / 1024);
+    }
+}
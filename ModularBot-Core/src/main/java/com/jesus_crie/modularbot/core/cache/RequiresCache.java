@@ -0,0 +1,27 @@
+package com.jesus_crie.modularbot.core.cache;
+
+import net.dv8tion.jda.core.utils.cache.CacheFlag;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declare the optional caches of JDA that a module relies on.
+ * A module without this annotation doesn't need any of them, the subclasses of a module inherit its declaration.
+ * <p>
+ * When the minimal cache is enabled, only the caches declared by the modules are kept, see
+ * {@link com.jesus_crie.modularbot.core.ModularBotBuilder#enableMinimalCache(boolean)}.
+ */
+@Inherited
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RequiresCache {
+
+    /**
+     * @return The cache flags needed by the module.
+     */
+    CacheFlag[] value();
+}
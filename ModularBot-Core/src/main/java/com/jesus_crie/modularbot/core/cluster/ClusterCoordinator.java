@@ -0,0 +1,76 @@
+package com.jesus_crie.modularbot.core.cluster;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Connects the processes of a same bot so they can share the shards between them.
+ * <p>
+ * A coordinator only knows which nodes are alive and how to send them a message, the shards are assigned by the
+ * {@link ClusterNode} from the list of nodes which must be ordered the same way on every node.
+ *
+ * @see FileClusterCoordinator
+ */
+public interface ClusterCoordinator {
+
+    /**
+     * @return The unique id of this node.
+     */
+    @Nonnull
+    String getNodeId();
+
+    /**
+     * Register this node in the cluster. The listener will be notified each time a node joins or leaves.
+     *
+     * @param listener - The listener of this node.
+     * @throws IOException If this node can't be registered.
+     */
+    void join(@Nonnull ClusterListener listener) throws IOException;
+
+    /**
+     * @return The ids of the nodes that are alive, including this one, sorted.
+     */
+    @Nonnull
+    List<String> getNodes();
+
+    /**
+     * Send a message to a node and wait for its answer.
+     *
+     * @param nodeId  - The id of the node.
+     * @param message - The message.
+     * @return A future completed with the answer of the node, or exceptionally if the node can't be reached or has
+     * thrown an exception.
+     */
+    @Nonnull
+    CompletableFuture<Serializable> send(@Nonnull String nodeId, @Nonnull Serializable message);
+
+    /**
+     * Remove this node from the cluster, the other nodes will take its shards.
+     */
+    void leave();
+
+    /**
+     * Notified by the coordinator of the changes in the cluster.
+     */
+    interface ClusterListener {
+
+        /**
+         * Called when a node joins or leaves the cluster.
+         *
+         * @param nodes - The ids of the nodes that are alive, sorted.
+         */
+        void onNodesChange(@Nonnull List<String> nodes);
+
+        /**
+         * Called when another node sends a message to this node.
+         *
+         * @param message - The message.
+         * @return The answer sent back to the node.
+         * @throws Exception Its message is sent back to the node.
+         */
+        Serializable onMessage(@Nonnull Serializable message) throws Exception;
+    }
+}
@@ -0,0 +1,269 @@
+package com.jesus_crie.modularbot.core.cluster;
+
+import com.jesus_crie.modularbot.core.ModularBot;
+import com.jesus_crie.modularbot.core.utils.ModularThreadFactory;
+import com.jesus_crie.modularbot.core.utils.SerializableFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a part of the shards of the bot, the other shards are run by the other nodes of the cluster.
+ * <p>
+ * The shards are split in contiguous ranges between the nodes, in the order given by the coordinator. When a node
+ * joins or leaves, each node stops the shards it has lost right away and starts the ones it has gained after the
+ * rebalance delay, to leave the time to their previous owner to disconnect them.
+ * <p>
+ * The requests that need another shard, like fetching a member of a guild run by another node, can be sent to the
+ * node that runs it with {@link #requestShard(int, SerializableFunction)} or to every node with
+ * {@link #requestAll(SerializableFunction)}.
+ *
+ * @see com.jesus_crie.modularbot.core.ModularBotBuilder#enableCluster(ClusterCoordinator)
+ */
+public class ClusterNode implements ClusterCoordinator.ClusterListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger("ClusterNode");
+
+    private final ClusterCoordinator coordinator;
+    private final int shardsTotal;
+    private final long rebalanceDelay;
+
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new ModularThreadFactory("Cluster Rebalance", true));
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Set<Integer> shardIds = Collections.emptySet();
+    private volatile ModularBot bot = null;
+
+    /**
+     * Create a node with a rebalance delay of 10 seconds.
+     *
+     * @param coordinator - The coordinator of the cluster.
+     * @param shardsTotal - The total amount of shards of the bot.
+     */
+    public ClusterNode(@Nonnull final ClusterCoordinator coordinator, final int shardsTotal) {
+        this(coordinator, shardsTotal, 10_000);
+    }
+
+    /**
+     * @param coordinator    - The coordinator of the cluster.
+     * @param shardsTotal    - The total amount of shards of the bot.
+     * @param rebalanceDelay - The time to wait before starting the shards taken from another node, in milliseconds.
+     */
+    public ClusterNode(@Nonnull final ClusterCoordinator coordinator, final int shardsTotal, final long rebalanceDelay) {
+        if (shardsTotal < 1)
+            throw new IllegalArgumentException("The cluster needs a fixed amount of shards !");
+
+        this.coordinator = coordinator;
+        this.shardsTotal = shardsTotal;
+        this.rebalanceDelay = rebalanceDelay;
+    }
+
+    /**
+     * Join the cluster.
+     *
+     * @return The ids of the shards assigned to this node.
+     * @throws IOException If the coordinator fails to join the cluster.
+     */
+    @Nonnull
+    public Set<Integer> join() throws IOException {
+        coordinator.join(this);
+        shardIds = computeShardIds(coordinator.getNodes());
+        LOG.info(String.format("Running %d shards out of %d", shardIds.size(), shardsTotal));
+        return shardIds;
+    }
+
+    /**
+     * Start and stop the shards of this bot when the cluster changes.
+     * Called by the builder, after {@link #join()}.
+     *
+     * @param bot - The bot.
+     */
+    public void bind(@Nonnull final ModularBot bot) {
+        this.bot = bot;
+        bot.assignShards(shardIds);
+    }
+
+    /**
+     * Leave the cluster, the other nodes will take the shards of this node.
+     */
+    public void leave() {
+        generation.incrementAndGet();
+        scheduler.shutdownNow();
+        coordinator.leave();
+    }
+
+    @Nonnull
+    public ClusterCoordinator getCoordinator() {
+        return coordinator;
+    }
+
+    /**
+     * @return The ids of the shards assigned to this node.
+     */
+    @Nonnull
+    public Set<Integer> getShardIds() {
+        return shardIds;
+    }
+
+    /**
+     * @param shardId - The id of the shard.
+     * @return The id of the node that runs this shard.
+     */
+    @Nonnull
+    public String getShardOwner(final int shardId) {
+        final List<String> nodes = coordinator.getNodes();
+        for (int i = nodes.size() - 1; i > 0; i--) {
+            if (shardId >= rangeStart(i, nodes.size()))
+                return nodes.get(i);
+        }
+
+        return nodes.isEmpty() ? coordinator.getNodeId() : nodes.get(0);
+    }
+
+    /**
+     * @param guildId - The id of the guild.
+     * @return The id of the shard of this guild.
+     */
+    public int getShardOfGuild(final long guildId) {
+        return (int) ((guildId >> 22) % shardsTotal);
+    }
+
+    /**
+     * Execute a task on the node that runs a shard, or locally if it is run by this node.
+     * The task is serialized, so it shouldn't capture anything else than its parameter.
+     *
+     * @param shardId - The id of the shard.
+     * @param task    - The task, given the bot of the node.
+     * @param <R>     - The type of the result.
+     * @return A future completed with the result of the task.
+     */
+    @Nonnull
+    public <R extends Serializable> CompletableFuture<R> requestShard(final int shardId,
+                                                                      @Nonnull final SerializableFunction<ModularBot, R> task) {
+        return send(getShardOwner(shardId), task);
+    }
+
+    /**
+     * Execute a task on the node that runs a guild.
+     *
+     * @param guildId - The id of the guild.
+     * @param task    - The task, given the bot of the node.
+     * @param <R>     - The type of the result.
+     * @return A future completed with the result of the task.
+     * @see #requestShard(int, SerializableFunction)
+     */
+    @Nonnull
+    public <R extends Serializable> CompletableFuture<R> requestGuild(final long guildId,
+                                                                      @Nonnull final SerializableFunction<ModularBot, R> task) {
+        return requestShard(getShardOfGuild(guildId), task);
+    }
+
+    /**
+     * Execute a task on every node, like looking for a user in the caches of every shard.
+     *
+     * @param task - The task, given the bot of each node.
+     * @param <R>  - The type of the results.
+     * @return A future completed with the results of every node, in the order of the nodes.
+     */
+    @Nonnull
+    public <R extends Serializable> CompletableFuture<List<R>> requestAll(@Nonnull final SerializableFunction<ModularBot, R> task) {
+        final List<CompletableFuture<R>> futures = new ArrayList<>();
+        for (final String node : coordinator.getNodes())
+            futures.add(send(node, task));
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(v -> {
+            final List<R> results = new ArrayList<>();
+            futures.forEach(future -> results.add(future.join()));
+            return results;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nonnull
+    private <R extends Serializable> CompletableFuture<R> send(@Nonnull final String node,
+                                                               @Nonnull final SerializableFunction<ModularBot, R> task) {
+        return coordinator.send(node, new Task(task)).thenApply(result -> (R) result);
+    }
+
+    @Override
+    public void onNodesChange(@Nonnull final List<String> nodes) {
+        final Set<Integer> previous = shardIds;
+        final Set<Integer> next = computeShardIds(nodes);
+        if (next.equals(previous))
+            return;
+
+        shardIds = next;
+        final long current = generation.incrementAndGet();
+        final ModularBot bot = this.bot;
+        if (bot == null)
+            return;
+
+        LOG.info(String.format("Rebalancing from %d to %d shards", previous.size(), next.size()));
+        final Set<Integer> kept = new HashSet<>(previous);
+        kept.retainAll(next);
+        bot.assignShards(kept);
+
+        if (!kept.equals(next)) {
+            scheduler.schedule(() -> {
+                if (generation.get() == current)
+                    bot.assignShards(next);
+            }, rebalanceDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public Serializable onMessage(@Nonnull final Serializable message) {
+        if (!(message instanceof Task))
+            throw new IllegalArgumentException("Unknown message: " + message.getClass().getName());
+
+        final ModularBot bot = this.bot;
+        if (bot == null)
+            throw new IllegalStateException("This node isn't ready yet !");
+
+        return ((Task) message).function.apply(bot);
+    }
+
+    @Nonnull
+    private Set<Integer> computeShardIds(@Nonnull final List<String> nodes) {
+        final int index = nodes.indexOf(coordinator.getNodeId());
+        if (index == -1)
+            return Collections.emptySet();
+
+        final Set<Integer> ids = new HashSet<>();
+        for (int i = rangeStart(index, nodes.size()); i < rangeStart(index + 1, nodes.size()); i++)
+            ids.add(i);
+
+        return Collections.unmodifiableSet(ids);
+    }
+
+    private int rangeStart(final int index, final int nodesCount) {
+        return (int) ((long) index * shardsTotal / nodesCount);
+    }
+
+    /**
+     * A task executed on another node.
+     */
+    private static class Task implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final SerializableFunction<ModularBot, ? extends Serializable> function;
+
+        private Task(@Nonnull final SerializableFunction<ModularBot, ? extends Serializable> function) {
+            this.function = function;
+        }
+    }
+}
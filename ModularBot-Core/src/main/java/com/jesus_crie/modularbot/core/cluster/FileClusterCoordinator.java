@@ -0,0 +1,386 @@
+package com.jesus_crie.modularbot.core.cluster;
+
+import com.jesus_crie.modularbot.core.utils.ModularThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinates the nodes running on the same machine through a shared directory.
+ * <p>
+ * Each node holds a lock on its own file in the directory for as long as it lives, the operating system releases
+ * it when the process dies so the other nodes notice it on their next heartbeat. The messages are sent through a
+ * socket bound to the loopback address, whose port is written next to the lock.
+ * <p>
+ * The messages are java serialized objects, so every connection starts with a secret shared by the nodes before
+ * anything is deserialized. The secret is generated by the first node in a file of the directory that only its owner
+ * can read, the nodes must run as the same user.
+ */
+public class FileClusterCoordinator implements ClusterCoordinator {
+
+    private static final Logger LOG = LoggerFactory.getLogger("FileClusterCoordinator");
+    private static final String LOCK_EXTENSION = ".lock";
+    private static final String PORT_EXTENSION = ".port";
+    private static final String SECRET_FILE = "cluster.secret";
+    private static final int SECRET_LENGTH = 32;
+    private static final Set<PosixFilePermission> OWNER_ONLY =
+            EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE);
+    private static final int REQUEST_TIMEOUT = 30_000;
+
+    // The lock files held by the nodes of this process, opening another channel on them could release the lock
+    private static final Set<Path> HELD_LOCKS = ConcurrentHashMap.newKeySet();
+
+    private final Path directory;
+    private final String nodeId;
+    private final long heartbeat;
+
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new ModularThreadFactory("Cluster Heartbeat", true));
+    private final ExecutorService handlers = Executors.newCachedThreadPool(new ModularThreadFactory("Cluster Handler", true));
+
+    private byte[] secret;
+    private Path lockFile;
+    private FileChannel lockChannel;
+    private FileLock lock;
+    private ServerSocket server;
+    private ClusterListener listener;
+    private volatile List<String> nodes = Collections.emptyList();
+
+    /**
+     * Create a node with a random id and a heartbeat of 2 seconds.
+     *
+     * @param directory - The directory shared by the nodes, created if needed.
+     */
+    public FileClusterCoordinator(@Nonnull final Path directory) {
+        this(directory, UUID.randomUUID().toString(), 2000);
+    }
+
+    /**
+     * @param directory - The directory shared by the nodes, created if needed.
+     * @param nodeId    - The unique id of this node.
+     * @param heartbeat - The interval between two checks of the other nodes, in milliseconds.
+     */
+    public FileClusterCoordinator(@Nonnull final Path directory, @Nonnull final String nodeId, final long heartbeat) {
+        this.directory = directory;
+        this.nodeId = nodeId;
+        this.heartbeat = heartbeat;
+    }
+
+    @Nonnull
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Waits one heartbeat so the nodes starting at the same time see each other.
+     */
+    @Override
+    public synchronized void join(@Nonnull final ClusterListener listener) throws IOException {
+        if (this.listener != null)
+            throw new IllegalStateException("This node has already joined the cluster !");
+
+        Files.createDirectories(directory);
+        secret = loadSecret();
+
+        lockFile = directory.resolve(nodeId + LOCK_EXTENSION).toAbsolutePath().normalize();
+        if (!HELD_LOCKS.add(lockFile))
+            throw new IOException("The node " + nodeId + " is already running !");
+
+        try {
+            lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            lock = lockChannel.tryLock();
+        } catch (IOException e) {
+            HELD_LOCKS.remove(lockFile);
+            if (lockChannel != null)
+                lockChannel.close();
+            throw e;
+        }
+        if (lock == null) {
+            HELD_LOCKS.remove(lockFile);
+            lockChannel.close();
+            throw new IOException("The node " + nodeId + " is already running !");
+        }
+
+        this.listener = listener;
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        handlers.execute(this::accept);
+
+        final Path temp = directory.resolve(nodeId + ".tmp");
+        Files.write(temp, String.valueOf(server.getLocalPort()).getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, directory.resolve(nodeId + PORT_EXTENSION), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        try {
+            Thread.sleep(heartbeat);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while joining the cluster");
+        }
+
+        nodes = scan();
+        LOG.info(String.format("Node %s joined a cluster of %d nodes", nodeId, nodes.size()));
+        scheduler.scheduleWithFixedDelay(this::refresh, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+    }
+
+    @Nonnull
+    @Override
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Serializable> send(@Nonnull final String nodeId, @Nonnull final Serializable message) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                if (nodeId.equals(this.nodeId))
+                    return listener.onMessage(message);
+
+                final int port = Integer.parseInt(new String(
+                        Files.readAllBytes(directory.resolve(nodeId + PORT_EXTENSION)), StandardCharsets.UTF_8).trim());
+
+                try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                    socket.setSoTimeout(REQUEST_TIMEOUT);
+                    socket.getOutputStream().write(secret);
+                    final ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+                    out.writeObject(message);
+                    out.flush();
+
+                    final Reply reply = (Reply) new ObjectInputStream(socket.getInputStream()).readObject();
+                    if (reply.error != null)
+                        throw new IllegalStateException(String.format("The node %s has failed: %s", nodeId, reply.error));
+                    return reply.value;
+                }
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, handlers);
+    }
+
+    @Override
+    public synchronized void leave() {
+        if (listener == null)
+            return;
+
+        scheduler.shutdownNow();
+        try {
+            server.close();
+            Files.deleteIfExists(directory.resolve(nodeId + PORT_EXTENSION));
+            lock.release();
+            lockChannel.close();
+            Files.deleteIfExists(lockFile);
+        } catch (IOException e) {
+            LOG.warn("Failed to leave the cluster cleanly", e);
+        } finally {
+            HELD_LOCKS.remove(lockFile);
+        }
+
+        handlers.shutdown();
+        nodes = Collections.emptyList();
+        LOG.info(String.format("Node %s left the cluster", nodeId));
+    }
+
+    private void refresh() {
+        try {
+            final List<String> current = scan();
+            if (!current.equals(nodes)) {
+                LOG.info(String.format("The cluster has changed, %d nodes are alive", current.size()));
+                nodes = current;
+                listener.onNodesChange(current);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Failed to check the nodes of the cluster", e);
+        }
+    }
+
+    /**
+     * @return The nodes that are alive, sorted.
+     */
+    @Nonnull
+    private List<String> scan() throws IOException {
+        final List<String> alive = new ArrayList<>();
+
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + PORT_EXTENSION)) {
+            for (final Path file : files) {
+                final String name = file.getFileName().toString();
+                final String id = name.substring(0, name.length() - PORT_EXTENSION.length());
+                if (id.equals(nodeId) || isAlive(id))
+                    alive.add(id);
+            }
+        }
+
+        Collections.sort(alive);
+        return Collections.unmodifiableList(alive);
+    }
+
+    /**
+     * A node is alive if its lock is held, the files of a dead node are deleted.
+     */
+    private boolean isAlive(@Nonnull final String id) {
+        final Path lockFile = directory.resolve(id + LOCK_EXTENSION).toAbsolutePath().normalize();
+        // Held by another node of this process, closing a new channel on it would release its lock
+        if (HELD_LOCKS.contains(lockFile))
+            return true;
+
+        try (final FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.WRITE)) {
+            final FileLock other = channel.tryLock();
+            if (other == null)
+                return true;
+
+            other.release();
+        } catch (NoSuchFileException ignore) {
+            // Already gone
+        } catch (IOException e) {
+            LOG.warn("Can't check the node " + id, e);
+            return true;
+        }
+
+        try {
+            Files.deleteIfExists(directory.resolve(id + PORT_EXTENSION));
+            Files.deleteIfExists(lockFile);
+        } catch (IOException e) {
+            LOG.warn("Can't remove the dead node " + id, e);
+        }
+
+        return false;
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                final Socket socket = server.accept();
+                handlers.execute(() -> handle(socket));
+            } catch (IOException e) {
+                if (!server.isClosed())
+                    LOG.warn("Failed to accept a message", e);
+            }
+        }
+    }
+
+    private void handle(@Nonnull final Socket socket) {
+        try (final Socket ignore = socket) {
+            socket.setSoTimeout(REQUEST_TIMEOUT);
+
+            // Nothing is deserialized before the sender has proven that it can read the secret
+            final byte[] received = new byte[SECRET_LENGTH];
+            new DataInputStream(socket.getInputStream()).readFully(received);
+            if (!MessageDigest.isEqual(received, secret)) {
+                LOG.warn("Rejected a message with a wrong secret from " + socket.getRemoteSocketAddress());
+                return;
+            }
+
+            final Serializable message = (Serializable) new ObjectInputStream(socket.getInputStream()).readObject();
+
+            Reply reply;
+            try {
+                reply = new Reply(listener.onMessage(message), null);
+            } catch (Exception e) {
+                reply = new Reply(null, e.toString());
+            }
+
+            final ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+            out.writeObject(reply);
+            out.flush();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            LOG.warn("Failed to answer a message", e);
+        }
+    }
+
+    /**
+     * Read the secret shared by the nodes, or generate it if this is the first node.
+     *
+     * @return The secret.
+     * @throws IOException If the secret can't be read or can be read by other users.
+     */
+    @Nonnull
+    private byte[] loadSecret() throws IOException {
+        final Path file = directory.resolve(SECRET_FILE);
+        final boolean posix = Files.getFileAttributeView(directory, PosixFileAttributeView.class) != null;
+
+        if (Files.notExists(file)) {
+            final byte[] generated = new byte[SECRET_LENGTH];
+            new SecureRandom().nextBytes(generated);
+
+            // Created with the permissions directly so the secret is never readable by the others
+            final Path temp = directory.resolve(nodeId + ".secret.tmp");
+            Files.deleteIfExists(temp);
+            if (posix)
+                Files.createFile(temp, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+            else
+                Files.createFile(temp);
+            Files.write(temp, generated, StandardOpenOption.WRITE);
+
+            try {
+                // Fails if another node has created it meanwhile, its secret is used instead
+                Files.move(temp, file);
+            } catch (FileAlreadyExistsException e) {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        if (posix && !OWNER_ONLY.equals(Files.getPosixFilePermissions(file)))
+            throw new IOException("The secret of the cluster " + file + " must only be readable by its owner !");
+
+        final byte[] secret = Files.readAllBytes(file);
+        if (secret.length != SECRET_LENGTH)
+            throw new IOException("The secret of the cluster " + file + " is corrupted !");
+        return secret;
+    }
+
+    /**
+     * The answer to a message.
+     */
+    private static class Reply implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Serializable value;
+        private final String error;
+
+        private Reply(final Serializable value, final String error) {
+            this.value = value;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.jesus_crie.modularbot.core.conversation;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * State of a running conversation between the bot and a user in a channel.
+ * <p>
+ * This is only data so it can be persisted and restored after a restart. The answers collected by the steps
+ * should be stored in it with {@link #set(String, String)}.
+ */
+public class Conversation implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String id = UUID.randomUUID().toString();
+    private final String flow;
+    private final int shardId;
+    private final long channelId;
+    private final long userId;
+    private final long startTime = System.currentTimeMillis();
+    private final long deadline;
+    private final Map<String, String> data = new ConcurrentHashMap<>();
+
+    private volatile String step;
+    private volatile long promptMessageId = 0;
+
+    Conversation(@Nonnull final String flow, @Nonnull final String step, final int shardId, final long channelId,
+                 final long userId, final long timeout) {
+        this.flow = flow;
+        this.step = step;
+        this.shardId = shardId;
+        this.channelId = channelId;
+        this.userId = userId;
+        this.deadline = timeout > 0 ? startTime + timeout : 0;
+    }
+
+    /**
+     * @return The unique id of this conversation.
+     */
+    @Nonnull
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return The name of the {@link ConversationFlow} followed by this conversation.
+     */
+    @Nonnull
+    public String getFlow() {
+        return flow;
+    }
+
+    /**
+     * @return The name of the current step.
+     */
+    @Nonnull
+    public String getStep() {
+        return step;
+    }
+
+    void setStep(@Nonnull final String step) {
+        this.step = step;
+    }
+
+    /**
+     * @return The id of the shard of the conversation.
+     */
+    public int getShardId() {
+        return shardId;
+    }
+
+    /**
+     * @return The id of the channel of the conversation.
+     */
+    public long getChannelId() {
+        return channelId;
+    }
+
+    /**
+     * @return The id of the user that the bot is talking to.
+     */
+    public long getUserId() {
+        return userId;
+    }
+
+    /**
+     * @return The id of the message sent by the prompt of the current step, or 0.
+     */
+    public long getPromptMessageId() {
+        return promptMessageId;
+    }
+
+    void setPromptMessageId(final long promptMessageId) {
+        this.promptMessageId = promptMessageId;
+    }
+
+    /**
+     * @return The time at which the conversation has started, in epoch milliseconds.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return The time at which the conversation will time out in epoch milliseconds, or 0 if it can last forever.
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Get a value stored in this conversation.
+     *
+     * @param key - The key of the value.
+     * @return The value or {@code null} if there is none.
+     */
+    @Nullable
+    public String get(@Nonnull final String key) {
+        return data.get(key);
+    }
+
+    /**
+     * Store a value in this conversation, it will be persisted with it.
+     *
+     * @param key   - The key of the value.
+     * @param value - The value, {@code null} to remove it.
+     */
+    public void set(@Nonnull final String key, @Nullable final String value) {
+        if (value == null)
+            data.remove(key);
+        else
+            data.put(key, value);
+    }
+
+    /**
+     * @return An unmodifiable view of the values stored in this conversation.
+     */
+    @Nonnull
+    public Map<String, String> getData() {
+        return Collections.unmodifiableMap(data);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Conversation[%s, flow=%s, step=%s]", id, flow, step);
+    }
+}
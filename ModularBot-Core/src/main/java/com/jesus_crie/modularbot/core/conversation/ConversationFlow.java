@@ -0,0 +1,153 @@
+package com.jesus_crie.modularbot.core.conversation;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Definition of a conversation as a state machine made of {@link ConversationStep}s.
+ * The conversation starts at the first step and each step tells which one comes next.
+ * <pre>{@code
+ * ConversationFlow.builder("setup")
+ *         .step(ConversationStep.onMessage("name", (c, channel) -> channel.sendMessage("Name ?").submit(),
+ *                 (c, event) -> {
+ *                     c.set("name", event.getMessage().getContentRaw());
+ *                     return "confirm";
+ *                 }, 60_000))
+ *         .step(...)
+ *         .timeout(600_000)
+ *         .onEnd(c -> ...)
+ *         .build();
+ * }</pre>
+ */
+public class ConversationFlow {
+
+    private final String name;
+    private final String initialStep;
+    private final Map<String, ConversationStep<?>> steps;
+    private final long timeout;
+    private final Consumer<Conversation> onEnd;
+    private final Consumer<Conversation> onTimeout;
+
+    private ConversationFlow(@Nonnull final Builder builder) {
+        name = builder.name;
+        initialStep = builder.steps.keySet().iterator().next();
+        steps = Collections.unmodifiableMap(new LinkedHashMap<>(builder.steps));
+        timeout = builder.timeout;
+        onEnd = builder.onEnd;
+        onTimeout = builder.onTimeout;
+    }
+
+    /**
+     * Start the definition of a flow.
+     *
+     * @param name - The unique name of the flow, used to restore the persisted conversations.
+     * @return A new builder.
+     */
+    @Nonnull
+    public static Builder builder(@Nonnull final String name) {
+        return new Builder(name);
+    }
+
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    @Nonnull
+    public String getInitialStep() {
+        return initialStep;
+    }
+
+    @Nullable
+    public ConversationStep<?> getStep(@Nonnull final String name) {
+        return steps.get(name);
+    }
+
+    /**
+     * @return The maximum duration of a conversation in milliseconds, 0 for infinite.
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    void fireEnd(@Nonnull final Conversation conversation) {
+        if (onEnd != null)
+            onEnd.accept(conversation);
+    }
+
+    void fireTimeout(@Nonnull final Conversation conversation) {
+        if (onTimeout != null)
+            onTimeout.accept(conversation);
+    }
+
+    public static class Builder {
+
+        private final String name;
+        private final Map<String, ConversationStep<?>> steps = new LinkedHashMap<>();
+        private long timeout = 0;
+        private Consumer<Conversation> onEnd = null;
+        private Consumer<Conversation> onTimeout = null;
+
+        private Builder(@Nonnull final String name) {
+            this.name = name;
+        }
+
+        /**
+         * Add a step, the first one is where the conversations start.
+         *
+         * @param step - The step.
+         */
+        @Nonnull
+        public Builder step(@Nonnull final ConversationStep<?> step) {
+            if (steps.putIfAbsent(step.getName(), step) != null)
+                throw new IllegalArgumentException("There is already a step named " + step.getName());
+            return this;
+        }
+
+        /**
+         * Set the maximum duration of a conversation.
+         * (default) 0, only the timeouts of the steps apply.
+         *
+         * @param timeout - The timeout in milliseconds.
+         */
+        @Nonnull
+        public Builder timeout(final long timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * Called when a conversation ends, whatever the reason.
+         *
+         * @param onEnd - The callback.
+         */
+        @Nonnull
+        public Builder onEnd(@Nullable final Consumer<Conversation> onEnd) {
+            this.onEnd = onEnd;
+            return this;
+        }
+
+        /**
+         * Called when a conversation times out, before {@link #onEnd(Consumer)}.
+         *
+         * @param onTimeout - The callback.
+         */
+        @Nonnull
+        public Builder onTimeout(@Nullable final Consumer<Conversation> onTimeout) {
+            this.onTimeout = onTimeout;
+            return this;
+        }
+
+        @Nonnull
+        public ConversationFlow build() {
+            if (steps.isEmpty())
+                throw new IllegalStateException("A flow needs at least one step !");
+
+            return new ConversationFlow(this);
+        }
+    }
+}
@@ -0,0 +1,476 @@
+package com.jesus_crie.modularbot.core.conversation;
+
+import com.jesus_crie.modularbot.core.ModularBot;
+import com.jesus_crie.modularbot.core.utils.ModularThreadFactory;
+import com.jesus_crie.modularbot.core.utils.TimingWheel;
+import com.jesus_crie.modularbot.core.utils.Waiter;
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.entities.Message;
+import net.dv8tion.jda.core.entities.MessageChannel;
+import net.dv8tion.jda.core.entities.User;
+import net.dv8tion.jda.core.events.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Runs the conversations of the registered {@link ConversationFlow}s.
+ * <p>
+ * A conversation doesn't hold any thread while it waits for the user, each step only registers a listener in the
+ * {@link Waiter} routed by channel or by message so thousands of conversations can be waiting at the same time.
+ * The handlers are called on the event threads.
+ * <p>
+ * If a {@link ConversationStore} is given, the state of each conversation is saved when it changes step (on a
+ * background thread) and the conversations in progress can be {@link #restore(ModularBot) restored} after a restart.
+ */
+public class ConversationManager {
+
+    private static final Logger LOG = LoggerFactory.getLogger("ConversationManager");
+
+    private final ConversationStore store;
+    private final ExecutorService storeExecutor;
+    private final Map<String, ConversationFlow> flows = new ConcurrentHashMap<>();
+    private final Map<String, Running> conversations = new ConcurrentHashMap<>();
+    private final Map<String, String> conversationsByUser = new ConcurrentHashMap<>();
+    private volatile boolean shutdown = false;
+
+    /**
+     * Create a manager that doesn't persist the conversations.
+     */
+    public ConversationManager() {
+        this(null);
+    }
+
+    /**
+     * @param store - (Optional) Where to save the conversations in progress.
+     */
+    public ConversationManager(@Nullable final ConversationStore store) {
+        this.store = store;
+        storeExecutor = store == null ? null
+                : Executors.newSingleThreadExecutor(new ModularThreadFactory("Conversation Store", true));
+    }
+
+    /**
+     * Register a flow, its name must be unique.
+     *
+     * @param flow - The flow.
+     */
+    public void registerFlow(@Nonnull final ConversationFlow flow) {
+        if (flows.putIfAbsent(flow.getName(), flow) != null)
+            throw new IllegalArgumentException("There is already a flow named " + flow.getName());
+    }
+
+    /**
+     * Start a conversation with a user in a channel, the prompt of the first step is sent immediately.
+     *
+     * @param flowName - The name of the flow to follow.
+     * @param channel  - The channel of the conversation.
+     * @param user     - The user to talk to.
+     * @return The new conversation.
+     * @throws IllegalArgumentException If there is no flow with this name.
+     * @throws IllegalStateException    If the user already has a conversation in this channel or if the manager
+     *                                  has been shut down.
+     */
+    @Nonnull
+    public Conversation start(@Nonnull final String flowName, @Nonnull final MessageChannel channel, @Nonnull final User user) {
+        checkRunning();
+        final ConversationFlow flow = getFlow(flowName);
+        final JDA shard = channel.getJDA();
+        final int shardId = shard.getShardInfo() == null ? 0 : shard.getShardInfo().getShardId();
+
+        final Conversation conversation = new Conversation(flow.getName(), flow.getInitialStep(), shardId,
+                channel.getIdLong(), user.getIdLong(), flow.getTimeout());
+
+        if (conversationsByUser.putIfAbsent(getUserKey(conversation), conversation.getId()) != null)
+            throw new IllegalStateException("This user already has a conversation in this channel !");
+
+        final Running running = new Running(conversation, flow, shard);
+        conversations.put(conversation.getId(), running);
+        scheduleTimeout(running, flow.getTimeout());
+
+        save(conversation);
+        enterStep(running, true);
+        return conversation;
+    }
+
+    /**
+     * Reload the conversations saved in the store and resume them where they were.
+     * The prompts of the current steps aren't sent again, the expired conversations are discarded.
+     * Should be called once the shards are ready.
+     *
+     * @param bot - The bot, used to find the shards of the conversations.
+     * @return The amount of conversations resumed.
+     * @throws IllegalStateException If the manager has been shut down.
+     */
+    public int restore(@Nonnull final ModularBot bot) {
+        return restore(bot::getShardById);
+    }
+
+    /**
+     * Same as {@link #restore(ModularBot)} but the shards are given by id, the conversations whose shard is missing
+     * are discarded.
+     *
+     * @param shards - Get a shard by its id, or {@code null} if it isn't running.
+     * @return The amount of conversations resumed.
+     * @throws IllegalStateException If the manager has been shut down.
+     */
+    public int restore(@Nonnull final IntFunction<JDA> shards) {
+        checkRunning();
+        if (store == null)
+            return 0;
+
+        final Collection<Conversation> saved;
+        try {
+            saved = store.loadAll();
+        } catch (IOException e) {
+            LOG.error("Failed to load the saved conversations", e);
+            return 0;
+        }
+
+        final long now = System.currentTimeMillis();
+        int restored = 0;
+        for (final Conversation conversation : saved) {
+            final ConversationFlow flow = flows.get(conversation.getFlow());
+            final JDA shard = shards.apply(conversation.getShardId());
+
+            if (flow == null || shard == null
+                    || (conversation.getDeadline() > 0 && conversation.getDeadline() <= now)
+                    || conversations.containsKey(conversation.getId())
+                    || conversationsByUser.putIfAbsent(getUserKey(conversation), conversation.getId()) != null) {
+                LOG.debug("Discarding the saved conversation " + conversation);
+                delete(conversation.getId());
+                continue;
+            }
+
+            final Running running = new Running(conversation, flow, shard);
+            conversations.put(conversation.getId(), running);
+            if (conversation.getDeadline() > 0)
+                scheduleTimeout(running, conversation.getDeadline() - now);
+
+            enterStep(running, false);
+            ++restored;
+        }
+
+        LOG.info(String.format("Restored %d conversations", restored));
+        return restored;
+    }
+
+    /**
+     * Stop a conversation, the end callback of its flow is still called.
+     *
+     * @param id - The id of the conversation.
+     * @return True if the conversation was running.
+     */
+    public boolean cancel(@Nonnull final String id) {
+        final Running running = conversations.get(id);
+        if (running == null)
+            return false;
+
+        finish(running);
+        return true;
+    }
+
+    /**
+     * Get a running conversation.
+     *
+     * @param id - The id of the conversation.
+     * @return The conversation or {@code null} if it isn't running.
+     */
+    @Nullable
+    public Conversation getConversation(@Nonnull final String id) {
+        final Running running = conversations.get(id);
+        return running == null ? null : running.conversation;
+    }
+
+    /**
+     * Get the conversation of a user in a channel.
+     *
+     * @param channelId - The id of the channel.
+     * @param userId    - The id of the user.
+     * @return The conversation or {@code null} if there is none.
+     */
+    @Nullable
+    public Conversation getConversation(final long channelId, final long userId) {
+        final String id = conversationsByUser.get(channelId + ":" + userId);
+        return id == null ? null : getConversation(id);
+    }
+
+    /**
+     * @return The amount of conversations in progress.
+     */
+    public int getActiveCount() {
+        return conversations.size();
+    }
+
+    /**
+     * Stop every conversation without calling the callbacks of the flows and without deleting them from the store,
+     * so they can be restored later. The manager can't be used afterwards.
+     */
+    public void shutdown() {
+        shutdown = true;
+        for (final Running running : conversations.values()) {
+            running.ended = true;
+            running.cancelWaits();
+        }
+
+        // The queued saves are skipped once the conversations are forgotten, let them finish first
+        if (storeExecutor != null) {
+            storeExecutor.shutdown();
+            try {
+                if (!storeExecutor.awaitTermination(5, TimeUnit.SECONDS))
+                    LOG.warn("Some conversations haven't been saved in time");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        conversations.clear();
+        conversationsByUser.clear();
+    }
+
+    private void checkRunning() {
+        if (shutdown)
+            throw new IllegalStateException("The conversation manager has been shut down !");
+    }
+
+    @Nonnull
+    private ConversationFlow getFlow(@Nonnull final String name) {
+        final ConversationFlow flow = flows.get(name);
+        if (flow == null)
+            throw new IllegalArgumentException("There is no flow named " + name);
+        return flow;
+    }
+
+    private void enterStep(@Nonnull final Running running, final boolean prompt) {
+        final Conversation conversation = running.conversation;
+        final ConversationStep<?> step = running.flow.getStep(conversation.getStep());
+        if (step == null) {
+            LOG.warn(String.format("Unknown step '%s' in %s, ending it", conversation.getStep(), conversation));
+            finish(running);
+            return;
+        }
+
+        final MessageChannel channel = getChannel(running.shard, conversation.getChannelId());
+        if (channel == null) {
+            LOG.debug("The channel of " + conversation + " is gone, ending it");
+            finish(running);
+            return;
+        }
+
+        if (!step.isReaction()) {
+            // Arm the wait first, the user can't answer a prompt that is being sent anyway.
+            armStep(running, step, conversation.getChannelId());
+            if (prompt)
+                sendPrompt(running, step, channel);
+
+        } else if (prompt) {
+            final CompletionStage<Message> sent = sendPrompt(running, step, channel);
+            if (sent == null) {
+                LOG.warn(String.format("The step '%s' of %s waits for a reaction but has no prompt message, ending it",
+                        step.getName(), conversation));
+                finish(running);
+                return;
+            }
+
+            sent.whenComplete((message, error) -> {
+                if (error != null || message == null) {
+                    LOG.warn("Failed to send the prompt of " + conversation, error);
+                    finish(running);
+                    return;
+                }
+
+                conversation.setPromptMessageId(message.getIdLong());
+                save(conversation);
+                armStep(running, step, message.getIdLong());
+            });
+
+        } else {
+            armStep(running, step, conversation.getPromptMessageId());
+        }
+    }
+
+    @Nullable
+    private CompletionStage<Message> sendPrompt(@Nonnull final Running running, @Nonnull final ConversationStep<?> step,
+                                                @Nonnull final MessageChannel channel) {
+        if (step.getPrompt() == null)
+            return null;
+
+        try {
+            return step.getPrompt().send(running.conversation, channel);
+        } catch (Exception e) {
+            LOG.warn("The prompt of " + running.conversation + " has failed", e);
+            return null;
+        }
+    }
+
+    private <T extends Event> void armStep(@Nonnull final Running running, @Nonnull final ConversationStep<T> step,
+                                           final long key) {
+        if (running.ended)
+            return;
+
+        final Conversation conversation = running.conversation;
+        running.wait = Waiter.createListener(running.shard, step.getEventClass(), step.getRoutingKey(), key,
+                event -> step.getAuthor(event) == conversation.getUserId(),
+                event -> handle(running, step, event),
+                () -> onTimeout(running),
+                step.getTimeout(), true);
+
+        running.wait.register();
+    }
+
+    private <T extends Event> void handle(@Nonnull final Running running, @Nonnull final ConversationStep<T> step,
+                                          @Nonnull final T event) {
+        if (running.ended)
+            return;
+
+        final Conversation conversation = running.conversation;
+        final String next;
+        try {
+            next = step.getHandler().handle(conversation, event);
+        } catch (Exception e) {
+            LOG.error(String.format("The step '%s' of %s has failed, ending it", step.getName(), conversation), e);
+            finish(running);
+            return;
+        }
+
+        if (ConversationStep.END.equals(next)) {
+            finish(running);
+        } else if (ConversationStep.STAY.equals(next)) {
+            save(conversation);
+            armStep(running, step, step.isReaction() ? conversation.getPromptMessageId() : conversation.getChannelId());
+        } else {
+            conversation.setStep(next);
+            conversation.setPromptMessageId(0);
+            save(conversation);
+            enterStep(running, true);
+        }
+    }
+
+    private void onTimeout(@Nonnull final Running running) {
+        if (running.ended)
+            return;
+
+        try {
+            running.flow.fireTimeout(running.conversation);
+        } catch (Exception e) {
+            LOG.error("The timeout callback of " + running.conversation + " has failed", e);
+        }
+
+        finish(running);
+    }
+
+    private void scheduleTimeout(@Nonnull final Running running, final long timeout) {
+        if (timeout > 0)
+            running.timeout = TimingWheel.getShared().schedule(() -> onTimeout(running), timeout, TimeUnit.MILLISECONDS);
+    }
+
+    private void finish(@Nonnull final Running running) {
+        synchronized (running) {
+            if (running.ended)
+                return;
+            running.ended = true;
+        }
+
+        running.cancelWaits();
+        conversations.remove(running.conversation.getId());
+        conversationsByUser.remove(getUserKey(running.conversation), running.conversation.getId());
+        delete(running.conversation.getId());
+
+        try {
+            running.flow.fireEnd(running.conversation);
+        } catch (Exception e) {
+            LOG.error("The end callback of " + running.conversation + " has failed", e);
+        }
+    }
+
+    private void save(@Nonnull final Conversation conversation) {
+        executeStore(() -> {
+            // Don't resurrect a conversation that has ended in the meantime.
+            if (!conversations.containsKey(conversation.getId()))
+                return;
+
+            try {
+                store.save(conversation);
+            } catch (IOException e) {
+                LOG.warn("Failed to save " + conversation, e);
+            }
+        });
+    }
+
+    private void delete(@Nonnull final String id) {
+        executeStore(() -> {
+            try {
+                store.delete(id);
+            } catch (IOException e) {
+                LOG.warn("Failed to delete the conversation " + id, e);
+            }
+        });
+    }
+
+    private void executeStore(@Nonnull final Runnable task) {
+        // A step still running on an event thread after the shutdown has nothing left to save
+        if (store == null || storeExecutor.isShutdown())
+            return;
+
+        try {
+            storeExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            LOG.debug("Skipped a write to the store after the shutdown");
+        }
+    }
+
+    @Nullable
+    private static MessageChannel getChannel(@Nonnull final JDA shard, final long channelId) {
+        final MessageChannel channel = shard.getTextChannelById(channelId);
+        return channel != null ? channel : shard.getPrivateChannelById(channelId);
+    }
+
+    @Nonnull
+    private static String getUserKey(@Nonnull final Conversation conversation) {
+        return conversation.getChannelId() + ":" + conversation.getUserId();
+    }
+
+    /**
+     * A conversation in progress and the waits that belong to it.
+     */
+    private static class Running {
+
+        private final Conversation conversation;
+        private final ConversationFlow flow;
+        private final JDA shard;
+
+        private volatile Waiter.WaiterListener<?> wait = null;
+        private volatile TimingWheel.Timeout timeout = null;
+        private volatile boolean ended = false;
+
+        private Running(@Nonnull final Conversation conversation, @Nonnull final ConversationFlow flow,
+                        @Nonnull final JDA shard) {
+            this.conversation = conversation;
+            this.flow = flow;
+            this.shard = shard;
+        }
+
+        private void cancelWaits() {
+            final Waiter.WaiterListener<?> wait = this.wait;
+            if (wait != null)
+                wait.cancel(true);
+
+            final TimingWheel.Timeout timeout = this.timeout;
+            if (timeout != null)
+                timeout.cancel();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.jesus_crie.modularbot.core.conversation;
+
+import com.jesus_crie.modularbot.core.utils.Waiter;
+import net.dv8tion.jda.core.entities.Message;
+import net.dv8tion.jda.core.entities.MessageChannel;
+import net.dv8tion.jda.core.events.Event;
+import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.core.events.message.react.MessageReactionAddEvent;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.CompletionStage;
+import java.util.function.ToLongFunction;
+
+/**
+ * A state of a {@link ConversationFlow}: an optional prompt sent when the conversation enters the step, then a wait
+ * for the answer of the user, either a message in the channel or a reaction on the prompt.
+ * The handler of the answer tells which step comes next.
+ *
+ * @param <T> The type of event that answers this step.
+ */
+public class ConversationStep<T extends Event> {
+
+    /**
+     * Returned by a {@link Handler} to end the conversation.
+     */
+    public static final String END = "$end";
+
+    /**
+     * Returned by a {@link Handler} to wait for another answer to the same step, without prompting again.
+     */
+    public static final String STAY = "$stay";
+
+    private final String name;
+    private final Class<T> eventClass;
+    private final Waiter.RoutingKey routingKey;
+    private final ToLongFunction<T> authorExtractor;
+    private final Prompt prompt;
+    private final Handler<T> handler;
+    private final long timeout;
+
+    private ConversationStep(@Nonnull final String name, @Nonnull final Class<T> eventClass,
+                             @Nonnull final Waiter.RoutingKey routingKey, @Nonnull final ToLongFunction<T> authorExtractor,
+                             @Nullable final Prompt prompt, @Nonnull final Handler<T> handler, final long timeout) {
+        if (END.equals(name) || STAY.equals(name))
+            throw new IllegalArgumentException("This name is reserved !");
+
+        this.name = name;
+        this.eventClass = eventClass;
+        this.routingKey = routingKey;
+        this.authorExtractor = authorExtractor;
+        this.prompt = prompt;
+        this.handler = handler;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Create a step that waits for the next message of the user in the channel of the conversation.
+     *
+     * @param name    - The name of the step.
+     * @param prompt  - (Optional) The prompt to send when entering the step.
+     * @param handler - The handler of the answer.
+     * @param timeout - The time to wait for the answer in milliseconds, 0 for infinite.
+     * @return A new step.
+     */
+    @Nonnull
+    public static ConversationStep<MessageReceivedEvent> onMessage(@Nonnull final String name, @Nullable final Prompt prompt,
+                                                                   @Nonnull final Handler<MessageReceivedEvent> handler,
+                                                                   final long timeout) {
+        return new ConversationStep<>(name, MessageReceivedEvent.class, Waiter.RoutingKey.CHANNEL,
+                event -> event.getAuthor().getIdLong(), prompt, handler, timeout);
+    }
+
+    /**
+     * Create a step that waits for a reaction of the user on the message sent by the prompt.
+     *
+     * @param name    - The name of the step.
+     * @param prompt  - The prompt that sends the message to react to.
+     * @param handler - The handler of the answer.
+     * @param timeout - The time to wait for the answer in milliseconds, 0 for infinite.
+     * @return A new step.
+     */
+    @Nonnull
+    public static ConversationStep<MessageReactionAddEvent> onReaction(@Nonnull final String name, @Nonnull final Prompt prompt,
+                                                                       @Nonnull final Handler<MessageReactionAddEvent> handler,
+                                                                       final long timeout) {
+        return new ConversationStep<>(name, MessageReactionAddEvent.class, Waiter.RoutingKey.MESSAGE,
+                event -> event.getUser().getIdLong(), prompt, handler, timeout);
+    }
+
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    @Nonnull
+    public Class<T> getEventClass() {
+        return eventClass;
+    }
+
+    @Nonnull
+    Waiter.RoutingKey getRoutingKey() {
+        return routingKey;
+    }
+
+    long getAuthor(@Nonnull final T event) {
+        return authorExtractor.applyAsLong(event);
+    }
+
+    @Nullable
+    Prompt getPrompt() {
+        return prompt;
+    }
+
+    @Nonnull
+    Handler<T> getHandler() {
+        return handler;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Whether or not the answer is a reaction to the prompt, in which case the wait needs the id of the prompt.
+     *
+     * @return True if the step waits for a reaction.
+     */
+    boolean isReaction() {
+        return routingKey == Waiter.RoutingKey.MESSAGE;
+    }
+
+    /**
+     * Sends the message of a step.
+     */
+    @FunctionalInterface
+    public interface Prompt {
+
+        /**
+         * Send the prompt of the step, it must not block.
+         *
+         * @param conversation - The conversation.
+         * @param channel      - The channel of the conversation.
+         * @return (Optional) A stage completed with the sent message, like {@code channel.sendMessage(...).submit()}.
+         * Required for the steps that wait for a reaction.
+         */
+        @Nullable
+        CompletionStage<Message> send(@Nonnull Conversation conversation, @Nonnull MessageChannel channel);
+    }
+
+    /**
+     * Handles the answer of a step.
+     *
+     * @param <T> The type of event of the answer.
+     */
+    @FunctionalInterface
+    public interface Handler<T extends Event> {
+
+        /**
+         * Handle the answer of the user, this is called on the event thread so it must not block.
+         *
+         * @param conversation - The conversation.
+         * @param event        - The answer.
+         * @return The name of the next step, {@link #STAY} or {@link #END}.
+         */
+        @Nonnull
+        String handle(@Nonnull Conversation conversation, @Nonnull T event);
+    }
+}
@@ -0,0 +1,39 @@
+package com.jesus_crie.modularbot.core.conversation;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Persists the conversations in progress so they can be restored after a restart.
+ * The methods are always called from a single thread.
+ *
+ * @see FileConversationStore
+ */
+public interface ConversationStore {
+
+    /**
+     * Save the current state of a conversation, replacing the previous one.
+     *
+     * @param conversation - The conversation.
+     * @throws IOException If the conversation can't be saved.
+     */
+    void save(@Nonnull Conversation conversation) throws IOException;
+
+    /**
+     * Delete a conversation that has ended.
+     *
+     * @param id - The id of the conversation.
+     * @throws IOException If the conversation can't be deleted.
+     */
+    void delete(@Nonnull String id) throws IOException;
+
+    /**
+     * Load every saved conversation.
+     *
+     * @return The saved conversations.
+     * @throws IOException If the conversations can't be loaded.
+     */
+    @Nonnull
+    Collection<Conversation> loadAll() throws IOException;
+}
@@ -0,0 +1,68 @@
+package com.jesus_crie.modularbot.core.conversation;
+
+import com.jesus_crie.modularbot.core.utils.SerializationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Stores each conversation in its own file in a directory.
+ * A file is written completely before replacing the previous one so a crash never leaves a partial state.
+ */
+public class FileConversationStore implements ConversationStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger("FileConversationStore");
+    private static final String EXTENSION = ".conversation";
+
+    private final Path directory;
+
+    /**
+     * @param directory - The directory where the conversations are stored, created if needed.
+     * @throws IOException If the directory can't be created.
+     */
+    public FileConversationStore(@Nonnull final Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    @Override
+    public void save(@Nonnull final Conversation conversation) throws IOException {
+        final Path temp = directory.resolve(conversation.getId() + ".tmp");
+        Files.write(temp, SerializationUtils.serializableToString(conversation).getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, directory.resolve(conversation.getId() + EXTENSION),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void delete(@Nonnull final String id) throws IOException {
+        Files.deleteIfExists(directory.resolve(id + EXTENSION));
+    }
+
+    @Nonnull
+    @Override
+    public Collection<Conversation> loadAll() throws IOException {
+        final List<Conversation> conversations = new ArrayList<>();
+
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (final Path file : files) {
+                try {
+                    conversations.add(SerializationUtils.deserializeFromString(
+                            new String(Files.readAllBytes(file), StandardCharsets.UTF_8)));
+                } catch (IllegalArgumentException | ClassCastException e) {
+                    LOG.warn("Ignoring the corrupted conversation " + file.getFileName(), e);
+                }
+            }
+        }
+
+        return conversations;
+    }
+}
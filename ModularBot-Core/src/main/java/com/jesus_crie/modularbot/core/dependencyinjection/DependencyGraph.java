@@ -6,6 +6,7 @@ import net.dv8tion.jda.core.utils.tuple.Pair;
 import javax.annotation.Nonnull;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Registry of the relations between each module.
@@ -19,17 +20,17 @@ public class DependencyGraph {
     /**
      * Map meaning:
      * - Module
-     * -> Left: parents (dependencies of the module)
-     * -> Right: children (modules that depend on the module)
+     * -> Left: parents (modules that depend on the module)
+     * -> Right: children (dependencies of the module)
      */
     private final Map<
             Class<? extends Module>, Pair<List<Class<? extends Module>>, List<Class<? extends Module>>>> dependencyGraph = new HashMap<>();
 
     /**
-     * Register a parent (dependency) of the current module.
+     * Register a parent (that depends on) of the current module.
      *
      * @param actual - The current module.
-     * @param parent - The parent (dependency) of the current module.
+     * @param parent - The parent (that depends on) of the current module.
      */
     public void registerParent(@Nonnull final Class<? extends Module> actual, @Nonnull final Class<? extends Module> parent) {
         ensureEntryExist(actual);
@@ -37,7 +38,7 @@ public class DependencyGraph {
     }
 
     /**
-     * Register a child (that depends on) of the current module.
+     * Register a child (dependency) of the current module.
      *
      * @param actual - The current module.
      * @param child  - The child (dependency) module of the current module.
@@ -47,6 +48,38 @@ public class DependencyGraph {
         dependencyGraph.get(actual).getRight().add(child);
     }
 
+    /**
+     * Remove a module from the graph along with every relation that involves it.
+     *
+     * @param actual - The module to remove.
+     */
+    public void remove(@Nonnull final Class<? extends Module> actual) {
+        dependencyGraph.remove(actual);
+        dependencyGraph.values().forEach(relations -> {
+            relations.getLeft().remove(actual);
+            relations.getRight().remove(actual);
+        });
+    }
+
+    /**
+     * Copy the relations of another graph into this one, ignoring the ones that are already known.
+     *
+     * @param other - The graph to merge into this one.
+     */
+    public void merge(@Nonnull final DependencyGraph other) {
+        other.dependencyGraph.forEach((actual, relations) -> {
+            ensureEntryExist(actual);
+            final Pair<List<Class<? extends Module>>, List<Class<? extends Module>>> own = dependencyGraph.get(actual);
+
+            relations.getLeft().stream()
+                    .filter(parent -> !own.getLeft().contains(parent))
+                    .forEach(own.getLeft()::add);
+            relations.getRight().stream()
+                    .filter(child -> !own.getRight().contains(child))
+                    .forEach(own.getRight()::add);
+        });
+    }
+
     /**
      * Get view component of the graph, from where you can query the graph but not alter it.
      *
@@ -66,7 +99,7 @@ public class DependencyGraph {
     public class View {
 
         /**
-         * Get the parents (dependencies) of the current module.
+         * Get the parents (that depends on) of the current module.
          *
          * @param actual - The current module.
          * @return A possibly-empty list of the parents of the current module.
@@ -84,12 +117,13 @@ public class DependencyGraph {
          */
         public List<Class<? extends Module>> getAncestors(@Nonnull final Class<? extends Module> actual) {
             return getParents(actual).stream()
-                    .flatMap(parent -> getAncestors(parent).stream())
+                    .flatMap(parent -> Stream.concat(Stream.of(parent), getAncestors(parent).stream()))
+                    .distinct()
                     .collect(Collectors.toList());
         }
 
         /**
-         * Get the children (that depends on) of the current module.
+         * Get the children (dependencies) of the current module.
          *
          * @param actual - The current module.
          * @return A possibly-empty list of the children of the current module.
@@ -107,7 +141,8 @@ public class DependencyGraph {
          */
         public List<Class<? extends Module>> getDescendants(@Nonnull final Class<? extends Module> actual) {
             return getChildren(actual).stream()
-                    .flatMap(child -> getDescendants(child).stream())
+                    .flatMap(child -> Stream.concat(Stream.of(child), getDescendants(child).stream()))
+                    .distinct()
                     .collect(Collectors.toList());
         }
     }
@@ -6,6 +6,7 @@ import com.jesus_crie.modularbot.core.dependencyinjection.exception.NoInjectorTa
 import com.jesus_crie.modularbot.core.dependencyinjection.exception.TooManyInjectorTargetException;
 import com.jesus_crie.modularbot.core.module.Module;
 import com.jesus_crie.modularbot.core.module.ModuleSettingsProvider;
+import com.jesus_crie.modularbot.core.stats.BootProfiler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -13,12 +14,30 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public final class DependencyInjector {
 
     private static final Logger LOG = LoggerFactory.getLogger("DependencyInjector");
 
+    // Metadata of the module classes, shared by the injectors of every bot of the JVM
+    private static final ClassValue<Constructor<?>[]> INJECTOR_TARGETS = new ClassValue<Constructor<?>[]>() {
+        @Override
+        protected Constructor<?>[] computeValue(final Class<?> type) {
+            return Arrays.stream(type.getDeclaredConstructors())
+                    .filter(c -> c.isAnnotationPresent(InjectorTarget.class))
+                    .toArray(Constructor<?>[]::new);
+        }
+    };
+    private static final ClassValue<List<Class<? extends Module>>> LATE_DEPENDENCIES = new ClassValue<List<Class<? extends Module>>>() {
+        @SuppressWarnings("unchecked")
+        @Override
+        protected List<Class<? extends Module>> computeValue(final Class<?> type) {
+            return Collections.unmodifiableList(scanLateDependencies((Class<? extends Module>) type));
+        }
+    };
+
     // Input & Output of the injector
     private final Map<Class<? extends Module>, Module> builtModules = new HashMap<>();
     private final Map<Class<? extends Module>, ModuleSettingsProvider> settings = new HashMap<>();
@@ -28,6 +47,17 @@ public final class DependencyInjector {
     private final Map<Class<? extends Module>, Constructor<? extends Module>> injectorTargets = new HashMap<>();
     private final Deque<Class<? extends Module>> queuedInjections = new LinkedList<>();
     private final Deque<Class<? extends Module>> dependencyHierarchy = new LinkedList<>();
+    private final List<Class<? extends Module>> deferredInjections = new LinkedList<>();
+    private BootProfiler profiler = BootProfiler.DISABLED;
+
+    /**
+     * Record the construction of each module in a profiler.
+     *
+     * @param profiler - The profiler.
+     */
+    public void setBootProfiler(@Nonnull final BootProfiler profiler) {
+        this.profiler = profiler;
+    }
 
     /**
      * Register initial settings to build the modules.
@@ -40,6 +70,45 @@ public final class DependencyInjector {
         this.settings.put(clazz, settings);
     }
 
+    /**
+     * Query the settings bag that has been supplied for a module.
+     *
+     * @param clazz - The module.
+     * @return The settings of the module or {@code null} if none were supplied.
+     */
+    @Nullable
+    public ModuleSettingsProvider getSettings(@Nonnull final Class<? extends Module> clazz) {
+        return settings.get(clazz);
+    }
+
+    /**
+     * Forget about a built module, it will not be used anymore to satisfy injections.
+     * Used when a module is unloaded on its own.
+     *
+     * @param clazz - The class of the module to forget.
+     */
+    public void evict(@Nonnull final Class<? extends Module> clazz) {
+        builtModules.remove(clazz);
+    }
+
+    /**
+     * Replace a deferred lazy module by another class, like a new version of its class loaded by another class
+     * loader. The settings of the old class are moved to the new one.
+     *
+     * @param clazz       - The deferred module.
+     * @param replacement - The class that will be built instead.
+     * @throws IllegalArgumentException If the module isn't deferred.
+     */
+    public void replaceDeferred(@Nonnull final Class<? extends Module> clazz, @Nonnull final Class<? extends Module> replacement) {
+        final int index = deferredInjections.indexOf(clazz);
+        if (index < 0)
+            throw new IllegalArgumentException("The module " + clazz.getSimpleName() + " isn't deferred !");
+
+        deferredInjections.set(index, replacement);
+        final ModuleSettingsProvider previous = settings.remove(clazz);
+        settings.put(replacement, previous != null ? previous : extractDefaultSettingsProvider(replacement));
+    }
+
     /**
      * Register initial modules, already built.
      *
@@ -77,6 +146,27 @@ public final class DependencyInjector {
         return dependencyGraph;
     }
 
+    /**
+     * Query the lazy modules that have been resolved but not constructed yet.
+     * The list is ordered such as the dependencies of a module are always before it.
+     *
+     * @return An unmodifiable view of the deferred modules.
+     */
+    @Nonnull
+    public List<Class<? extends Module>> getDeferredModules() {
+        return Collections.unmodifiableList(deferredInjections);
+    }
+
+    /**
+     * Check if a module has been resolved but its construction has been deferred because it is {@link Lazy}.
+     *
+     * @param clazz - The class of the module.
+     * @return True if the module is waiting to be constructed, otherwise false.
+     */
+    public boolean isDeferred(@Nonnull final Class<? extends Module> clazz) {
+        return deferredInjections.contains(clazz);
+    }
+
     @Nonnull
     public Collection<Module> resolve(@Nonnull final Class<? extends Module>... requests)
             throws CircularDependencyException, InjectionFailedException, NoInjectorTargetException, TooManyInjectorTargetException {
@@ -86,6 +176,9 @@ public final class DependencyInjector {
     /**
      * Process the dependencies of the given modules, build and inject everything, and then
      * return the full list of Modules that were instantiated.
+     * <p>
+     * Modules annotated with {@link Lazy} that aren't required by any other eager module are not built, they can
+     * be built later with {@link #resolveDeferred(Class)}.
      *
      * @param requests - The modules to process.
      * @return The list of modules that have been instantiated during the process.
@@ -98,6 +191,7 @@ public final class DependencyInjector {
     public Collection<Module> resolve(@Nonnull final List<Class<? extends Module>> requests)
             throws CircularDependencyException, InjectionFailedException, NoInjectorTargetException, TooManyInjectorTargetException {
         LOG.info(String.format("Starting resolution of %d requests...", requests.size()));
+        final long start = System.nanoTime();
         for (Class<? extends Module> request : requests) {
             LOG.debug("- " + request.getSimpleName());
         }
@@ -121,6 +215,17 @@ public final class DependencyInjector {
                 settings.put(request, extractDefaultSettingsProvider(request));
         }
 
+        // Put aside the lazy modules that aren't required by anyone
+        LOG.debug("Deferring lazy modules...");
+        final Set<Class<? extends Module>> required = computeRequiredModules();
+        for (final Class<? extends Module> request : queuedInjections) {
+            if (!required.contains(request)) {
+                LOG.debug("Deferring lazy module " + request.getSimpleName());
+                deferredInjections.add(request);
+            }
+        }
+        queuedInjections.removeAll(deferredInjections);
+
         // Build and inject them in the correct order
         LOG.debug("Starting construction...");
         while (!queuedInjections.isEmpty()) {
@@ -135,10 +240,167 @@ public final class DependencyInjector {
             fillLateInjections(module);
         }
 
-        LOG.info(String.format("Successfully injected %d modules", builtModules.size()));
+        LOG.info(String.format("Successfully injected %d modules in %d ms, %d lazy modules deferred",
+                builtModules.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), deferredInjections.size()));
         return builtModules.values();
     }
 
+    /**
+     * Build a deferred lazy module along with its deferred dependencies and the deferred modules that it
+     * late-injects, and fill their late injections.
+     * Like {@link #resolve(List)}, the dependencies are built before the modules that depend on them.
+     * <p>
+     * This method isn't thread safe, the caller needs to synchronize the calls.
+     *
+     * @param request - The deferred module to build.
+     * @return The modules that have been built, in construction order.
+     * @throws IllegalArgumentException If the module isn't deferred.
+     * @throws InjectionFailedException If for some reason, an exception was thrown by the module during its instantiation.
+     * @throws RuntimeException         If an injection target throws an exception on its own.
+     */
+    @Nonnull
+    public List<Module> resolveDeferred(@Nonnull final Class<? extends Module> request) throws InjectionFailedException {
+        if (!deferredInjections.contains(request))
+            throw new IllegalArgumentException("The module " + request.getSimpleName() + " isn't deferred !");
+
+        final List<Module> built = new ArrayList<>();
+        constructDeferred(request, built);
+
+        LOG.debug("Starting late injections...");
+        for (final Module module : built) {
+            fillLateInjections(module);
+        }
+
+        return built;
+    }
+
+    /**
+     * Build a deferred module after its deferred dependencies.
+     *
+     * @param request - The module to build, ignored if it isn't deferred.
+     * @param built   - The list where the newly built modules will be added.
+     * @throws InjectionFailedException If the injection attempt failed.
+     * @throws RuntimeException         Exception caused by the constructor that has been rethrown.
+     */
+    private void constructDeferred(@Nonnull final Class<? extends Module> request, @Nonnull final List<Module> built)
+            throws InjectionFailedException {
+        // Removed first to not loop on late injections referencing each other
+        if (!deferredInjections.remove(request))
+            return;
+
+        try {
+            for (final Class<? extends Module> dependency : extractDependencies(request)) {
+                constructDeferred(dependency, built);
+            }
+
+            LOG.debug("Constructing lazy module " + request.getSimpleName() + "...");
+            final Module module = constructAndInject(request);
+            builtModules.put(request, module);
+            built.add(module);
+
+        } catch (NoInjectorTargetException | TooManyInjectorTargetException e) {
+            // Can't happen, the target has already been validated when computing the graph
+            deferredInjections.add(request);
+            throw new InjectionFailedException(e);
+        } catch (InjectionFailedException | RuntimeException e) {
+            deferredInjections.add(request);
+            throw e;
+        }
+
+        for (final Class<? extends Module> dependency : extractLateDependencies(request)) {
+            constructDeferred(dependency, built);
+        }
+    }
+
+    /**
+     * Collect every module that needs to be built right now, that is every module that isn't lazy and the
+     * modules that they require through their injector targets and late injector targets.
+     *
+     * @return The set of the modules that can't be deferred.
+     * @throws NoInjectorTargetException      If one of the modules doesn't have an annotated constructor nor a default one.
+     * @throws TooManyInjectorTargetException If one of the modules have multiple annotated constructors.
+     */
+    @Nonnull
+    private Set<Class<? extends Module>> computeRequiredModules()
+            throws NoInjectorTargetException, TooManyInjectorTargetException {
+        final Set<Class<? extends Module>> required = new HashSet<>();
+        final Deque<Class<? extends Module>> toExplore = new LinkedList<>(builtModules.keySet());
+
+        for (final Class<? extends Module> request : queuedInjections) {
+            if (!request.isAnnotationPresent(Lazy.class))
+                toExplore.push(request);
+        }
+
+        while (!toExplore.isEmpty()) {
+            final Class<? extends Module> request = toExplore.pop();
+            if (!required.add(request))
+                continue;
+
+            // The already built modules don't need their constructor
+            if (!builtModules.containsKey(request))
+                Collections.addAll(toExplore, extractDependencies(request));
+            toExplore.addAll(extractLateDependencies(request));
+        }
+
+        return required;
+    }
+
+    /**
+     * Query the modules required by the late injector targets of a module.
+     *
+     * @param clazz - The module to analyze.
+     * @return A possibly-empty unmodifiable list of the modules that it late-injects.
+     */
+    @Nonnull
+    public static List<Class<? extends Module>> getLateDependencies(@Nonnull final Class<? extends Module> clazz) {
+        return LATE_DEPENDENCIES.get(clazz);
+    }
+
+    /**
+     * Fill again the late injections of a module that has already been built, after some of the modules that
+     * it late-injects have been unloaded or rebuilt. The fields whose module isn't available anymore are cleared
+     * so they don't retain the old instance.
+     *
+     * @param module - The module to late-inject.
+     * @throws InjectionFailedException If an injection fails for some reason.
+     * @throws RuntimeException         If an underlying method throws an exception.
+     */
+    public void refillLateInjections(@Nonnull final Module module) throws InjectionFailedException {
+        fillLateInjectionFields(module, true);
+        fillLateInjectionSetters(module);
+    }
+
+    /**
+     * Extract the modules required by the late injector targets of a module.
+     *
+     * @param request - The module to analyze.
+     * @return A possibly-empty list of the modules required by the late injections.
+     */
+    @Nonnull
+    private List<Class<? extends Module>> extractLateDependencies(@Nonnull final Class<? extends Module> request) {
+        return new ArrayList<>(LATE_DEPENDENCIES.get(request));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nonnull
+    private static List<Class<? extends Module>> scanLateDependencies(@Nonnull final Class<? extends Module> request) {
+        final List<Class<? extends Module>> dependencies = new ArrayList<>();
+
+        Arrays.stream(request.getDeclaredFields())
+                .filter(field -> field.isAnnotationPresent(LateInjectorTarget.class))
+                .map(Field::getType)
+                .filter(Module.class::isAssignableFrom)
+                .forEach(type -> dependencies.add((Class<? extends Module>) type));
+
+        Arrays.stream(request.getDeclaredMethods())
+                .filter(method -> method.isAnnotationPresent(LateInjectorTarget.class))
+                .flatMap(method -> Arrays.stream(method.getParameterTypes()))
+                .filter(Module.class::isAssignableFrom)
+                .forEach(type -> dependencies.add((Class<? extends Module>) type));
+
+        return dependencies;
+    }
+
     /**
      * Compute the dependency graph of the requests.
      * Needed in order to spot circular dependencies.
@@ -287,9 +549,7 @@ public final class DependencyInjector {
     @Nonnull
     private Constructor<? extends Module> findInjectorTarget(@Nonnull final Class<? extends Module> request)
             throws NoInjectorTargetException, TooManyInjectorTargetException {
-        final Constructor<?>[] cs = Arrays.stream(request.getDeclaredConstructors())
-                .filter(c -> c.isAnnotationPresent(InjectorTarget.class))
-                .toArray(Constructor<?>[]::new);
+        final Constructor<?>[] cs = INJECTOR_TARGETS.get(request);
 
         // No constructor with the annotation, check for default constructor
         if (cs.length == 0) {
@@ -343,18 +603,19 @@ public final class DependencyInjector {
      * @throws RuntimeException         If an underlying method throws an exception.
      */
     private void fillLateInjections(@Nonnull final Module module) throws InjectionFailedException {
-        fillLateInjectionFields(module);
+        fillLateInjectionFields(module, false);
         fillLateInjectionSetters(module);
     }
 
     /**
      * Process and inject the fields of the module.
      *
-     * @param module - The module to be injected.
+     * @param module       - The module to be injected.
+     * @param clearMissing - Whether the fields whose module isn't available should be set to {@code null}.
      * @throws InjectionFailedException If an injection fails for some reason.
      */
     @SuppressWarnings("SuspiciousMethodCalls")
-    private void fillLateInjectionFields(@Nonnull final Module module) throws InjectionFailedException {
+    private void fillLateInjectionFields(@Nonnull final Module module, final boolean clearMissing) throws InjectionFailedException {
         final Field[] fields = Arrays.stream(module.getClass().getDeclaredFields())
                 .filter(field -> field.isAnnotationPresent(LateInjectorTarget.class))
                 .toArray(Field[]::new);
@@ -369,13 +630,15 @@ public final class DependencyInjector {
                     continue;
                 }
 
+                if (!field.isAccessible()) field.setAccessible(true);
+
                 if (!builtModules.containsKey(field.getType())) {
                     LOG.warn(String.format("Late injection: Module %s not available, ignoring.", field.getType().getSimpleName()));
+                    if (clearMissing)
+                        field.set(module, null);
                     continue;
                 }
 
-                if (!field.isAccessible()) field.setAccessible(true);
-
                 field.set(module, builtModules.get(field.getType()));
             } catch (IllegalAccessException e) {
                 throw new InjectionFailedException(e);
@@ -438,7 +701,7 @@ public final class DependencyInjector {
      */
     @Nonnull
     private Module instantiate(@Nonnull final Constructor constructor, @Nullable final Object[] arguments) throws InjectionFailedException {
-        try {
+        try (final BootProfiler.Span ignored = profiler.start("module", "new " + constructor.getDeclaringClass().getSimpleName())) {
             if (arguments == null || arguments.length == 0) {
                 return (Module) constructor.newInstance();
             } else {
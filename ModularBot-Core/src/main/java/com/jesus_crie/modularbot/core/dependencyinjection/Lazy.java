@@ -0,0 +1,20 @@
+package com.jesus_crie.modularbot.core.dependencyinjection;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Used to mark a module as lazy.
+ * A lazy module is still part of the dependency graph but it will only be constructed when it is
+ * actually required, either by the injector target of a module that isn't lazy, by a late injection
+ * or by {@link com.jesus_crie.modularbot.core.module.ModuleManager#getModule(Class)}.
+ * <p>
+ * When it is finally built, the module goes through every lifecycle hook that it has missed to catch up
+ * with the other modules.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Lazy {
+}
@@ -0,0 +1,206 @@
+package com.jesus_crie.modularbot.core.event;
+
+import com.jesus_crie.modularbot.core.utils.ModularThreadFactory;
+import net.dv8tion.jda.core.events.Event;
+import net.dv8tion.jda.core.events.guild.GenericGuildEvent;
+import net.dv8tion.jda.core.events.guild.member.GenericGuildMemberEvent;
+import net.dv8tion.jda.core.events.guild.voice.GenericGuildVoiceEvent;
+import net.dv8tion.jda.core.events.user.UserTypingEvent;
+import net.dv8tion.jda.core.events.user.update.GenericUserPresenceEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Listener that receives a coalesced view of an event type.
+ * <p>
+ * The first event about an entity (a member, a user in a channel, ...) opens a window, the events about the same
+ * entity received during this window are merged with it and the result is delivered once when the window closes.
+ * By default the last event wins, a custom merge function can be provided to combine them.
+ * <p>
+ * This listener is registered like any other listener, the other listeners still receive every event.
+ * <pre>{@code
+ * bot.addEventListener(new CoalescingListener<>(UserUpdateGameEvent.class, 5000, event -> ...));
+ * }</pre>
+ *
+ * @param <T> The type of event to coalesce.
+ */
+public class CoalescingListener<T extends Event> implements TypedEventListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger("CoalescingListener");
+
+    private static ScheduledExecutorService defaultPool = null;
+
+    private final Class<T> eventClass;
+    private final long window;
+    private final Function<? super T, ?> keyExtractor;
+    private final BinaryOperator<T> merger;
+    private final Consumer<? super T> listener;
+    private final ScheduledExecutorService executor;
+
+    private final Map<Object, T> pending = new ConcurrentHashMap<>();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+
+    /**
+     * Create a listener that deliver the last event of each entity at most once per window.
+     *
+     * @param eventClass - The type of event to coalesce.
+     * @param window     - The duration of the window in milliseconds.
+     * @param listener   - The code to call with the coalesced events.
+     */
+    public CoalescingListener(@Nonnull final Class<T> eventClass, final long window, @Nonnull final Consumer<? super T> listener) {
+        this(eventClass, window, null, null, listener, null);
+    }
+
+    /**
+     * @param eventClass   - The type of event to coalesce.
+     * @param window       - The duration of the window in milliseconds.
+     * @param keyExtractor - (Optional) Compute the entity of an event, the events with equal keys are merged.
+     *                     By default the entity is deduced from the type of the event.
+     * @param merger       - (Optional) Merge the pending event with the new one, by default the new one wins.
+     * @param listener     - The code to call with the coalesced events.
+     * @param executor     - (Optional) The executor that will deliver the events, a shared one by default.
+     */
+    public CoalescingListener(@Nonnull final Class<T> eventClass, final long window,
+                              @Nullable final Function<? super T, ?> keyExtractor, @Nullable final BinaryOperator<T> merger,
+                              @Nonnull final Consumer<? super T> listener, @Nullable final ScheduledExecutorService executor) {
+        if (window <= 0)
+            throw new IllegalArgumentException("The window must be positive !");
+
+        this.eventClass = eventClass;
+        this.window = window;
+        this.keyExtractor = keyExtractor != null ? keyExtractor : CoalescingListener::getDefaultKey;
+        this.merger = merger != null ? merger : (previous, next) -> next;
+        this.listener = listener;
+        this.executor = executor != null ? executor : getDefaultPool();
+    }
+
+    private static synchronized ScheduledExecutorService getDefaultPool() {
+        if (defaultPool == null)
+            defaultPool = Executors.newSingleThreadScheduledExecutor(new ModularThreadFactory("Coalescer", true));
+
+        return defaultPool;
+    }
+
+    /**
+     * Compute the entity that an event is about.
+     *
+     * @param event - The event.
+     * @return A key that is equal for the events about the same entity.
+     */
+    @Nonnull
+    public static Object getDefaultKey(@Nonnull final Event event) {
+        if (event instanceof GenericGuildMemberEvent) {
+            final GenericGuildMemberEvent e = (GenericGuildMemberEvent) event;
+            return Arrays.asList(event.getClass(), e.getGuild().getIdLong(), e.getUser().getIdLong());
+        }
+
+        if (event instanceof GenericGuildVoiceEvent) {
+            final GenericGuildVoiceEvent e = (GenericGuildVoiceEvent) event;
+            return Arrays.asList(event.getClass(), e.getGuild().getIdLong(), e.getMember().getUser().getIdLong());
+        }
+
+        if (event instanceof UserTypingEvent) {
+            final UserTypingEvent e = (UserTypingEvent) event;
+            return Arrays.asList(event.getClass(), e.getChannel().getIdLong(), e.getUser().getIdLong());
+        }
+
+        if (event instanceof GenericUserPresenceEvent) {
+            final GenericUserPresenceEvent<?> e = (GenericUserPresenceEvent<?>) event;
+            return Arrays.asList(event.getClass(), e.getGuild().getIdLong(), e.getMember().getUser().getIdLong());
+        }
+
+        if (event instanceof GenericGuildEvent)
+            return Arrays.asList(event.getClass(), ((GenericGuildEvent) event).getGuild().getIdLong());
+
+        return Arrays.asList(event.getClass(), PartitionedEventPipeline.getPartitionKey(event));
+    }
+
+    @Nonnull
+    @Override
+    public Class<?>[] getEventTypes() {
+        return new Class<?>[]{eventClass};
+    }
+
+    @Override
+    public void onEvent(final Event event) {
+        if (!eventClass.isInstance(event))
+            return;
+
+        received.increment();
+
+        final T e = eventClass.cast(event);
+        final Object key = keyExtractor.apply(e);
+
+        pending.compute(key, (k, previous) -> {
+            if (previous == null) {
+                executor.schedule(() -> deliver(k), window, TimeUnit.MILLISECONDS);
+                return e;
+            }
+
+            return merger.apply(previous, e);
+        });
+    }
+
+    private void deliver(@Nonnull final Object key) {
+        final T event = pending.remove(key);
+        if (event == null)
+            return;
+
+        delivered.increment();
+        try {
+            listener.accept(event);
+        } catch (Throwable t) {
+            LOG.error("A coalescing listener had an uncaught exception", t);
+        }
+    }
+
+    /**
+     * Deliver every pending event now without waiting for the end of their window.
+     */
+    public void flush() {
+        pending.keySet().forEach(this::deliver);
+    }
+
+    /**
+     * @return The type of event coalesced by this listener.
+     */
+    @Nonnull
+    public Class<T> getEventClass() {
+        return eventClass;
+    }
+
+    /**
+     * @return The amount of events waiting for the end of their window.
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * @return The amount of raw events received.
+     */
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    /**
+     * @return The amount of coalesced events delivered.
+     */
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+}
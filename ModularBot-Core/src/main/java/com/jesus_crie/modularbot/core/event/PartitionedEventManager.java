@@ -0,0 +1,58 @@
+package com.jesus_crie.modularbot.core.event;
+
+import com.jesus_crie.modularbot.core.ModularEventManager;
+import com.jesus_crie.modularbot.core.stats.ShardEventStatistics;
+import net.dv8tion.jda.core.events.Event;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Event manager that doesn't call the listeners on the event thread of the shard but hands the events to a
+ * {@link PartitionedEventPipeline}. The listeners are then called by the worker of the partition of the event, with
+ * the same filtering as the {@link ModularEventManager ModularEventManager}.
+ * <p>
+ * A single pipeline should be shared by every shard, see {@link PartitionedEventPipeline#provider()}.
+ */
+public class PartitionedEventManager extends ModularEventManager {
+
+    private final PartitionedEventPipeline pipeline;
+
+    /**
+     * @param pipeline - The pipeline that will dispatch the events.
+     */
+    public PartitionedEventManager(@Nonnull final PartitionedEventPipeline pipeline) {
+        this(pipeline, null);
+    }
+
+    /**
+     * @param pipeline   - The pipeline that will dispatch the events.
+     * @param statistics - (Optional) The statistics where the events of this shard will be recorded.
+     */
+    public PartitionedEventManager(@Nonnull final PartitionedEventPipeline pipeline, @Nullable final ShardEventStatistics statistics) {
+        super(statistics);
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * @return The pipeline used by this event manager.
+     */
+    @Nonnull
+    public PartitionedEventPipeline getPipeline() {
+        return pipeline;
+    }
+
+    @Override
+    public void handle(final Event event) {
+        pipeline.submit(this, event);
+    }
+
+    /**
+     * Call the listeners, from the worker of a partition.
+     *
+     * @param event - The event to dispatch.
+     */
+    void process(@Nonnull final Event event) {
+        super.handle(event);
+    }
+}
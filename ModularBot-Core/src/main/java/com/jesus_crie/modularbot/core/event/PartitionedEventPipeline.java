@@ -0,0 +1,403 @@
+package com.jesus_crie.modularbot.core.event;
+
+import com.jesus_crie.modularbot.core.stats.EventStatistics;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.ISnowflake;
+import net.dv8tion.jda.core.events.Event;
+import net.dv8tion.jda.core.events.guild.GenericGuildEvent;
+import net.dv8tion.jda.core.events.message.GenericMessageEvent;
+import net.dv8tion.jda.core.events.user.UserTypingEvent;
+import net.dv8tion.jda.core.events.user.update.GenericUserPresenceEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * Pool of worker threads that dispatch the events of every shard in parallel.
+ * <p>
+ * Each event is assigned to a partition according to its guild, or its channel or its user if it doesn't come
+ * from a guild, or its shard otherwise. The events of a partition are dispatched one at a time in the order of
+ * their arrival, so the events of a guild are always received in order while the different guilds are handled
+ * on every core.
+ * <p>
+ * The queue of each partition is bounded, when it is full the {@link OverflowPolicy} decides whether the event
+ * thread of the shard must wait or if some events can be dropped.
+ */
+public class PartitionedEventPipeline {
+
+    private static final Logger LOG = LoggerFactory.getLogger("EventPipeline");
+
+    /**
+     * The events that can be dropped by {@link OverflowPolicy#DROP_OLDEST_LOW_PRIORITY} by default, typing and presence updates.
+     */
+    public static final Predicate<Event> DEFAULT_LOW_PRIORITY = event ->
+            event instanceof UserTypingEvent || event instanceof GenericUserPresenceEvent;
+
+    // Getters used to find the entity of an event, in order of preference
+    private static final String[] ENTITY_GETTERS = {"getGuild", "getChannel", "getUser"};
+    private static final ClassValue<Method[]> GETTERS = new ClassValue<Method[]>() {
+        @Override
+        protected Method[] computeValue(final Class<?> type) {
+            final List<Method> getters = new ArrayList<>();
+            for (final String name : ENTITY_GETTERS) {
+                try {
+                    final Method getter = type.getMethod(name);
+                    if (ISnowflake.class.isAssignableFrom(getter.getReturnType()))
+                        getters.add(getter);
+                } catch (NoSuchMethodException ignore) {
+                    // Not available for this event
+                }
+            }
+
+            return getters.toArray(new Method[0]);
+        }
+    };
+
+    private final Partition[] partitions;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final Predicate<Event> lowPriority;
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+
+    private volatile boolean running = true;
+
+    /**
+     * Create a pipeline with a partition per core, 1024 events per partition and the
+     * {@link OverflowPolicy#DROP_OLDEST_LOW_PRIORITY DROP_OLDEST_LOW_PRIORITY} policy.
+     */
+    public PartitionedEventPipeline() {
+        this(Runtime.getRuntime().availableProcessors(), 1024, OverflowPolicy.DROP_OLDEST_LOW_PRIORITY);
+    }
+
+    /**
+     * @param partitions - The amount of partitions, one thread per partition.
+     * @param capacity   - The maximum amount of events waiting in each partition.
+     * @param policy     - What to do when the queue of a partition is full.
+     */
+    public PartitionedEventPipeline(final int partitions, final int capacity, @Nonnull final OverflowPolicy policy) {
+        this(partitions, capacity, policy, DEFAULT_LOW_PRIORITY);
+    }
+
+    /**
+     * @param partitions  - The amount of partitions, one thread per partition.
+     * @param capacity    - The maximum amount of events waiting in each partition.
+     * @param policy      - What to do when the queue of a partition is full.
+     * @param lowPriority - Tells which events can be dropped with {@link OverflowPolicy#DROP_OLDEST_LOW_PRIORITY}.
+     */
+    public PartitionedEventPipeline(final int partitions, final int capacity, @Nonnull final OverflowPolicy policy,
+                                    @Nonnull final Predicate<Event> lowPriority) {
+        if (partitions < 1 || capacity < 1)
+            throw new IllegalArgumentException("The amount of partitions and their capacity must be positive !");
+
+        this.capacity = capacity;
+        this.policy = policy;
+        this.lowPriority = lowPriority;
+
+        this.partitions = new Partition[partitions];
+        for (int i = 0; i < partitions; i++)
+            this.partitions[i] = new Partition(i);
+
+        LOG.debug(String.format("Started %d partitions of %d events (%s)", partitions, capacity, policy));
+    }
+
+    /**
+     * Create an event manager provider to give to {@link com.jesus_crie.modularbot.core.ModularBotBuilder#setEventManagerProvider(IntFunction)}
+     * that will use this pipeline on every shard.
+     *
+     * @return An event manager provider.
+     */
+    @Nonnull
+    public IntFunction<PartitionedEventManager> provider() {
+        return shardId -> new PartitionedEventManager(this);
+    }
+
+    /**
+     * Same as {@link #provider()} but the event managers also record their statistics.
+     *
+     * @param statistics - The statistics to fill.
+     * @return An event manager provider.
+     */
+    @Nonnull
+    public IntFunction<PartitionedEventManager> provider(@Nonnull final EventStatistics statistics) {
+        return shardId -> new PartitionedEventManager(this, statistics.forShard(shardId));
+    }
+
+    /**
+     * Queue an event in its partition.
+     *
+     * @param manager - The event manager of the shard.
+     * @param event   - The event.
+     */
+    void submit(@Nonnull final PartitionedEventManager manager, @Nonnull final Event event) {
+        if (!running) {
+            // Dispatch the last events, like the shutdown event, in place
+            manager.process(event);
+            return;
+        }
+
+        final long key = getPartitionKey(event);
+        final int index = (int) (((key * 0x9E3779B97F4A7C15L) >>> 32) % partitions.length);
+        partitions[index].offer(new Entry(manager, event, lowPriority.test(event)));
+    }
+
+    /**
+     * Find the id of the entity that the event is about, to keep the events of a same entity in the same partition.
+     *
+     * @param event - The event.
+     * @return The id of the guild, channel or user of the event, or the id of its shard.
+     */
+    static long getPartitionKey(@Nonnull final Event event) {
+        if (event instanceof GenericGuildEvent)
+            return ((GenericGuildEvent) event).getGuild().getIdLong();
+
+        if (event instanceof GenericMessageEvent) {
+            final Guild guild = ((GenericMessageEvent) event).getGuild();
+            return guild != null ? guild.getIdLong() : ((GenericMessageEvent) event).getChannel().getIdLong();
+        }
+
+        for (final Method getter : GETTERS.get(event.getClass())) {
+            try {
+                final ISnowflake entity = (ISnowflake) getter.invoke(event);
+                if (entity != null)
+                    return entity.getIdLong();
+            } catch (ReflectiveOperationException ignore) {
+                // Try the next one
+            }
+        }
+
+        return event.getJDA().getShardInfo() == null ? 0 : event.getJDA().getShardInfo().getShardId();
+    }
+
+    /**
+     * @return The amount of partitions.
+     */
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * @return The maximum amount of events waiting in each partition.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The amount of events waiting in each partition.
+     */
+    @Nonnull
+    public int[] getQueueDepths() {
+        final int[] depths = new int[partitions.length];
+        for (int i = 0; i < partitions.length; i++)
+            depths[i] = partitions[i].size();
+
+        return depths;
+    }
+
+    /**
+     * @return The highest amount of events that have been waiting in each partition.
+     */
+    @Nonnull
+    public int[] getMaxQueueDepths() {
+        final int[] depths = new int[partitions.length];
+        for (int i = 0; i < partitions.length; i++)
+            depths[i] = partitions[i].maxDepth;
+
+        return depths;
+    }
+
+    /**
+     * @return The amount of events that have been dispatched.
+     */
+    public long getProcessedEvents() {
+        return processed.sum();
+    }
+
+    /**
+     * @return The amount of events that have been dropped because of a full partition.
+     */
+    public long getDroppedEvents() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return The amount of times an event thread had to wait for a full partition.
+     */
+    public long getBlockedSubmissions() {
+        return blocked.sum();
+    }
+
+    /**
+     * Stop the workers once they have dispatched the events in their queue.
+     * The events received after that are dispatched on the event thread of their shard.
+     */
+    public void shutdown() {
+        running = false;
+        for (final Partition partition : partitions)
+            partition.wakeUp();
+    }
+
+    /**
+     * What to do when an event needs to be queued in a partition that is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Wait until there is some space in the partition, slowing down the shard.
+         */
+        BLOCK,
+        /**
+         * Drop the oldest low priority event of the partition, or the new event if it is a low priority event.
+         * Otherwise wait like {@link #BLOCK}.
+         */
+        DROP_OLDEST_LOW_PRIORITY,
+        /**
+         * Drop the oldest event of the partition, never wait.
+         */
+        DROP_OLDEST
+    }
+
+    private static class Entry {
+
+        private final PartitionedEventManager manager;
+        private final Event event;
+        private final boolean lowPriority;
+
+        private Entry(@Nonnull final PartitionedEventManager manager, @Nonnull final Event event, final boolean lowPriority) {
+            this.manager = manager;
+            this.event = event;
+            this.lowPriority = lowPriority;
+        }
+    }
+
+    private class Partition {
+
+        private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+        private volatile int maxDepth = 0;
+
+        private Partition(final int index) {
+            final Thread worker = new Thread(this::run, "Event Partition " + index);
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        private void offer(@Nonnull final Entry entry) {
+            lock.lock();
+            try {
+                boolean waited = false;
+                while (queue.size() >= capacity) {
+                    if (policy == OverflowPolicy.DROP_OLDEST) {
+                        queue.pollFirst();
+                        dropped.increment();
+                        break;
+                    }
+
+                    if (policy == OverflowPolicy.DROP_OLDEST_LOW_PRIORITY) {
+                        if (removeOldestLowPriority())
+                            break;
+
+                        if (entry.lowPriority) {
+                            dropped.increment();
+                            return;
+                        }
+                    }
+
+                    if (!waited) {
+                        blocked.increment();
+                        waited = true;
+                    }
+
+                    try {
+                        notFull.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        dropped.increment();
+                        return;
+                    }
+                }
+
+                queue.addLast(entry);
+                if (queue.size() > maxDepth)
+                    maxDepth = queue.size();
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean removeOldestLowPriority() {
+            final Iterator<Entry> iterator = queue.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().lowPriority) {
+                    iterator.remove();
+                    dropped.increment();
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private int size() {
+            lock.lock();
+            try {
+                return queue.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void wakeUp() {
+            lock.lock();
+            try {
+                notEmpty.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void run() {
+            while (true) {
+                final Entry entry;
+
+                lock.lock();
+                try {
+                    while (queue.isEmpty()) {
+                        if (!running)
+                            return;
+
+                        notEmpty.awaitUninterruptibly();
+                    }
+
+                    entry = queue.pollFirst();
+                    notFull.signal();
+                } finally {
+                    lock.unlock();
+                }
+
+                try {
+                    entry.manager.process(entry.event);
+                } catch (Throwable t) {
+                    LOG.error("Failed to dispatch an event", t);
+                }
+                processed.increment();
+            }
+        }
+    }
+}
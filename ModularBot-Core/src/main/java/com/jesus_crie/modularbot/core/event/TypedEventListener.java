@@ -0,0 +1,19 @@
+package com.jesus_crie.modularbot.core.event;
+
+import net.dv8tion.jda.core.hooks.EventListener;
+
+import javax.annotation.Nonnull;
+
+/**
+ * An {@link EventListener EventListener} that declares the types of event that it wants to receive.
+ * The {@link com.jesus_crie.modularbot.core.ModularEventManager ModularEventManager} will only call it with
+ * events that are instances of one of these types.
+ */
+public interface TypedEventListener extends EventListener {
+
+    /**
+     * @return The types of event that this listener handles, an empty array to receive nothing.
+     */
+    @Nonnull
+    Class<?>[] getEventTypes();
+}
@@ -3,6 +3,7 @@ package com.jesus_crie.modularbot.core.module;
 
 import com.jesus_crie.modularbot.core.ModularBot;
 import com.jesus_crie.modularbot.core.ModularBotBuilder;
+import net.dv8tion.jda.core.JDA;
 
 import javax.annotation.Nonnull;
 
@@ -40,6 +41,15 @@ public interface Lifecycle {
      */
     default void onShardsCreated() {}
 
+    /**
+     * Called after {@link #onShardsCreated()} if the warm-up is enabled, to register the workloads that will be run
+     * while the shards connect. The bot only reports ready once they are done.
+     *
+     * @param warmUp - The warm-up where the workloads are registered.
+     * @see com.jesus_crie.modularbot.core.ModularBotBuilder#enableWarmUp(int, long)
+     */
+    default void onWarmUp(@Nonnull final WarmUp warmUp) {}
+
     /**
      * Called right after all of the shards have received the {@link net.dv8tion.jda.core.events.ReadyEvent ReadyEvent}.
      * If you need to do things the the bot come online, put it here.
@@ -50,6 +60,36 @@ public interface Lifecycle {
      */
     default void onShardsReady(@Nonnull final ModularBot bot) {}
 
+    /**
+     * Called when a shard has been started after the bot came online, once it is ready. It can be a restart, a
+     * shard taken from another node of the cluster or a shard of a reshard.
+     *
+     * @param bot   - The associated instance of {@link ModularBot ModularBot}.
+     * @param shard - The new shard.
+     */
+    default void onShardStarted(@Nonnull final ModularBot bot, @Nonnull final JDA shard) {}
+
+    /**
+     * Called when a shard is about to be stopped while the bot stays online, the shard is still connected.
+     * The objects bound to this instance of {@link JDA JDA} won't receive any event anymore.
+     *
+     * @param bot   - The associated instance of {@link ModularBot ModularBot}.
+     * @param shard - The shard that will be stopped.
+     */
+    default void onShardStopped(@Nonnull final ModularBot bot, @Nonnull final JDA shard) {}
+
+    /**
+     * Called during a reshard when the new shards are ready and receive the events, between the
+     * {@link #onShardStopped(ModularBot, JDA)} of the old shards and the {@link #onShardStarted(ModularBot, JDA)} of
+     * the new ones. The state kept per shard needs to be moved, a guild now belongs to the shard
+     * {@code (guildId >> 22) % newTotal}.
+     *
+     * @param bot           - The associated instance of {@link ModularBot ModularBot}.
+     * @param previousTotal - The previous amount of shards.
+     * @param newTotal      - The new amount of shards.
+     */
+    default void onReshard(@Nonnull final ModularBot bot, final int previousTotal, final int newTotal) {}
+
     /**
      * Called when the shutdown has been initiated, but the shards are still online.
      * <p>
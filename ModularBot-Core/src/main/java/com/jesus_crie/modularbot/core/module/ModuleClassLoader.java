@@ -0,0 +1,67 @@
+package com.jesus_crie.modularbot.core.module;
+
+import javax.annotation.Nonnull;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * Isolated class loader used to hot reload modules.
+ * The classes available in the given locations are loaded by this loader before asking the parent (child first),
+ * except for the classes of the JDK, JDA and the core of the framework which are always shared so the reloaded
+ * modules can interact with the rest of the bot.
+ * <p>
+ * The given locations should only contain the classes of the modules to reload, any other module found here
+ * will be duplicated and its classes won't be compatible with the instances already loaded.
+ */
+public class ModuleClassLoader extends URLClassLoader {
+
+    private static final String[] SHARED_PACKAGES = {
+            "java.",
+            "javax.",
+            "sun.",
+            "jdk.",
+            "org.slf4j.",
+            "net.dv8tion.jda.",
+            "com.jesus_crie.modularbot.core."
+    };
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    public ModuleClassLoader(@Nonnull final URL[] urls, @Nonnull final ClassLoader parent) {
+        super(urls, parent);
+    }
+
+    @Override
+    protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+        if (isShared(name))
+            return super.loadClass(name, resolve);
+
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> clazz = findLoadedClass(name);
+
+            if (clazz == null) {
+                try {
+                    clazz = findClass(name);
+                } catch (ClassNotFoundException e) {
+                    // Not one of ours
+                    return super.loadClass(name, resolve);
+                }
+            }
+
+            if (resolve)
+                resolveClass(clazz);
+            return clazz;
+        }
+    }
+
+    private static boolean isShared(@Nonnull final String name) {
+        for (final String prefix : SHARED_PACKAGES) {
+            if (name.startsWith(prefix))
+                return true;
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,361 @@
+package com.jesus_crie.modularbot.core.module;
+
+import com.jesus_crie.modularbot.core.stats.LatencyHistogram;
+import com.jesus_crie.modularbot.core.utils.ModularThreadFactory;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The thread pools of a module, given by {@link ModuleManager#getExecutors(Class)} and shut down when the module
+ * is unloaded.
+ * <p>
+ * Each module has its own pools so a slow task only delays the tasks of its own module, and the pools are bounded
+ * so a module can't pile up an infinite amount of tasks: the tasks submitted above the limit are rejected with a
+ * {@link RejectedExecutionException}. The threads, the queued tasks, the time they wait and the time they run are
+ * accounted per module.
+ */
+public class ModuleExecutors {
+
+    public static final int DEFAULT_MAX_QUEUED = 10_000;
+
+    private final String name;
+
+    private final LatencyHistogram waitTimes = new LatencyHistogram();
+    private final LatencyHistogram runTimes = new LatencyHistogram();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private BoundedScheduledExecutor scheduled = null;
+    private BoundedWorkStealingExecutor workStealing = null;
+    private boolean shutdown = false;
+
+    ModuleExecutors(@Nonnull final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the scheduled pool of the module, with a single thread.
+     *
+     * @return The scheduled pool of the module.
+     * @see #getScheduled(int, int)
+     */
+    @Nonnull
+    public ScheduledExecutorService getScheduled() {
+        return getScheduled(1, DEFAULT_MAX_QUEUED);
+    }
+
+    /**
+     * Get the scheduled pool of the module, for periodic or delayed tasks.
+     * The pool is created by the first call, the parameters of the next calls are ignored.
+     *
+     * @param threads   - The amount of threads.
+     * @param maxQueued - The maximum amount of tasks waiting to be executed.
+     * @return The scheduled pool of the module.
+     * @throws IllegalStateException If the module has been unloaded.
+     */
+    @Nonnull
+    public synchronized ScheduledExecutorService getScheduled(final int threads, final int maxQueued) {
+        checkAlive();
+        if (scheduled == null)
+            scheduled = new BoundedScheduledExecutor(threads, maxQueued);
+        return scheduled;
+    }
+
+    /**
+     * Get the work stealing pool of the module, with one thread per processor.
+     *
+     * @return The work stealing pool of the module.
+     * @see #getWorkStealing(int, int)
+     */
+    @Nonnull
+    public ExecutorService getWorkStealing() {
+        return getWorkStealing(Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_QUEUED);
+    }
+
+    /**
+     * Get the work stealing pool of the module, for a lot of short tasks.
+     * The pool is created by the first call, the parameters of the next calls are ignored.
+     *
+     * @param parallelism - The maximum amount of threads.
+     * @param maxQueued   - The maximum amount of tasks waiting to be executed.
+     * @return The work stealing pool of the module.
+     * @throws IllegalStateException If the module has been unloaded.
+     */
+    @Nonnull
+    public synchronized ExecutorService getWorkStealing(final int parallelism, final int maxQueued) {
+        checkAlive();
+        if (workStealing == null)
+            workStealing = new BoundedWorkStealingExecutor(parallelism, maxQueued);
+        return workStealing;
+    }
+
+    /**
+     * Take a snapshot of the accounting of the pools.
+     *
+     * @return A snapshot of the statistics.
+     */
+    @Nonnull
+    public synchronized Statistics getStatistics() {
+        int threads = 0;
+        int queued = 0;
+        if (scheduled != null) {
+            threads += scheduled.getPoolSize();
+            queued += scheduled.getQueue().size();
+        }
+
+        if (workStealing != null) {
+            threads += workStealing.pool.getPoolSize();
+            queued += workStealing.pending.get();
+        }
+
+        return new Statistics(name, threads, queued, completed.sum(), rejected.sum(),
+                waitTimes.snapshot(), runTimes.snapshot());
+    }
+
+    /**
+     * Stop the pools, the running tasks are interrupted.
+     */
+    synchronized void shutdown() {
+        shutdown = true;
+
+        if (scheduled != null)
+            scheduled.shutdownNow();
+        if (workStealing != null)
+            workStealing.shutdownNow();
+    }
+
+    private void checkAlive() {
+        if (shutdown)
+            throw new IllegalStateException("The module " + name + " has been unloaded !");
+    }
+
+    private void record(final long wait, final long run) {
+        waitTimes.record(wait);
+        runTimes.record(run);
+        completed.increment();
+    }
+
+    /**
+     * Scheduled pool that rejects the tasks above the limit and records the time each task starts after its due
+     * time and the time it takes to run.
+     */
+    private class BoundedScheduledExecutor extends ScheduledThreadPoolExecutor {
+
+        private final int maxQueued;
+        private final ThreadLocal<long[]> timings = ThreadLocal.withInitial(() -> new long[2]);
+
+        private BoundedScheduledExecutor(final int threads, final int maxQueued) {
+            super(threads, new ModularThreadFactory(name + " Scheduled", true));
+            this.maxQueued = maxQueued;
+            setRemoveOnCancelPolicy(true);
+        }
+
+        @Override
+        protected <V> RunnableScheduledFuture<V> decorateTask(final Runnable runnable, final RunnableScheduledFuture<V> task) {
+            checkCapacity();
+            return task;
+        }
+
+        @Override
+        protected <V> RunnableScheduledFuture<V> decorateTask(final Callable<V> callable,
+                                                              final RunnableScheduledFuture<V> task) {
+            checkCapacity();
+            return task;
+        }
+
+        private void checkCapacity() {
+            if (getQueue().size() >= maxQueued) {
+                rejected.increment();
+                throw new RejectedExecutionException(String.format("The scheduled pool of %s is full (%d tasks) !", name, maxQueued));
+            }
+        }
+
+        @Override
+        protected void beforeExecute(final Thread t, final Runnable r) {
+            final long[] timing = timings.get();
+            timing[0] = r instanceof Delayed ? Math.max(-((Delayed) r).getDelay(TimeUnit.NANOSECONDS), 0) : 0;
+            timing[1] = System.nanoTime();
+        }
+
+        @Override
+        protected void afterExecute(final Runnable r, final Throwable t) {
+            final long[] timing = timings.get();
+            record(timing[0], System.nanoTime() - timing[1]);
+        }
+    }
+
+    /**
+     * Work stealing pool that rejects the tasks above the limit and records the time each task waits before running
+     * and the time it takes to run.
+     */
+    private class BoundedWorkStealingExecutor extends AbstractExecutorService {
+
+        private final ForkJoinPool pool;
+        private final int maxQueued;
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private BoundedWorkStealingExecutor(final int parallelism, final int maxQueued) {
+            final AtomicInteger count = new AtomicInteger();
+            pool = new ForkJoinPool(parallelism, p -> {
+                final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                thread.setName(name + " Worker #" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, null, true);
+            this.maxQueued = maxQueued;
+        }
+
+        @Override
+        public void execute(@Nonnull final Runnable command) {
+            if (pending.incrementAndGet() > maxQueued) {
+                pending.decrementAndGet();
+                rejected.increment();
+                throw new RejectedExecutionException(String.format("The work stealing pool of %s is full (%d tasks) !", name, maxQueued));
+            }
+
+            final long submitted = System.nanoTime();
+            try {
+                pool.execute(() -> {
+                    final long start = System.nanoTime();
+                    pending.decrementAndGet();
+                    try {
+                        command.run();
+                    } finally {
+                        record(start - submitted, System.nanoTime() - start);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                pending.decrementAndGet();
+                rejected.increment();
+                throw e;
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            pool.shutdown();
+        }
+
+        @Nonnull
+        @Override
+        public List<Runnable> shutdownNow() {
+            pool.shutdownNow();
+            // The wrapped tasks can't be given back
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return pool.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return pool.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(final long timeout, @Nonnull final TimeUnit unit) throws InterruptedException {
+            return pool.awaitTermination(timeout, unit);
+        }
+    }
+
+    /**
+     * Immutable copy of the accounting of the pools of a module.
+     */
+    public static class Statistics {
+
+        private final String module;
+        private final int threads;
+        private final int queued;
+        private final long completed;
+        private final long rejected;
+        private final LatencyHistogram.Snapshot waitTimes;
+        private final LatencyHistogram.Snapshot runTimes;
+
+        private Statistics(@Nonnull final String module, final int threads, final int queued, final long completed,
+                           final long rejected, @Nonnull final LatencyHistogram.Snapshot waitTimes,
+                           @Nonnull final LatencyHistogram.Snapshot runTimes) {
+            this.module = module;
+            this.threads = threads;
+            this.queued = queued;
+            this.completed = completed;
+            this.rejected = rejected;
+            this.waitTimes = waitTimes;
+            this.runTimes = runTimes;
+        }
+
+        /**
+         * @return The name of the module.
+         */
+        @Nonnull
+        public String getModule() {
+            return module;
+        }
+
+        /**
+         * @return The current amount of threads of the pools.
+         */
+        public int getThreads() {
+            return threads;
+        }
+
+        /**
+         * @return The amount of tasks waiting to be executed, including the delayed ones.
+         */
+        public int getQueued() {
+            return queued;
+        }
+
+        /**
+         * @return The amount of executions, a periodic task counts once per execution.
+         */
+        public long getCompleted() {
+            return completed;
+        }
+
+        /**
+         * @return The amount of tasks rejected because a pool was full.
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * @return The time spent by the tasks between their due time and their start, in nanoseconds.
+         */
+        @Nonnull
+        public LatencyHistogram.Snapshot getWaitTimes() {
+            return waitTimes;
+        }
+
+        /**
+         * @return The time taken by the tasks to run, in nanoseconds.
+         */
+        @Nonnull
+        public LatencyHistogram.Snapshot getRunTimes() {
+            return runTimes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("ModuleExecutors[%s, threads=%d, queued=%d, completed=%d, rejected=%d]",
+                    module, threads, queued, completed, rejected);
+        }
+    }
+}
@@ -2,19 +2,34 @@ package com.jesus_crie.modularbot.core.module;
 
 import com.jesus_crie.modularbot.core.ModularBot;
 import com.jesus_crie.modularbot.core.ModularBotBuilder;
+import com.jesus_crie.modularbot.core.cache.CacheRequirements;
 import com.jesus_crie.modularbot.core.dependencyinjection.DependencyGraph;
 import com.jesus_crie.modularbot.core.dependencyinjection.DependencyInjector;
 import com.jesus_crie.modularbot.core.dependencyinjection.exception.DependencyInjectionException;
+import com.jesus_crie.modularbot.core.dependencyinjection.exception.InjectionFailedException;
+import com.jesus_crie.modularbot.core.stats.BootProfiler;
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.utils.cache.CacheFlag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
 
 /**
  * Handle the modules lifecycle for creation to destruction.
@@ -24,9 +39,22 @@ public class ModuleManager {
     private static final Logger LOG = LoggerFactory.getLogger("ModuleManager");
 
     private DependencyGraph dependencyGraph;
+    private DependencyInjector injector;
     private final ConcurrentHashMap<Class<? extends Module>, Module> modules = new ConcurrentHashMap<>();
     private boolean initialized = false;
 
+    // Used to bring the lazy modules up to date
+    private final Object lifecycleLock = new Object();
+    private volatile Phase phase = Phase.RESOLVED;
+    private ModularBotBuilder builder;
+    private ModularBot bot;
+
+    // Listeners registered by each module, used to detach them when a module is unloaded on its own
+    private final Map<Class<? extends Module>, List<TrackedListenerProvider>> listenerProviders = new ConcurrentHashMap<>();
+    private final Map<Class<? extends Module>, ModuleExecutors> executors = new ConcurrentHashMap<>();
+    private volatile boolean strictCache = false;
+    private volatile BootProfiler profiler = BootProfiler.DISABLED;
+
     @Nonnull
     public InjectionContext newContext() {
         if (initialized)
@@ -46,18 +74,546 @@ public class ModuleManager {
 
     /**
      * Query a module.
+     * If the module is {@link com.jesus_crie.modularbot.core.dependencyinjection.Lazy Lazy} and hasn't been built yet,
+     * it will be built and brought up to the current lifecycle state before being returned.
      *
      * @param clazz - The class of the module.
      * @param <T>   - The type of the module.
      * @return The module.
-     * @throws IllegalStateException If the module isn't loaded.
+     * @throws IllegalStateException If the module isn't loaded or if the lazy module failed to be built.
      */
     @SuppressWarnings("unchecked")
     @Nonnull
     public <T extends Module> T getModule(@Nonnull final Class<T> clazz) {
-        if (!modules.containsKey(clazz))
-            throw new IllegalStateException("This module has not been loaded !");
-        return (T) modules.get(clazz);
+        final Module module = modules.get(clazz);
+        if (module != null)
+            return (T) module;
+
+        return (T) loadLazyModule(clazz);
+    }
+
+    /**
+     * Check if a module is available, including the lazy modules that haven't been built yet.
+     *
+     * @param clazz - The class of the module.
+     * @return True if {@link #getModule(Class)} can return this module.
+     */
+    public boolean isModuleAvailable(@Nonnull final Class<? extends Module> clazz) {
+        if (modules.containsKey(clazz))
+            return true;
+
+        synchronized (lifecycleLock) {
+            return injector != null && injector.isDeferred(clazz);
+        }
+    }
+
+    /**
+     * Query the lazy modules that haven't been built yet.
+     *
+     * @return An unmodifiable list of the classes of the deferred modules.
+     */
+    @Nonnull
+    public List<Class<? extends Module>> getDeferredModules() {
+        synchronized (lifecycleLock) {
+            if (injector == null)
+                return Collections.emptyList();
+            return Collections.unmodifiableList(new ArrayList<>(injector.getDeferredModules()));
+        }
+    }
+
+    /**
+     * Query the cache flags declared with {@link com.jesus_crie.modularbot.core.cache.RequiresCache RequiresCache}
+     * by the modules, including the lazy modules that haven't been built yet.
+     *
+     * @return The union of the declared cache flags.
+     */
+    @Nonnull
+    public EnumSet<CacheFlag> getRequiredCacheFlags() {
+        final List<Class<? extends Module>> classes = new ArrayList<>(modules.keySet());
+        classes.addAll(getDeferredModules());
+        return CacheRequirements.getDeclaredFlags(classes);
+    }
+
+    /**
+     * In strict mode, a listener registered by a module that subscribes to events of a cache that the module hasn't
+     * declared throws an {@link IllegalStateException} when it is created for a shard.
+     *
+     * @param strictCache - Whether the cache declarations are enforced or not.
+     */
+    public void setStrictCache(final boolean strictCache) {
+        this.strictCache = strictCache;
+    }
+
+    /**
+     * Record the resolution and the lifecycle hooks of the modules in a profiler.
+     *
+     * @param profiler - The profiler.
+     */
+    public void setBootProfiler(@Nonnull final BootProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    @Nonnull
+    public BootProfiler getBootProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Get the thread pools of a module, they are created on demand and shut down when the module is unloaded.
+     * Prefer them over {@link ModularBot#getMainPool()} so the tasks of a module don't delay the other modules.
+     *
+     * @param clazz - The class of the module.
+     * @return The pools of this module.
+     * @throws IllegalStateException If the module isn't loaded.
+     */
+    @Nonnull
+    public ModuleExecutors getExecutors(@Nonnull final Class<? extends Module> clazz) {
+        if (!isModuleAvailable(clazz))
+            throw new IllegalStateException("The module " + clazz.getSimpleName() + " isn't loaded !");
+
+        return executors.computeIfAbsent(clazz, c -> new ModuleExecutors(c.getSimpleName()));
+    }
+
+    /**
+     * Take a snapshot of the accounting of the pools of every module that has some.
+     *
+     * @return The statistics of the pools by module class name.
+     */
+    @Nonnull
+    public Map<String, ModuleExecutors.Statistics> getExecutorStatistics() {
+        final Map<String, ModuleExecutors.Statistics> statistics = new HashMap<>();
+        executors.forEach((clazz, pools) -> statistics.put(clazz.getName(), pools.getStatistics()));
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    /**
+     * Find the module that has registered a listener, on a best effort basis.
+     * The listeners created by the listener providers of a module are always found, the others are matched against
+     * the class loaders, the inner classes and then the packages of the modules.
+     *
+     * @param listener - The listener.
+     * @return The class of the module that owns this listener, or {@code null} if none matches.
+     */
+    @Nullable
+    public Class<? extends Module> findOwner(@Nonnull final Object listener) {
+        for (final Map.Entry<Class<? extends Module>, List<TrackedListenerProvider>> entry : listenerProviders.entrySet()) {
+            for (final TrackedListenerProvider provider : entry.getValue()) {
+                if (provider.produced.containsValue(listener))
+                    return entry.getKey();
+            }
+        }
+
+        Class<? extends Module> bestMatch = null;
+        final String packageName = listener.getClass().getName();
+        for (final Class<? extends Module> clazz : modules.keySet()) {
+            if (isOwnedBy(listener, clazz))
+                return clazz;
+
+            // The module with the closest package
+            final String modulePackage = clazz.getName().substring(0, clazz.getName().lastIndexOf('.') + 1);
+            if (packageName.startsWith(modulePackage)
+                    && (bestMatch == null || modulePackage.length() > bestMatch.getName().lastIndexOf('.') + 1))
+                bestMatch = clazz;
+        }
+
+        return bestMatch;
+    }
+
+    /**
+     * Build a deferred lazy module and its deferred dependencies, make them catch up with the lifecycle and
+     * register them. Only one thread can build a lazy module at a time, the others will wait and then receive
+     * the instance that was built.
+     *
+     * @param clazz - The class of the lazy module.
+     * @return The built module.
+     * @throws IllegalStateException If the module isn't loaded or if it failed to be built.
+     */
+    @Nonnull
+    private Module loadLazyModule(@Nonnull final Class<? extends Module> clazz) {
+        synchronized (lifecycleLock) {
+            // Someone else might have built it while we were waiting
+            final Module existing = modules.get(clazz);
+            if (existing != null)
+                return existing;
+
+            if (injector == null || !injector.isDeferred(clazz) || phase == Phase.UNLOADED)
+                throw new IllegalStateException("This module has not been loaded !");
+
+            final long start = System.nanoTime();
+            final List<Module> built;
+            try {
+                built = injector.resolveDeferred(clazz);
+            } catch (InjectionFailedException e) {
+                throw new IllegalStateException("Failed to build the lazy module " + clazz.getSimpleName(), e);
+            }
+
+            for (final Module module : built) {
+                catchUp(module);
+                modules.put(module.getClass(), module);
+            }
+
+            LOG.info(String.format("Lazily loaded %s (%d modules) in %d ms", clazz.getSimpleName(), built.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+            return modules.get(clazz);
+        }
+    }
+
+    /**
+     * Trigger the lifecycle hooks that the given module has missed in order to bring it in the same state as the
+     * other modules.
+     *
+     * @param module - The freshly built module.
+     */
+    private void catchUp(@Nonnull final Module module) {
+        if (phase.compareTo(Phase.LOADED) >= 0)
+            load(module);
+
+        if (phase.compareTo(Phase.INITIALIZED) >= 0) {
+            module.onInitialization(this);
+            module.onPostInitialization();
+            module.state = Lifecycle.State.INITIALIZED;
+        }
+
+        if (phase.compareTo(Phase.SHARDS_PREPARED) >= 0)
+            module.onPrepareShards();
+
+        if (phase.compareTo(Phase.SHARDS_CREATED) >= 0)
+            module.onShardsCreated();
+
+        if (phase.compareTo(Phase.STARTED) >= 0) {
+            module.onShardsReady(bot);
+            module.state = Lifecycle.State.STARTED;
+        }
+    }
+
+    /**
+     * Trigger {@link Lifecycle#onLoad(ModuleManager, ModularBotBuilder)} on a module and keep track of the
+     * listeners that it registers in the builder.
+     *
+     * @param module - The module to load.
+     */
+    private void load(@Nonnull final Module module) {
+        final List<IntFunction<Object>> providers = builder.getListenerProviders();
+        final int listenerCount = providers.size();
+
+        profile(module, "onLoad", () -> module.onLoad(this, builder));
+        module.state = Lifecycle.State.LOADED;
+
+        final List<TrackedListenerProvider> owned = new ArrayList<>();
+        for (int i = listenerCount; i < providers.size(); i++) {
+            final TrackedListenerProvider tracked = new TrackedListenerProvider(module.getClass(), providers.get(i));
+            providers.set(i, tracked);
+            owned.add(tracked);
+        }
+
+        if (owned.isEmpty())
+            return;
+        listenerProviders.put(module.getClass(), owned);
+
+        // The listeners registered in the builder after the creation of the shards need to be forwarded
+        if (phase.compareTo(Phase.SHARDS_CREATED) >= 0) {
+            providers.removeAll(owned);
+            owned.forEach(bot::addEventListeners);
+        }
+    }
+
+    /**
+     * Unload a module along with every module that depends on it, while the bot stays online.
+     * The unloaded modules are notified like during a shutdown and the listeners that they have registered are
+     * detached from the shards.
+     *
+     * @param clazz - The class of the module to unload.
+     * @return The classes of the modules that have been unloaded, the dependents first.
+     * @throws IllegalStateException If the module isn't loaded.
+     */
+    @Nonnull
+    public List<Class<? extends Module>> unloadModule(@Nonnull final Class<? extends Module> clazz) {
+        synchronized (lifecycleLock) {
+            if (!modules.containsKey(clazz))
+                throw new IllegalStateException("This module has not been loaded !");
+
+            final List<Class<? extends Module>> unloaded = collectDependents(clazz);
+            for (final Class<? extends Module> target : unloaded) {
+                final Module module = modules.remove(target);
+                if (module == null)
+                    continue; // Lazy and never built
+
+                LOG.info("Unloading " + module + "...");
+                unloadInstance(module);
+                injector.evict(target);
+                dependencyGraph.remove(target);
+                closeClassLoaderIfUnused(target);
+            }
+
+            // Don't let the modules that late-inject them retain the old instances
+            refillLateDependents(unloaded, Collections.emptyList());
+            return unloaded;
+        }
+    }
+
+    /**
+     * Unload a module and every module that depends on it, and build them again without disconnecting the shards.
+     * The new instances are brought up to the current lifecycle state of the bot.
+     * <p>
+     * If a classpath is provided, the classes of the reloaded modules will be loaded from these locations in an
+     * isolated {@link ModuleClassLoader}, allowing to load a new version of their code. Note that the new classes
+     * are different from the old ones so they must be queried by their new class, other modules should interact
+     * with them through types that aren't reloaded.
+     * <p>
+     * The dependents annotated with {@link com.jesus_crie.modularbot.core.dependencyinjection.Lazy} that have never been built stay deferred and the modules that
+     * receive a reloaded module through a {@link com.jesus_crie.modularbot.core.dependencyinjection.LateInjectorTarget}
+     * are injected again with the new instance.
+     *
+     * @param clazz     - The class of the module to reload.
+     * @param classpath - (Optional) The locations of the new classes of the modules.
+     * @return The new instances of the modules, in construction order.
+     * @throws IllegalStateException If the module isn't loaded or if the new modules can't be built.
+     */
+    @Nonnull
+    public List<Module> reloadModule(@Nonnull final Class<? extends Module> clazz, @Nullable final URL... classpath) {
+        synchronized (lifecycleLock) {
+            final long start = System.nanoTime();
+
+            // Keep the settings before the injector forgets about them
+            final Map<String, ModuleSettingsProvider> previousSettings = new HashMap<>();
+            for (final Class<? extends Module> target : collectDependents(clazz)) {
+                final ModuleSettingsProvider settings = injector.getSettings(target);
+                if (settings != null)
+                    previousSettings.put(target.getName(), settings);
+            }
+
+            // The lazy modules that have never been built aren't needed yet
+            final List<Class<? extends Module>> deferred = collectDependents(clazz).stream()
+                    .filter(injector::isDeferred)
+                    .collect(Collectors.toList());
+
+            final List<Class<? extends Module>> unloaded = unloadModule(clazz);
+
+            // Load the new classes, the dependencies first
+            final ClassLoader loader = classpath == null || classpath.length == 0
+                    ? null
+                    : new ModuleClassLoader(classpath, ModuleManager.class.getClassLoader());
+            final List<Class<? extends Module>> requests = new ArrayList<>();
+            try {
+                for (int i = unloaded.size() - 1; i >= 0; i--) {
+                    final Class<? extends Module> old = unloaded.get(i);
+                    final Class<? extends Module> request = loader == null
+                            ? old
+                            : loader.loadClass(old.getName()).asSubclass(Module.class);
+
+                    if (!deferred.contains(old))
+                        requests.add(request);
+                    else if (request != old)
+                        injector.replaceDeferred(old, request);
+                }
+            } catch (ClassNotFoundException | ClassCastException e) {
+                throw new IllegalStateException("Failed to load the new classes of " + clazz.getSimpleName(), e);
+            }
+
+            // Build them with the remaining modules
+            final DependencyInjector reloadInjector = new DependencyInjector();
+            reloadInjector.supplyBuiltModules(modules.values().toArray(new Module[0]));
+            for (final Class<? extends Module> request : requests) {
+                final ModuleSettingsProvider settings = previousSettings.get(request.getName());
+                if (settings != null)
+                    reloadInjector.supplySettings(request, settings.copy());
+            }
+
+            final List<Module> built = new ArrayList<>();
+            try {
+                final Collection<Module> all = reloadInjector.resolve(requests);
+                for (final Class<? extends Module> request : requests) {
+                    if (reloadInjector.isDeferred(request))
+                        built.addAll(reloadInjector.resolveDeferred(request));
+                }
+
+                for (final Class<? extends Module> request : requests) {
+                    all.stream()
+                            .filter(module -> module.getClass() == request)
+                            .findAny()
+                            .filter(module -> !built.contains(module))
+                            .ifPresent(built::add);
+                }
+            } catch (DependencyInjectionException e) {
+                throw new IllegalStateException("Failed to reload " + clazz.getSimpleName(), e);
+            }
+
+            // Catch up with the lifecycle
+            for (final Module module : built) {
+                catchUp(module);
+                modules.put(module.getClass(), module);
+                injector.supplyBuiltModules(module);
+            }
+            dependencyGraph.merge(reloadInjector.getDependencyGraph());
+            refillLateDependents(unloaded, built);
+
+            LOG.info(String.format("Reloaded %s (%d modules) in %d ms", clazz.getSimpleName(), built.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+            return built;
+        }
+    }
+
+    /**
+     * Fill again the late injections of the loaded modules that late-inject any of the given modules.
+     *
+     * @param targets - The modules that have been unloaded or rebuilt.
+     * @param ignored - The modules that don't need to be injected again.
+     */
+    private void refillLateDependents(@Nonnull final Collection<Class<? extends Module>> targets,
+                                      @Nonnull final Collection<Module> ignored) {
+        for (final Module module : modules.values()) {
+            if (ignored.contains(module)
+                    || DependencyInjector.getLateDependencies(module.getClass()).stream().noneMatch(targets::contains))
+                continue;
+
+            try {
+                injector.refillLateInjections(module);
+            } catch (InjectionFailedException e) {
+                LOG.warn("Failed to update the late injections of " + module, e);
+            }
+        }
+    }
+
+    /**
+     * Collect a module and the modules that depend on it, directly or not, in an order that ensures that a module
+     * is always after the modules that depend on it.
+     *
+     * @param clazz - The module.
+     * @return The module and its dependents, the dependents first.
+     */
+    @Nonnull
+    private List<Class<? extends Module>> collectDependents(@Nonnull final Class<? extends Module> clazz) {
+        final List<Class<? extends Module>> order = new ArrayList<>();
+        collectDependents(clazz, order);
+        return order;
+    }
+
+    private void collectDependents(@Nonnull final Class<? extends Module> clazz, @Nonnull final List<Class<? extends Module>> order) {
+        if (order.contains(clazz))
+            return;
+
+        for (final Class<? extends Module> parent : dependencyGraph.asView().getParents(clazz)) {
+            collectDependents(parent, order);
+        }
+        order.add(clazz);
+    }
+
+    /**
+     * Notify a single module that it is being unloaded and detach its listeners.
+     *
+     * @param module - The module to unload.
+     */
+    private void unloadInstance(@Nonnull final Module module) {
+        if (module.state == Lifecycle.State.STARTED) {
+            module.onShutdownShards();
+            module.state = Lifecycle.State.OFFLINE;
+        }
+
+        module.onUnload();
+        module.state = Lifecycle.State.STOPPED;
+
+        detachListeners(module.getClass());
+        shutdownExecutors(module.getClass());
+    }
+
+    /**
+     * Shut down the pools of a module, if it has some.
+     *
+     * @param clazz - The class of the module.
+     */
+    private void shutdownExecutors(@Nonnull final Class<? extends Module> clazz) {
+        final ModuleExecutors pools = executors.remove(clazz);
+        if (pools != null)
+            pools.shutdown();
+    }
+
+    /**
+     * Remove from the shards the listeners that have been registered by a module, either through the builder or
+     * directly on the shards.
+     *
+     * @param clazz - The class of the module.
+     */
+    private void detachListeners(@Nonnull final Class<? extends Module> clazz) {
+        final List<TrackedListenerProvider> owned = listenerProviders.remove(clazz);
+        if (owned != null) {
+            builder.getListenerProviders().removeAll(owned);
+
+            if (bot != null && phase.compareTo(Phase.SHARDS_CREATED) >= 0) {
+                for (final TrackedListenerProvider provider : owned) {
+                    provider.produced.forEach((shardId, listener) -> {
+                        final JDA shard = bot.getShardById(shardId);
+                        if (shard != null)
+                            shard.removeEventListener(listener);
+                    });
+                }
+            }
+        }
+
+        if (bot == null || phase.compareTo(Phase.SHARDS_CREATED) < 0)
+            return;
+
+        for (final JDA shard : bot.getShards()) {
+            final Object[] leftovers = shard.getRegisteredListeners().stream()
+                    .filter(listener -> isOwnedBy(listener, clazz))
+                    .toArray();
+
+            if (leftovers.length > 0)
+                shard.removeEventListener(leftovers);
+        }
+    }
+
+    /**
+     * Check if a listener comes from a module, that is if it is defined by the isolated class loader of the module
+     * or if it is the module itself or one of its inner classes or lambdas.
+     *
+     * @param listener - The listener.
+     * @param clazz    - The class of the module.
+     * @return True if the listener belongs to the module.
+     */
+    private static boolean isOwnedBy(@Nonnull final Object listener, @Nonnull final Class<? extends Module> clazz) {
+        final Class<?> listenerClass = listener.getClass();
+
+        if (clazz.getClassLoader() instanceof ModuleClassLoader)
+            return listenerClass.getClassLoader() == clazz.getClassLoader();
+
+        return listenerClass == clazz || listenerClass.getName().startsWith(clazz.getName() + "$");
+    }
+
+    /**
+     * Close the isolated class loader of an unloaded module if no other module is using it anymore.
+     *
+     * @param clazz - The class of the unloaded module.
+     */
+    private void closeClassLoaderIfUnused(@Nonnull final Class<? extends Module> clazz) {
+        if (!(clazz.getClassLoader() instanceof ModuleClassLoader))
+            return;
+
+        final ModuleClassLoader loader = (ModuleClassLoader) clazz.getClassLoader();
+        if (modules.keySet().stream().anyMatch(other -> other.getClassLoader() == loader))
+            return;
+
+        try {
+            loader.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close the class loader of " + clazz.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Move the manager to the next phase and take a snapshot of the modules that needs to be notified.
+     * A lazy module built after that will be brought directly to the new phase, so every module will be notified
+     * exactly once.
+     * The hooks are dispatched on the snapshot outside of the lock, in parallel like {@link #dispatch(Consumer)}.
+     *
+     * @param next - The new phase.
+     * @return The modules to notify.
+     */
+    @Nonnull
+    private ConcurrentHashMap<Class<? extends Module>, Module> advance(@Nonnull final Phase next) {
+        synchronized (lifecycleLock) {
+            phase = next;
+            return new ConcurrentHashMap<>(modules);
+        }
     }
 
     /**
@@ -67,27 +623,76 @@ public class ModuleManager {
      * @see Lifecycle#onLoad(ModuleManager, ModularBotBuilder)
      */
     public void loadModules(@Nonnull final ModularBotBuilder builder) {
-        modules.forEachValue(20, module -> {
-            module.onLoad(this, builder);
-            module.state = Lifecycle.State.LOADED;
-        });
+        this.builder = builder;
+        try (final BootProfiler.Span ignored = profiler.start("phase", "loadModules")) {
+            // Sequential, the listeners of each module are told apart by their position in the builder
+            advance(Phase.LOADED).values().forEach(this::load);
+        }
     }
 
     /**
      * Initialize the module manager and the modules.
      * After that, no context can be created.
      *
+     * @param bot - The bot that is being constructed.
      * @see Lifecycle#onInitialization(ModuleManager)
      * @see Lifecycle#onPostInitialization()
      */
-    public void initialize() {
-        modules.forEachValue(20, module -> module.onInitialization(this));
-        initialized = true;
+    public void initialize(@Nonnull final ModularBot bot) {
+        this.bot = bot;
+        try (final BootProfiler.Span ignored = profiler.start("phase", "initialize")) {
+            final ConcurrentHashMap<Class<? extends Module>, Module> snapshot = advance(Phase.INITIALIZED);
 
-        modules.forEachValue(20, module -> {
-            module.onPostInitialization();
-            module.state = Lifecycle.State.INITIALIZED;
-        });
+            snapshot.forEachValue(20, module -> profile(module, "onInitialization", () -> module.onInitialization(this)));
+            initialized = true;
+
+            snapshot.forEachValue(20, module -> {
+                profile(module, "onPostInitialization", module::onPostInitialization);
+                module.state = Lifecycle.State.INITIALIZED;
+            });
+        }
+    }
+
+    /**
+     * Notify the modules that the shards are about to be created.
+     *
+     * @see Lifecycle#onPrepareShards()
+     */
+    public void prepareShards() {
+        try (final BootProfiler.Span ignored = profiler.start("phase", "prepareShards")) {
+            advance(Phase.SHARDS_PREPARED).forEachValue(20, module -> profile(module, "onPrepareShards", module::onPrepareShards));
+        }
+    }
+
+    /**
+     * Notify the modules that the shards have been created.
+     *
+     * @see Lifecycle#onShardsCreated()
+     */
+    public void shardsCreated() {
+        try (final BootProfiler.Span ignored = profiler.start("phase", "shardsCreated")) {
+            advance(Phase.SHARDS_CREATED).forEachValue(20, module -> profile(module, "onShardsCreated", module::onShardsCreated));
+        }
+    }
+
+    /**
+     * Collect the warm-up workloads of the modules and run them.
+     *
+     * @param warmUp - The warm-up.
+     * @return The results of the workloads.
+     * @see Lifecycle#onWarmUp(WarmUp)
+     */
+    @Nonnull
+    public List<WarmUp.Result> warmUp(@Nonnull final WarmUp warmUp) {
+        try (final BootProfiler.Span ignored = profiler.start("phase", "warmUp")) {
+            final ConcurrentHashMap<Class<? extends Module>, Module> snapshot;
+            synchronized (lifecycleLock) {
+                snapshot = new ConcurrentHashMap<>(modules);
+            }
+
+            snapshot.forEachValue(20, module -> profile(module, "onWarmUp", () -> module.onWarmUp(warmUp)));
+            return warmUp.run();
+        }
     }
 
     /**
@@ -97,19 +702,80 @@ public class ModuleManager {
      * @see Lifecycle#onShardsReady(ModularBot)
      */
     public void finalizeInitialization(@Nonnull final ModularBot bot) {
-        modules.forEachValue(20, module -> {
-            module.onShardsReady(bot);
-            module.state = Lifecycle.State.STARTED;
-        });
+        this.bot = bot;
+        try (final BootProfiler.Span ignored = profiler.start("phase", "finalizeInitialization")) {
+            advance(Phase.STARTED).forEachValue(20, module -> {
+                profile(module, "onShardsReady", () -> module.onShardsReady(bot));
+                module.state = Lifecycle.State.STARTED;
+            });
+        }
+    }
+
+    /**
+     * Run a lifecycle hook of a module in a span of the profiler.
+     *
+     * @param module - The module.
+     * @param hook   - The name of the hook.
+     * @param action - The call to the hook.
+     */
+    private void profile(@Nonnull final Module module, @Nonnull final String hook, @Nonnull final Runnable action) {
+        try (final BootProfiler.Span ignored = profiler.start("lifecycle", module.getClass().getSimpleName() + "#" + hook)) {
+            action.run();
+        }
+    }
+
+    /**
+     * Notify the started modules that a shard has been started while the bot is online.
+     *
+     * @param shard - The new shard.
+     * @see Lifecycle#onShardStarted(ModularBot, JDA)
+     */
+    public void shardStarted(@Nonnull final JDA shard) {
+        forEachStarted(module -> module.onShardStarted(bot, shard));
+    }
+
+    /**
+     * Notify the started modules that a shard will be stopped while the bot stays online.
+     *
+     * @param shard - The shard.
+     * @see Lifecycle#onShardStopped(ModularBot, JDA)
+     */
+    public void shardStopped(@Nonnull final JDA shard) {
+        forEachStarted(module -> module.onShardStopped(bot, shard));
+    }
+
+    /**
+     * Notify the started modules that the new shards of a reshard are ready.
+     *
+     * @param previousTotal - The previous amount of shards.
+     * @param newTotal      - The new amount of shards.
+     * @see Lifecycle#onReshard(ModularBot, int, int)
+     */
+    public void reshard(final int previousTotal, final int newTotal) {
+        forEachStarted(module -> module.onReshard(bot, previousTotal, newTotal));
+    }
+
+    private void forEachStarted(@Nonnull final Consumer<Module> action) {
+        for (final Module module : modules.values()) {
+            if (module.state != Lifecycle.State.STARTED)
+                continue;
+
+            try {
+                action.accept(module);
+            } catch (RuntimeException e) {
+                LOG.error("The module " + module.getClass().getName() + " has failed to handle a shard change", e);
+            }
+        }
     }
 
     /**
      * Notify the modules just before the bot goes offline.
+     * The lazy modules that haven't been built yet won't be built anymore.
      *
      * @see Lifecycle#onShutdownShards()
      */
     public void preUnload() {
-        modules.forEachValue(20, module -> {
+        advance(Phase.UNLOADED).forEachValue(20, module -> {
             module.onShutdownShards();
             module.state = Lifecycle.State.OFFLINE;
         });
@@ -121,9 +787,10 @@ public class ModuleManager {
      * @see Lifecycle#onUnload()
      */
     public void unload() {
-        modules.forEachValue(20, module -> {
+        advance(Phase.UNLOADED).forEachValue(20, module -> {
             module.onUnload();
             module.state = Lifecycle.State.STOPPED;
+            shutdownExecutors(module.getClass());
         });
 
         // Clear the map to allow the GC to collect them
@@ -137,8 +804,17 @@ public class ModuleManager {
      * allowing you to create new contexts.
      */
     public void reset() {
-        modules.clear();
-        initialized = false;
+        synchronized (lifecycleLock) {
+            modules.clear();
+            listenerProviders.clear();
+            executors.values().forEach(ModuleExecutors::shutdown);
+            executors.clear();
+            injector = null;
+            builder = null;
+            bot = null;
+            phase = Phase.RESOLVED;
+            initialized = false;
+        }
     }
 
     /**
@@ -236,12 +912,58 @@ public class ModuleManager {
          * @throws RuntimeException             If any module throws an error during its construction.
          */
         public void resolve() throws DependencyInjectionException {
-            final Collection<Module> ms = injector.resolve(requests);
-            modules.clear();
-            ms.forEach(module -> modules.put(module.getClass(), module));
+            final Collection<Module> ms;
+            try (final BootProfiler.Span ignored = profiler.start("phase", "resolveModules")) {
+                injector.setBootProfiler(profiler);
+                ms = injector.resolve(requests);
+            }
+
+            synchronized (lifecycleLock) {
+                modules.clear();
+                ms.forEach(module -> modules.put(module.getClass(), module));
+
+                ModuleManager.this.injector = injector;
+                dependencyGraph = injector.getDependencyGraph();
+                resolved = true;
+            }
+        }
+    }
+
+    /**
+     * Wrapper around a listener provider registered by a module that remembers the listeners it has created.
+     */
+    private final class TrackedListenerProvider implements IntFunction<Object> {
 
-            dependencyGraph = injector.getDependencyGraph();
-            resolved = true;
+        private final Class<? extends Module> owner;
+        private final IntFunction<Object> provider;
+        private final Map<Integer, Object> produced = new ConcurrentHashMap<>();
+
+        private TrackedListenerProvider(@Nonnull final Class<? extends Module> owner, @Nonnull final IntFunction<Object> provider) {
+            this.owner = owner;
+            this.provider = provider;
+        }
+
+        @Override
+        public Object apply(final int shardId) {
+            final Object listener = provider.apply(shardId);
+            if (strictCache)
+                CacheRequirements.checkListener(owner, listener);
+
+            produced.put(shardId, listener);
+            return listener;
         }
     }
+
+    /**
+     * The last lifecycle step reached by the manager, used to know which hooks a lazy module has missed.
+     */
+    private enum Phase {
+        RESOLVED,
+        LOADED,
+        INITIALIZED,
+        SHARDS_PREPARED,
+        SHARDS_CREATED,
+        STARTED,
+        UNLOADED
+    }
 }
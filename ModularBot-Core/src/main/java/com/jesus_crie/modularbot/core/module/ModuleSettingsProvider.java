@@ -45,6 +45,16 @@ public final class ModuleSettingsProvider {
         return get(top++);
     }
 
+    /**
+     * Create a fresh copy of these settings, as if no setting had been popped.
+     *
+     * @return A new settings bag with the same settings.
+     */
+    @Nonnull
+    public ModuleSettingsProvider copy() {
+        return new ModuleSettingsProvider(settings.toArray());
+    }
+
     @Nullable
     @SuppressWarnings("unchecked")
     public Object get(final int index) {
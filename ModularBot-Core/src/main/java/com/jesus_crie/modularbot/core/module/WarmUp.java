@@ -0,0 +1,175 @@
+package com.jesus_crie.modularbot.core.module;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The workloads registered by the modules in {@link Lifecycle#onWarmUp(WarmUp)}, run before the bot reports ready
+ * so the hot paths are already compiled by the JIT when the real traffic arrives.
+ * <p>
+ * Each workload is run for the given amount of iterations or until its share of the time budget is exhausted. The
+ * average latency of the first iterations is compared to the one of the last iterations.
+ *
+ * @see com.jesus_crie.modularbot.core.ModularBotBuilder#enableWarmUp(int, long)
+ */
+public class WarmUp {
+
+    private static final Logger LOG = LoggerFactory.getLogger("WarmUp");
+
+    private final int iterations;
+    private final long timeBudget;
+    private final Map<String, Runnable> workloads = new LinkedHashMap<>();
+
+    /**
+     * @param iterations - The maximum amount of iterations of each workload.
+     * @param timeBudget - The maximum time spent to run all of the workloads, in milliseconds.
+     */
+    public WarmUp(final int iterations, final long timeBudget) {
+        this.iterations = iterations;
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * Register a workload. It should exercise the hot paths without side effects, a workload that throws counts as a
+     * failed iteration.
+     *
+     * @param name     - The name of the workload, a workload with the same name is replaced.
+     * @param workload - The workload, run once per iteration.
+     */
+    public synchronized void register(@Nonnull final String name, @Nonnull final Runnable workload) {
+        workloads.put(name, workload);
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * Run every registered workload, one after the other.
+     *
+     * @return The result of each workload.
+     */
+    @Nonnull
+    public synchronized List<Result> run() {
+        if (workloads.isEmpty())
+            return Collections.emptyList();
+
+        final long budget = TimeUnit.MILLISECONDS.toNanos(timeBudget) / workloads.size();
+        final List<Result> results = new ArrayList<>();
+        for (final Map.Entry<String, Runnable> workload : workloads.entrySet()) {
+            final Result result = run(workload.getKey(), workload.getValue(), budget);
+            results.add(result);
+            LOG.info(result.toString());
+        }
+
+        return results;
+    }
+
+    @Nonnull
+    private Result run(@Nonnull final String name, @Nonnull final Runnable workload, final long budget) {
+        final long[] latencies = new long[iterations];
+        final long deadline = System.nanoTime() + budget;
+        int done = 0;
+        int failures = 0;
+        RuntimeException firstFailure = null;
+
+        while (done < iterations && System.nanoTime() < deadline) {
+            final long start = System.nanoTime();
+            try {
+                workload.run();
+            } catch (RuntimeException e) {
+                if (firstFailure == null)
+                    firstFailure = e;
+                failures++;
+            }
+            latencies[done++] = System.nanoTime() - start;
+        }
+
+        if (firstFailure != null)
+            LOG.debug("First failure of the warm-up workload " + name, firstFailure);
+
+        // Compare the first and the last tenth, with at most 100 iterations each
+        final int window = Math.max(1, Math.min(100, done / 10));
+        return new Result(name, done, failures, average(latencies, 0, Math.min(window, done)),
+                average(latencies, Math.max(0, done - window), done));
+    }
+
+    private static long average(@Nonnull final long[] values, final int from, final int to) {
+        if (to <= from)
+            return 0;
+
+        long sum = 0;
+        for (int i = from; i < to; i++)
+            sum += values[i];
+        return sum / (to - from);
+    }
+
+    /**
+     * The outcome of a workload, with its latencies in nanoseconds.
+     */
+    public static final class Result {
+
+        private final String name;
+        private final int iterations;
+        private final int failures;
+        private final long coldLatency;
+        private final long warmLatency;
+
+        private Result(@Nonnull final String name, final int iterations, final int failures, final long coldLatency,
+                       final long warmLatency) {
+            this.name = name;
+            this.iterations = iterations;
+            this.failures = failures;
+            this.coldLatency = coldLatency;
+            this.warmLatency = warmLatency;
+        }
+
+        @Nonnull
+        public String getName() {
+            return name;
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        /**
+         * @return The amount of iterations that have thrown an exception.
+         */
+        public int getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return The average latency of the first iterations.
+         */
+        public long getColdLatency() {
+            return coldLatency;
+        }
+
+        /**
+         * @return The average latency of the last iterations.
+         */
+        public long getWarmLatency() {
+            return warmLatency;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Warmed up %s with %d iterations (%d failed): %.1fus before, %.1fus after",
+                    name, iterations, failures, coldLatency / 1e3, warmLatency / 1e3);
+        }
+    }
+}
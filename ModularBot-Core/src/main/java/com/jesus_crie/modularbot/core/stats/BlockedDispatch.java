@@ -0,0 +1,113 @@
+package com.jesus_crie.modularbot.core.stats;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Report of a listener that has held an event thread for longer than the threshold of the {@link DispatchWatchdog}.
+ */
+public class BlockedDispatch {
+
+    private final int shardId;
+    private final String threadName;
+    private final String listener;
+    private final String owner;
+    private final String eventClass;
+    private final long startTime;
+    private final StackTraceElement[] stackTrace;
+    private volatile long duration;
+    private volatile boolean completed = false;
+
+    BlockedDispatch(final int shardId, @Nonnull final String threadName, @Nonnull final String listener,
+                    @Nullable final String owner, @Nonnull final String eventClass, final long startTime,
+                    final long duration, @Nullable final StackTraceElement[] stackTrace) {
+        this.shardId = shardId;
+        this.threadName = threadName;
+        this.listener = listener;
+        this.owner = owner;
+        this.eventClass = eventClass;
+        this.startTime = startTime;
+        this.duration = duration;
+        this.stackTrace = stackTrace;
+    }
+
+    void complete(final long nanos) {
+        duration = TimeUnit.NANOSECONDS.toMillis(nanos);
+        completed = true;
+    }
+
+    /**
+     * @return The id of the shard of the event.
+     */
+    public int getShardId() {
+        return shardId;
+    }
+
+    /**
+     * @return The name of the blocked thread.
+     */
+    @Nonnull
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * @return The class name of the listener.
+     */
+    @Nonnull
+    public String getListener() {
+        return listener;
+    }
+
+    /**
+     * @return The class name of the module that has registered the listener, if it could be found.
+     */
+    @Nullable
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * @return The class name of the event being dispatched.
+     */
+    @Nonnull
+    public String getEventClass() {
+        return eventClass;
+    }
+
+    /**
+     * @return The time at which the listener has been called, in epoch milliseconds.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return The time spent in the listener in milliseconds, so far if it hasn't returned yet.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return True if the listener has returned.
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return The stack of the thread when it was detected, or {@code null} if it wasn't sampled.
+     */
+    @Nullable
+    public StackTraceElement[] getStackTrace() {
+        return stackTrace;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BlockedDispatch[shard=%d, thread=%s, listener=%s, owner=%s, event=%s, duration=%dms%s]",
+                shardId, threadName, listener, owner, eventClass, duration, completed ? "" : ", running");
+    }
+}
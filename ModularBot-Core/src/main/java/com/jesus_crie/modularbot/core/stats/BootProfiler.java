@@ -0,0 +1,304 @@
+package com.jesus_crie.modularbot.core.stats;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Record a timeline of the startup of the bot: the phases, the construction and the lifecycle hooks of each module
+ * and the connection of each shard. Each span records its wall time and, when the JVM supports it, the CPU time and
+ * the bytes allocated by its thread.
+ * <p>
+ * When the bot is ready, the timeline is written as a Chrome trace (open it in {@code chrome://tracing} or Perfetto)
+ * and a summary of the slowest spans is logged.
+ *
+ * @see com.jesus_crie.modularbot.core.ModularBotBuilder#enableBootProfiler(Path)
+ */
+public class BootProfiler {
+
+    private static final Logger LOG = LoggerFactory.getLogger("BootProfiler");
+
+    /**
+     * A profiler that records nothing, used when the profiling is disabled.
+     */
+    public static final BootProfiler DISABLED = new BootProfiler(null, false);
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final Span NO_SPAN = new Span(null, "", "", 0, 0, "");
+
+    private final Path output;
+    private final boolean enabled;
+    private final long originNanos = System.nanoTime();
+    private final long originMillis = System.currentTimeMillis();
+    private final ConcurrentLinkedQueue<Span> spans = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+
+    /**
+     * @param output - (Optional) The file where the trace will be written, or {@code null} to only log the summary.
+     */
+    public BootProfiler(@Nullable final Path output) {
+        this(output, true);
+    }
+
+    private BootProfiler(@Nullable final Path output, final boolean enabled) {
+        this.output = output;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled && !finished.get();
+    }
+
+    /**
+     * Start a span on the current thread, it ends when it is closed.
+     * <pre>{@code
+     * try (final BootProfiler.Span span = profiler.start("phase", "login")) {
+     *     ...
+     * }
+     * }</pre>
+     *
+     * @param category - The category of the span, like "phase" or "module".
+     * @param name     - The name of the span.
+     * @return The started span.
+     */
+    @Nonnull
+    public Span start(@Nonnull final String category, @Nonnull final String name) {
+        if (!isEnabled())
+            return NO_SPAN;
+
+        final Thread thread = Thread.currentThread();
+        return new Span(this, category, name, thread.getId(), System.nanoTime() - originNanos, thread.getName());
+    }
+
+    /**
+     * Record a span measured elsewhere, like the connection of a shard.
+     *
+     * @param category    - The category of the span.
+     * @param name        - The name of the span.
+     * @param track       - The id of the track where the span is displayed.
+     * @param trackName   - The name of this track.
+     * @param startMillis - The start of the span in epoch milliseconds.
+     * @param endMillis   - The end of the span in epoch milliseconds.
+     */
+    public void record(@Nonnull final String category, @Nonnull final String name, final long track,
+                       @Nonnull final String trackName, final long startMillis, final long endMillis) {
+        if (!isEnabled() || startMillis <= 0 || endMillis < startMillis)
+            return;
+
+        final Span span = new Span(this, category, name, track,
+                TimeUnit.MILLISECONDS.toNanos(startMillis - originMillis), trackName);
+        span.wall = TimeUnit.MILLISECONDS.toNanos(endMillis - startMillis);
+        span.cpu = -1;
+        span.allocated = -1;
+        spans.add(span);
+    }
+
+    /**
+     * @return The spans recorded so far, in the order of their end.
+     */
+    @Nonnull
+    public List<Span> getSpans() {
+        return new ArrayList<>(spans);
+    }
+
+    /**
+     * Stop recording, write the trace if an output has been provided and log the summary.
+     * Only the first call has an effect.
+     */
+    public void finish() {
+        if (!enabled || !finished.compareAndSet(false, true))
+            return;
+
+        final long total = System.nanoTime() - originNanos;
+        final Span boot = new Span(this, "phase", "boot", 0, 0, "boot");
+        boot.wall = total;
+        boot.cpu = -1;
+        boot.allocated = -1;
+        spans.add(boot);
+
+        if (output != null) {
+            try {
+                writeChromeTrace(output);
+                LOG.info("Boot trace written to " + output.toAbsolutePath());
+            } catch (IOException e) {
+                LOG.warn("Failed to write the boot trace", e);
+            }
+        }
+
+        LOG.info(String.format("Booted in %d ms, slowest items:%n%s", TimeUnit.NANOSECONDS.toMillis(total), getSummary(15)));
+    }
+
+    /**
+     * Write the spans in the Chrome trace event format.
+     *
+     * @param file - The destination file.
+     * @throws IOException If the file can't be written.
+     */
+    public void writeChromeTrace(@Nonnull final Path file) throws IOException {
+        final Map<Long, String> tracks = new LinkedHashMap<>();
+        try (final BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+
+            boolean first = true;
+            for (final Span span : spans) {
+                tracks.putIfAbsent(span.track, span.trackName);
+
+                if (!first)
+                    writer.write(',');
+                first = false;
+
+                writer.write(String.format("%n{\"name\":\"%s\",\"cat\":\"%s\",\"ph\":\"X\",\"pid\":1,\"tid\":%d,\"ts\":%d,\"dur\":%d,\"args\":{",
+                        escape(span.name), escape(span.category), span.track,
+                        TimeUnit.NANOSECONDS.toMicros(span.start), TimeUnit.NANOSECONDS.toMicros(span.wall)));
+                if (span.cpu >= 0)
+                    writer.write(String.format("\"cpuMs\":%.3f,\"allocatedBytes\":%d", span.cpu / 1e6, span.allocated));
+                writer.write("}}");
+            }
+
+            for (final Map.Entry<Long, String> track : tracks.entrySet()) {
+                writer.write(String.format(",%n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":%d,\"args\":{\"name\":\"%s\"}}",
+                        track.getKey(), escape(track.getValue())));
+            }
+
+            writer.write(String.format("%n]}%n"));
+        }
+    }
+
+    /**
+     * @param limit - The maximum amount of spans to list.
+     * @return A table of the slowest spans, the slowest first.
+     */
+    @Nonnull
+    public String getSummary(final int limit) {
+        final StringBuilder builder = new StringBuilder();
+        spans.stream()
+                .filter(span -> !span.name.equals("boot"))
+                .sorted(Comparator.comparingLong(Span::getWallTime).reversed())
+                .limit(limit)
+                .forEach(span -> builder.append(String.format("%9.1f ms | cpu %9s | alloc %10s | [%s] %s%n",
+                        span.wall / 1e6,
+                        span.cpu < 0 ? "-" : String.format("%.1f ms", span.cpu / 1e6),
+                        span.allocated < 0 ? "-" : (span.allocated / 1024) + " KB",
+                        span.category, span.name)));
+        return builder.toString();
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return -1;
+    }
+
+    @Nonnull
+    private static String escape(@Nonnull final String value) {
+        final StringBuilder builder = new StringBuilder(value.length());
+        for (final char c : value.toCharArray()) {
+            if (c == '"' || c == '\\')
+                builder.append('\\').append(c);
+            else if (c < 0x20)
+                builder.append(String.format("\\u%04x", (int) c));
+            else
+                builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * A span of the timeline, with its times in nanoseconds.
+     */
+    public static final class Span implements AutoCloseable {
+
+        private final BootProfiler profiler;
+        private final String category;
+        private final String name;
+        private final long track;
+        private final String trackName;
+        private final long start;
+        private final long startCpu;
+        private final long startAllocated;
+        private long wall = 0;
+        private long cpu = -1;
+        private long allocated = -1;
+
+        private Span(@Nullable final BootProfiler profiler, @Nonnull final String category, @Nonnull final String name,
+                     final long track, final long start, @Nonnull final String trackName) {
+            this.profiler = profiler;
+            this.category = category;
+            this.name = name;
+            this.track = track;
+            this.trackName = trackName;
+            this.start = start;
+            startCpu = profiler == null ? -1 : cpuTime();
+            startAllocated = profiler == null ? -1 : allocatedBytes();
+        }
+
+        @Override
+        public void close() {
+            if (profiler == null || wall != 0)
+                return;
+
+            wall = Math.max(1, System.nanoTime() - profiler.originNanos - start);
+            final long endCpu = cpuTime();
+            cpu = startCpu < 0 || endCpu < 0 ? -1 : endCpu - startCpu;
+            final long endAllocated = allocatedBytes();
+            allocated = startAllocated < 0 || endAllocated < 0 ? -1 : endAllocated - startAllocated;
+            profiler.spans.add(this);
+        }
+
+        @Nonnull
+        public String getCategory() {
+            return category;
+        }
+
+        @Nonnull
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The start of the span relative to the creation of the profiler.
+         */
+        public long getStart() {
+            return start;
+        }
+
+        public long getWallTime() {
+            return wall;
+        }
+
+        /**
+         * @return The CPU time used by the thread during the span, or -1 if unknown.
+         */
+        public long getCpuTime() {
+            return cpu;
+        }
+
+        /**
+         * @return The bytes allocated by the thread during the span, or -1 if unknown.
+         */
+        public long getAllocatedBytes() {
+            return allocated;
+        }
+    }
+}
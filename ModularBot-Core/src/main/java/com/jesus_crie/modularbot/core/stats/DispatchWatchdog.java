@@ -0,0 +1,321 @@
+package com.jesus_crie.modularbot.core.stats;
+
+import com.jesus_crie.modularbot.core.utils.ModularThreadFactory;
+import net.dv8tion.jda.core.events.Event;
+import net.dv8tion.jda.core.hooks.EventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Detects the listeners that hold an event thread for too long, typically by calling {@code RestAction#complete()}.
+ * <p>
+ * Each dispatching thread publishes the listener it is calling and since when in its own {@link Slot}, which only
+ * costs a few volatile writes per call. A background thread scans the slots periodically and reports the calls
+ * that exceed the threshold, with the stack of the blocked thread. The stacks are rate limited per listener since
+ * capturing them pauses the thread.
+ */
+public class DispatchWatchdog {
+
+    private static final Logger LOG = LoggerFactory.getLogger("DispatchWatchdog");
+
+    private static final int MAX_REPORTS = 100;
+
+    // The slot of the current thread, to attribute the calls that a listener makes on behalf of others
+    private static final ThreadLocal<Slot> CURRENT = new ThreadLocal<>();
+
+    private final long threshold;
+    private final long stackInterval;
+    private final ThreadLocal<Slot> localSlot = ThreadLocal.withInitial(this::createSlot);
+    private final Set<Slot> slots = ConcurrentHashMap.newKeySet();
+    private final Map<String, LongAdder> blockedCounts = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastStacks = new HashMap<>();
+    private final ArrayDeque<BlockedDispatch> reports = new ArrayDeque<>();
+    private final ScheduledExecutorService executor;
+
+    private volatile Function<Object, String> ownerResolver = listener -> null;
+
+    /**
+     * @param threshold - The time after which a call is considered blocked, in milliseconds.
+     */
+    public DispatchWatchdog(final long threshold) {
+        this(threshold, 30_000);
+    }
+
+    /**
+     * @param threshold     - The time after which a call is considered blocked, in milliseconds.
+     * @param stackInterval - The minimum time between two stacks captured for a same listener, in milliseconds.
+     */
+    public DispatchWatchdog(final long threshold, final long stackInterval) {
+        if (threshold <= 0)
+            throw new IllegalArgumentException("The threshold must be positive !");
+
+        this.threshold = TimeUnit.MILLISECONDS.toNanos(threshold);
+        this.stackInterval = TimeUnit.MILLISECONDS.toNanos(stackInterval);
+
+        final long period = Math.max(threshold / 4, 10);
+        executor = Executors.newSingleThreadScheduledExecutor(new ModularThreadFactory("Dispatch Watchdog", true));
+        executor.scheduleWithFixedDelay(this::scan, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Set how to find the module that owns a listener, to attribute the reports.
+     *
+     * @param ownerResolver - A function returning the name of the owner of a listener, or {@code null}.
+     */
+    public void setOwnerResolver(@Nonnull final Function<Object, String> ownerResolver) {
+        this.ownerResolver = ownerResolver;
+    }
+
+    /**
+     * Get the slot of the current thread, to be called by the event managers before dispatching an event.
+     *
+     * @param shardId - The id of the shard of the event.
+     * @return The slot of the current thread.
+     */
+    @Nonnull
+    public Slot enter(final int shardId) {
+        final Slot slot = localSlot.get();
+        slot.shardId = shardId;
+        return slot;
+    }
+
+    /**
+     * Attribute the rest of the current call to another object than the listener being called, like a callback that
+     * the listener dispatches the event to. Does nothing if the current thread isn't watched or isn't calling a
+     * listener.
+     *
+     * @param target - The object responsible for what follows, {@code null} to attribute it to the listener again.
+     */
+    public static void delegate(@Nullable final Object target) {
+        final Slot slot = CURRENT.get();
+        if (slot != null && slot.start != 0)
+            slot.target = target;
+    }
+
+    /**
+     * @return The last reports, the most recent first.
+     */
+    @Nonnull
+    public List<BlockedDispatch> getReports() {
+        synchronized (reports) {
+            return Collections.unmodifiableList(new ArrayList<>(reports));
+        }
+    }
+
+    /**
+     * @return The reports of the calls that are still blocked.
+     */
+    @Nonnull
+    public List<BlockedDispatch> getBlocked() {
+        final List<BlockedDispatch> blocked = new ArrayList<>();
+        for (final Slot slot : slots) {
+            final BlockedDispatch report = slot.report;
+            if (report != null && !report.isCompleted())
+                blocked.add(report);
+        }
+
+        return blocked;
+    }
+
+    /**
+     * @return The amount of blocked calls since the start by listener class name.
+     */
+    @Nonnull
+    public Map<String, Long> getBlockedCounts() {
+        final Map<String, Long> counts = new HashMap<>();
+        blockedCounts.forEach((listener, count) -> counts.put(listener, count.sum()));
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * @return The threshold in milliseconds.
+     */
+    public long getThreshold() {
+        return TimeUnit.NANOSECONDS.toMillis(threshold);
+    }
+
+    /**
+     * Stop watching.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Nonnull
+    private Slot createSlot() {
+        final Slot slot = new Slot(Thread.currentThread());
+        slots.add(slot);
+        CURRENT.set(slot);
+        return slot;
+    }
+
+    private void scan() {
+        try {
+            final long now = System.nanoTime();
+            for (final Slot slot : slots) {
+                if (!slot.thread.isAlive()) {
+                    slots.remove(slot);
+                    continue;
+                }
+
+                final long start = slot.start;
+                final long sequence = slot.sequence;
+                if (start == 0 || sequence == slot.reportedSequence || now - start < threshold)
+                    continue;
+
+                final EventListener listener = slot.listener;
+                final Object target = slot.target;
+                final Class<?> eventClass = slot.eventClass;
+                // The call may have ended while reading the slot
+                if (listener == null || slot.sequence != sequence || slot.start != start)
+                    continue;
+
+                slot.reportedSequence = sequence;
+                report(slot, target != null ? target : listener, eventClass, start, sequence, now);
+            }
+        } catch (Exception e) {
+            LOG.error("The watchdog has failed to scan the event threads", e);
+        }
+    }
+
+    private void report(@Nonnull final Slot slot, @Nonnull final Object listener, @Nonnull final Class<?> eventClass,
+                        final long start, final long sequence, final long now) {
+        final String name = getName(listener);
+
+        StackTraceElement[] stack = null;
+        final Long lastStack = lastStacks.get(name);
+        if (lastStack == null || now - lastStack >= stackInterval) {
+            stack = slot.thread.getStackTrace();
+
+            // Too late, this is the stack of something else
+            if (slot.sequence != sequence)
+                return;
+            lastStacks.put(name, now);
+        }
+
+        // Only counted once the report can't be aborted anymore
+        blockedCounts.computeIfAbsent(name, k -> new LongAdder()).increment();
+
+        String owner;
+        try {
+            owner = ownerResolver.apply(listener);
+        } catch (Exception e) {
+            owner = null;
+        }
+
+        final BlockedDispatch report = new BlockedDispatch(slot.shardId, slot.thread.getName(), name, owner,
+                eventClass.getName(), System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(now - start),
+                TimeUnit.NANOSECONDS.toMillis(now - start), stack);
+        slot.reportedFor = sequence;
+        slot.report = report;
+
+        synchronized (reports) {
+            if (reports.size() >= MAX_REPORTS)
+                reports.pollLast();
+            reports.addFirst(report);
+        }
+
+        final StringBuilder message = new StringBuilder(String.format(
+                "The listener %s%s is blocking the thread %s for more than %dms on %s of shard %d",
+                name, owner != null ? " of " + owner : "", report.getThreadName(), report.getDuration(),
+                eventClass.getSimpleName(), report.getShardId()));
+        if (stack != null) {
+            for (final StackTraceElement element : stack)
+                message.append("\n\tat ").append(element);
+        }
+
+        LOG.warn(message.toString());
+    }
+
+    /**
+     * Get the name of the class of a listener, the lambdas are named after the class that defines them.
+     *
+     * @param listener - The listener.
+     * @return The name of its class.
+     */
+    @Nonnull
+    private static String getName(@Nonnull final Object listener) {
+        final String name = listener.getClass().getName();
+        final int lambda = name.indexOf("$$Lambda");
+        return lambda < 0 ? name : name.substring(0, lambda);
+    }
+
+    /**
+     * What a dispatching thread is currently doing, written by this thread only.
+     */
+    public static final class Slot {
+
+        private final Thread thread;
+        private volatile int shardId;
+        private volatile EventListener listener;
+        private volatile Object target = null;
+        private volatile Class<?> eventClass;
+        private volatile long start = 0;
+        private volatile long sequence = 0;
+        private volatile BlockedDispatch report = null;
+        private volatile long reportedFor = -1;
+
+        // Only accessed by the watchdog thread
+        private long reportedSequence = -1;
+
+        private Slot(@Nonnull final Thread thread) {
+            this.thread = thread;
+        }
+
+        /**
+         * Called before calling a listener.
+         *
+         * @param listener - The listener.
+         * @param event    - The event.
+         * @param start    - The current {@link System#nanoTime()}.
+         */
+        public void begin(@Nonnull final EventListener listener, @Nonnull final Event event, final long start) {
+            this.listener = listener;
+            target = null;
+            eventClass = event.getClass();
+            sequence = sequence + 1;
+            this.start = start;
+        }
+
+        /**
+         * Called after the listener has returned.
+         *
+         * @param end - The current {@link System#nanoTime()}.
+         */
+        public void end(final long end) {
+            final BlockedDispatch report = this.report;
+            if (report != null) {
+                this.report = null;
+
+                // The report may have been published after the end of its call
+                if (reportedFor != sequence) {
+                    report.complete(TimeUnit.MILLISECONDS.toNanos(report.getDuration()));
+                } else {
+                    report.complete(end - start);
+                    LOG.info(String.format("The listener %s has released the thread %s after %dms",
+                            report.getListener(), report.getThreadName(), report.getDuration()));
+                }
+            }
+
+            start = 0;
+            listener = null;
+            target = null;
+        }
+    }
+}
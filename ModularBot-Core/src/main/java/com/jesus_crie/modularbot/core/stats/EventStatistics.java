@@ -0,0 +1,100 @@
+package com.jesus_crie.modularbot.core.stats;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects the statistics of the events dispatched by every {@link com.jesus_crie.modularbot.core.ModularEventManager ModularEventManager}
+ * of a bot, with one {@link ShardEventStatistics} per shard.
+ * <p>
+ * The amount of events of each type is always recorded, the latency of the listeners is only recorded for
+ * one event out of {@link #getSamplingRate()} to keep the overhead low.
+ */
+public class EventStatistics {
+
+    /**
+     * Time one dispatch out of 64 by default, enough to get meaningful percentiles from busy listeners.
+     */
+    public static final int DEFAULT_SAMPLING_RATE = 64;
+
+    private final Map<Integer, ShardEventStatistics> shards = new ConcurrentHashMap<>();
+    private final long startTime = System.currentTimeMillis();
+    private volatile int samplingRate;
+    private volatile DispatchWatchdog watchdog = null;
+
+    public EventStatistics() {
+        this(DEFAULT_SAMPLING_RATE);
+    }
+
+    /**
+     * @param samplingRate - Time the dispatch of one event out of this amount, 0 to disable the timings.
+     */
+    public EventStatistics(final int samplingRate) {
+        setSamplingRate(samplingRate);
+    }
+
+    /**
+     * @return The sampling rate of the listener latencies.
+     */
+    public int getSamplingRate() {
+        return samplingRate;
+    }
+
+    /**
+     * Set the sampling rate of the listener latencies.
+     *
+     * @param samplingRate - Time the dispatch of one event out of this amount, 0 to disable the timings.
+     * @throws IllegalArgumentException If the sampling rate is negative.
+     */
+    public void setSamplingRate(final int samplingRate) {
+        if (samplingRate < 0)
+            throw new IllegalArgumentException("The sampling rate can't be negative !");
+
+        this.samplingRate = samplingRate;
+    }
+
+    /**
+     * @return The watchdog of the event threads, if enabled.
+     */
+    @Nullable
+    public DispatchWatchdog getWatchdog() {
+        return watchdog;
+    }
+
+    /**
+     * Set the watchdog that will watch the event threads of every shard.
+     *
+     * @param watchdog - (Optional) The watchdog, {@code null} to disable it.
+     */
+    public void setWatchdog(@Nullable final DispatchWatchdog watchdog) {
+        this.watchdog = watchdog;
+    }
+
+    /**
+     * Get or create the statistics of a shard.
+     *
+     * @param shardId - The id of the shard.
+     * @return The statistics of this shard.
+     */
+    @Nonnull
+    public ShardEventStatistics forShard(final int shardId) {
+        return shards.computeIfAbsent(shardId, id -> new ShardEventStatistics(id, this));
+    }
+
+    /**
+     * Take a snapshot of the statistics of every shard.
+     *
+     * @return An immutable copy of the statistics.
+     */
+    @Nonnull
+    public EventStatisticsSnapshot snapshot() {
+        final Map<Integer, EventStatisticsSnapshot.Shard> snapshots = new TreeMap<>();
+        shards.forEach((id, stats) -> snapshots.put(id,
+                new EventStatisticsSnapshot.Shard(id, stats.snapshotEvents(), stats.snapshotListeners())));
+
+        return new EventStatisticsSnapshot(startTime, System.currentTimeMillis(), snapshots);
+    }
+}
@@ -0,0 +1,120 @@
+package com.jesus_crie.modularbot.core.stats;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable copy of the {@link EventStatistics} of a bot at a given time.
+ * Rates can be computed either since the start of the bot or between two snapshots.
+ */
+public class EventStatisticsSnapshot {
+
+    private final long startTime;
+    private final long timestamp;
+    private final Map<Integer, Shard> shards;
+
+    EventStatisticsSnapshot(final long startTime, final long timestamp, @Nonnull final Map<Integer, Shard> shards) {
+        this.startTime = startTime;
+        this.timestamp = timestamp;
+        this.shards = Collections.unmodifiableMap(shards);
+    }
+
+    /**
+     * @return The time at which the snapshot was taken, in epoch milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return The statistics of each shard by shard id.
+     */
+    @Nonnull
+    public Map<Integer, Shard> getShards() {
+        return shards;
+    }
+
+    /**
+     * @return The amount of events received by every shard, by event class name.
+     */
+    @Nonnull
+    public Map<String, Long> getEventCounts() {
+        final Map<String, Long> counts = new HashMap<>();
+        shards.values().forEach(shard -> shard.events.forEach((event, count) -> counts.merge(event, count, Long::sum)));
+        return counts;
+    }
+
+    /**
+     * Compute the amount of events per second of each type.
+     *
+     * @param previous - (Optional) A previous snapshot to compute the rates since, or {@code null} to compute them since the start.
+     * @return The amount of events per second by event class name.
+     */
+    @Nonnull
+    public Map<String, Double> getEventRates(@Nullable final EventStatisticsSnapshot previous) {
+        final Map<String, Long> counts = getEventCounts();
+        final Map<String, Long> previousCounts = previous == null ? Collections.emptyMap() : previous.getEventCounts();
+        final double seconds = Math.max(timestamp - (previous == null ? startTime : previous.timestamp), 1) / 1000d;
+
+        final Map<String, Double> rates = new HashMap<>();
+        counts.forEach((event, count) -> rates.put(event, (count - previousCounts.getOrDefault(event, 0L)) / seconds));
+        return rates;
+    }
+
+    /**
+     * @return The latencies of the listeners of every shard, by listener class name.
+     */
+    @Nonnull
+    public Map<String, LatencyHistogram.Snapshot> getListenerLatencies() {
+        final Map<String, LatencyHistogram.Snapshot> latencies = new HashMap<>();
+        shards.values().forEach(shard -> shard.listeners.forEach((listener, latency) -> latencies.merge(listener, latency, LatencyHistogram.Snapshot::merge)));
+        return latencies;
+    }
+
+    @Override
+    public String toString() {
+        return "EventStatisticsSnapshot{shards=" + shards.size() + ", events=" + getEventCounts() + "}";
+    }
+
+    /**
+     * Statistics of a single shard.
+     */
+    public static class Shard {
+
+        private final int shardId;
+        private final Map<String, Long> events;
+        private final Map<String, LatencyHistogram.Snapshot> listeners;
+
+        Shard(final int shardId, @Nonnull final Map<String, Long> events, @Nonnull final Map<String, LatencyHistogram.Snapshot> listeners) {
+            this.shardId = shardId;
+            this.events = events;
+            this.listeners = listeners;
+        }
+
+        /**
+         * @return The id of the shard.
+         */
+        public int getShardId() {
+            return shardId;
+        }
+
+        /**
+         * @return The amount of events received by this shard, by event class name.
+         */
+        @Nonnull
+        public Map<String, Long> getEventCounts() {
+            return events;
+        }
+
+        /**
+         * @return The latencies of the listeners of this shard, by listener class name.
+         */
+        @Nonnull
+        public Map<String, LatencyHistogram.Snapshot> getListenerLatencies() {
+            return listeners;
+        }
+    }
+}
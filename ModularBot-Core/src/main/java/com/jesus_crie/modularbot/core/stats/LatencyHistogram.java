@@ -0,0 +1,157 @@
+package com.jesus_crie.modularbot.core.stats;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations in nanoseconds that uses a fixed amount of memory.
+ * Each bucket covers a power of two so the precision is at worst a factor of two, which is enough to spot a slow
+ * listener. Every counter is striped so recording from multiple threads doesn't contend.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Bucket {@code i} contains the values between {@code 2^(i-1)} inclusive and {@code 2^i} exclusive,
+     * the bucket 0 only contains 0.
+     */
+    public static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++)
+            buckets[i] = new LongAdder();
+    }
+
+    /**
+     * Record a duration.
+     *
+     * @param nanos - The duration in nanoseconds, negative values are considered as 0.
+     */
+    public void record(final long nanos) {
+        final long value = Math.max(nanos, 0);
+
+        buckets[BUCKETS - Long.numberOfLeadingZeros(value)].increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Take a snapshot of the histogram.
+     * It may miss the values recorded during the snapshot.
+     *
+     * @return An immutable copy of the histogram.
+     */
+    @Nonnull
+    public Snapshot snapshot() {
+        final long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+            counts[i] = buckets[i].sum();
+
+        return new Snapshot(counts, sum.sum(), max.get());
+    }
+
+    /**
+     * Immutable copy of a {@link LatencyHistogram}.
+     */
+    public static class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(@Nonnull final long[] counts, final long sum, final long max) {
+            this.counts = counts;
+            this.sum = sum;
+            this.max = max;
+
+            long count = 0;
+            for (final long c : counts)
+                count += c;
+            this.count = count;
+        }
+
+        /**
+         * @return The amount of recorded values.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return The sum of every recorded values, in nanoseconds.
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * @return The highest recorded value, in nanoseconds.
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @return The average of the recorded values, in nanoseconds.
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Get an estimation of the given percentile, the result is the upper bound of the bucket that contains it.
+         *
+         * @param percentile - The percentile, between 0 and 1.
+         * @return The estimated percentile, in nanoseconds.
+         */
+        public long getPercentile(final double percentile) {
+            if (count == 0)
+                return 0;
+
+            final long target = (long) Math.ceil(Math.min(Math.max(percentile, 0), 1) * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(target, 1))
+                    return i == 0 ? 0 : Math.min((1L << i) - 1, max);
+            }
+
+            return max;
+        }
+
+        /**
+         * @return A copy of the counts of each bucket.
+         * @see #BUCKETS
+         */
+        @Nonnull
+        public long[] getBuckets() {
+            return counts.clone();
+        }
+
+        /**
+         * Merge this snapshot with another one.
+         *
+         * @param other - The other snapshot.
+         * @return A new snapshot containing the values of both.
+         */
+        @Nonnull
+        public Snapshot merge(@Nonnull final Snapshot other) {
+            final long[] merged = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++)
+                merged[i] = counts[i] + other.counts[i];
+
+            return new Snapshot(merged, sum + other.sum, Math.max(max, other.max));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Latency{count=%d, mean=%.0fns, p99=%dns, max=%dns}",
+                    count, getMean(), getPercentile(0.99), max);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.jesus_crie.modularbot.core.stats;
+
+import net.dv8tion.jda.core.hooks.EventListener;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the events dispatched on a single shard.
+ * Every event is counted but only a sample of the dispatches are timed, according to the sampling rate of the
+ * parent {@link EventStatistics}.
+ */
+public class ShardEventStatistics {
+
+    private final int shardId;
+    private final EventStatistics parent;
+
+    private final Map<Class<?>, LongAdder> events = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> listeners = new ConcurrentHashMap<>();
+
+    ShardEventStatistics(final int shardId, @Nonnull final EventStatistics parent) {
+        this.shardId = shardId;
+        this.parent = parent;
+    }
+
+    /**
+     * @return The id of the shard.
+     */
+    public int getShardId() {
+        return shardId;
+    }
+
+    /**
+     * Count an event.
+     *
+     * @param eventClass - The class of the event.
+     */
+    public void recordEvent(@Nonnull final Class<?> eventClass) {
+        LongAdder counter = events.get(eventClass);
+        if (counter == null)
+            counter = events.computeIfAbsent(eventClass, k -> new LongAdder());
+
+        counter.increment();
+    }
+
+    /**
+     * Decide whether or not the dispatch of the current event should be timed.
+     *
+     * @return True if the current event is part of the sample.
+     */
+    public boolean shouldSample() {
+        final int rate = parent.getSamplingRate();
+        return rate == 1 || (rate > 1 && ThreadLocalRandom.current().nextInt(rate) == 0);
+    }
+
+    /**
+     * Get the slot of the current thread in the {@link DispatchWatchdog watchdog}, if there is one.
+     *
+     * @return The slot where the calls to the listeners must be published, or {@code null}.
+     */
+    @Nullable
+    public DispatchWatchdog.Slot enterDispatch() {
+        final DispatchWatchdog watchdog = parent.getWatchdog();
+        return watchdog == null ? null : watchdog.enter(shardId);
+    }
+
+    /**
+     * Record the time taken by a listener to handle an event.
+     *
+     * @param listener - The listener.
+     * @param nanos    - The duration of the call, in nanoseconds.
+     */
+    public void recordListener(@Nonnull final EventListener listener, final long nanos) {
+        final String name = listener.getClass().getName();
+
+        LatencyHistogram histogram = listeners.get(name);
+        if (histogram == null)
+            histogram = listeners.computeIfAbsent(name, k -> new LatencyHistogram());
+
+        histogram.record(nanos);
+    }
+
+    /**
+     * @return The amount of events received by event class name.
+     */
+    @Nonnull
+    Map<String, Long> snapshotEvents() {
+        final Map<String, Long> counts = new HashMap<>();
+        events.forEach((clazz, counter) -> counts.merge(clazz.getSimpleName(), counter.sum(), Long::sum));
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * @return The latencies of the listeners by listener class name.
+     */
+    @Nonnull
+    Map<String, LatencyHistogram.Snapshot> snapshotListeners() {
+        final Map<String, LatencyHistogram.Snapshot> latencies = new HashMap<>();
+        listeners.forEach((name, histogram) -> latencies.put(name, histogram.snapshot()));
+        return Collections.unmodifiableMap(latencies);
+    }
+}
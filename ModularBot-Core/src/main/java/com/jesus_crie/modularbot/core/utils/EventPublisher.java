@@ -0,0 +1,217 @@
+package com.jesus_crie.modularbot.core.utils;
+
+import net.dv8tion.jda.core.events.Event;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stream of the events matched by a waiter, until it is cancelled or it times out.
+ * <p>
+ * The interfaces follow the contract of {@code java.util.concurrent.Flow} (which isn't available in Java 8): the
+ * subscriber receives at most the amount of events it has requested, the events received in the meantime are
+ * buffered up to the capacity of the stream, after that the oldest ones are dropped since the gateway can't be
+ * slowed down. The events are delivered either on the thread that received them or on the thread that requests more.
+ * <p>
+ * A stream can only be subscribed once.
+ *
+ * @param <T> The type of event.
+ * @see Waiter#eventStream(net.dv8tion.jda.core.JDA, Class, Waiter.RoutingKey, long, java.util.function.Predicate, long, int)
+ */
+public class EventPublisher<T extends Event> {
+
+    private final int capacity;
+    private final ArrayDeque<T> buffer = new ArrayDeque<>();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private Waiter.WaiterListener<T> listener;
+    private volatile Subscriber<? super T> subscriber;
+    private volatile boolean done = false;
+    private volatile boolean cancelled = false;
+    private boolean completed = false;
+    private long dropped = 0;
+
+    EventPublisher(final int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("The capacity must be positive !");
+
+        this.capacity = capacity;
+    }
+
+    void bind(@Nonnull final Waiter.WaiterListener<T> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Subscribe to the stream, the waiter starts to listen at this moment.
+     *
+     * @param subscriber The subscriber.
+     */
+    public void subscribe(@Nonnull final Subscriber<? super T> subscriber) {
+        synchronized (this) {
+            if (this.subscriber != null) {
+                subscriber.onSubscribe(new Subscription() {
+                    @Override
+                    public void request(final long n) {}
+
+                    @Override
+                    public void cancel() {}
+                });
+                subscriber.onError(new IllegalStateException("This stream already has a subscriber !"));
+                return;
+            }
+
+            this.subscriber = subscriber;
+        }
+
+        // The events end up in the subscriber
+        listener.setCallback(subscriber);
+
+        subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(final long n) {
+                if (n <= 0) {
+                    cancel();
+                    subscriber.onError(new IllegalArgumentException("The amount of requested events must be positive !"));
+                    return;
+                }
+
+                requested.accumulateAndGet(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                listener.cancel(true);
+            }
+        });
+
+        if (!cancelled)
+            listener.register();
+    }
+
+    /**
+     * @return The amount of events that have been dropped because the buffer was full.
+     */
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    void push(@Nonnull final T event) {
+        if (done || cancelled)
+            return;
+
+        synchronized (this) {
+            if (buffer.size() >= capacity) {
+                buffer.pollFirst();
+                dropped++;
+            }
+
+            buffer.addLast(event);
+        }
+
+        drain();
+    }
+
+    void complete() {
+        done = true;
+        drain();
+    }
+
+    private void drain() {
+        if (subscriber == null || wip.getAndIncrement() != 0)
+            return;
+
+        int missed = 1;
+        do {
+            while (!cancelled && requested.get() > 0) {
+                final T event;
+                synchronized (this) {
+                    event = buffer.pollFirst();
+                }
+
+                if (event == null)
+                    break;
+
+                if (requested.get() != Long.MAX_VALUE)
+                    requested.decrementAndGet();
+
+                try {
+                    subscriber.onNext(event);
+                } catch (Throwable t) {
+                    cancelled = true;
+                    listener.cancel(true);
+                    subscriber.onError(t);
+                }
+            }
+
+            final boolean empty;
+            synchronized (this) {
+                empty = buffer.isEmpty();
+            }
+
+            if (done && empty && !cancelled && !completed) {
+                completed = true;
+                subscriber.onComplete();
+            }
+
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Receives the events of an {@link EventPublisher}, like {@code java.util.concurrent.Flow.Subscriber}.
+     *
+     * @param <T> The type of event.
+     */
+    public interface Subscriber<T> {
+
+        /**
+         * Called once before anything else, no event is received before something is requested.
+         *
+         * @param subscription The subscription.
+         */
+        void onSubscribe(@Nonnull Subscription subscription);
+
+        /**
+         * Called with each event, at most the amount of events requested.
+         *
+         * @param event The event.
+         */
+        void onNext(@Nonnull T event);
+
+        /**
+         * Called if the subscription has failed, nothing is received after that.
+         *
+         * @param error The error.
+         */
+        void onError(@Nonnull Throwable error);
+
+        /**
+         * Called when the waiter has timed out and every buffered event has been delivered.
+         */
+        void onComplete();
+    }
+
+    /**
+     * Link between an {@link EventPublisher} and its {@link Subscriber}, like {@code java.util.concurrent.Flow.Subscription}.
+     */
+    public interface Subscription {
+
+        /**
+         * Request more events.
+         *
+         * @param n The amount of additional events, must be positive.
+         */
+        void request(long n);
+
+        /**
+         * Stop receiving events and release the waiter.
+         */
+        void cancel();
+    }
+}
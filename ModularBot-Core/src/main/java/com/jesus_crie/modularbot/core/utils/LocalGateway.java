@@ -0,0 +1,222 @@
+package com.jesus_crie.modularbot.core.utils;
+
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.utils.SessionController;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-in for the discord gateway to test a {@link SessionController} offline.
+ * <p>
+ * It queues fake shards in the controller, each identify takes the given latency, and records when each shard has
+ * identified so the order and the rate limits can be checked without connecting anything.
+ * <pre>{@code
+ * final LocalGateway gateway = new LocalGateway(16, 200);
+ * final ModularSessionController controller = new ModularSessionController(4, 1000);
+ * gateway.connect(controller);
+ * gateway.awaitIdentified(30, TimeUnit.SECONDS);
+ * gateway.checkRateLimits(4, 1000);
+ * }</pre>
+ */
+public class LocalGateway {
+
+    private final int shardsTotal;
+    private final long identifyLatency;
+
+    private final List<Identify> identifies = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private CountDownLatch pending = new CountDownLatch(0);
+
+    /**
+     * @param shardsTotal     The total amount of shards.
+     * @param identifyLatency The time taken by an identify, in milliseconds.
+     */
+    public LocalGateway(final int shardsTotal, final long identifyLatency) {
+        this.shardsTotal = shardsTotal;
+        this.identifyLatency = identifyLatency;
+    }
+
+    /**
+     * Queue every shard in the controller.
+     *
+     * @param controller The controller to test.
+     */
+    public synchronized void connect(@Nonnull final SessionController controller) {
+        pending = new CountDownLatch((int) pending.getCount() + shardsTotal);
+        for (int i = 0; i < shardsTotal; i++)
+            controller.appendSession(new Node(i, false));
+    }
+
+    /**
+     * Queue the reconnection of a shard in the controller.
+     *
+     * @param controller The controller to test.
+     * @param shardId    The id of the shard.
+     */
+    public synchronized void reconnect(@Nonnull final SessionController controller, final int shardId) {
+        pending = new CountDownLatch((int) pending.getCount() + 1);
+        controller.appendSession(new Node(shardId, true));
+    }
+
+    /**
+     * Wait until every queued shard has identified.
+     *
+     * @param timeout The maximum time to wait.
+     * @param unit    The unit of the timeout.
+     * @return True if every shard has identified.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public boolean awaitIdentified(final long timeout, @Nonnull final TimeUnit unit) throws InterruptedException {
+        final CountDownLatch latch;
+        synchronized (this) {
+            latch = pending;
+        }
+
+        return latch.await(timeout, unit);
+    }
+
+    /**
+     * @return The identifies that have happened, in the order they started.
+     */
+    @Nonnull
+    public List<Identify> getIdentifies() {
+        final List<Identify> copy;
+        synchronized (identifies) {
+            copy = new ArrayList<>(identifies);
+        }
+
+        copy.sort(Comparator.comparingLong(Identify::getStart));
+        return copy;
+    }
+
+    /**
+     * @return The highest amount of shards that have identified at the same time.
+     */
+    public int getMaxConcurrent() {
+        return maxConcurrent.get();
+    }
+
+    /**
+     * Check that the identifies have respected the rate limits of discord.
+     *
+     * @param maxConcurrency The amount of shards allowed to identify at the same time.
+     * @param identifyDelay  The minimum delay between two identifies of a same bucket, in milliseconds.
+     * @throws IllegalStateException If a rate limit has been exceeded.
+     */
+    public void checkRateLimits(final int maxConcurrency, final long identifyDelay) {
+        if (maxConcurrent.get() > maxConcurrency)
+            throw new IllegalStateException(String.format("%d shards have identified at the same time, the limit is %d",
+                    maxConcurrent.get(), maxConcurrency));
+
+        final Map<Integer, Identify> lastByBucket = new HashMap<>();
+        for (final Identify identify : getIdentifies()) {
+            final Identify last = lastByBucket.put(identify.getShardId() % maxConcurrency, identify);
+            if (last != null && identify.getStart() - last.getEnd() < identifyDelay)
+                throw new IllegalStateException(String.format("The shards %d and %d have identified %dms apart in the same bucket",
+                        last.getShardId(), identify.getShardId(), identify.getStart() - last.getEnd()));
+        }
+    }
+
+    /**
+     * A fake shard waiting to identify.
+     */
+    private class Node implements SessionController.SessionConnectNode {
+
+        private final JDA.ShardInfo shardInfo;
+        private final boolean reconnect;
+
+        private Node(final int shardId, final boolean reconnect) {
+            shardInfo = new JDA.ShardInfo(shardId, shardsTotal);
+            this.reconnect = reconnect;
+        }
+
+        @Override
+        public boolean isReconnect() {
+            return reconnect;
+        }
+
+        @Override
+        public JDA getJDA() {
+            return null;
+        }
+
+        @Override
+        public JDA.ShardInfo getShardInfo() {
+            return shardInfo;
+        }
+
+        @Override
+        public void run(final boolean isLast) throws InterruptedException {
+            final long start = System.currentTimeMillis();
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+
+            try {
+                Thread.sleep(identifyLatency);
+            } finally {
+                concurrent.decrementAndGet();
+                identifies.add(new Identify(shardInfo.getShardId(), reconnect, start, System.currentTimeMillis()));
+
+                final CountDownLatch latch;
+                synchronized (LocalGateway.this) {
+                    latch = pending;
+                }
+                latch.countDown();
+            }
+        }
+    }
+
+    /**
+     * An identify that has happened on the gateway.
+     */
+    public static class Identify {
+
+        private final int shardId;
+        private final boolean reconnect;
+        private final long start;
+        private final long end;
+
+        private Identify(final int shardId, final boolean reconnect, final long start, final long end) {
+            this.shardId = shardId;
+            this.reconnect = reconnect;
+            this.start = start;
+            this.end = end;
+        }
+
+        public int getShardId() {
+            return shardId;
+        }
+
+        public boolean isReconnect() {
+            return reconnect;
+        }
+
+        /**
+         * @return The time at which the identify has started, in epoch milliseconds.
+         */
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * @return The time at which the identify has ended, in epoch milliseconds.
+         */
+        public long getEnd() {
+            return end;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Identify[shard=%d, reconnect=%s, start=%d, end=%d]", shardId, reconnect, start, end);
+        }
+    }
+}
@@ -1,15 +1,339 @@
 package com.jesus_crie.modularbot.core.utils;
 
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.events.ReadyEvent;
+import net.dv8tion.jda.core.events.ReconnectedEvent;
+import net.dv8tion.jda.core.events.ResumedEvent;
+import net.dv8tion.jda.core.hooks.ListenerAdapter;
 import net.dv8tion.jda.core.utils.SessionControllerAdapter;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Session controller that can identify multiple shards at the same time.
+ * <p>
+ * The shards are split in buckets by {@code shardId % maxConcurrency}, like discord does for the large bots. Each
+ * bucket identifies one shard at a time and waits the identify delay between two shards, but the buckets run in
+ * parallel. In each bucket the reconnecting shards go first, then the shards with the highest
+ * {@link #setShardWeights(IntToLongFunction) weight}, typically the ones hosting the busiest guilds.
+ * <p>
+ * With a max concurrency of 1 (the default), this behaves like the {@link SessionControllerAdapter}.
+ * The time each shard has waited, identified and became ready is recorded, see {@link #getConnectTimings()}.
+ */
 public class ModularSessionController extends SessionControllerAdapter {
 
     private static final org.slf4j.Logger LOG = LoggerFactory.getLogger("SessionController");
 
+    private final int maxConcurrency;
+    private final long identifyDelay;
+    private final Bucket[] buckets;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Integer, ConnectTiming> timings = new ConcurrentHashMap<>();
+
+    private volatile IntToLongFunction shardWeights = shardId -> 0;
+
+    public ModularSessionController() {
+        this(1);
+    }
+
+    /**
+     * @param maxConcurrency The amount of shards that can identify at the same time, given by discord.
+     */
+    public ModularSessionController(final int maxConcurrency) {
+        this(maxConcurrency, TimeUnit.SECONDS.toMillis(IDENTIFY_DELAY));
+    }
+
+    /**
+     * @param maxConcurrency The amount of shards that can identify at the same time, given by discord.
+     * @param identifyDelay  The delay between two identifies in a same bucket, in milliseconds.
+     */
+    public ModularSessionController(final int maxConcurrency, final long identifyDelay) {
+        if (maxConcurrency < 1)
+            throw new IllegalArgumentException("The max concurrency must be at least 1 !");
+
+        this.maxConcurrency = maxConcurrency;
+        this.identifyDelay = identifyDelay;
+
+        buckets = new Bucket[maxConcurrency];
+        for (int i = 0; i < maxConcurrency; i++)
+            buckets[i] = new Bucket(i);
+    }
+
+    /**
+     * Set the weight of each shard, the shards with the highest weight identify first in their bucket.
+     *
+     * @param shardWeights A function that gives the weight of a shard from its id.
+     */
+    public void setShardWeights(@Nonnull final IntToLongFunction shardWeights) {
+        this.shardWeights = shardWeights;
+    }
+
+    /**
+     * Give the priority to the shards hosting the busiest guilds, the weight of each shard is the sum of the weights
+     * of its guilds. The weights typically come from the member counts or the amount of events of a previous run.
+     *
+     * @param guildWeights The weight of each guild by id.
+     * @param shardsTotal  The total amount of shards.
+     */
+    public void prioritizeGuilds(@Nonnull final Map<Long, ? extends Number> guildWeights, final int shardsTotal) {
+        final Map<Integer, Long> weights = new HashMap<>();
+        guildWeights.forEach((guildId, weight) ->
+                weights.merge((int) ((guildId >> 22) % shardsTotal), weight.longValue(), Long::sum));
+
+        setShardWeights(shardId -> weights.getOrDefault(shardId, 0L));
+    }
+
+    /**
+     * @return The amount of shards that can identify at the same time.
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @return The timings of the last connection of each shard by shard id.
+     */
+    @Nonnull
+    public Map<Integer, ConnectTiming> getConnectTimings() {
+        return Collections.unmodifiableMap(new HashMap<>(timings));
+    }
+
+    @Override
+    public void appendSession(@Nonnull final SessionConnectNode node) {
+        final int shardId = node.getShardInfo() == null ? 0 : node.getShardInfo().getShardId();
+        final Bucket bucket = buckets[shardId % maxConcurrency];
+        LOG.debug(String.format("Queuing shard %d in bucket %d", shardId, bucket.id));
+
+        final ConnectTiming timing = new ConnectTiming(shardId, node.isReconnect());
+        timings.put(shardId, timing);
+        bucket.add(new Entry(node, shardId, shardWeights.applyAsLong(shardId), sequence.getAndIncrement(), timing));
+    }
+
     @Override
-    public void appendSession(SessionConnectNode node) {
-        LOG.info("Queuing new node !");
-        super.appendSession(node);
+    public void removeSession(@Nonnull final SessionConnectNode node) {
+        for (final Bucket bucket : buckets)
+            bucket.remove(node);
+    }
+
+    /**
+     * Shards of a same bucket, identified one after the other by a dedicated thread that only lives while the bucket
+     * isn't empty.
+     */
+    private class Bucket {
+
+        private final int id;
+        private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+        private Thread worker = null;
+        private long lastIdentify = 0;
+
+        private Bucket(final int id) {
+            this.id = id;
+        }
+
+        private synchronized void add(@Nonnull final Entry entry) {
+            queue.add(entry);
+
+            if (worker == null) {
+                worker = new ModularThreadFactory("Identify Bucket " + id, true).newThread(this::run);
+                worker.start();
+            }
+        }
+
+        private synchronized void remove(@Nonnull final SessionConnectNode node) {
+            queue.removeIf(entry -> entry.node == node);
+        }
+
+        private void run() {
+            try {
+                while (true) {
+                    final long wait = lastIdentify + identifyDelay - System.currentTimeMillis();
+                    if (wait > 0)
+                        Thread.sleep(wait);
+
+                    final Entry entry;
+                    final boolean isLast;
+                    synchronized (this) {
+                        entry = queue.poll();
+                        if (entry == null) {
+                            worker = null;
+                            return;
+                        }
+
+                        isLast = queue.isEmpty();
+                    }
+
+                    identify(entry, isLast);
+                    lastIdentify = System.currentTimeMillis();
+                }
+            } catch (InterruptedException e) {
+                LOG.warn("The identify bucket " + id + " has been interrupted");
+                synchronized (this) {
+                    worker = null;
+                }
+            }
+        }
+
+        private void identify(@Nonnull final Entry entry, final boolean isLast) throws InterruptedException {
+            final JDA shard = entry.node.getJDA();
+            if (shard != null)
+                shard.addEventListener(new ReadyListener(entry.timing));
+
+            entry.timing.identifyStart = System.currentTimeMillis();
+            LOG.debug(String.format("Identifying shard %d in bucket %d", entry.shardId, id));
+
+            try {
+                entry.node.run(isLast);
+            } catch (RuntimeException e) {
+                LOG.error("Failed to identify the shard " + entry.shardId, e);
+            }
+
+            entry.timing.connected = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * A shard waiting to identify.
+     */
+    private static class Entry implements Comparable<Entry> {
+
+        private final SessionConnectNode node;
+        private final int shardId;
+        private final long weight;
+        private final long sequence;
+        private final ConnectTiming timing;
+
+        private Entry(@Nonnull final SessionConnectNode node, final int shardId, final long weight, final long sequence,
+                      @Nonnull final ConnectTiming timing) {
+            this.node = node;
+            this.shardId = shardId;
+            this.weight = weight;
+            this.sequence = sequence;
+            this.timing = timing;
+        }
+
+        @Override
+        public int compareTo(@Nonnull final Entry other) {
+            // Reconnections first, then the heaviest shards, then in order of arrival
+            if (node.isReconnect() != other.node.isReconnect())
+                return node.isReconnect() ? -1 : 1;
+            if (weight != other.weight)
+                return Long.compare(other.weight, weight);
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Marks a shard as ready when it has received its first ready, resume or reconnect event.
+     */
+    private static class ReadyListener extends ListenerAdapter {
+
+        private final ConnectTiming timing;
+
+        private ReadyListener(@Nonnull final ConnectTiming timing) {
+            this.timing = timing;
+        }
+
+        @Override
+        public void onReady(final ReadyEvent event) {
+            ready(event.getJDA());
+        }
+
+        @Override
+        public void onResume(final ResumedEvent event) {
+            ready(event.getJDA());
+        }
+
+        @Override
+        public void onReconnect(final ReconnectedEvent event) {
+            ready(event.getJDA());
+        }
+
+        private void ready(@Nonnull final JDA shard) {
+            timing.ready = System.currentTimeMillis();
+            shard.removeEventListener(this);
+        }
+    }
+
+    /**
+     * The timings of the connection of a shard, in epoch milliseconds.
+     */
+    public static class ConnectTiming {
+
+        private final int shardId;
+        private final boolean reconnect;
+        private final long queued = System.currentTimeMillis();
+        private volatile long identifyStart = 0;
+        private volatile long connected = 0;
+        private volatile long ready = 0;
+
+        ConnectTiming(final int shardId, final boolean reconnect) {
+            this.shardId = shardId;
+            this.reconnect = reconnect;
+        }
+
+        public int getShardId() {
+            return shardId;
+        }
+
+        public boolean isReconnect() {
+            return reconnect;
+        }
+
+        /**
+         * @return The time at which the shard has been queued.
+         */
+        public long getQueued() {
+            return queued;
+        }
+
+        /**
+         * @return The time at which the shard has started to identify, or 0.
+         */
+        public long getIdentifyStart() {
+            return identifyStart;
+        }
+
+        /**
+         * @return The time at which the identify has returned, or 0.
+         */
+        public long getConnected() {
+            return connected;
+        }
+
+        /**
+         * @return The time at which the shard was ready, or 0.
+         */
+        public long getReady() {
+            return ready;
+        }
+
+        /**
+         * @return The time spent waiting for its turn in milliseconds, or -1 if it hasn't identified yet.
+         */
+        public long getQueueTime() {
+            return identifyStart == 0 ? -1 : identifyStart - queued;
+        }
+
+        /**
+         * @return The time between the identify and the ready in milliseconds, or -1 if it isn't ready yet.
+         */
+        public long getReadyTime() {
+            return identifyStart == 0 || ready == 0 ? -1 : ready - identifyStart;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("ConnectTiming[shard=%d, reconnect=%s, queue=%dms, ready=%dms]",
+                    shardId, reconnect, getQueueTime(), getReadyTime());
+        }
     }
 }
@@ -0,0 +1,306 @@
+package com.jesus_crie.modularbot.core.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel used to schedule a large amount of timeouts cheaply.
+ * <p>
+ * The time is divided in ticks (1 millisecond by default) and each tick is mapped to a bucket of the wheel, the
+ * timeouts further than a full turn of the wheel simply wait for the required amount of rounds in their bucket.
+ * Scheduling and cancelling a timeout are O(1) and don't allocate anything besides the timeout itself, a single
+ * thread ticks the wheel and hands the expired tasks to an executor.
+ * <p>
+ * The precision is one tick, a task is never run before its delay but can be run up to one tick late.
+ */
+public class TimingWheel {
+
+    private static final Logger LOG = LoggerFactory.getLogger("TimingWheel");
+
+    private static TimingWheel shared = null;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Executor executor;
+
+    private final Queue<Task> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Task> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pending = new AtomicLong();
+
+    private final Thread worker;
+    private final long startTime = System.nanoTime();
+    private volatile boolean running = true;
+    private long tick = 0;
+
+    /**
+     * Create a timing wheel with a resolution of 1 millisecond and 512 buckets.
+     *
+     * @param executor - The executor that will run the expired tasks.
+     */
+    public TimingWheel(@Nonnull final Executor executor) {
+        this(1, TimeUnit.MILLISECONDS, 512, executor);
+    }
+
+    /**
+     * @param tick      - The duration of a tick.
+     * @param unit      - The unit of the tick.
+     * @param wheelSize - The amount of buckets, rounded up to a power of two.
+     * @param executor  - The executor that will run the expired tasks.
+     */
+    public TimingWheel(final long tick, @Nonnull final TimeUnit unit, final int wheelSize, @Nonnull final Executor executor) {
+        if (tick <= 0 || wheelSize <= 0)
+            throw new IllegalArgumentException("The tick and the size of the wheel must be positive !");
+
+        int size = 1;
+        while (size < wheelSize)
+            size <<= 1;
+
+        tickNanos = unit.toNanos(tick);
+        wheel = new Bucket[size];
+        for (int i = 0; i < wheel.length; i++)
+            wheel[i] = new Bucket();
+        mask = wheel.length - 1;
+        this.executor = executor;
+
+        worker = new ModularThreadFactory("Timing Wheel", true).newThread(this::run);
+        worker.start();
+    }
+
+    /**
+     * Get the timing wheel shared by the framework, the expired tasks are run on 2 daemon threads.
+     *
+     * @return The shared timing wheel.
+     */
+    @Nonnull
+    public static synchronized TimingWheel getShared() {
+        if (shared == null)
+            shared = new TimingWheel(Executors.newFixedThreadPool(2, new ModularThreadFactory("Timeout", true)));
+
+        return shared;
+    }
+
+    /**
+     * Schedule a task to be run after the given delay.
+     *
+     * @param task  - The task.
+     * @param delay - The delay.
+     * @param unit  - The unit of the delay.
+     * @return A handle that can be used to cancel the task.
+     * @throws IllegalStateException If the timing wheel has been stopped.
+     */
+    @Nonnull
+    public Timeout schedule(@Nonnull final Runnable task, final long delay, @Nonnull final TimeUnit unit) {
+        if (!running)
+            throw new IllegalStateException("The timing wheel has been stopped !");
+
+        final Task timeout = new Task(task, System.nanoTime() - startTime + Math.max(unit.toNanos(delay), 0));
+        scheduled.add(timeout);
+
+        // Wake up the worker if it was idle
+        if (pending.getAndIncrement() == 0)
+            LockSupport.unpark(worker);
+
+        return timeout;
+    }
+
+    /**
+     * @return The amount of tasks waiting to expire.
+     */
+    public long getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Stop the worker, the pending tasks will never run.
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+
+    private void run() {
+        while (running) {
+            if (pending.get() == 0) {
+                LockSupport.park(this);
+
+                // Nothing was waiting so we can skip the ticks that have passed
+                tick = Math.max(tick, (System.nanoTime() - startTime) / tickNanos);
+                continue;
+            }
+
+            final long deadline = tickNanos * (tick + 1);
+            long sleep;
+            while ((sleep = deadline - (System.nanoTime() - startTime)) > 0 && running)
+                LockSupport.parkNanos(this, sleep);
+
+            processCancelled();
+            transferScheduled();
+            expire(wheel[(int) (tick & mask)], deadline);
+            tick++;
+        }
+    }
+
+    private void processCancelled() {
+        Task task;
+        while ((task = cancelled.poll()) != null) {
+            if (task.bucket != null) {
+                task.bucket.remove(task);
+                pending.decrementAndGet();
+            }
+        }
+    }
+
+    private void transferScheduled() {
+        // Limit the amount of transfers to not delay the tick too much
+        for (int i = 0; i < 100_000; i++) {
+            final Task task = scheduled.poll();
+            if (task == null)
+                return;
+
+            if (task.state.get() == Task.CANCELLED) {
+                pending.decrementAndGet();
+                continue;
+            }
+
+            final long target = Math.max(task.deadline / tickNanos, tick);
+            task.remainingRounds = (target - tick) / wheel.length;
+            wheel[(int) (target & mask)].add(task);
+        }
+    }
+
+    private void expire(@Nonnull final Bucket bucket, final long deadline) {
+        Task task = bucket.head;
+        while (task != null) {
+            final Task next = task.next;
+
+            if (task.remainingRounds <= 0 && task.deadline <= deadline) {
+                bucket.remove(task);
+                pending.decrementAndGet();
+
+                if (task.state.compareAndSet(Task.WAITING, Task.EXPIRED)) {
+                    try {
+                        executor.execute(task.task);
+                    } catch (RejectedExecutionException e) {
+                        LOG.warn("An expired task has been rejected by the executor", e);
+                    }
+                }
+            } else {
+                task.remainingRounds--;
+            }
+
+            task = next;
+        }
+    }
+
+    /**
+     * Handle of a task scheduled in a {@link TimingWheel}.
+     */
+    public interface Timeout {
+
+        /**
+         * Cancel the task if it hasn't been run yet.
+         *
+         * @return True if the task has been cancelled, false if it already ran or was already cancelled.
+         */
+        boolean cancel();
+
+        /**
+         * @return True if the task has been cancelled.
+         */
+        boolean isCancelled();
+
+        /**
+         * @return True if the task has expired and has been handed to the executor.
+         */
+        boolean isExpired();
+    }
+
+    private class Task implements Timeout {
+
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        // Only accessed by the worker
+        private long remainingRounds;
+        private Bucket bucket;
+        private Task previous;
+        private Task next;
+
+        private Task(@Nonnull final Runnable task, final long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!state.compareAndSet(WAITING, CANCELLED))
+                return false;
+
+            // Let the worker remove it from its bucket
+            cancelled.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+    }
+
+    /**
+     * Doubly linked list of tasks, only accessed by the worker.
+     */
+    private class Bucket {
+
+        private Task head;
+        private Task tail;
+
+        private void add(@Nonnull final Task task) {
+            task.bucket = this;
+            if (head == null) {
+                head = tail = task;
+            } else {
+                tail.next = task;
+                task.previous = tail;
+                tail = task;
+            }
+        }
+
+        private void remove(@Nonnull final Task task) {
+            if (task.previous != null)
+                task.previous.next = task.next;
+            else
+                head = task.next;
+
+            if (task.next != null)
+                task.next.previous = task.previous;
+            else
+                tail = task.previous;
+
+            task.previous = task.next = null;
+            task.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.jesus_crie.modularbot.core.utils;
+
+import com.neovisionaries.ws.client.WebSocketFactory;
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.utils.SessionController;
+import okhttp3.OkHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Utilities of the training run, a boot that doesn't connect to discord and stops once the classes of the bot are
+ * loaded. Run it with {@code -XX:DumpLoadedClassList} to get the class list of an AppCDS archive, the script
+ * {@code appcds.sh} at the root of the repository does the whole process through {@link #main(String[])}.
+ * <p>
+ * The classes of JDA, OkHttp and nv-websocket and the jars of the modules are loaded without being initialized,
+ * which covers the classes that the real login and the first events would load.
+ *
+ * @see com.jesus_crie.modularbot.core.ModularBotBuilder#enableTrainingRun(Path)
+ */
+public final class TrainingRun {
+
+    private static final Logger LOG = LoggerFactory.getLogger("TrainingRun");
+
+    /**
+     * The system property that enables the training run without changing the code of the bot.
+     */
+    public static final String PROPERTY = "modularbot.training";
+
+    private TrainingRun() {
+    }
+
+    /**
+     * Run the main class of a bot as a training run and exit the JVM once it returns.
+     * Usage: {@code TrainingRun <main class> [arguments...]}, the main class must build the bot and call
+     * {@link com.jesus_crie.modularbot.core.ModularBot#login()}.
+     *
+     * @param args - The main class of the bot followed by its arguments.
+     */
+    public static void main(final String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: TrainingRun <main class> [arguments...]");
+            System.exit(1);
+        }
+
+        if (System.getProperty(PROPERTY) == null)
+            System.setProperty(PROPERTY, "true");
+
+        try {
+            final Method main = Class.forName(args[0]).getMethod("main", String[].class);
+            main.invoke(null, (Object) Arrays.copyOfRange(args, 1, args.length));
+        } catch (InvocationTargetException e) {
+            LOG.error("The training run has failed", e.getCause());
+            System.exit(1);
+        } catch (ReflectiveOperationException e) {
+            LOG.error("Can't run the main class " + args[0], e);
+            System.exit(1);
+        }
+
+        System.exit(0);
+    }
+
+    /**
+     * @return True if the training run is enabled by the system property {@value #PROPERTY}.
+     */
+    public static boolean isRequested() {
+        return System.getProperty(PROPERTY) != null && !System.getProperty(PROPERTY).equalsIgnoreCase("false");
+    }
+
+    /**
+     * @return The file given in the system property {@value #PROPERTY}, or {@code null} if it's only "true".
+     */
+    public static Path getRequestedClassList() {
+        final String value = System.getProperty(PROPERTY);
+        if (value == null || value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false"))
+            return null;
+        return Paths.get(value);
+    }
+
+    /**
+     * Queue a fake shard in the session controller, like the login of a single shard.
+     *
+     * @param controller - The session controller of the bot.
+     */
+    public static void simulateLogin(@Nonnull final SessionController controller) {
+        final LocalGateway gateway = new LocalGateway(1, 0);
+        gateway.connect(controller);
+        try {
+            if (!gateway.awaitIdentified(30, TimeUnit.SECONDS))
+                LOG.warn("The simulated shard hasn't identified in time");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Load without initializing every class of the jars that contain the given classes, the jars of JDA and its
+     * network libraries are always included. The directories are ignored.
+     *
+     * @param anchors - Some classes whose jars need to be loaded.
+     * @return The names of the loaded classes.
+     */
+    @Nonnull
+    public static Set<String> preloadClasses(@Nonnull final Collection<Class<?>> anchors) {
+        final List<Class<?>> all = new ArrayList<>(anchors);
+        all.add(JDA.class);
+        all.add(OkHttpClient.class);
+        all.add(WebSocketFactory.class);
+
+        final Set<Path> jars = new LinkedHashSet<>();
+        final Set<String> loaded = new LinkedHashSet<>();
+        for (final Class<?> anchor : all) {
+            final Path jar = getJar(anchor);
+            if (jar == null || !jars.add(jar))
+                continue;
+
+            try (final JarFile file = new JarFile(jar.toFile())) {
+                final Enumeration<JarEntry> entries = file.entries();
+                while (entries.hasMoreElements()) {
+                    final String name = entries.nextElement().getName();
+                    if (!name.endsWith(".class") || name.startsWith("META-INF/") || name.endsWith("module-info.class"))
+                        continue;
+
+                    final String className = name.substring(0, name.length() - 6).replace('/', '.');
+                    try {
+                        Class.forName(className, false, anchor.getClassLoader());
+                        loaded.add(className);
+                    } catch (ClassNotFoundException | LinkageError ignore) {
+                        // Optional dependency missing
+                    }
+                }
+            } catch (IOException e) {
+                LOG.warn("Failed to read " + jar, e);
+            }
+        }
+
+        LOG.info(String.format("Loaded %d classes from %d jars", loaded.size(), jars.size()));
+        return loaded;
+    }
+
+    /**
+     * Write the names of the classes in the format of a class list, one internal name per line.
+     * The list of the JVM ({@code -XX:DumpLoadedClassList}) is more complete since it also contains the classes of
+     * the JDK.
+     *
+     * @param classes - The names of the classes.
+     * @param file    - The destination file.
+     * @throws IOException If the file can't be written.
+     */
+    public static void writeClassList(@Nonnull final Collection<String> classes, @Nonnull final Path file) throws IOException {
+        try (final BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (final String name : classes) {
+                writer.write(name.replace('.', '/'));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * @return The time since the start of the JVM, in milliseconds.
+     */
+    public static long getUptime() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+    private static Path getJar(@Nonnull final Class<?> clazz) {
+        final CodeSource source = clazz.getProtectionDomain().getCodeSource();
+        if (source == null || source.getLocation() == null)
+            return null;
+
+        try {
+            final Path path = Paths.get(source.getLocation().toURI());
+            return Files.isRegularFile(path) ? path : null;
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -1,16 +1,23 @@
 package com.jesus_crie.modularbot.core.utils;
 
+import com.jesus_crie.modularbot.core.event.TypedEventListener;
 import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.ISnowflake;
 import net.dv8tion.jda.core.entities.MessageChannel;
 import net.dv8tion.jda.core.entities.User;
 import net.dv8tion.jda.core.events.Event;
+import net.dv8tion.jda.core.events.guild.GenericGuildEvent;
+import net.dv8tion.jda.core.events.message.GenericMessageEvent;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
-import net.dv8tion.jda.core.hooks.EventListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.concurrent.*;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -19,10 +26,54 @@ public class Waiter {
 
     private static final Logger LOG = LoggerFactory.getLogger("Waiter");
 
-    private static ScheduledExecutorService pool = null;
+    private static TimingWheel timer = null;
 
+    /**
+     * Use the {@link TimingWheel#getShared() shared timing wheel} to schedule the timeouts.
+     */
     public static void init() {
-        pool = Executors.newScheduledThreadPool(2, new ModularThreadFactory("Waiter", true));
+        init(TimingWheel.getShared());
+    }
+
+    /**
+     * Use the given timing wheel to schedule the timeouts.
+     *
+     * @param timingWheel The timing wheel to use.
+     */
+    public static void init(@Nonnull final TimingWheel timingWheel) {
+        timer = timingWheel;
+    }
+
+    /**
+     * Take a snapshot of the live waits of every shard, to find the ones that are leaking.
+     *
+     * @return A snapshot of the live waits.
+     */
+    @Nonnull
+    public static WaiterSnapshot getSnapshot() {
+        return WaiterTracker.snapshot();
+    }
+
+    /**
+     * Set the thresholds above which a warning is logged, they are checked every minute.
+     * (default) 10 000 live waits and 24 hours.
+     *
+     * @param maxLiveCount The maximum amount of live waits.
+     * @param maxAge       The maximum age of a wait in milliseconds.
+     */
+    public static void setLeakThresholds(final int maxLiveCount, final long maxAge) {
+        WaiterTracker.setThresholds(maxLiveCount, maxAge);
+    }
+
+    /**
+     * Whether or not to record the method that has registered each wait, which requires a stack trace per wait.
+     * Enable it while looking for a leak, the creators of the waits registered before are unknown.
+     * (default) false.
+     *
+     * @param capture True to record the creators.
+     */
+    public static void setCaptureCreator(final boolean capture) {
+        WaiterTracker.setCaptureCreator(capture);
     }
 
 
@@ -42,11 +93,24 @@ public class Waiter {
         createListener(shard, eventClass, checker, onSuccess, onTimeout, timeout, disposable).register();
     }
 
+    /**
+     * Same as {@link #awaitEvent(JDA, Class, Predicate, Consumer, Runnable, long, boolean)} but only the events with
+     * the given routing key are tested.
+     *
+     * @see #createListener(JDA, Class, RoutingKey, long, Predicate, Consumer, Runnable, long, boolean)
+     */
+    public static <T extends Event> void awaitEvent(@Nonnull final JDA shard, @Nonnull final Class<T> eventClass,
+                                                    @Nonnull final RoutingKey routingKey, final long key,
+                                                    @Nullable final Predicate<T> checker, @Nullable final Consumer<T> onSuccess,
+                                                    @Nullable final Runnable onTimeout, final long timeout, final boolean disposable) {
+        createListener(shard, eventClass, routingKey, key, checker, onSuccess, onTimeout, timeout, disposable).register();
+    }
+
     /**
      * Create a disposable listener and wait for the event to happen, then return the event or return {@code null} if the
      * listener has timed out or has crashed.
      * <p>
-     * This method is blocking.
+     * This method is blocking, prefer {@link #nextEvent(JDA, Class, Predicate, long)} on the event threads.
      *
      * @return The next event of the given type, or {@code null} if timeout.
      * @see #createListener(JDA, Class, Predicate, Consumer, Runnable, long, boolean)
@@ -54,7 +118,26 @@ public class Waiter {
     @Nullable
     public static <T extends Event> T getNextEvent(@Nonnull final JDA shard, @Nonnull final Class<T> eventClass,
                                                    @Nullable final Predicate<T> checker, final long timeout) {
-        final WaiterListener<T> listener = createListener(shard, eventClass, checker, null, null, timeout, true);
+        return getNextEvent(createListener(shard, eventClass, checker, null, null, timeout, true));
+    }
+
+    /**
+     * Same as {@link #getNextEvent(JDA, Class, Predicate, long)} but only the events with the given routing key are tested.
+     * <p>
+     * This method is blocking.
+     *
+     * @return The next event of the given type with the given key, or {@code null} if timeout.
+     * @see #createListener(JDA, Class, RoutingKey, long, Predicate, Consumer, Runnable, long, boolean)
+     */
+    @Nullable
+    public static <T extends Event> T getNextEvent(@Nonnull final JDA shard, @Nonnull final Class<T> eventClass,
+                                                   @Nonnull final RoutingKey routingKey, final long key,
+                                                   @Nullable final Predicate<T> checker, final long timeout) {
+        return getNextEvent(createListener(shard, eventClass, routingKey, key, checker, null, null, timeout, true));
+    }
+
+    @Nullable
+    private static <T extends Event> T getNextEvent(@Nonnull final WaiterListener<T> listener) {
         listener.register();
 
         try {
@@ -67,6 +150,88 @@ public class Waiter {
         }
     }
 
+    /**
+     * Create a disposable listener and return a stage that will be completed with the next matching event.
+     * If the listener times out, the stage is completed exceptionally with a {@link CancellationException}.
+     * <p>
+     * This method isn't blocking, cancelling the returned future releases the listener.
+     *
+     * @return A stage completed with the next event of the given type.
+     * @see #createListener(JDA, Class, Predicate, Consumer, Runnable, long, boolean)
+     */
+    @Nonnull
+    public static <T extends Event> CompletionStage<T> nextEvent(@Nonnull final JDA shard, @Nonnull final Class<T> eventClass,
+                                                                 @Nullable final Predicate<T> checker, final long timeout) {
+        return createListener(shard, eventClass, checker, null, null, timeout, true).register();
+    }
+
+    /**
+     * Same as {@link #nextEvent(JDA, Class, Predicate, long)} but only the events with the given routing key are tested.
+     * <p>
+     * This method isn't blocking.
+     *
+     * @return A stage completed with the next event of the given type with the given key.
+     * @see #createListener(JDA, Class, RoutingKey, long, Predicate, Consumer, Runnable, long, boolean)
+     */
+    @Nonnull
+    public static <T extends Event> CompletionStage<T> nextEvent(@Nonnull final JDA shard, @Nonnull final Class<T> eventClass,
+                                                                 @Nonnull final RoutingKey routingKey, final long key,
+                                                                 @Nullable final Predicate<T> checker, final long timeout) {
+        return createListener(shard, eventClass, routingKey, key, checker, null, null, timeout, true).register();
+    }
+
+    /**
+     * Non blocking version of {@link #getNextMessageFromUser(JDA, User, long)}.
+     *
+     * @return A stage completed with the event corresponding to the next message of the target.
+     */
+    @Nonnull
+    public static CompletionStage<MessageReceivedEvent> nextMessageFromUser(@Nonnull final JDA shard, @Nonnull final User target, final long timeout) {
+        return nextEvent(shard, MessageReceivedEvent.class, RoutingKey.USER, target.getIdLong(), null, timeout);
+    }
+
+    /**
+     * Non blocking version of {@link #getNextMessageFromUserInChannel(JDA, User, MessageChannel, long)}.
+     *
+     * @return A stage completed with the event corresponding to the next message of the target in the channel.
+     */
+    @Nonnull
+    public static CompletionStage<MessageReceivedEvent> nextMessageFromUserInChannel(@Nonnull final JDA shard, @Nonnull final User target,
+                                                                                     @Nonnull final MessageChannel targetChannel, final long timeout) {
+        return nextEvent(shard, MessageReceivedEvent.class, RoutingKey.CHANNEL, targetChannel.getIdLong(),
+                event -> event.getAuthor().equals(target),
+                timeout);
+    }
+
+    /**
+     * Create a stream of every matching event until the subscription is cancelled or the listener times out.
+     * The listener is registered when the stream is subscribed.
+     * <p>
+     * This method isn't blocking.
+     *
+     * @param shard      The shard where the events are supposed to happen.
+     * @param eventClass The class of the events to listen to.
+     * @param routingKey (Optional) The kind of entity to route the events with, {@code null} to receive every event.
+     * @param key        The id of the entity that the events must have.
+     * @param checker    (Optional) A checker to say if an event is valid or not.
+     * @param timeout    The life time in millisecond of the stream, 0 for infinite.
+     * @param capacity   The maximum amount of events buffered while the subscriber hasn't requested them.
+     * @param <T>        The type of event to listen to.
+     * @return A new {@link EventPublisher EventPublisher}.
+     */
+    @Nonnull
+    public static <T extends Event> EventPublisher<T> eventStream(@Nonnull final JDA shard, @Nonnull final Class<T> eventClass,
+                                                                  @Nullable final RoutingKey routingKey, final long key,
+                                                                  @Nullable final Predicate<T> checker, final long timeout, final int capacity) {
+        final EventPublisher<T> publisher = new EventPublisher<>(capacity);
+        publisher.bind(createListener(shard, eventClass, routingKey, key,
+                checker != null ? checker : event -> true,
+                publisher::push, publisher::complete,
+                timeout, false));
+
+        return publisher;
+    }
+
     /**
      * Create a disposable listener that will wait for the next message of a {@link User User} in the shard and return
      * the corresponding event.
@@ -77,8 +242,8 @@ public class Waiter {
      */
     @Nullable
     public static MessageReceivedEvent getNextMessageFromUser(@Nonnull final JDA shard, @Nonnull final User target, final long timeout) {
-        return getNextEvent(shard, MessageReceivedEvent.class,
-                event -> event.getAuthor().equals(target),
+        return getNextEvent(shard, MessageReceivedEvent.class, RoutingKey.USER, target.getIdLong(),
+                null,
                 timeout);
     }
 
@@ -93,14 +258,14 @@ public class Waiter {
     @Nullable
     public static MessageReceivedEvent getNextMessageFromUserInChannel(@Nonnull final JDA shard, @Nonnull final User target,
                                                                        @Nonnull final MessageChannel targetChannel, final long timeout) {
-        return getNextEvent(shard, MessageReceivedEvent.class,
-                event -> event.getAuthor().equals(target) && event.getChannel().equals(targetChannel),
+        return getNextEvent(shard, MessageReceivedEvent.class, RoutingKey.CHANNEL, targetChannel.getIdLong(),
+                event -> event.getAuthor().equals(target),
                 timeout);
     }
 
     /**
      * Create a listener that will wait for a specific event and can perform various checks and action during this process.
-     * It uses the shard's pool to schedule the timeout.
+     * The timeout is scheduled in a {@link TimingWheel TimingWheel}.
      *
      * @param shard      The shard where the event is supposed to happen.
      * @param eventClass The class of the event to listen to.
@@ -115,81 +280,271 @@ public class Waiter {
     public static <T extends Event> WaiterListener<T> createListener(@Nonnull final JDA shard, @Nonnull final Class<T> eventClass,
                                                                      @Nullable final Predicate<T> checker, @Nullable final Consumer<T> onSuccess,
                                                                      @Nullable final Runnable onTimeout, final long timeout, final boolean disposable) {
-        // Init pool if not done
-        if (pool == null) {
+        return createListener(shard, eventClass, null, 0, checker, onSuccess, onTimeout, timeout, disposable);
+    }
+
+    /**
+     * Create a listener that will wait for a specific event and that will only be tested against the events with the
+     * given routing key, like the id of a message or of a user. This is much cheaper than filtering them in the
+     * checker when a lot of listeners are waiting for the same type of event.
+     *
+     * @param shard      The shard where the event is supposed to happen.
+     * @param eventClass The class of the event to listen to.
+     * @param routingKey (Optional) The kind of entity to route the events with, {@code null} to receive every event.
+     * @param key        The id of the entity that the events must have.
+     * @param checker    (Optional) A checker to say if the event is valid or not.
+     * @param onSuccess  (Optional) Code to execute if the listener successfully catch an event.
+     * @param onTimeout  (Optional) Code to execute when the listener will timeout (if a timeout is set).
+     * @param timeout    The life time in millisecond of the listener. After that, it will be destroyed. 0 for infinite.
+     * @param disposable If true, the listener will trigger at most one time and then complete, otherwise it will continue until it times out.
+     * @param <T>        The type of event to listen to.
+     * @return A new {@link WaiterListener WaiterListener} configured with the given parameters.
+     * @see #createListener(JDA, Class, Predicate, Consumer, Runnable, long, boolean)
+     */
+    public static <T extends Event> WaiterListener<T> createListener(@Nonnull final JDA shard, @Nonnull final Class<T> eventClass,
+                                                                     @Nullable final RoutingKey routingKey, final long key,
+                                                                     @Nullable final Predicate<T> checker, @Nullable final Consumer<T> onSuccess,
+                                                                     @Nullable final Runnable onTimeout, final long timeout, final boolean disposable) {
+        // Init timer if not done
+        if (timer == null) {
             init();
         }
 
         if (eventClass.getName().equals("com.jesus_crie.modularbot_command.CommandEvent"))
             throw new IllegalArgumentException("You can't wait for CommandEvent, these events aren't triggered.");
 
-        final WaiterListener<T> listener = new WaiterListener<>(shard, eventClass);
-        final ScheduledFuture timeoutFuture;
+        final WaiterListener<T> listener = new WaiterListener<>(shard, eventClass, routingKey, key);
+        final TimingWheel.Timeout timeoutFuture;
 
         if (timeout > 0) {
-            timeoutFuture = pool.schedule(() -> {
+            timeoutFuture = timer.schedule(() -> {
                 if (onTimeout != null) onTimeout.run();
                 listener.cancel(true);
             }, timeout, TimeUnit.MILLISECONDS);
 
         } else timeoutFuture = null;
+        listener.timeout = timeoutFuture;
+        listener.callback = onSuccess != null ? onSuccess : checker;
+        listener.onTrigger = checker != null ? checker : event -> true;
+        listener.onSuccess = onSuccess;
+        listener.disposable = disposable;
 
-        listener.onTrigger = event -> {
-            if (checker == null) return true;
+        return listener;
+    }
+
+    /**
+     * The kinds of entity that can be used to route the events to the listeners.
+     */
+    public enum RoutingKey {
+        /**
+         * The id of the message of a message or reaction event.
+         */
+        MESSAGE("getMessageIdLong"),
+        /**
+         * The id of the user that has triggered the event, the author of a message for example.
+         */
+        USER("getAuthor", "getUser"),
+        /**
+         * The id of the channel of the event.
+         */
+        CHANNEL("getChannel"),
+        /**
+         * The id of the guild of the event.
+         */
+        GUILD("getGuild");
+
+        /**
+         * Returned when an event doesn't have an entity of this kind.
+         */
+        public static final long NONE = -1;
+
+        private final String[] getterNames;
+        private final ClassValue<Method[]> getters = new ClassValue<Method[]>() {
+            @Override
+            protected Method[] computeValue(final Class<?> type) {
+                return Arrays.stream(getterNames)
+                        .map(name -> {
+                            try {
+                                return type.getMethod(name);
+                            } catch (NoSuchMethodException e) {
+                                return null;
+                            }
+                        })
+                        .filter(method -> method != null && (method.getReturnType() == long.class
+                                || ISnowflake.class.isAssignableFrom(method.getReturnType())))
+                        .toArray(Method[]::new);
+            }
+        };
+
+        RoutingKey(@Nonnull final String... getterNames) {
+            this.getterNames = getterNames;
+        }
 
-            if (checker.test(event)) {
-                if (onSuccess != null) onSuccess.accept(event);
+        /**
+         * Extract the id of the entity of this kind from an event.
+         *
+         * @param event The event.
+         * @return The id of the entity or {@link #NONE} if there isn't any.
+         */
+        public long extract(@Nonnull final Event event) {
+            // Fast paths for the most common events
+            if (this == MESSAGE && event instanceof GenericMessageEvent)
+                return ((GenericMessageEvent) event).getMessageIdLong();
+            if (this == CHANNEL && event instanceof GenericMessageEvent)
+                return ((GenericMessageEvent) event).getChannel().getIdLong();
+            if (this == GUILD && event instanceof GenericGuildEvent)
+                return ((GenericGuildEvent) event).getGuild().getIdLong();
+            if (this == GUILD && event instanceof GenericMessageEvent) {
+                final Guild guild = ((GenericMessageEvent) event).getGuild();
+                return guild == null ? NONE : guild.getIdLong();
+            }
 
-                if (disposable) {
-                    if (timeoutFuture != null) timeoutFuture.cancel(true);
-                    return true;
+            for (final Method getter : getters.get(event.getClass())) {
+                try {
+                    final Object value = getter.invoke(event);
+                    if (value instanceof Long)
+                        return (Long) value;
+                    if (value != null)
+                        return ((ISnowflake) value).getIdLong();
+                } catch (ReflectiveOperationException ignore) {
+                    // Try the next one
                 }
             }
-            return false;
-        };
 
-        return listener;
+            return NONE;
+        }
     }
 
-    public static class WaiterListener<T extends Event> extends CompletableFuture<T> implements EventListener {
+    public static class WaiterListener<T extends Event> extends CompletableFuture<T> implements TypedEventListener {
 
         public static final WaiterListener<?> EMPTY = new WaiterListener<>();
 
         private final JDA shard;
         private final Class<T> eventClass;
+        private final RoutingKey routingKey;
+        private final long key;
         private Predicate<T> onTrigger = null;
+        private Consumer<T> onSuccess = null;
+        private boolean disposable = true;
+        private TimingWheel.Timeout timeout = null;
+        private WeakReference<Object> owner = null;
+        private Object callback = null;
 
         public WaiterListener(@Nonnull final JDA shard, @Nonnull final Class<T> eventClass) {
+            this(shard, eventClass, null, 0);
+        }
+
+        public WaiterListener(@Nonnull final JDA shard, @Nonnull final Class<T> eventClass,
+                              @Nullable final RoutingKey routingKey, final long key) {
             this.shard = shard;
             this.eventClass = eventClass;
+            this.routingKey = routingKey;
+            this.key = key;
         }
 
         private WaiterListener() {
             shard = null;
             eventClass = null;
+            routingKey = null;
+            key = 0;
         }
 
         public WaiterListener<T> register() {
-            if (shard != null)
-                shard.addEventListener(this);
+            if (shard != null) {
+                WaiterTracker.track(this, owner != null ? owner.get() : null);
+                WaiterRegistry.of(shard).register(this);
+            }
             return this;
         }
 
         public void unregister() {
-            if (shard != null)
-                shard.removeEventListener(this);
+            if (shard != null) {
+                // Don't create a registry on a shard that is gone
+                final WaiterRegistry registry = WaiterRegistry.find(shard);
+                if (registry != null)
+                    registry.unregister(this);
+                WaiterTracker.untrack(this);
+            }
+        }
+
+        /**
+         * Tie this listener to an owner, it will be cancelled once the owner is garbage collected.
+         * The callbacks of the listener must not reference the owner, otherwise it will never be collected.
+         *
+         * @param owner The owner of this listener, a module or a decorator for example.
+         * @return The current listener.
+         */
+        public WaiterListener<T> bindTo(@Nonnull final Object owner) {
+            this.owner = new WeakReference<>(owner);
+            WaiterTracker.bind(this, owner);
+            return this;
+        }
+
+        /**
+         * Get the object responsible for the work done by this listener when it receives an event, to attribute it.
+         *
+         * @return The owner of this listener if it has one, otherwise its callback or {@code null}.
+         */
+        @Nullable
+        public Object getTarget() {
+            final Object target = owner != null ? owner.get() : null;
+            return target != null ? target : callback;
+        }
+
+        /**
+         * Set the callback that handles the events received by this listener, see {@link #getTarget()}.
+         *
+         * @param callback - The callback.
+         */
+        void setCallback(@Nonnull final Object callback) {
+            this.callback = callback;
+        }
+
+        /**
+         * @return The kind of entity used to route the events to this listener, or {@code null} if it receives every event.
+         */
+        @Nullable
+        public RoutingKey getRoutingKey() {
+            return routingKey;
+        }
+
+        /**
+         * @return The id of the entity that the events must have, if there is a routing key.
+         */
+        public long getKey() {
+            return key;
+        }
+
+        /**
+         * @return The type of event this listener is waiting for.
+         */
+        @Nullable
+        public Class<T> getEventClass() {
+            return eventClass;
+        }
+
+        @Nonnull
+        @Override
+        public Class<?>[] getEventTypes() {
+            return eventClass == null ? new Class<?>[0] : new Class<?>[]{eventClass};
         }
 
         @SuppressWarnings("unchecked")
         @Override
         public void onEvent(Event event) {
             if (eventClass != null && eventClass.isInstance(event)) {
-                if (onTrigger == null)
+                if (onTrigger == null || (disposable && isDone()))
                     return;
 
                 if (onTrigger.test((T) event)) {
-                    unregister();
-                    complete((T) event);
+                    if (onSuccess != null) onSuccess.accept((T) event);
+
+                    if (disposable) {
+                        // Don't let the timeout pin the listener or run its callback once completed
+                        if (timeout != null) timeout.cancel();
+                        unregister();
+                        complete((T) event);
+                    }
                 }
             }
         }
@@ -197,6 +552,8 @@ public class Waiter {
         @Override
         public boolean cancel(boolean mayInterruptIfRunning) {
             unregister();
+            if (timeout != null)
+                timeout.cancel();
             return super.cancel(mayInterruptIfRunning);
         }
     }
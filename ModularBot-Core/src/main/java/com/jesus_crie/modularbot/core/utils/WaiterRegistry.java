@@ -0,0 +1,223 @@
+package com.jesus_crie.modularbot.core.utils;
+
+import com.jesus_crie.modularbot.core.stats.DispatchWatchdog;
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.events.Event;
+import net.dv8tion.jda.core.events.ShutdownEvent;
+import net.dv8tion.jda.core.hooks.EventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single listener of a shard that holds every pending {@link Waiter.WaiterListener WaiterListener} of this shard.
+ * <p>
+ * The waits are indexed by the class of event they are waiting for and by their routing key if they have one,
+ * so an incoming event is only tested against the waits that could match it instead of every one of them.
+ */
+public class WaiterRegistry implements EventListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger("WaiterRegistry");
+
+    // One registry per shard, disposed when the shard shuts down
+    private static final Map<JDA, WaiterRegistry> REGISTRIES = new ConcurrentHashMap<>();
+
+    // Every class and interface of an event class, to find the waits on its super types
+    private static final ClassValue<Class<?>[]> HIERARCHY = new ClassValue<Class<?>[]>() {
+        @Override
+        protected Class<?>[] computeValue(final Class<?> type) {
+            final Set<Class<?>> hierarchy = new LinkedHashSet<>();
+            collectHierarchy(type, hierarchy);
+            return hierarchy.toArray(new Class<?>[0]);
+        }
+    };
+
+    private final Map<Class<?>, Bucket> waits = new ConcurrentHashMap<>();
+
+    private WaiterRegistry() {}
+
+    /**
+     * Get the registry of a shard, it is created and registered on the shard the first time.
+     *
+     * @param shard - The shard.
+     * @return The registry of this shard.
+     */
+    @Nonnull
+    public static WaiterRegistry of(@Nonnull final JDA shard) {
+        final WaiterRegistry registry = REGISTRIES.get(shard);
+        if (registry != null)
+            return registry;
+
+        // The registry is the only listener of the waiters so the list of listeners stays short
+        return REGISTRIES.computeIfAbsent(shard, s -> {
+            final WaiterRegistry created = new WaiterRegistry();
+            s.addEventListener(created);
+            return created;
+        });
+    }
+
+    /**
+     * Get the registry of a shard without creating it.
+     *
+     * @param shard - The shard.
+     * @return The registry of this shard or {@code null} if there is none.
+     */
+    @Nullable
+    static WaiterRegistry find(@Nonnull final JDA shard) {
+        return REGISTRIES.get(shard);
+    }
+
+    /**
+     * Forget the registry of a shard and cancel its pending waits, they can't complete once the shard is gone.
+     * Called when the shard shuts down or when its listeners are removed before that.
+     *
+     * @param shard - The shard.
+     */
+    public static void dispose(@Nonnull final JDA shard) {
+        final WaiterRegistry registry = REGISTRIES.remove(shard);
+        if (registry == null)
+            return;
+
+        final List<Waiter.WaiterListener<?>> pending = new ArrayList<>();
+        for (final Bucket bucket : registry.waits.values()) {
+            pending.addAll(bucket.unkeyed);
+            for (final Map<Long, Set<Waiter.WaiterListener<?>>> keyed : bucket.keyed.values())
+                keyed.values().forEach(pending::addAll);
+        }
+
+        // The registry is already forgotten, so cancelling them only untracks them
+        pending.forEach(listener -> listener.cancel(true));
+        registry.waits.clear();
+        shard.removeEventListener(registry);
+    }
+
+    private static void collectHierarchy(final Class<?> type, @Nonnull final Set<Class<?>> hierarchy) {
+        if (type == null || !hierarchy.add(type))
+            return;
+
+        collectHierarchy(type.getSuperclass(), hierarchy);
+        for (final Class<?> i : type.getInterfaces())
+            collectHierarchy(i, hierarchy);
+    }
+
+    /**
+     * Add a wait to the registry.
+     *
+     * @param listener - The wait.
+     */
+    void register(@Nonnull final Waiter.WaiterListener<?> listener) {
+        final Bucket bucket = waits.computeIfAbsent(listener.getEventClass(), c -> new Bucket());
+
+        if (listener.getRoutingKey() == null) {
+            bucket.unkeyed.add(listener);
+        } else {
+            bucket.keyed.get(listener.getRoutingKey()).compute(listener.getKey(), (k, listeners) -> {
+                final Set<Waiter.WaiterListener<?>> set = listeners != null ? listeners : ConcurrentHashMap.newKeySet();
+                set.add(listener);
+                return set;
+            });
+        }
+    }
+
+    /**
+     * Remove a wait from the registry.
+     *
+     * @param listener - The wait.
+     */
+    void unregister(@Nonnull final Waiter.WaiterListener<?> listener) {
+        final Bucket bucket = waits.get(listener.getEventClass());
+        if (bucket == null)
+            return;
+
+        if (listener.getRoutingKey() == null) {
+            bucket.unkeyed.remove(listener);
+        } else {
+            bucket.keyed.get(listener.getRoutingKey()).computeIfPresent(listener.getKey(), (k, listeners) -> {
+                listeners.remove(listener);
+                return listeners.isEmpty() ? null : listeners;
+            });
+        }
+    }
+
+    /**
+     * @return The amount of pending waits in this registry.
+     */
+    public int getPendingCount() {
+        int count = 0;
+        for (final Bucket bucket : waits.values()) {
+            count += bucket.unkeyed.size();
+            for (final Map<Long, Set<Waiter.WaiterListener<?>>> keyed : bucket.keyed.values()) {
+                for (final Set<Waiter.WaiterListener<?>> listeners : keyed.values())
+                    count += listeners.size();
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public void onEvent(final Event event) {
+        if (event instanceof ShutdownEvent) {
+            if (REGISTRIES.get(event.getJDA()) == this)
+                dispose(event.getJDA());
+            return;
+        }
+
+        if (waits.isEmpty())
+            return;
+
+        final List<Waiter.WaiterListener<?>> targets = new ArrayList<>();
+        for (final Class<?> type : HIERARCHY.get(event.getClass())) {
+            final Bucket bucket = waits.get(type);
+            if (bucket == null)
+                continue;
+
+            targets.addAll(bucket.unkeyed);
+
+            for (final Map.Entry<Waiter.RoutingKey, Map<Long, Set<Waiter.WaiterListener<?>>>> entry : bucket.keyed.entrySet()) {
+                if (entry.getValue().isEmpty())
+                    continue;
+
+                final long key = entry.getKey().extract(event);
+                if (key == Waiter.RoutingKey.NONE)
+                    continue;
+
+                final Set<Waiter.WaiterListener<?>> listeners = entry.getValue().get(key);
+                if (listeners != null)
+                    targets.addAll(listeners);
+            }
+        }
+
+        for (final Waiter.WaiterListener<?> listener : targets) {
+            // Blame the callback of the wait rather than the registry if it blocks
+            DispatchWatchdog.delegate(listener.getTarget());
+            try {
+                listener.onEvent(event);
+            } catch (Throwable t) {
+                LOG.error("A waiter had an uncaught exception", t);
+            }
+        }
+        DispatchWatchdog.delegate(null);
+    }
+
+    private static class Bucket {
+
+        private final Set<Waiter.WaiterListener<?>> unkeyed = ConcurrentHashMap.newKeySet();
+        private final Map<Waiter.RoutingKey, Map<Long, Set<Waiter.WaiterListener<?>>>> keyed = new EnumMap<>(Waiter.RoutingKey.class);
+
+        private Bucket() {
+            // Never modified after that, only the inner maps are
+            for (final Waiter.RoutingKey key : Waiter.RoutingKey.values())
+                keyed.put(key, new ConcurrentHashMap<>());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.jesus_crie.modularbot.core.utils;
+
+import com.jesus_crie.modularbot.core.stats.LatencyHistogram;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable copy of the live waits of the {@link Waiter} at a given time.
+ *
+ * @see Waiter#getSnapshot()
+ */
+public class WaiterSnapshot {
+
+    private final long timestamp;
+    private final long registeredCount;
+    private final long reclaimedCount;
+    private final Map<String, Integer> countByEventClass;
+    private final Map<String, Integer> countByCreator;
+    private final LatencyHistogram.Snapshot ages;
+    private final long oldestAge;
+
+    WaiterSnapshot(final long timestamp, final long registeredCount, final long reclaimedCount,
+                   @Nonnull final Map<String, Integer> countByEventClass, @Nonnull final Map<String, Integer> countByCreator,
+                   @Nonnull final LatencyHistogram.Snapshot ages, final long oldestAge) {
+        this.timestamp = timestamp;
+        this.registeredCount = registeredCount;
+        this.reclaimedCount = reclaimedCount;
+        this.countByEventClass = Collections.unmodifiableMap(countByEventClass);
+        this.countByCreator = Collections.unmodifiableMap(countByCreator);
+        this.ages = ages;
+        this.oldestAge = oldestAge;
+    }
+
+    /**
+     * @return The time at which the snapshot was taken, in epoch milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return The amount of waits registered and not yet completed, cancelled or timed out.
+     */
+    public long getLiveCount() {
+        return ages.getCount();
+    }
+
+    /**
+     * @return The amount of waits registered since the start.
+     */
+    public long getRegisteredCount() {
+        return registeredCount;
+    }
+
+    /**
+     * @return The amount of waits cancelled because their owner has been garbage collected.
+     */
+    public long getReclaimedCount() {
+        return reclaimedCount;
+    }
+
+    /**
+     * @return The amount of live waits by name of the class of event they are waiting for.
+     */
+    @Nonnull
+    public Map<String, Integer> getCountByEventClass() {
+        return countByEventClass;
+    }
+
+    /**
+     * @return The amount of live waits by method that has registered them, as {@code class#method}.
+     */
+    @Nonnull
+    public Map<String, Integer> getCountByCreator() {
+        return countByCreator;
+    }
+
+    /**
+     * @return The histogram of the ages of the live waits, in nanoseconds.
+     */
+    @Nonnull
+    public LatencyHistogram.Snapshot getAges() {
+        return ages;
+    }
+
+    /**
+     * @return The age of the oldest live wait, in milliseconds.
+     */
+    public long getOldestAge() {
+        return oldestAge;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WaiterSnapshot[live=%d, registered=%d, reclaimed=%d, oldest=%dms]",
+                getLiveCount(), registeredCount, reclaimedCount, oldestAge);
+    }
+}
@@ -0,0 +1,222 @@
+package com.jesus_crie.modularbot.core.utils;
+
+import com.jesus_crie.modularbot.core.stats.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps track of every registered {@link Waiter.WaiterListener WaiterListener} of every shard to find the leaked ones.
+ * <p>
+ * A wait without timeout that isn't disposable stays registered until someone unregisters it, if nobody does the
+ * listeners pile up and slow down the dispatch of the events. The tracker knows when and from where each live wait
+ * was registered, releases the waits bound to an owner that has been garbage collected and periodically warns
+ * when the amount of live waits or the age of the oldest one crosses the thresholds.
+ */
+class WaiterTracker {
+
+    private static final Logger LOG = LoggerFactory.getLogger("WaiterTracker");
+
+    private static final String UNKNOWN_CREATOR = "<unknown>";
+    private static final long CHECK_PERIOD = 60;
+
+    private static final Map<Waiter.WaiterListener<?>, Record> live = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Object> collectedOwners = new ReferenceQueue<>();
+    private static final AtomicLong registered = new AtomicLong();
+    private static final AtomicLong reclaimed = new AtomicLong();
+
+    private static volatile boolean captureCreator = false;
+    private static volatile int maxLive = 10_000;
+    private static volatile long maxAge = TimeUnit.HOURS.toMillis(24);
+
+    private static ScheduledExecutorService checker = null;
+    private static boolean liveWarned = false;
+    private static boolean ageWarned = false;
+
+    // Can't be instantiated.
+    private WaiterTracker() {}
+
+    static void setCaptureCreator(final boolean capture) {
+        captureCreator = capture;
+    }
+
+    static void setThresholds(final int maxLiveCount, final long maxAgeMillis) {
+        maxLive = maxLiveCount;
+        maxAge = maxAgeMillis;
+    }
+
+    /**
+     * Called when a wait is registered.
+     *
+     * @param listener - The wait.
+     * @param owner    - (Optional) The owner of the wait.
+     */
+    static void track(@Nonnull final Waiter.WaiterListener<?> listener, @Nullable final Object owner) {
+        final Record record = new Record(captureCreator ? findCreator() : UNKNOWN_CREATOR);
+        if (live.putIfAbsent(listener, record) == null) {
+            registered.incrementAndGet();
+            if (owner != null)
+                record.owner = new OwnerReference(owner, listener);
+        }
+
+        reclaimCollected();
+        startChecker();
+    }
+
+    /**
+     * Called when a wait is unregistered, whatever the reason.
+     *
+     * @param listener - The wait.
+     */
+    static void untrack(@Nonnull final Waiter.WaiterListener<?> listener) {
+        final Record record = live.remove(listener);
+        if (record != null && record.owner != null)
+            record.owner.clear();
+    }
+
+    /**
+     * Bind a wait to an owner, the wait is cancelled when the owner is garbage collected.
+     *
+     * @param listener - The wait, nothing happens if it isn't registered.
+     * @param owner    - The owner.
+     */
+    static void bind(@Nonnull final Waiter.WaiterListener<?> listener, @Nonnull final Object owner) {
+        final Record record = live.get(listener);
+        if (record != null)
+            record.owner = new OwnerReference(owner, listener);
+    }
+
+    /**
+     * Cancel the waits whose owner has been garbage collected.
+     */
+    static void reclaimCollected() {
+        Reference<?> reference;
+        while ((reference = collectedOwners.poll()) != null) {
+            final Waiter.WaiterListener<?> listener = ((OwnerReference) reference).listener;
+            if (live.containsKey(listener)) {
+                reclaimed.incrementAndGet();
+                listener.cancel(true);
+            }
+        }
+    }
+
+    @Nonnull
+    static WaiterSnapshot snapshot() {
+        reclaimCollected();
+
+        final long now = System.nanoTime();
+        final LatencyHistogram ages = new LatencyHistogram();
+        final Map<String, Integer> byEventClass = new HashMap<>();
+        final Map<String, Integer> byCreator = new HashMap<>();
+        long oldest = 0;
+
+        for (final Map.Entry<Waiter.WaiterListener<?>, Record> entry : live.entrySet()) {
+            final Class<?> eventClass = entry.getKey().getEventClass();
+            final long age = now - entry.getValue().registeredAt;
+
+            ages.record(age);
+            oldest = Math.max(oldest, age);
+            byEventClass.merge(eventClass == null ? "null" : eventClass.getName(), 1, Integer::sum);
+            byCreator.merge(entry.getValue().creator, 1, Integer::sum);
+        }
+
+        return new WaiterSnapshot(System.currentTimeMillis(), registered.get(), reclaimed.get(),
+                byEventClass, byCreator, ages.snapshot(), TimeUnit.NANOSECONDS.toMillis(oldest));
+    }
+
+    private static synchronized void startChecker() {
+        if (checker != null)
+            return;
+
+        checker = Executors.newSingleThreadScheduledExecutor(new ModularThreadFactory("Waiter Tracker", true));
+        checker.scheduleWithFixedDelay(WaiterTracker::check, CHECK_PERIOD, CHECK_PERIOD, TimeUnit.SECONDS);
+    }
+
+    private static synchronized void check() {
+        try {
+            final WaiterSnapshot snapshot = snapshot();
+
+            // Warn once when crossing a threshold, again only after going back under it
+            if (snapshot.getLiveCount() > maxLive) {
+                if (!liveWarned)
+                    LOG.warn(String.format("%d waits are alive, they might be leaking. Top creators: %s",
+                            snapshot.getLiveCount(), getTopCreators(snapshot)));
+                liveWarned = true;
+            } else liveWarned = false;
+
+            if (snapshot.getOldestAge() > maxAge) {
+                if (!ageWarned)
+                    LOG.warn(String.format("The oldest wait is alive for %d minutes, it might be leaking. Top creators: %s",
+                            TimeUnit.MILLISECONDS.toMinutes(snapshot.getOldestAge()), getTopCreators(snapshot)));
+                ageWarned = true;
+            } else ageWarned = false;
+        } catch (Exception e) {
+            LOG.error("Failed to check the live waits", e);
+        }
+    }
+
+    @Nonnull
+    private static String getTopCreators(@Nonnull final WaiterSnapshot snapshot) {
+        return snapshot.getCountByCreator().entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .limit(5)
+                .map(e -> e.getKey() + "=" + e.getValue())
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    /**
+     * Find the first method outside of the waiter that has registered the wait.
+     *
+     * @return The creator as {@code class#method}.
+     */
+    @Nonnull
+    private static String findCreator() {
+        for (final StackTraceElement element : new Throwable().getStackTrace()) {
+            final String className = element.getClassName();
+            if (className.startsWith(Waiter.class.getName()) || className.equals(WaiterTracker.class.getName())
+                    || className.equals(EventPublisher.class.getName()))
+                continue;
+
+            return className + "#" + element.getMethodName();
+        }
+
+        return UNKNOWN_CREATOR;
+    }
+
+    private static class Record {
+
+        private final long registeredAt = System.nanoTime();
+        private final String creator;
+        private volatile OwnerReference owner = null;
+
+        private Record(@Nonnull final String creator) {
+            this.creator = creator;
+        }
+    }
+
+    /**
+     * Weak reference to the owner of a wait, it holds the wait strongly so it can be cancelled once the owner is gone.
+     */
+    private static class OwnerReference extends WeakReference<Object> {
+
+        private final Waiter.WaiterListener<?> listener;
+
+        private OwnerReference(@Nullable final Object owner, @Nonnull final Waiter.WaiterListener<?> listener) {
+            super(owner, collectedOwners);
+            this.listener = listener;
+        }
+    }
+}
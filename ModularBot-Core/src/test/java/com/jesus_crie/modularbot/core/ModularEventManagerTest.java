@@ -0,0 +1,84 @@
+package com.jesus_crie.modularbot.core;
+
+import net.dv8tion.jda.core.events.Event;
+import net.dv8tion.jda.core.events.UpdateEvent;
+import net.dv8tion.jda.core.events.guild.GuildLeaveEvent;
+import net.dv8tion.jda.core.events.guild.GuildReadyEvent;
+import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.core.hooks.ListenerAdapter;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.hamcrest.junit.MatcherAssert.assertThat;
+
+class ModularEventManagerTest {
+
+    @Test
+    void overrides() {
+        assertThat(ModularEventManager.getSubscriptions(new DirectAdapter()),
+                arrayContainingInAnyOrder(MessageReceivedEvent.class, GuildLeaveEvent.class));
+    }
+
+    @Test
+    void inherited() {
+        // The overrides of the intermediate class count too
+        assertThat(ModularEventManager.getSubscriptions(new SubAdapter()),
+                arrayContainingInAnyOrder(MessageReceivedEvent.class, GuildReadyEvent.class));
+    }
+
+    @Test
+    void interfaceParameter() {
+        assertThat(ModularEventManager.getSubscriptions(new UpdateAdapter()), arrayContaining(UpdateEvent.class));
+    }
+
+    @Test
+    void genericEvent() {
+        assertThat(ModularEventManager.getSubscriptions(new GenericAdapter()), arrayContaining(Event.class));
+    }
+
+    @Test
+    void nothing() {
+        assertThat(ModularEventManager.getSubscriptions(new ListenerAdapter() {}), emptyArray());
+    }
+
+    private static class DirectAdapter extends ListenerAdapter {
+
+        @Override
+        public void onMessageReceived(final MessageReceivedEvent event) {}
+
+        @Override
+        public void onGuildLeave(final GuildLeaveEvent event) {}
+
+        // Not a hook of the adapter
+        public void onSomething(final GuildReadyEvent event) {}
+
+        private static void onStatic(final Event event) {}
+    }
+
+    private static class IntermediateAdapter extends ListenerAdapter {
+
+        @Override
+        public void onGuildReady(final GuildReadyEvent event) {}
+    }
+
+    private static class SubAdapter extends IntermediateAdapter {
+
+        @Override
+        public void onMessageReceived(final MessageReceivedEvent event) {}
+    }
+
+    private static class UpdateAdapter extends ListenerAdapter {
+
+        @Override
+        public void onGenericUpdate(final UpdateEvent<?, ?> event) {}
+    }
+
+    private static class GenericAdapter extends ListenerAdapter {
+
+        @Override
+        public void onGenericEvent(final Event event) {}
+
+        @Override
+        public void onMessageReceived(final MessageReceivedEvent event) {}
+    }
+}
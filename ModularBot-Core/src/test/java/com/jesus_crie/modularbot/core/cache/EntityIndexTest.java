@@ -0,0 +1,146 @@
+package com.jesus_crie.modularbot.core.cache;
+
+import net.dv8tion.jda.core.entities.Category;
+import net.dv8tion.jda.core.entities.Emote;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.Role;
+import net.dv8tion.jda.core.entities.TextChannel;
+import net.dv8tion.jda.core.entities.VoiceChannel;
+import net.dv8tion.jda.core.events.channel.text.TextChannelCreateEvent;
+import net.dv8tion.jda.core.events.channel.text.TextChannelDeleteEvent;
+import net.dv8tion.jda.core.events.guild.GuildAvailableEvent;
+import net.dv8tion.jda.core.events.guild.GuildLeaveEvent;
+import net.dv8tion.jda.core.events.guild.GuildReadyEvent;
+import net.dv8tion.jda.core.events.guild.GuildUnavailableEvent;
+import net.dv8tion.jda.core.events.role.RoleDeleteEvent;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.hamcrest.junit.MatcherAssert.assertThat;
+
+class EntityIndexTest {
+
+    @Test
+    void lifecycle() {
+        final EntityIndex index = new EntityIndex();
+        final FakeGuild first = new FakeGuild(1, 10, 11, 12, 13, 14);
+        final FakeGuild second = new FakeGuild(2, 20, 21, 22, 23, 24);
+
+        index.onGuildReady(new GuildReadyEvent(null, 0, first.guild));
+        index.onGuildReady(new GuildReadyEvent(null, 0, second.guild));
+        assertThat(index.size(), is(10));
+        for (long id = 10; id <= 14; id++)
+            assertThat(index.getGuildId(id), is(1L));
+        assertThat(index.getGuildId(22), is(2L));
+        assertThat(index.getGuildId(99), is(0L));
+
+        // Only the entities of the guild that is left are removed
+        index.onGuildLeave(new GuildLeaveEvent(null, 0, second.guild));
+        assertThat(index.size(), is(5));
+        assertThat(index.getGuildId(20), is(0L));
+        assertThat(index.getGuildId(10), is(1L));
+    }
+
+    @Test
+    void updates() {
+        final EntityIndex index = new EntityIndex();
+        final FakeGuild guild = new FakeGuild(1, 10, 11, 12, 13, 14);
+        index.onGuildReady(new GuildReadyEvent(null, 0, guild.guild));
+
+        final TextChannel created = guild.addTextChannel(15);
+        index.onTextChannelCreate(new TextChannelCreateEvent(null, 0, created));
+        assertThat(index.getGuildId(15), is(1L));
+
+        index.onTextChannelDelete(new TextChannelDeleteEvent(null, 0, created));
+        index.onRoleDelete(new RoleDeleteEvent(null, 0, guild.roles.get(0)));
+        assertThat(index.getGuildId(15), is(0L));
+        assertThat(index.getGuildId(13), is(0L));
+        assertThat(index.size(), is(4));
+    }
+
+    @Test
+    void unavailable() {
+        final EntityIndex index = new EntityIndex();
+        final FakeGuild guild = new FakeGuild(1, 10, 11, 12, 13, 14);
+        index.onGuildReady(new GuildReadyEvent(null, 0, guild.guild));
+
+        index.onGuildUnavailable(new GuildUnavailableEvent(null, 0, guild.guild));
+        assertThat(index.size(), is(0));
+
+        // The channel deleted meanwhile isn't indexed again
+        guild.textChannels.clear();
+        index.onGuildAvailable(new GuildAvailableEvent(null, 0, guild.guild));
+        assertThat(index.size(), is(4));
+        assertThat(index.getGuildId(10), is(0L));
+        assertThat(index.getGuildId(11), is(1L));
+    }
+
+    private static class FakeGuild {
+
+        private final Guild guild;
+        private final List<TextChannel> textChannels = new ArrayList<>();
+        private final List<VoiceChannel> voiceChannels = new ArrayList<>();
+        private final List<Category> categories = new ArrayList<>();
+        private final List<Role> roles = new ArrayList<>();
+        private final List<Emote> emotes = new ArrayList<>();
+
+        private FakeGuild(final long id, final long text, final long voice, final long category, final long role, final long emote) {
+            guild = (Guild) Proxy.newProxyInstance(Guild.class.getClassLoader(), new Class<?>[]{Guild.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getIdLong":
+                        return id;
+                    case "getTextChannels":
+                        return Collections.unmodifiableList(textChannels);
+                    case "getVoiceChannels":
+                        return Collections.unmodifiableList(voiceChannels);
+                    case "getCategories":
+                        return Collections.unmodifiableList(categories);
+                    case "getRoles":
+                        return Collections.unmodifiableList(roles);
+                    case "getEmotes":
+                        return Collections.unmodifiableList(emotes);
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        return null;
+                }
+            });
+
+            textChannels.add(entity(TextChannel.class, text));
+            voiceChannels.add(entity(VoiceChannel.class, voice));
+            categories.add(entity(Category.class, category));
+            roles.add(entity(Role.class, role));
+            emotes.add(entity(Emote.class, emote));
+        }
+
+        private TextChannel addTextChannel(final long id) {
+            final TextChannel channel = entity(TextChannel.class, id);
+            textChannels.add(channel);
+            return channel;
+        }
+
+        private <T> T entity(final Class<T> type, final long id) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getIdLong":
+                        return id;
+                    case "getGuild":
+                        return guild;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        return null;
+                }
+            }));
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.jesus_crie.modularbot.core.cluster;
+
+import com.jesus_crie.modularbot.core.ModularBot;
+import com.jesus_crie.modularbot.core.module.ModuleManager;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.Matchers.*;
+import static org.hamcrest.junit.MatcherAssert.assertThat;
+
+class ClusterNodeTest {
+
+    @Test
+    void ranges() throws Exception {
+        final List<String> nodes = Arrays.asList("a", "b", "c");
+
+        assertThat(node("a", nodes, 10).join(), containsInAnyOrder(0, 1, 2));
+        assertThat(node("b", nodes, 10).join(), containsInAnyOrder(3, 4, 5));
+        assertThat(node("c", nodes, 10).join(), containsInAnyOrder(6, 7, 8, 9));
+
+        final ClusterNode node = node("a", nodes, 10);
+        assertThat(node.getShardOwner(0), is("a"));
+        assertThat(node.getShardOwner(2), is("a"));
+        assertThat(node.getShardOwner(3), is("b"));
+        assertThat(node.getShardOwner(5), is("b"));
+        assertThat(node.getShardOwner(6), is("c"));
+        assertThat(node.getShardOwner(9), is("c"));
+    }
+
+    @Test
+    void fewerShardsThanNodes() throws Exception {
+        final List<String> nodes = Arrays.asList("a", "b", "c");
+
+        // The first node has nothing to run
+        assertThat(node("a", nodes, 2).join(), empty());
+        assertThat(node("b", nodes, 2).join(), contains(0));
+        assertThat(node("c", nodes, 2).join(), contains(1));
+
+        final ClusterNode node = node("a", nodes, 2);
+        assertThat(node.getShardOwner(0), is("b"));
+        assertThat(node.getShardOwner(1), is("c"));
+    }
+
+    @Test
+    void outsideOfTheCluster() throws Exception {
+        assertThat(node("d", Arrays.asList("a", "b"), 4).join(), empty());
+
+        // Alone, every shard is run locally
+        assertThat(node("a", Collections.emptyList(), 4).getShardOwner(3), is("a"));
+    }
+
+    @Test
+    void rebalance() throws Exception {
+        final FakeCoordinator coordinator = new FakeCoordinator("a", Arrays.asList("a", "b"));
+        final ClusterNode node = new ClusterNode(coordinator, 4, 100);
+        final RecordingBot bot = new RecordingBot();
+        node.join();
+        node.bind(bot);
+        assertThat(bot.assignments, contains(set(0, 1)));
+
+        // The shards of the node that left are started after the delay
+        node.onNodesChange(Collections.singletonList("a"));
+        assertThat(node.getShardIds(), containsInAnyOrder(0, 1, 2, 3));
+        assertThat(bot.assignments, contains(set(0, 1), set(0, 1)));
+
+        Thread.sleep(400);
+        assertThat(bot.assignments, contains(set(0, 1), set(0, 1), set(0, 1, 2, 3)));
+
+        // The lost shards are stopped right away
+        node.onNodesChange(Arrays.asList("a", "b"));
+        assertThat(bot.assignments.get(3), is(set(0, 1)));
+        assertThat(bot.assignments, hasSize(4));
+        node.leave();
+    }
+
+    @Test
+    void outdatedRebalance() throws Exception {
+        final FakeCoordinator coordinator = new FakeCoordinator("a", Arrays.asList("a", "b"));
+        final ClusterNode node = new ClusterNode(coordinator, 4, 100);
+        final RecordingBot bot = new RecordingBot();
+        node.join();
+        node.bind(bot);
+
+        node.onNodesChange(Collections.singletonList("a"));
+        // Changed again before the delay, the pending rebalance is dropped
+        node.onNodesChange(Arrays.asList("a", "b", "c"));
+        assertThat(node.getShardIds(), contains(0));
+
+        Thread.sleep(400);
+        assertThat(bot.assignments, contains(set(0, 1), set(0, 1), set(0)));
+        node.leave();
+    }
+
+    @Nonnull
+    private static ClusterNode node(@Nonnull final String id, @Nonnull final List<String> nodes, final int shardsTotal) {
+        return new ClusterNode(new FakeCoordinator(id, nodes), shardsTotal);
+    }
+
+    @Nonnull
+    private static Set<Integer> set(final Integer... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+
+    private static class FakeCoordinator implements ClusterCoordinator {
+
+        private final String nodeId;
+        private final List<String> nodes;
+
+        private FakeCoordinator(@Nonnull final String nodeId, @Nonnull final List<String> nodes) {
+            this.nodeId = nodeId;
+            this.nodes = nodes;
+        }
+
+        @Nonnull
+        @Override
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        @Override
+        public void join(@Nonnull final ClusterListener listener) {}
+
+        @Nonnull
+        @Override
+        public List<String> getNodes() {
+            return nodes;
+        }
+
+        @Nonnull
+        @Override
+        public CompletableFuture<Serializable> send(@Nonnull final String nodeId, @Nonnull final Serializable message) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void leave() {}
+    }
+
+    private static class RecordingBot extends ModularBot {
+
+        private final List<Set<Integer>> assignments = new CopyOnWriteArrayList<>();
+
+        private RecordingBot() {
+            super(4, null, null, new ArrayList<>(), new ArrayList<>(), "token", null, null, null, null, null, null,
+                    null, null, null, null, null, 900, 1, false, false, true, true, null, true, false, false, null,
+                    null, true, new ModuleManager());
+        }
+
+        @Override
+        public void assignShards(@Nonnull final Collection<Integer> shardIds) {
+            assignments.add(new HashSet<>(shardIds));
+        }
+    }
+}
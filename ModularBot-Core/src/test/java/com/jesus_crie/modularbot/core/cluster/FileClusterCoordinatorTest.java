@@ -0,0 +1,156 @@
+package com.jesus_crie.modularbot.core.cluster;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.*;
+import static org.hamcrest.junit.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FileClusterCoordinatorTest {
+
+    private static final long HEARTBEAT = 100;
+
+    private final List<FileClusterCoordinator> coordinators = new ArrayList<>();
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("cluster");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        coordinators.forEach(FileClusterCoordinator::leave);
+        try (final Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    void twoNodes() throws Exception {
+        final RecordingListener first = new RecordingListener("a");
+        final RecordingListener second = new RecordingListener("b");
+        final FileClusterCoordinator a = coordinator("a");
+        final FileClusterCoordinator b = coordinator("b");
+
+        a.join(first);
+        assertThat(a.getNodes(), contains("a"));
+        b.join(second);
+        assertThat(b.getNodes(), contains("a", "b"));
+
+        // The first node notices the second one on its next heartbeat
+        awaitNodes(first, Arrays.asList("a", "b"));
+        assertThat(a.getNodes(), contains("a", "b"));
+
+        assertThat(a.send("b", "hello").get(5, TimeUnit.SECONDS), is("b: hello"));
+        assertThat(b.send("a", "hello").get(5, TimeUnit.SECONDS), is("a: hello"));
+        assertThat(a.send("a", "self").get(5, TimeUnit.SECONDS), is("a: self"));
+
+        // The failures of the other node are sent back
+        final ExecutionException e = assertThrows(ExecutionException.class, () -> a.send("b", "fail").get(5, TimeUnit.SECONDS));
+        assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+
+        b.leave();
+        awaitNodes(first, Collections.singletonList("a"));
+    }
+
+    @Test
+    void alreadyRunning() throws Exception {
+        coordinator("a").join(new RecordingListener("a"));
+
+        assertThrows(IOException.class, () -> new FileClusterCoordinator(directory, "a", HEARTBEAT).join(new RecordingListener("a")));
+    }
+
+    @Test
+    void wrongSecret() throws Exception {
+        final RecordingListener listener = new RecordingListener("a");
+        coordinator("a").join(listener);
+
+        final int port = Integer.parseInt(new String(Files.readAllBytes(directory.resolve("a.port")), StandardCharsets.UTF_8).trim());
+        try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(new byte[32]);
+            final ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+            out.writeObject("hello");
+            out.flush();
+
+            // Closed without answering and without reading the message
+            assertThat(socket.getInputStream().read(), is(-1));
+        }
+
+        assertThat(listener.messages, empty());
+    }
+
+    @Test
+    void readableSecret() throws Exception {
+        coordinator("a").join(new RecordingListener("a"));
+        final Path secret = directory.resolve("cluster.secret");
+        assertThat(Files.getPosixFilePermissions(secret), is(PosixFilePermissions.fromString("rw-------")));
+
+        Files.setPosixFilePermissions(secret, PosixFilePermissions.fromString("rw-r--r--"));
+        assertThrows(IOException.class, () -> coordinator("b").join(new RecordingListener("b")));
+    }
+
+    @Nonnull
+    private FileClusterCoordinator coordinator(@Nonnull final String nodeId) {
+        final FileClusterCoordinator coordinator = new FileClusterCoordinator(directory, nodeId, HEARTBEAT);
+        coordinators.add(coordinator);
+        return coordinator;
+    }
+
+    private static void awaitNodes(@Nonnull final RecordingListener listener, @Nonnull final List<String> nodes)
+            throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline && !listener.changes.contains(nodes))
+            Thread.sleep(HEARTBEAT / 2);
+
+        assertThat(listener.changes, hasItem(nodes));
+    }
+
+    private static class RecordingListener implements ClusterCoordinator.ClusterListener {
+
+        private final String nodeId;
+        private final List<List<String>> changes = new CopyOnWriteArrayList<>();
+        private final List<Serializable> messages = new CopyOnWriteArrayList<>();
+
+        private RecordingListener(@Nonnull final String nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        @Override
+        public void onNodesChange(@Nonnull final List<String> nodes) {
+            changes.add(nodes);
+        }
+
+        @Override
+        public Serializable onMessage(@Nonnull final Serializable message) {
+            messages.add(message);
+            if ("fail".equals(message))
+                throw new IllegalArgumentException("Failed on purpose");
+
+            return nodeId + ": " + message;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.jesus_crie.modularbot.core.conversation;
+
+import com.jesus_crie.modularbot.core.utils.WaiterRegistry;
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.entities.Message;
+import net.dv8tion.jda.core.entities.TextChannel;
+import net.dv8tion.jda.core.entities.User;
+import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.hamcrest.Matchers.*;
+import static org.hamcrest.junit.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConversationManagerTest {
+
+    private static final long CHANNEL = 10;
+    private static final long USER = 20;
+    private static final long OTHER_USER = 21;
+
+    private final List<String> prompts = new ArrayList<>();
+    private final List<Conversation> ended = new ArrayList<>();
+
+    @Test
+    void stateMachine() {
+        final ConversationManager manager = new ConversationManager();
+        manager.registerFlow(flow());
+        final FakeShard shard = new FakeShard(0);
+
+        final Conversation conversation = manager.start("signup", shard.channel, user(USER));
+        assertThat(prompts, contains("name"));
+        assertThat(manager.getConversation(CHANNEL, USER), sameInstance(conversation));
+        assertThrows(IllegalStateException.class, () -> manager.start("signup", shard.channel, user(USER)));
+
+        // Only the user of the conversation can answer
+        shard.send(OTHER_USER, "Alice");
+        assertThat(conversation.getStep(), is("name"));
+
+        shard.send(USER, "Bob");
+        assertThat(conversation.getStep(), is("age"));
+        assertThat(conversation.get("name"), is("Bob"));
+        assertThat(prompts, contains("name", "age"));
+
+        // Stays on the same step without prompting again
+        shard.send(USER, "old");
+        assertThat(conversation.getStep(), is("age"));
+        assertThat(prompts, hasSize(2));
+
+        shard.send(USER, "42");
+        assertThat(ended, contains(conversation));
+        assertThat(conversation.get("age"), is("42"));
+        assertThat(manager.getActiveCount(), is(0));
+        assertThat(manager.getConversation(CHANNEL, USER), nullValue());
+
+        // The wait is gone with the conversation
+        shard.send(USER, "43");
+        assertThat(conversation.get("age"), is("42"));
+    }
+
+    @Test
+    void timeout() throws InterruptedException {
+        final List<Conversation> timedOut = new ArrayList<>();
+        final ConversationManager manager = new ConversationManager();
+        manager.registerFlow(ConversationFlow.builder("quick")
+                .step(ConversationStep.onMessage("wait", null, (c, event) -> ConversationStep.END, 0))
+                .timeout(100)
+                .onTimeout(timedOut::add)
+                .onEnd(ended::add)
+                .build());
+
+        final Conversation conversation = manager.start("quick", new FakeShard(0).channel, user(USER));
+        Thread.sleep(500);
+
+        assertThat(timedOut, contains(conversation));
+        assertThat(ended, contains(conversation));
+        assertThat(manager.getActiveCount(), is(0));
+    }
+
+    @Test
+    void restore() throws InterruptedException {
+        final MemoryStore store = new MemoryStore();
+        final FakeShard shard = new FakeShard(1);
+
+        final Conversation saved = new Conversation("signup", "age", 1, CHANNEL, USER, 0);
+        saved.set("name", "Bob");
+        final Conversation otherShard = new Conversation("signup", "age", 2, CHANNEL, OTHER_USER, 0);
+        final Conversation unknownFlow = new Conversation("unknown", "age", 1, CHANNEL + 1, USER, 0);
+        final Conversation expired = new Conversation("signup", "age", 1, CHANNEL + 2, USER, 1);
+        Thread.sleep(10);
+        for (final Conversation conversation : new Conversation[]{saved, otherShard, unknownFlow, expired})
+            store.save(conversation);
+
+        final ConversationManager manager = new ConversationManager(store);
+        manager.registerFlow(flow());
+
+        // Only the shard 1 is running here
+        assertThat(manager.restore(id -> id == shard.id ? shard.jda : null), is(1));
+        assertThat(manager.getConversation(saved.getId()), sameInstance(saved));
+        assertThat(prompts, empty());
+
+        shard.send(USER, "42");
+        assertThat(ended, contains(saved));
+        assertThat(saved.get("name"), is("Bob"));
+
+        // Drains the pending deletions
+        manager.shutdown();
+        assertThat(store.conversations.keySet(), empty());
+    }
+
+    @Test
+    void shardId() {
+        final ConversationManager manager = new ConversationManager();
+        manager.registerFlow(flow());
+
+        final Conversation conversation = manager.start("signup", new FakeShard(3).channel, user(USER));
+        assertThat(conversation.getShardId(), is(3));
+    }
+
+    @Test
+    void shutdown() {
+        final MemoryStore store = new MemoryStore();
+        final ConversationManager manager = new ConversationManager(store);
+        final FakeShard shard = new FakeShard(0);
+        manager.registerFlow(ConversationFlow.builder("signup")
+                .step(ConversationStep.onMessage("name", null, (c, event) -> {
+                    // Shut down while a step is handled on the event thread
+                    manager.shutdown();
+                    return "age";
+                }, 0))
+                .step(ConversationStep.onMessage("age", null, (c, event) -> ConversationStep.END, 0))
+                .onEnd(ended::add)
+                .build());
+
+        final Conversation conversation = manager.start("signup", shard.channel, user(USER));
+        shard.send(USER, "Bob");
+
+        // Kept in the store as it was before the shutdown, without calling the flow
+        assertThat(store.steps.get(conversation.getId()), is("name"));
+        assertThat(ended, empty());
+        assertThat(manager.getActiveCount(), is(0));
+
+        assertThrows(IllegalStateException.class, () -> manager.start("signup", shard.channel, user(OTHER_USER)));
+        assertThrows(IllegalStateException.class, () -> manager.restore(id -> shard.jda));
+    }
+
+    @Nonnull
+    private ConversationFlow flow() {
+        return ConversationFlow.builder("signup")
+                .step(ConversationStep.onMessage("name", (c, channel) -> {
+                    prompts.add("name");
+                    return null;
+                }, (c, event) -> {
+                    c.set("name", event.getMessage().getContentRaw());
+                    return "age";
+                }, 0))
+                .step(ConversationStep.onMessage("age", (c, channel) -> {
+                    prompts.add("age");
+                    return null;
+                }, (c, event) -> {
+                    final String content = event.getMessage().getContentRaw();
+                    if (!content.chars().allMatch(Character::isDigit))
+                        return ConversationStep.STAY;
+
+                    c.set("age", content);
+                    return ConversationStep.END;
+                }, 0))
+                .onEnd(ended::add)
+                .build();
+    }
+
+    @Nonnull
+    private static User user(final long id) {
+        return (User) Proxy.newProxyInstance(User.class.getClassLoader(), new Class<?>[]{User.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getIdLong":
+                    return id;
+                case "hashCode":
+                    return Long.hashCode(id);
+                case "equals":
+                    return args[0] instanceof User && ((User) args[0]).getIdLong() == id;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private static class FakeShard {
+
+        private final int id;
+        private final JDA jda;
+        private final TextChannel channel;
+        private long nextMessageId = 1000;
+
+        private FakeShard(final int id) {
+            this.id = id;
+            final JDA.ShardInfo info = new JDA.ShardInfo(id, 4);
+            jda = (JDA) Proxy.newProxyInstance(JDA.class.getClassLoader(), new Class<?>[]{JDA.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getShardInfo":
+                        return info;
+                    case "getTextChannelById":
+                        return args[0].equals(CHANNEL) ? getChannel() : null;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        return null;
+                }
+            });
+            channel = (TextChannel) Proxy.newProxyInstance(TextChannel.class.getClassLoader(), new Class<?>[]{TextChannel.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getIdLong":
+                        return CHANNEL;
+                    case "getJDA":
+                        return jda;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        private TextChannel getChannel() {
+            return channel;
+        }
+
+        private void send(final long author, @Nonnull final String content) {
+            final long messageId = nextMessageId++;
+            final User user = user(author);
+            final Message message = (Message) Proxy.newProxyInstance(Message.class.getClassLoader(), new Class<?>[]{Message.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getIdLong":
+                        return messageId;
+                    case "getChannel":
+                        return channel;
+                    case "getAuthor":
+                        return user;
+                    case "getContentRaw":
+                        return content;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        return null;
+                }
+            });
+
+            WaiterRegistry.of(jda).onEvent(new MessageReceivedEvent(jda, 0, message));
+        }
+    }
+
+    private static class MemoryStore implements ConversationStore {
+
+        private final Map<String, Conversation> conversations = new ConcurrentHashMap<>();
+        // The step of each conversation when it was saved
+        private final Map<String, String> steps = new ConcurrentHashMap<>();
+
+        @Override
+        public void save(@Nonnull final Conversation conversation) {
+            conversations.put(conversation.getId(), conversation);
+            steps.put(conversation.getId(), conversation.getStep());
+        }
+
+        @Override
+        public void delete(@Nonnull final String id) {
+            conversations.remove(id);
+            steps.remove(id);
+        }
+
+        @Nonnull
+        @Override
+        public Collection<Conversation> loadAll() {
+            return new ArrayList<>(conversations.values());
+        }
+    }
+}
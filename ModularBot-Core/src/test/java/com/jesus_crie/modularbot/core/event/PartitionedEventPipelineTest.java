@@ -0,0 +1,143 @@
+package com.jesus_crie.modularbot.core.event;
+
+import net.dv8tion.jda.core.entities.ISnowflake;
+import net.dv8tion.jda.core.events.Event;
+import net.dv8tion.jda.core.hooks.EventListener;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.hamcrest.junit.MatcherAssert.assertThat;
+
+class PartitionedEventPipelineTest {
+
+    @Test
+    void partitionKey() {
+        assertThat(PartitionedEventPipeline.getPartitionKey(new TestEvent(42, 0, false)), is(42L));
+    }
+
+    @Test
+    void ordering() throws InterruptedException {
+        final PartitionedEventPipeline pipeline = new PartitionedEventPipeline(4, 64, PartitionedEventPipeline.OverflowPolicy.BLOCK);
+        final PartitionedEventManager manager = new PartitionedEventManager(pipeline);
+
+        final int keys = 16;
+        final int perKey = 500;
+        final Map<Long, List<Integer>> received = new ConcurrentHashMap<>();
+        final Map<Long, Set<Thread>> threads = new ConcurrentHashMap<>();
+        final CountDownLatch done = new CountDownLatch(keys * perKey);
+        manager.register((EventListener) event -> {
+            final TestEvent test = (TestEvent) event;
+            received.computeIfAbsent(test.key, k -> new ArrayList<>()).add(test.sequence);
+            threads.computeIfAbsent(test.key, k -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread());
+            done.countDown();
+        });
+
+        for (int i = 0; i < perKey; i++) {
+            for (long key = 1; key <= keys; key++)
+                manager.handle(new TestEvent(key, i, false));
+        }
+
+        assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+        pipeline.shutdown();
+
+        assertThat(received.size(), is(keys));
+        for (final Map.Entry<Long, List<Integer>> entry : received.entrySet()) {
+            final List<Integer> sequence = entry.getValue();
+            assertThat(sequence.size(), is(perKey));
+            for (int i = 0; i < perKey; i++)
+                assertThat(sequence.get(i), is(i));
+
+            // A key is always handled by the worker of its partition
+            assertThat(threads.get(entry.getKey()).size(), is(1));
+        }
+        assertThat(pipeline.getDroppedEvents(), is(0L));
+    }
+
+    @Test
+    void dropLowPriority() throws InterruptedException {
+        final PartitionedEventPipeline pipeline = new PartitionedEventPipeline(1, 2,
+                PartitionedEventPipeline.OverflowPolicy.DROP_OLDEST_LOW_PRIORITY, event -> ((TestEvent) event).lowPriority);
+        final PartitionedEventManager manager = new PartitionedEventManager(pipeline);
+
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> received = new ArrayList<>();
+        manager.register((EventListener) event -> {
+            final TestEvent test = (TestEvent) event;
+            if (test.sequence == 0) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronized (received) {
+                received.add(test.sequence);
+            }
+        });
+
+        // Keep the worker busy
+        manager.handle(new TestEvent(1, 0, false));
+        assertThat(entered.await(5, TimeUnit.SECONDS), is(true));
+
+        manager.handle(new TestEvent(1, 1, true));
+        manager.handle(new TestEvent(1, 2, false));
+        // Full, the oldest low priority event is dropped
+        manager.handle(new TestEvent(1, 3, false));
+        // Full without low priority events, the new low priority event is dropped
+        manager.handle(new TestEvent(1, 4, true));
+        assertThat(pipeline.getDroppedEvents(), is(2L));
+        assertThat(pipeline.getMaxQueueDepths()[0], is(2));
+
+        release.countDown();
+        pipeline.shutdown();
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (pipeline.getProcessedEvents() < 3 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        synchronized (received) {
+            assertThat(received, contains(0, 2, 3));
+        }
+    }
+
+    @Test
+    void shutdown() {
+        final PartitionedEventPipeline pipeline = new PartitionedEventPipeline(2, 8, PartitionedEventPipeline.OverflowPolicy.BLOCK);
+        final PartitionedEventManager manager = new PartitionedEventManager(pipeline);
+        pipeline.shutdown();
+
+        final List<Thread> threads = new ArrayList<>();
+        manager.register((EventListener) event -> threads.add(Thread.currentThread()));
+
+        // Dispatched in place once the workers are stopped
+        manager.handle(new TestEvent(1, 0, false));
+        assertThat(threads, contains(Thread.currentThread()));
+    }
+
+    public static class TestEvent extends Event {
+
+        private final long key;
+        private final int sequence;
+        private final boolean lowPriority;
+
+        TestEvent(final long key, final int sequence, final boolean lowPriority) {
+            super(null);
+            this.key = key;
+            this.sequence = sequence;
+            this.lowPriority = lowPriority;
+        }
+
+        public ISnowflake getUser() {
+            return () -> key;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.jesus_crie.modularbot.core.module;
+
+import com.jesus_crie.modularbot.core.ModularBot;
+import com.jesus_crie.modularbot.core.ModularBotBuilder;
+import com.jesus_crie.modularbot.core.dependencyinjection.InjectorTarget;
+import com.jesus_crie.modularbot.core.dependencyinjection.Lazy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.hamcrest.junit.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ModuleManagerTest {
+
+    private static final List<Class<?>> CONSTRUCTED = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        CONSTRUCTED.clear();
+    }
+
+    @Test
+    void lazy() throws Exception {
+        final ModuleManager manager = new ModuleManager();
+        manager.newContext().requestInjection(EagerModule.class, LazyModule.class).resolve();
+
+        // Only the eager module is built, the lazy one and its dependency are deferred
+        assertThat(CONSTRUCTED, contains(EagerModule.class));
+        assertThat(manager.getDeferredModules(), containsInAnyOrder(LazyModule.class, LazyDependency.class));
+        assertThat(manager.isModuleAvailable(LazyModule.class), is(true));
+
+        final LazyModule module = manager.getModule(LazyModule.class);
+        assertThat(CONSTRUCTED, contains(EagerModule.class, LazyDependency.class, LazyModule.class));
+        assertThat(module.dependency, sameInstance(manager.getModule(LazyDependency.class)));
+        assertThat(manager.getDeferredModules(), empty());
+
+        // Built only once
+        assertThat(manager.getModule(LazyModule.class), sameInstance(module));
+        assertThat(CONSTRUCTED, hasSize(3));
+    }
+
+    @Test
+    void catchUp() throws Exception {
+        final ModuleManager manager = new ModuleManager();
+        manager.newContext().requestInjection(EagerModule.class, LazyModule.class).resolve();
+
+        manager.loadModules(new ModularBotBuilder("token"));
+        manager.initialize(null);
+        manager.prepareShards();
+        manager.shardsCreated();
+
+        // Built after the creation of the shards, it receives every hook that it has missed
+        final LazyModule module = manager.getModule(LazyModule.class);
+        final LazyDependency dependency = manager.getModule(LazyDependency.class);
+        final EagerModule eager = manager.getModule(EagerModule.class);
+        for (final TrackedModule tracked : new TrackedModule[]{module, dependency, eager}) {
+            assertThat(tracked.hooks, contains("onLoad", "onInitialization", "onPostInitialization",
+                    "onPrepareShards", "onShardsCreated"));
+            assertThat(tracked.getState(), is(Lifecycle.State.INITIALIZED));
+        }
+
+        // Then notified once like the others
+        manager.finalizeInitialization(null);
+        for (final TrackedModule tracked : new TrackedModule[]{module, dependency, eager}) {
+            assertThat(tracked.hooks, hasSize(6));
+            assertThat(tracked.hooks.get(5), is("onShardsReady"));
+            assertThat(tracked.getState(), is(Lifecycle.State.STARTED));
+        }
+    }
+
+    @Test
+    void unloaded() throws Exception {
+        final ModuleManager manager = new ModuleManager();
+        manager.newContext().requestInjection(EagerModule.class, LazyModule.class).resolve();
+
+        manager.preUnload();
+        manager.unload();
+
+        // Never built once the manager is unloaded
+        assertThrows(IllegalStateException.class, () -> manager.getModule(LazyModule.class));
+        assertThat(CONSTRUCTED, contains(EagerModule.class));
+    }
+
+    static abstract class TrackedModule extends Module {
+
+        final List<String> hooks = Collections.synchronizedList(new ArrayList<>());
+
+        TrackedModule() {
+            CONSTRUCTED.add(getClass());
+        }
+
+        @Override
+        public void onLoad(@Nonnull final ModuleManager moduleManager, @Nonnull final ModularBotBuilder builder) {
+            hooks.add("onLoad");
+        }
+
+        @Override
+        public void onInitialization(@Nonnull final ModuleManager moduleManager) {
+            hooks.add("onInitialization");
+        }
+
+        @Override
+        public void onPostInitialization() {
+            hooks.add("onPostInitialization");
+        }
+
+        @Override
+        public void onPrepareShards() {
+            hooks.add("onPrepareShards");
+        }
+
+        @Override
+        public void onShardsCreated() {
+            hooks.add("onShardsCreated");
+        }
+
+        @Override
+        public void onShardsReady(@Nonnull final ModularBot bot) {
+            super.onShardsReady(bot);
+            hooks.add("onShardsReady");
+        }
+    }
+
+    static class EagerModule extends TrackedModule {
+
+        @InjectorTarget
+        EagerModule() {}
+    }
+
+    @Lazy
+    static class LazyDependency extends TrackedModule {
+
+        @InjectorTarget
+        LazyDependency() {}
+    }
+
+    @Lazy
+    static class LazyModule extends TrackedModule {
+
+        private final LazyDependency dependency;
+
+        @InjectorTarget
+        LazyModule(final LazyDependency dependency) {
+            this.dependency = dependency;
+        }
+    }
+}
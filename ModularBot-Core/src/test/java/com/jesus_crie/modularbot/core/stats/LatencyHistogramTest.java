@@ -0,0 +1,75 @@
+package com.jesus_crie.modularbot.core.stats;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.hamcrest.junit.MatcherAssert.assertThat;
+
+class LatencyHistogramTest {
+
+    @Test
+    void bucketing() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(0);
+        histogram.record(-5);
+        histogram.record(1);
+        histogram.record(2);
+        histogram.record(3);
+        histogram.record(4);
+        histogram.record(1023);
+        histogram.record(1024);
+        histogram.record(Long.MAX_VALUE);
+
+        final long[] buckets = histogram.snapshot().getBuckets();
+        assertThat(buckets.length, is(LatencyHistogram.BUCKETS));
+        assertThat(buckets[0], is(2L)); // 0 and the negative value
+        assertThat(buckets[1], is(1L)); // 1
+        assertThat(buckets[2], is(2L)); // 2, 3
+        assertThat(buckets[3], is(1L)); // 4
+        assertThat(buckets[10], is(1L)); // 1023
+        assertThat(buckets[11], is(1L)); // 1024
+        assertThat(buckets[63], is(1L));
+    }
+
+    @Test
+    void snapshot() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.snapshot().getCount(), is(0L));
+        assertThat(histogram.snapshot().getPercentile(0.99), is(0L));
+        assertThat(histogram.snapshot().getMean(), is(0.0));
+
+        for (int i = 0; i < 99; i++)
+            histogram.record(100);
+        histogram.record(5000);
+
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount(), is(100L));
+        assertThat(snapshot.getSum(), is(99L * 100 + 5000));
+        assertThat(snapshot.getMax(), is(5000L));
+        assertThat(snapshot.getMean(), closeTo(149.0, 0.001));
+
+        // Upper bound of the bucket [64, 128)
+        assertThat(snapshot.getPercentile(0.5), is(127L));
+        assertThat(snapshot.getPercentile(0.99), is(127L));
+        // Capped by the max
+        assertThat(snapshot.getPercentile(1), is(5000L));
+        assertThat(snapshot.getPercentile(2), is(5000L));
+        assertThat(snapshot.getPercentile(-1), is(127L));
+    }
+
+    @Test
+    void merge() {
+        final LatencyHistogram first = new LatencyHistogram();
+        final LatencyHistogram second = new LatencyHistogram();
+        first.record(10);
+        second.record(10);
+        second.record(300);
+
+        final LatencyHistogram.Snapshot merged = first.snapshot().merge(second.snapshot());
+        assertThat(merged.getCount(), is(3L));
+        assertThat(merged.getSum(), is(320L));
+        assertThat(merged.getMax(), is(300L));
+        assertThat(merged.getBuckets()[4], is(2L));
+        assertThat(merged.getBuckets()[9], is(1L));
+    }
+}
@@ -0,0 +1,174 @@
+package com.jesus_crie.modularbot.core.utils;
+
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.events.Event;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.hamcrest.junit.MatcherAssert.assertThat;
+
+class EventPublisherTest {
+
+    private JDA shard;
+
+    @BeforeEach
+    void setup() {
+        shard = (JDA) Proxy.newProxyInstance(JDA.class.getClassLoader(), new Class<?>[]{JDA.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private void fire(final int value) {
+        WaiterRegistry.of(shard).onEvent(new ValueEvent(shard, value));
+    }
+
+    @Test
+    void demand() {
+        final EventPublisher<ValueEvent> publisher = Waiter.eventStream(shard, ValueEvent.class, null, 0, null, 0, 16);
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        // Nothing is delivered before a request
+        fire(1);
+        fire(2);
+        fire(3);
+        assertThat(subscriber.values, empty());
+
+        subscriber.subscription.request(2);
+        assertThat(subscriber.values, contains(1, 2));
+
+        subscriber.subscription.request(2);
+        assertThat(subscriber.values, contains(1, 2, 3));
+
+        // Delivered right away since one event is still requested
+        fire(4);
+        fire(5);
+        assertThat(subscriber.values, contains(1, 2, 3, 4));
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        fire(6);
+        assertThat(subscriber.values, contains(1, 2, 3, 4, 5, 6));
+        assertThat(publisher.getDroppedCount(), is(0L));
+
+        subscriber.subscription.cancel();
+    }
+
+    @Test
+    void overflow() {
+        final EventPublisher<ValueEvent> publisher = Waiter.eventStream(shard, ValueEvent.class, null, 0, null, 0, 2);
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        for (int i = 1; i <= 4; i++)
+            fire(i);
+
+        // The oldest events are dropped
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertThat(subscriber.values, contains(3, 4));
+        assertThat(publisher.getDroppedCount(), is(2L));
+
+        subscriber.subscription.cancel();
+    }
+
+    @Test
+    void cancel() {
+        final EventPublisher<ValueEvent> publisher = Waiter.eventStream(shard, ValueEvent.class, null, 0, null, 0, 16);
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        assertThat(WaiterRegistry.of(shard).getPendingCount(), is(1));
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        fire(1);
+        subscriber.subscription.cancel();
+        fire(2);
+
+        assertThat(subscriber.values, contains(1));
+        assertThat(WaiterRegistry.of(shard).getPendingCount(), is(0));
+        assertThat(subscriber.completed.getCount(), is(1L));
+        assertThat(subscriber.errors, empty());
+    }
+
+    @Test
+    void timeout() throws InterruptedException {
+        final EventPublisher<ValueEvent> publisher = Waiter.eventStream(shard, ValueEvent.class, null, 0, null, 50, 16);
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        fire(1);
+
+        // Not completed while an event is still buffered
+        Thread.sleep(200);
+        assertThat(subscriber.completed.getCount(), is(1L));
+
+        subscriber.subscription.request(1);
+        assertThat(subscriber.completed.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(subscriber.values, contains(1));
+    }
+
+    @Test
+    void errors() {
+        final EventPublisher<ValueEvent> publisher = Waiter.eventStream(shard, ValueEvent.class, null, 0, null, 0, 16);
+        final RecordingSubscriber first = new RecordingSubscriber();
+        publisher.subscribe(first);
+
+        final RecordingSubscriber second = new RecordingSubscriber();
+        publisher.subscribe(second);
+        assertThat(second.errors, contains(instanceOf(IllegalStateException.class)));
+
+        first.subscription.request(0);
+        assertThat(first.errors, contains(instanceOf(IllegalArgumentException.class)));
+        assertThat(WaiterRegistry.of(shard).getPendingCount(), is(0));
+    }
+
+    public static class ValueEvent extends Event {
+
+        private final int value;
+
+        ValueEvent(final JDA shard, final int value) {
+            super(shard);
+            this.value = value;
+        }
+    }
+
+    private static class RecordingSubscriber implements EventPublisher.Subscriber<ValueEvent> {
+
+        private final List<Integer> values = new CopyOnWriteArrayList<>();
+        private final List<Throwable> errors = new CopyOnWriteArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private EventPublisher.Subscription subscription;
+
+        @Override
+        public void onSubscribe(@Nonnull final EventPublisher.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(@Nonnull final ValueEvent event) {
+            values.add(event.value);
+        }
+
+        @Override
+        public void onError(@Nonnull final Throwable error) {
+            errors.add(error);
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.jesus_crie.modularbot.core.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.*;
+import static org.hamcrest.junit.MatcherAssert.assertThat;
+
+class ModularSessionControllerTest {
+
+    @Test
+    void buckets() throws InterruptedException {
+        final LocalGateway gateway = new LocalGateway(8, 20);
+        final ModularSessionController controller = new ModularSessionController(2, 100);
+
+        gateway.connect(controller);
+        assertThat(gateway.awaitIdentified(10, TimeUnit.SECONDS), is(true));
+
+        gateway.checkRateLimits(2, 100);
+        // The two buckets run in parallel
+        assertThat(gateway.getMaxConcurrent(), is(2));
+        assertThat(gateway.getIdentifies(), hasSize(8));
+
+        // Each bucket identifies its own shards
+        final List<LocalGateway.Identify> identifies = gateway.getIdentifies();
+        assertThat(identifies.get(0).getShardId() % 2, not(identifies.get(1).getShardId() % 2));
+
+        assertThat(controller.getConnectTimings().size(), is(8));
+        awaitConnected(controller);
+        for (final ModularSessionController.ConnectTiming timing : controller.getConnectTimings().values()) {
+            assertThat(timing.getQueueTime(), greaterThanOrEqualTo(0L));
+            assertThat(timing.getConnected(), greaterThanOrEqualTo(timing.getIdentifyStart()));
+        }
+    }
+
+    @Test
+    void priority() throws InterruptedException {
+        final LocalGateway gateway = new LocalGateway(4, 50);
+        final ModularSessionController controller = new ModularSessionController(1, 20);
+        controller.setShardWeights(shardId -> shardId);
+
+        // Keep the bucket busy while the others are queued
+        gateway.reconnect(controller, 0);
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (gateway.getMaxConcurrent() == 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+
+        gateway.connect(controller);
+        gateway.reconnect(controller, 2);
+        assertThat(gateway.awaitIdentified(10, TimeUnit.SECONDS), is(true));
+        gateway.checkRateLimits(1, 20);
+
+        // The reconnections first, then the heaviest shards
+        final List<String> order = gateway.getIdentifies().stream()
+                .map(identify -> (identify.isReconnect() ? "r" : "") + identify.getShardId())
+                .collect(Collectors.toList());
+        assertThat(order, contains("r0", "r2", "3", "2", "1", "0"));
+    }
+
+    @Test
+    void prioritizeGuilds() throws InterruptedException {
+        final LocalGateway gateway = new LocalGateway(3, 50);
+        final ModularSessionController controller = new ModularSessionController(1, 20);
+        // A guild of the shard 1, shard = (id >> 22) % total
+        controller.prioritizeGuilds(Collections.singletonMap((4L << 22) | 42, 1000), 3);
+
+        gateway.reconnect(controller, 0);
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (gateway.getMaxConcurrent() == 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+
+        gateway.connect(controller);
+        assertThat(gateway.awaitIdentified(10, TimeUnit.SECONDS), is(true));
+
+        final List<Integer> order = gateway.getIdentifies().stream()
+                .filter(identify -> !identify.isReconnect())
+                .map(LocalGateway.Identify::getShardId)
+                .collect(Collectors.toList());
+        assertThat(order, contains(1, 0, 2));
+    }
+
+    // The controller records the connection once the shard returns, just after the gateway has counted it
+    private static void awaitConnected(final ModularSessionController controller) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 1000;
+        while (System.currentTimeMillis() < deadline && controller.getConnectTimings().values().stream()
+                .anyMatch(timing -> timing.getConnected() == 0))
+            Thread.sleep(5);
+    }
+}
@@ -0,0 +1,129 @@
+package com.jesus_crie.modularbot.core.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.*;
+import static org.hamcrest.junit.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TimingWheelTest {
+
+    private TimingWheel wheel;
+
+    @BeforeEach
+    void setup() {
+        // A small wheel so the delays below take several rounds
+        wheel = new TimingWheel(1, TimeUnit.MILLISECONDS, 8, Runnable::run);
+    }
+
+    @AfterEach
+    void teardown() {
+        wheel.shutdown();
+    }
+
+    @Test
+    void rounds() throws InterruptedException {
+        final long start = System.nanoTime();
+        final List<Integer> order = new CopyOnWriteArrayList<>();
+        final long[] ranAt = new long[3];
+        final CountDownLatch done = new CountDownLatch(3);
+
+        wheel.schedule(() -> {
+            ranAt[0] = System.nanoTime();
+            order.add(50);
+            done.countDown();
+        }, 50, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> {
+            ranAt[1] = System.nanoTime();
+            order.add(5);
+            done.countDown();
+        }, 5, TimeUnit.MILLISECONDS);
+        // Same bucket as the first one, one round earlier
+        wheel.schedule(() -> {
+            ranAt[2] = System.nanoTime();
+            order.add(42);
+            done.countDown();
+        }, 42, TimeUnit.MILLISECONDS);
+        assertThat(wheel.getPendingCount(), is(3L));
+
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(order, contains(5, 42, 50));
+
+        // Never before the delay
+        assertThat(ranAt[0] - start, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50)));
+        assertThat(ranAt[1] - start, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(5)));
+        assertThat(ranAt[2] - start, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(42)));
+        assertThat(wheel.getPendingCount(), is(0L));
+    }
+
+    @Test
+    void cancellation() throws InterruptedException {
+        final AtomicBoolean ran = new AtomicBoolean(false);
+        final TimingWheel.Timeout timeout = wheel.schedule(() -> ran.set(true), 30, TimeUnit.MILLISECONDS);
+
+        assertThat(timeout.cancel(), is(true));
+        assertThat(timeout.cancel(), is(false));
+        assertThat(timeout.isCancelled(), is(true));
+
+        // Cancelled while it was already in its bucket
+        final TimingWheel.Timeout late = wheel.schedule(() -> ran.set(true), 30, TimeUnit.MILLISECONDS);
+        Thread.sleep(10);
+        assertThat(late.cancel(), is(true));
+
+        final CountDownLatch after = new CountDownLatch(1);
+        wheel.schedule(after::countDown, 60, TimeUnit.MILLISECONDS);
+        assertThat(after.await(5, TimeUnit.SECONDS), is(true));
+
+        assertThat(ran.get(), is(false));
+        assertThat(timeout.isExpired(), is(false));
+        assertThat(late.isExpired(), is(false));
+        assertThat(wheel.getPendingCount(), is(0L));
+    }
+
+    @Test
+    void expired() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final TimingWheel.Timeout timeout = wheel.schedule(done::countDown, 1, TimeUnit.MILLISECONDS);
+
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(timeout.isExpired(), is(true));
+        assertThat(timeout.cancel(), is(false));
+        assertThat(timeout.isCancelled(), is(false));
+    }
+
+    @Test
+    void idle() throws InterruptedException {
+        final CountDownLatch first = new CountDownLatch(1);
+        wheel.schedule(first::countDown, 1, TimeUnit.MILLISECONDS);
+        assertThat(first.await(5, TimeUnit.SECONDS), is(true));
+
+        // The worker is parked, the ticks that pass meanwhile are skipped
+        Thread.sleep(100);
+        assertThat(wheel.getPendingCount(), is(0L));
+
+        final long start = System.nanoTime();
+        final long[] ranAt = new long[1];
+        final CountDownLatch second = new CountDownLatch(1);
+        wheel.schedule(() -> {
+            ranAt[0] = System.nanoTime();
+            second.countDown();
+        }, 20, TimeUnit.MILLISECONDS);
+
+        assertThat(second.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(ranAt[0] - start, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(20)));
+    }
+
+    @Test
+    void shutdown() {
+        wheel.shutdown();
+        assertThrows(IllegalStateException.class, () -> wheel.schedule(() -> {}, 1, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,185 @@
+package com.jesus_crie.modularbot.core.utils;
+
+import com.jesus_crie.modularbot.core.ModularEventManager;
+import com.jesus_crie.modularbot.core.stats.BlockedDispatch;
+import com.jesus_crie.modularbot.core.stats.DispatchWatchdog;
+import com.jesus_crie.modularbot.core.stats.EventStatistics;
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.entities.ISnowflake;
+import net.dv8tion.jda.core.events.Event;
+import net.dv8tion.jda.core.events.ShutdownEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.hamcrest.Matchers.*;
+import static org.hamcrest.junit.MatcherAssert.assertThat;
+
+class WaiterRegistryTest {
+
+    private List<Object> listeners;
+    private JDA shard;
+
+    @BeforeEach
+    void setup() {
+        listeners = new ArrayList<>();
+        shard = (JDA) Proxy.newProxyInstance(JDA.class.getClassLoader(), new Class<?>[]{JDA.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "addEventListener":
+                    listeners.addAll(Arrays.asList((Object[]) args[0]));
+                    return null;
+                case "getRegisteredListeners":
+                    return new ArrayList<>(listeners);
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return null;
+            }
+        });
+    }
+
+    @Test
+    void perShard() {
+        final WaiterRegistry registry = WaiterRegistry.of(shard);
+        assertThat(WaiterRegistry.of(shard), sameInstance(registry));
+        assertThat(WaiterRegistry.find(shard), sameInstance(registry));
+        assertThat(listeners, contains(registry));
+
+        // Forgotten once the shard is shut down
+        registry.onEvent(new ShutdownEvent(shard, OffsetDateTime.now(), 1000));
+        assertThat(WaiterRegistry.find(shard), nullValue());
+    }
+
+    @Test
+    void routing() {
+        final List<String> triggered = new ArrayList<>();
+        final Waiter.WaiterListener<UserEvent> first = Waiter.createListener(shard, UserEvent.class,
+                Waiter.RoutingKey.USER, 1, e -> true, e -> triggered.add("first"), null, 0, false).register();
+        final Waiter.WaiterListener<UserEvent> second = Waiter.createListener(shard, UserEvent.class,
+                Waiter.RoutingKey.USER, 2, e -> true, e -> triggered.add("second"), null, 0, false).register();
+        final Waiter.WaiterListener<Event> any = Waiter.createListener(shard, Event.class,
+                e -> true, e -> triggered.add("any"), null, 0, false).register();
+
+        final WaiterRegistry registry = WaiterRegistry.of(shard);
+        assertThat(registry.getPendingCount(), is(3));
+
+        registry.onEvent(new UserEvent(shard, 1));
+        assertThat(triggered, containsInAnyOrder("first", "any"));
+
+        triggered.clear();
+        registry.onEvent(new UserEvent(shard, 3));
+        assertThat(triggered, contains("any"));
+
+        // The routing key is only extracted from the events that have it
+        triggered.clear();
+        registry.onEvent(new Event(shard) {});
+        assertThat(triggered, contains("any"));
+
+        second.cancel(true);
+        any.cancel(true);
+        assertThat(registry.getPendingCount(), is(1));
+
+        triggered.clear();
+        registry.onEvent(new UserEvent(shard, 2));
+        assertThat(triggered, empty());
+
+        first.cancel(true);
+        assertThat(registry.getPendingCount(), is(0));
+    }
+
+    @Test
+    void disposable() {
+        final List<Long> triggered = new ArrayList<>();
+        final Waiter.WaiterListener<UserEvent> listener = Waiter.createListener(shard, UserEvent.class,
+                Waiter.RoutingKey.USER, 1, e -> true, e -> triggered.add(e.getUser().getIdLong()), null, 0, true).register();
+
+        final WaiterRegistry registry = WaiterRegistry.of(shard);
+        registry.onEvent(new UserEvent(shard, 1));
+        registry.onEvent(new UserEvent(shard, 1));
+
+        assertThat(triggered, contains(1L));
+        assertThat(listener.isDone(), is(true));
+        assertThat(registry.getPendingCount(), is(0));
+    }
+
+    @Test
+    void withoutChecker() throws InterruptedException {
+        final List<Long> triggered = new ArrayList<>();
+        final List<String> timedOut = new ArrayList<>();
+        final Waiter.WaiterListener<UserEvent> listener = Waiter.createListener(shard, UserEvent.class,
+                Waiter.RoutingKey.USER, 1, null, e -> triggered.add(e.getUser().getIdLong()), () -> timedOut.add("timeout"),
+                100, true).register();
+
+        WaiterRegistry.of(shard).onEvent(new UserEvent(shard, 1));
+        assertThat(triggered, contains(1L));
+        assertThat(listener.isDone(), is(true));
+
+        // The timeout has been cancelled with the completion
+        Thread.sleep(400);
+        assertThat(timedOut, empty());
+        assertThat(listener.isCancelled(), is(false));
+    }
+
+    @Test
+    void dispose() {
+        final Waiter.WaiterListener<UserEvent> keyed = Waiter.createListener(shard, UserEvent.class,
+                Waiter.RoutingKey.USER, 1, null, null, null, 0, true).register();
+        final Waiter.WaiterListener<Event> unkeyed = Waiter.createListener(shard, Event.class,
+                null, null, null, 0, true).register();
+
+        WaiterRegistry.dispose(shard);
+        assertThat(WaiterRegistry.find(shard), nullValue());
+        assertThat(keyed.isCancelled(), is(true));
+        assertThat(unkeyed.isCancelled(), is(true));
+    }
+
+    @Test
+    void watchdogAttribution() throws InterruptedException {
+        final EventStatistics statistics = new EventStatistics();
+        final DispatchWatchdog watchdog = new DispatchWatchdog(20);
+        statistics.setWatchdog(watchdog);
+        final ModularEventManager manager = new ModularEventManager(statistics.forShard(0));
+        manager.register(WaiterRegistry.of(shard));
+
+        final Consumer<UserEvent> blocking = e -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException ignore) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        final Waiter.WaiterListener<UserEvent> listener = Waiter.createListener(shard, UserEvent.class,
+                Waiter.RoutingKey.USER, 1, e -> true, blocking, null, 0, true).register();
+        assertThat(listener.getTarget(), sameInstance(blocking));
+
+        manager.handle(new UserEvent(shard, 1));
+        watchdog.shutdown();
+
+        // Reported as the callback of the wait, not as the registry
+        final List<BlockedDispatch> reports = watchdog.getReports();
+        assertThat(reports, hasSize(1));
+        assertThat(reports.get(0).getListener(), is(WaiterRegistryTest.class.getName()));
+    }
+
+    public static class UserEvent extends Event {
+
+        private final long user;
+
+        UserEvent(final JDA shard, final long user) {
+            super(shard);
+            this.user = user;
+        }
+
+        public ISnowflake getUser() {
+            return () -> user;
+        }
+    }
+}
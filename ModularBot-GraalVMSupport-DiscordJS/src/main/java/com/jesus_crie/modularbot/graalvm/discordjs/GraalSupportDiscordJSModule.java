@@ -1,11 +1,14 @@
 package com.jesus_crie.modularbot.graalvm.discordjs;
 
 import com.jesus_crie.modularbot.core.ModularBotBuildInfo;
+import com.jesus_crie.modularbot.core.cache.RequiresCache;
 import com.jesus_crie.modularbot.core.dependencyinjection.InjectorTarget;
 import com.jesus_crie.modularbot.core.module.Module;
+import net.dv8tion.jda.core.utils.cache.CacheFlag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+@RequiresCache({CacheFlag.GAME, CacheFlag.VOICE_STATE, CacheFlag.EMOTE})
 public class GraalSupportDiscordJSModule extends Module {
 
     private static final Logger LOG = LoggerFactory.getLogger("GraalVM Support DJS");
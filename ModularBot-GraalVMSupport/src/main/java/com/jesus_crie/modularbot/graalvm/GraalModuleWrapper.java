@@ -2,8 +2,10 @@ package com.jesus_crie.modularbot.graalvm;
 
 import com.jesus_crie.modularbot.core.ModularBot;
 import com.jesus_crie.modularbot.core.ModularBotBuilder;
+import com.jesus_crie.modularbot.core.cache.RequiresCache;
 import com.jesus_crie.modularbot.core.module.Module;
 import com.jesus_crie.modularbot.core.module.ModuleManager;
+import net.dv8tion.jda.core.utils.cache.CacheFlag;
 import org.graalvm.polyglot.Context;
 import org.graalvm.polyglot.Language;
 import org.graalvm.polyglot.Source;
@@ -20,6 +22,7 @@ import java.util.function.Supplier;
  * This wrapper exists to allow the usage of the dependency injection within a guest language
  * and to provide an kind of middleware to define conversions to and from a module.
  */
+@RequiresCache({CacheFlag.GAME, CacheFlag.VOICE_STATE, CacheFlag.EMOTE})
 public abstract class GraalModuleWrapper extends Module {
 
     private Language language;
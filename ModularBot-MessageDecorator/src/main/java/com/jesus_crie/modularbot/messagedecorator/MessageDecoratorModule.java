@@ -5,6 +5,7 @@ import com.electronwill.nightconfig.core.file.FileConfig;
 import com.jesus_crie.modularbot.core.ModularBot;
 import com.jesus_crie.modularbot.core.ModularBotBuildInfo;
 import com.jesus_crie.modularbot.core.ModularBotBuilder;
+import com.jesus_crie.modularbot.core.cache.RequiresCache;
 import com.jesus_crie.modularbot.core.dependencyinjection.DefaultInjectionParameters;
 import com.jesus_crie.modularbot.core.dependencyinjection.InjectorTarget;
 import com.jesus_crie.modularbot.core.module.ModuleSettingsProvider;
@@ -12,6 +13,8 @@ import com.jesus_crie.modularbot.messagedecorator.decorator.MessageDecorator;
 import com.jesus_crie.modularbot.core.module.Module;
 import com.jesus_crie.modularbot.core.module.ModuleManager;
 import com.jesus_crie.modularbot.nightconfig.NightConfigWrapperModule;
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.utils.cache.CacheFlag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,9 +27,11 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+@RequiresCache(CacheFlag.EMOTE)
 public class MessageDecoratorModule extends Module {
 
     private static final Logger LOG = LoggerFactory.getLogger("MessageDecorator");
@@ -40,6 +45,10 @@ public class MessageDecoratorModule extends Module {
     private static final String CACHE_MAIN_PATH = "decorators";
 
     private Map<Long, MessageDecorator<?>> decorators = Collections.emptyMap();
+    // Decorators of a stopped shard waiting for the new shard of their channel
+    private final List<Config> pendingDecorators = new CopyOnWriteArrayList<>();
+    // Same but for the decorators that can't be serialized, they are moved as they are
+    private final List<MessageDecorator<?>> detachedDecorators = new CopyOnWriteArrayList<>();
     private final File cacheFile;
     private final FileConfig cache;
 
@@ -65,8 +74,9 @@ public class MessageDecoratorModule extends Module {
 
         loadCachedDecorators();
 
-        bot.getMainPool().scheduleAtFixedRate(() -> LOG.info("Cleaned up " + cleanup() + " decorators"),
-                CLEANUP_PERIOD_SECOND, CLEANUP_PERIOD_SECOND, TimeUnit.SECONDS);
+        bot.getModuleManager().getExecutors(MessageDecoratorModule.class).getScheduled()
+                .scheduleAtFixedRate(() -> LOG.info("Cleaned up " + cleanup() + " decorators"),
+                        CLEANUP_PERIOD_SECOND, CLEANUP_PERIOD_SECOND, TimeUnit.SECONDS);
     }
 
     @Override
@@ -79,15 +89,68 @@ public class MessageDecoratorModule extends Module {
                 .collect(Collectors.toList());
         decorators.values().forEach(MessageDecorator::destroy);
 
+        if (!detachedDecorators.isEmpty())
+            LOG.warn("Dropped " + detachedDecorators.size() + " decorators whose shard has never been restarted.");
+        detachedDecorators.clear();
+
         cache.set(CACHE_MAIN_PATH, serializedDecorators);
 
         LOG.info("Successfully serialized " + serializedDecorators.size() + " of " + decorators.size() + " registered decorators.");
     }
 
+    @Override
+    public void onShardStopped(@Nonnull final ModularBot bot, @Nonnull final JDA shard) {
+        // Their listeners are bound to the old shard, they are detached without being destroyed
+        // since destroying some of them would delete or edit their message
+        decorators.entrySet().stream()
+                .filter(e -> e.getValue().getBinding().getJDA() == shard)
+                .forEach(e -> {
+                    final MessageDecorator<?> decorator = e.getValue();
+                    decorator.detach();
+                    decorators.remove(e.getKey());
+
+                    if (!decorator.isAlive())
+                        return;
+                    if (decorator instanceof Cacheable)
+                        pendingDecorators.add(((Cacheable) decorator).serialize());
+                    else
+                        detachedDecorators.add(decorator);
+                });
+    }
+
+    @Override
+    public void onShardStarted(@Nonnull final ModularBot bot, @Nonnull final JDA shard) {
+        int restored = 0;
+        for (final Config serialized : pendingDecorators) {
+            final Long chanId = serialized.get(Cacheable.KEY_BINDING_CHANNEL_ID);
+            if (chanId != null && shard.getTextChannelById(chanId) == null)
+                continue;
+
+            pendingDecorators.remove(serialized);
+            deserializeDecorator(serialized);
+            restored++;
+        }
+
+        for (final MessageDecorator<?> decorator : detachedDecorators) {
+            try {
+                if (!decorator.attach(shard))
+                    continue;
+
+                registerDecorator(decorator);
+                restored++;
+            } catch (RuntimeException | AbstractMethodError e) {
+                LOG.warn("Failed to move the decorator " + decorator + ", it has been dropped. Reason: " + e);
+            }
+            detachedDecorators.remove(decorator);
+        }
+
+        if (restored > 0)
+            LOG.info("Moved " + restored + " decorators to the shard " + shard.getShardInfo().getShardId());
+    }
+
     /**
      * Load the cached decorators from the config.
      */
-    @SuppressWarnings("unchecked")
     private void loadCachedDecorators() {
         final List<Config> data = cache.get(CACHE_MAIN_PATH);
         if (data == null)
@@ -95,40 +158,49 @@ public class MessageDecoratorModule extends Module {
 
         LOG.info("De-serializing " + data.size() + " decorators...");
 
-        for (final Config serialized : data) {
-            String clazzS = serialized.get(Cacheable.KEY_CLASS);
-            if (clazzS == null) {
-                LOG.warn("Found cached decorator without class, skipping.");
-                continue;
-            }
+        for (final Config serialized : data)
+            deserializeDecorator(serialized);
 
-            try {
-                final Class<MessageDecorator<?>> clazz = (Class<MessageDecorator<?>>) Class.forName(clazzS);
+        LOG.info("Successfully deserialized " + decorators.size() + " valid decorators.");
+    }
 
-                final Method tryDeserialize = clazz.getMethod("tryDeserialize", Config.class, ModularBot.class);
-                final MessageDecorator<?> decorator = (MessageDecorator<?>) tryDeserialize.invoke(null, serialized, bot);
+    /**
+     * Deserialize a cached decorator and register it.
+     *
+     * @param serialized The serialized decorator.
+     */
+    @SuppressWarnings("unchecked")
+    private void deserializeDecorator(@Nonnull final Config serialized) {
+        String clazzS = serialized.get(Cacheable.KEY_CLASS);
+        if (clazzS == null) {
+            LOG.warn("Found cached decorator without class, skipping.");
+            return;
+        }
 
-                if (decorator == null) {
-                    LOG.debug("Deserialized decorator is null, assuming timeout was reached, ignoring silently.");
-                    continue;
-                }
+        try {
+            final Class<MessageDecorator<?>> clazz = (Class<MessageDecorator<?>>) Class.forName(clazzS);
 
-                // Setup decorator and register.
-                decorator.setup();
-                registerDecorator(decorator);
+            final Method tryDeserialize = clazz.getMethod("tryDeserialize", Config.class, ModularBot.class);
+            final MessageDecorator<?> decorator = (MessageDecorator<?>) tryDeserialize.invoke(null, serialized, bot);
 
-            } catch (ClassNotFoundException e) {
-                LOG.warn("Found cached decorator with unknown class, skipping. [" + clazzS + "]");
-            } catch (NoSuchMethodException e) {
-                LOG.warn("Cached decorator don't have the correct method signature to be deserialized, skipping. [" + clazzS + "]");
-            } catch (IllegalAccessException e) {
-                LOG.warn("Cached decorator #tryDeserialize method can't be accessed, skipping. [" + clazzS + "]");
-            } catch (InvocationTargetException e) {
-                LOG.warn("An exception was thrown while trying to deserialize a cached decorator, skipping. Reason: " + e.getTargetException());
+            if (decorator == null) {
+                LOG.debug("Deserialized decorator is null, assuming timeout was reached, ignoring silently.");
+                return;
             }
-        }
 
-        LOG.info("Successfully deserialized " + decorators.size() + " valid decorators.");
+            // Setup decorator and register.
+            decorator.setup();
+            registerDecorator(decorator);
+
+        } catch (ClassNotFoundException e) {
+            LOG.warn("Found cached decorator with unknown class, skipping. [" + clazzS + "]");
+        } catch (NoSuchMethodException e) {
+            LOG.warn("Cached decorator don't have the correct method signature to be deserialized, skipping. [" + clazzS + "]");
+        } catch (IllegalAccessException e) {
+            LOG.warn("Cached decorator #tryDeserialize method can't be accessed, skipping. [" + clazzS + "]");
+        } catch (InvocationTargetException e) {
+            LOG.warn("An exception was thrown while trying to deserialize a cached decorator, skipping. Reason: " + e.getTargetException());
+        }
     }
 
     /**
@@ -1,6 +1,7 @@
 package com.jesus_crie.modularbot.messagedecorator.decorator;
 
 import com.jesus_crie.modularbot.core.utils.Waiter;
+import net.dv8tion.jda.core.JDA;
 import net.dv8tion.jda.core.entities.Message;
 import net.dv8tion.jda.core.events.ShutdownEvent;
 
@@ -13,6 +14,8 @@ import java.util.concurrent.TimeUnit;
  */
 public class AutoDestroyMessageDecorator extends MessageDecorator<ShutdownEvent> {
 
+    private final Runnable onTimeoutAction;
+
     /**
      * Create an auto destroy decorator.
      *
@@ -24,7 +27,8 @@ public class AutoDestroyMessageDecorator extends MessageDecorator<ShutdownEvent>
     public AutoDestroyMessageDecorator(@Nonnull final Message binding, final long time, final TimeUnit unit,
                                        @Nullable final Runnable onTimeout) {
         super(binding, unit.toMillis(time));
-        listener = createListener(onTimeout);
+        onTimeoutAction = onTimeout;
+        listener = createListener();
     }
 
     @Nonnull
@@ -32,10 +36,23 @@ public class AutoDestroyMessageDecorator extends MessageDecorator<ShutdownEvent>
     protected Waiter.WaiterListener<ShutdownEvent> createListener(@Nonnull Object... args) {
         return Waiter.createListener(binding.getJDA(), ShutdownEvent.class, null, null,
                 () -> {
-                    if (args.length > 0) ((Runnable) args[0]).run();
+                    if (onTimeoutAction != null) onTimeoutAction.run();
                     onTimeout();
                 },
-                timeout, true);
+                getRemainingTimeout(), true);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only the timer is restarted, like when the decorator is created.
+     */
+    @Override
+    public boolean attach(@Nonnull final JDA shard) {
+        if (!rebind(shard))
+            return false;
+
+        listener = createListener();
+        return true;
     }
 
     /**
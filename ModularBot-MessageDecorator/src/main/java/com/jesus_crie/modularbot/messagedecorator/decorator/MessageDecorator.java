@@ -4,7 +4,9 @@ import com.jesus_crie.modularbot.core.ModularBot;
 import com.jesus_crie.modularbot.core.utils.Waiter;
 import com.jesus_crie.modularbot.messagedecorator.DecoratorListener;
 import com.jesus_crie.modularbot.messagedecorator.MessageDecoratorModule;
+import net.dv8tion.jda.core.JDA;
 import net.dv8tion.jda.core.entities.Message;
+import net.dv8tion.jda.core.entities.TextChannel;
 import net.dv8tion.jda.core.events.Event;
 
 import javax.annotation.Nonnull;
@@ -99,6 +101,57 @@ public abstract class MessageDecorator<T extends Event> {
      */
     public abstract void destroy();
 
+    /**
+     * Stop listening to the shard of the binding without destroying the decorator, the bound message is left untouched.
+     * Used when the shard is stopped, the decorator can then be moved to the new shard with {@link #attach(JDA)}.
+     */
+    public void detach() {
+        if (listener != null) listener.cancel(true);
+    }
+
+    /**
+     * Move a detached decorator to the given shard, which replaces the shard of its binding.
+     * By default, the bound message is queried again from the new shard and a new listener is created and registered,
+     * the decorator will expire at the same time as before.
+     *
+     * @param shard The new shard of the binding.
+     * @return True if the decorator has been moved, false if the channel of the binding isn't on this shard.
+     * @see #detach()
+     */
+    public boolean attach(@Nonnull final JDA shard) {
+        if (!rebind(shard))
+            return false;
+
+        listener = createListener();
+        listener.register();
+        return true;
+    }
+
+    /**
+     * Query the bound message again from the given shard.
+     *
+     * @param shard The new shard of the binding.
+     * @return True if the binding has been updated, false if its channel isn't on this shard.
+     */
+    protected boolean rebind(@Nonnull final JDA shard) {
+        final TextChannel channel = shard.getTextChannelById(binding.getChannel().getIdLong());
+        if (channel == null)
+            return false;
+
+        binding = channel.getMessageById(binding.getIdLong()).complete();
+        return true;
+    }
+
+    /**
+     * Get the amount of time before the decorator expires, used to create its listener.
+     *
+     * @return The amount of milliseconds before the decorator expires, at least 1, or 0 for infinite.
+     */
+    protected long getRemainingTimeout() {
+        if (timeout == 0) return 0;
+        return Math.max(1, creationTime + timeout - System.currentTimeMillis());
+    }
+
     /**
      * Used to check if the given timeout is valid or not.
      *
@@ -53,10 +53,11 @@ public abstract class ReactionDecorator extends MessageDecorator<GenericMessageR
     protected Waiter.WaiterListener<GenericMessageReactionEvent> createListener(@Nonnull Object... args) {
         return Waiter.createListener(binding.getJDA(),
                 GenericMessageReactionEvent.class,
-                event -> event.getMessageIdLong() == binding.getIdLong() && !event.getReaction().isSelf(),
+                Waiter.RoutingKey.MESSAGE, binding.getIdLong(),
+                event -> !event.getReaction().isSelf(),
                 this::onTrigger,
                 this::onTimeout,
-                timeout,
+                getRemainingTimeout(),
                 false);
     }
 
@@ -0,0 +1,123 @@
+package com.jesus_crie.modularbot.metrics;
+
+import com.jesus_crie.modularbot.command.CommandEvent;
+import com.jesus_crie.modularbot.command.CommandModule;
+import com.jesus_crie.modularbot.command.exception.CommandExecutionException;
+import com.jesus_crie.modularbot.command.exception.CommandProcessingException;
+import com.jesus_crie.modularbot.command.exception.UnknownOptionException;
+import com.jesus_crie.modularbot.command.listener.NopCommandListener;
+import com.jesus_crie.modularbot.command.processing.Options;
+import com.jesus_crie.modularbot.core.module.ModuleManager;
+import com.jesus_crie.modularbot.core.stats.LatencyHistogram;
+import net.dv8tion.jda.core.entities.Message;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the commands by outcome and records the time between the moment they are found and their outcome.
+ * Only loaded when the command module is in the classpath.
+ */
+class CommandMetrics extends NopCommandListener {
+
+    private final CommandModule module;
+    private final Map<String, Stats> commands = new ConcurrentHashMap<>();
+    private final LongAdder notFound = new LongAdder();
+    // The listeners are called on the thread of the message
+    private final ThreadLocal<long[]> foundAt = ThreadLocal.withInitial(() -> new long[1]);
+
+    private CommandMetrics(@Nonnull final CommandModule module) {
+        this.module = module;
+    }
+
+    /**
+     * Register a new instance in the command module, if it's loaded and not lazy.
+     *
+     * @param moduleManager - The module manager.
+     * @return The new instance or {@code null} if the command module isn't available.
+     */
+    @Nullable
+    static CommandMetrics attach(@Nonnull final ModuleManager moduleManager) {
+        if (!moduleManager.isModuleAvailable(CommandModule.class)
+                || moduleManager.getDeferredModules().contains(CommandModule.class))
+            return null;
+
+        final CommandMetrics metrics = new CommandMetrics(moduleManager.getModule(CommandModule.class));
+        metrics.module.addListener(metrics);
+        return metrics;
+    }
+
+    void detach() {
+        module.removeListener(this);
+    }
+
+    void collect(@Nonnull final PrometheusWriter writer) {
+        writer.declare("modularbot_commands_total", "counter", "Commands found, by outcome.");
+        commands.forEach((name, stats) -> stats.outcomes.forEach((outcome, count) ->
+                writer.sample("modularbot_commands_total", count.sum(), "command", name, "outcome", outcome)));
+
+        writer.declare("modularbot_commands_not_found_total", "counter", "Messages starting with the prefix that aren't a command.")
+                .sample("modularbot_commands_not_found_total", notFound.sum());
+
+        writer.declare("modularbot_command_duration_seconds", "summary", "Time between the moment a command is found and its outcome.");
+        commands.forEach((name, stats) ->
+                writer.summary("modularbot_command_duration_seconds", stats.latency.snapshot(), "command", name));
+    }
+
+    private void record(@Nonnull final CommandEvent event, @Nonnull final String outcome) {
+        final Stats stats = commands.computeIfAbsent(event.getCommand().getName(), k -> new Stats());
+        stats.outcomes.computeIfAbsent(outcome, k -> new LongAdder()).increment();
+        stats.latency.record(System.nanoTime() - foundAt.get()[0]);
+    }
+
+    @Override
+    public void onCommandFound(@Nonnull final CommandEvent command) {
+        foundAt.get()[0] = System.nanoTime();
+    }
+
+    @Override
+    public void onCommandNotFound(@Nonnull final String name, @Nonnull final Message message) {
+        notFound.increment();
+    }
+
+    @Override
+    public void onTooLowAccessLevel(@Nonnull final CommandEvent event) {
+        record(event, "access_denied");
+    }
+
+    @Override
+    public void onCommandFailedProcessing(@Nonnull final CommandEvent event, @Nonnull final CommandProcessingException error) {
+        record(event, "processing_failed");
+    }
+
+    @Override
+    public void onCommandFailedUnknownOption(@Nonnull final CommandEvent event, @Nonnull final UnknownOptionException error) {
+        record(event, "unknown_option");
+    }
+
+    @Override
+    public void onCommandFailedNoPatternMatch(@Nonnull final CommandEvent event, @Nonnull final Options options,
+                                              @Nonnull final List<String> arguments) {
+        record(event, "no_pattern_match");
+    }
+
+    @Override
+    public void onCommandExecutionFailed(@Nonnull final CommandEvent event, @Nonnull final Options options,
+                                         @Nonnull final List<String> arguments, @Nonnull final CommandExecutionException error) {
+        record(event, "execution_failed");
+    }
+
+    @Override
+    public void onCommandSuccess(@Nonnull final CommandEvent event) {
+        record(event, "success");
+    }
+
+    private static class Stats {
+        private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        private final LatencyHistogram latency = new LatencyHistogram();
+    }
+}
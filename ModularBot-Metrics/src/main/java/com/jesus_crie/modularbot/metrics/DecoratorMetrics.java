@@ -0,0 +1,32 @@
+package com.jesus_crie.modularbot.metrics;
+
+import com.jesus_crie.modularbot.core.module.ModuleManager;
+import com.jesus_crie.modularbot.messagedecorator.MessageDecoratorModule;
+import com.jesus_crie.modularbot.messagedecorator.decorator.MessageDecorator;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Counts the decorators registered in the message decorator module.
+ * Only loaded when the message decorator module is in the classpath.
+ */
+final class DecoratorMetrics {
+
+    private DecoratorMetrics() {
+    }
+
+    static void collect(@Nonnull final PrometheusWriter writer, @Nonnull final ModuleManager moduleManager) {
+        if (!moduleManager.isModuleAvailable(MessageDecoratorModule.class)
+                || moduleManager.getDeferredModules().contains(MessageDecoratorModule.class))
+            return;
+
+        final Map<String, Integer> byType = new TreeMap<>();
+        for (final MessageDecorator<?> decorator : moduleManager.getModule(MessageDecoratorModule.class).getDecorators())
+            byType.merge(decorator.getClass().getSimpleName(), 1, Integer::sum);
+
+        writer.declare("modularbot_decorators", "gauge", "Registered message decorators, by class.");
+        byType.forEach((type, count) -> writer.sample("modularbot_decorators", count, "type", type));
+    }
+}
@@ -0,0 +1,323 @@
+package com.jesus_crie.modularbot.metrics;
+
+import com.jesus_crie.modularbot.core.ModularBot;
+import com.jesus_crie.modularbot.core.ModularBotBuildInfo;
+import com.jesus_crie.modularbot.core.ModularBotBuilder;
+import com.jesus_crie.modularbot.core.dependencyinjection.DefaultInjectionParameters;
+import com.jesus_crie.modularbot.core.dependencyinjection.InjectorTarget;
+import com.jesus_crie.modularbot.core.module.Module;
+import com.jesus_crie.modularbot.core.module.ModuleExecutors;
+import com.jesus_crie.modularbot.core.module.ModuleManager;
+import com.jesus_crie.modularbot.core.module.ModuleSettingsProvider;
+import com.jesus_crie.modularbot.core.stats.EventStatisticsSnapshot;
+import com.jesus_crie.modularbot.core.utils.ModularThreadFactory;
+import com.jesus_crie.modularbot.core.utils.Waiter;
+import com.jesus_crie.modularbot.core.utils.WaiterSnapshot;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.dv8tion.jda.core.JDA;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Consumer;
+
+/**
+ * Serves the statistics of the bot in the text format of Prometheus, on {@code http://<address>/metrics}.
+ * <p>
+ * The metrics are collected when they are scraped, on the thread of the server. They are read from the counters
+ * and the concurrent maps that the bot already maintains, the event threads are never waited on. The commands and
+ * the decorators are only collected if their modules are loaded.
+ * <p>
+ * By default the server only listens on the loopback interface, on the port {@value #DEFAULT_PORT}.
+ */
+public class MetricsModule extends Module {
+
+    private static final Logger LOG = LoggerFactory.getLogger("Metrics");
+
+    private static final ModuleInfo INFO = new ModuleInfo("Metrics",
+            ModularBotBuildInfo.AUTHOR, ModularBotBuildInfo.GITHUB_URL,
+            ModularBotBuildInfo.VERSION_NAME, ModularBotBuildInfo.BUILD_NUMBER());
+
+    public static final int DEFAULT_PORT = 9464;
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String COMMAND_MODULE = "com.jesus_crie.modularbot.command.CommandModule";
+    private static final String DECORATOR_MODULE = "com.jesus_crie.modularbot.messagedecorator.MessageDecoratorModule";
+
+    @DefaultInjectionParameters
+    private static final ModuleSettingsProvider DEFAULT_SETTINGS = new ModuleSettingsProvider(DEFAULT_PORT);
+
+    private final InetSocketAddress address;
+    private final List<Consumer<PrometheusWriter>> collectors = new CopyOnWriteArrayList<>();
+
+    private ModuleManager moduleManager;
+    private CommandMetrics commandMetrics = null;
+    private boolean decoratorsAvailable = false;
+    private HttpServer server = null;
+    private ExecutorService serverExecutor = null;
+
+    /**
+     * @param port - The port of the server, on the loopback interface.
+     */
+    @InjectorTarget
+    public MetricsModule(final int port) {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * @param address - The address of the server.
+     */
+    public MetricsModule(@Nonnull final InetSocketAddress address) {
+        super(INFO);
+        LOG.info("Requested");
+        this.address = address;
+    }
+
+    @Override
+    public void onLoad(@Nonnull final ModuleManager moduleManager, @Nonnull final ModularBotBuilder builder) {
+        this.moduleManager = moduleManager;
+
+        // Before the shards are created, so the listener is registered before the first command
+        if (isClassAvailable(COMMAND_MODULE))
+            commandMetrics = CommandMetrics.attach(moduleManager);
+        decoratorsAvailable = isClassAvailable(DECORATOR_MODULE);
+    }
+
+    @Override
+    public void onShardsReady(@Nonnull final ModularBot bot) {
+        super.onShardsReady(bot);
+
+        try {
+            server = HttpServer.create(address, 0);
+        } catch (IOException e) {
+            LOG.error("Failed to start the metrics server on " + address, e);
+            return;
+        }
+
+        serverExecutor = Executors.newSingleThreadExecutor(new ModularThreadFactory("Metrics", true));
+        server.setExecutor(serverExecutor);
+        server.createContext("/metrics", this::handle);
+        server.start();
+        LOG.info("Serving the metrics on http://" + address.getHostString() + ":" + server.getAddress().getPort() + "/metrics");
+    }
+
+    @Override
+    public void onUnload() {
+        if (commandMetrics != null) {
+            commandMetrics.detach();
+            commandMetrics = null;
+        }
+
+        if (server != null) {
+            server.stop(0);
+            serverExecutor.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * Register a collector that writes additional metrics at each scrape.
+     * It's called on the thread of the server and must not block.
+     *
+     * @param collector - The collector.
+     */
+    public void addCollector(@Nonnull final Consumer<PrometheusWriter> collector) {
+        collectors.add(collector);
+    }
+
+    public void removeCollector(@Nonnull final Consumer<PrometheusWriter> collector) {
+        collectors.remove(collector);
+    }
+
+    /**
+     * @return The address where the server listens, or {@code null} if it isn't started.
+     */
+    public InetSocketAddress getAddress() {
+        return server == null ? null : server.getAddress();
+    }
+
+    /**
+     * Collect every metric.
+     *
+     * @return The metrics in the text format of Prometheus.
+     */
+    @Nonnull
+    public String scrape() {
+        final PrometheusWriter writer = new PrometheusWriter();
+
+        if (bot != null) {
+            collectShards(writer);
+            collectEvents(writer);
+            collectMainPool(writer);
+            collectExecutors(writer);
+        }
+
+        if (commandMetrics != null)
+            commandMetrics.collect(writer);
+        collectWaiters(writer);
+        if (decoratorsAvailable)
+            DecoratorMetrics.collect(writer, moduleManager);
+        collectJvm(writer);
+
+        for (final Consumer<PrometheusWriter> collector : collectors) {
+            try {
+                collector.accept(writer);
+            } catch (RuntimeException e) {
+                LOG.warn("A metrics collector has failed", e);
+            }
+        }
+
+        return writer.toString();
+    }
+
+    private void handle(@Nonnull final HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            final byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+
+            exchange.sendResponseHeaders(200, body.length);
+            try (final OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to collect the metrics", e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void collectShards(@Nonnull final PrometheusWriter writer) {
+        final List<JDA> shards = bot.getShards();
+
+        writer.declare("modularbot_shard_status", "gauge", "Current status of each shard, always 1.");
+        for (final JDA shard : shards)
+            writer.sample("modularbot_shard_status", 1, "shard", shardId(shard), "status", shard.getStatus().name());
+
+        writer.declare("modularbot_shard_up", "gauge", "Whether each shard is connected.");
+        for (final JDA shard : shards)
+            writer.sample("modularbot_shard_up", shard.getStatus() == JDA.Status.CONNECTED ? 1 : 0, "shard", shardId(shard));
+
+        writer.declare("modularbot_shard_ping_seconds", "gauge", "Time of the last heartbeat of each shard.");
+        for (final JDA shard : shards)
+            writer.sample("modularbot_shard_ping_seconds", shard.getPing() / 1000d, "shard", shardId(shard));
+    }
+
+    private void collectEvents(@Nonnull final PrometheusWriter writer) {
+        final EventStatisticsSnapshot snapshot = bot.getEventStatistics();
+
+        writer.declare("modularbot_events_total", "counter", "Events dispatched, by shard and type.");
+        for (final EventStatisticsSnapshot.Shard shard : snapshot.getShards().values()) {
+            final String shardId = Integer.toString(shard.getShardId());
+            shard.getEventCounts().forEach((type, count) ->
+                    writer.sample("modularbot_events_total", count, "shard", shardId, "type", type));
+        }
+    }
+
+    private void collectMainPool(@Nonnull final PrometheusWriter writer) {
+        if (!(bot.getMainPool() instanceof ThreadPoolExecutor))
+            return;
+
+        final ThreadPoolExecutor pool = (ThreadPoolExecutor) bot.getMainPool();
+        writer.declare("modularbot_main_pool_queued", "gauge", "Tasks waiting in the main pool.")
+                .sample("modularbot_main_pool_queued", pool.getQueue().size());
+        writer.declare("modularbot_main_pool_active", "gauge", "Threads of the main pool running a task.")
+                .sample("modularbot_main_pool_active", pool.getActiveCount());
+    }
+
+    private void collectWaiters(@Nonnull final PrometheusWriter writer) {
+        final WaiterSnapshot snapshot = Waiter.getSnapshot();
+
+        writer.declare("modularbot_waiters_live", "gauge", "Waits currently registered.")
+                .sample("modularbot_waiters_live", snapshot.getLiveCount());
+        writer.declare("modularbot_waiters_registered_total", "counter", "Waits registered since the start.")
+                .sample("modularbot_waiters_registered_total", snapshot.getRegisteredCount());
+        writer.declare("modularbot_waiters_reclaimed_total", "counter", "Waits released because their owner was garbage collected.")
+                .sample("modularbot_waiters_reclaimed_total", snapshot.getReclaimedCount());
+        writer.declare("modularbot_waiters_oldest_age_seconds", "gauge", "Age of the oldest live wait.")
+                .sample("modularbot_waiters_oldest_age_seconds", snapshot.getOldestAge() / 1000d);
+    }
+
+    private void collectExecutors(@Nonnull final PrometheusWriter writer) {
+        final Map<String, ModuleExecutors.Statistics> statistics = new TreeMap<>(moduleManager.getExecutorStatistics());
+
+        writer.declare("modularbot_executor_queued", "gauge", "Tasks waiting in the pools of each module.");
+        statistics.forEach((module, stats) -> writer.sample("modularbot_executor_queued", stats.getQueued(), "module", module));
+
+        writer.declare("modularbot_executor_threads", "gauge", "Threads of the pools of each module.");
+        statistics.forEach((module, stats) -> writer.sample("modularbot_executor_threads", stats.getThreads(), "module", module));
+
+        writer.declare("modularbot_executor_completed_total", "counter", "Tasks completed by the pools of each module.");
+        statistics.forEach((module, stats) -> writer.sample("modularbot_executor_completed_total", stats.getCompleted(), "module", module));
+
+        writer.declare("modularbot_executor_rejected_total", "counter", "Tasks rejected by the pools of each module.");
+        statistics.forEach((module, stats) -> writer.sample("modularbot_executor_rejected_total", stats.getRejected(), "module", module));
+
+        writer.declare("modularbot_executor_wait_seconds", "summary", "Time spent by the tasks in the queues of each module.");
+        statistics.forEach((module, stats) -> writer.summary("modularbot_executor_wait_seconds", stats.getWaitTimes(), "module", module));
+    }
+
+    private void collectJvm(@Nonnull final PrometheusWriter writer) {
+        final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        final MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+
+        writer.declare("jvm_memory_bytes_used", "gauge", "Used memory, by area.")
+                .sample("jvm_memory_bytes_used", heap.getUsed(), "area", "heap")
+                .sample("jvm_memory_bytes_used", nonHeap.getUsed(), "area", "nonheap");
+        writer.declare("jvm_memory_bytes_committed", "gauge", "Committed memory, by area.")
+                .sample("jvm_memory_bytes_committed", heap.getCommitted(), "area", "heap")
+                .sample("jvm_memory_bytes_committed", nonHeap.getCommitted(), "area", "nonheap");
+        writer.declare("jvm_memory_bytes_max", "gauge", "Maximum memory, by area, -1 if undefined.")
+                .sample("jvm_memory_bytes_max", heap.getMax(), "area", "heap")
+                .sample("jvm_memory_bytes_max", nonHeap.getMax(), "area", "nonheap");
+
+        final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        writer.declare("jvm_gc_collection_seconds", "summary", "Time spent in each garbage collector.");
+        for (final GarbageCollectorMXBean gc : collectors) {
+            writer.sample("jvm_gc_collection_seconds_count", gc.getCollectionCount(), "gc", gc.getName());
+            writer.sample("jvm_gc_collection_seconds_sum", gc.getCollectionTime() / 1000d, "gc", gc.getName());
+        }
+
+        writer.declare("jvm_threads_current", "gauge", "Live threads.")
+                .sample("jvm_threads_current", ManagementFactory.getThreadMXBean().getThreadCount());
+    }
+
+    @Nonnull
+    private static String shardId(@Nonnull final JDA shard) {
+        return Integer.toString(shard.getShardInfo().getShardId());
+    }
+
+    private static boolean isClassAvailable(@Nonnull final String name) {
+        try {
+            Class.forName(name, false, MetricsModule.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.jesus_crie.modularbot.metrics;
+
+import com.jesus_crie.modularbot.core.stats.LatencyHistogram;
+
+import javax.annotation.Nonnull;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes metrics in the text format of Prometheus (version 0.0.4).
+ * <p>
+ * The samples of a metric must be written right after its declaration, before the declaration of another metric.
+ * The labels are given as pairs of name and value.
+ */
+public class PrometheusWriter {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final StringBuilder out = new StringBuilder(4096);
+    private final Set<String> declared = new HashSet<>();
+
+    /**
+     * Declare a metric, a metric that is already declared is ignored.
+     *
+     * @param name - The name of the metric.
+     * @param type - The type of the metric: counter, gauge, summary or untyped.
+     * @param help - The description of the metric.
+     * @return The current instance.
+     */
+    @Nonnull
+    public PrometheusWriter declare(@Nonnull final String name, @Nonnull final String type, @Nonnull final String help) {
+        if (!declared.add(name))
+            return this;
+
+        out.append("# HELP ").append(name).append(' ')
+                .append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    /**
+     * Write a sample.
+     *
+     * @param name   - The name of the metric.
+     * @param value  - The value.
+     * @param labels - The labels, name then value.
+     * @return The current instance.
+     */
+    @Nonnull
+    public PrometheusWriter sample(@Nonnull final String name, final long value, @Nonnull final String... labels) {
+        writeName(name, labels);
+        out.append(value).append('\n');
+        return this;
+    }
+
+    /**
+     * Write a sample.
+     *
+     * @param name   - The name of the metric.
+     * @param value  - The value.
+     * @param labels - The labels, name then value.
+     * @return The current instance.
+     */
+    @Nonnull
+    public PrometheusWriter sample(@Nonnull final String name, final double value, @Nonnull final String... labels) {
+        writeName(name, labels);
+        if (Double.isNaN(value))
+            out.append("NaN");
+        else if (Double.isInfinite(value))
+            out.append(value > 0 ? "+Inf" : "-Inf");
+        else
+            out.append(value);
+        out.append('\n');
+        return this;
+    }
+
+    /**
+     * Write the samples of a summary from a latency histogram, in seconds.
+     * The quantiles are the upper bounds of the buckets of the histogram.
+     *
+     * @param name      - The name of the metric, declared as a summary.
+     * @param histogram - The histogram.
+     * @param labels    - The labels, name then value.
+     * @return The current instance.
+     */
+    @Nonnull
+    public PrometheusWriter summary(@Nonnull final String name, @Nonnull final LatencyHistogram.Snapshot histogram,
+                                    @Nonnull final String... labels) {
+        final String[] quantileLabels = new String[labels.length + 2];
+        System.arraycopy(labels, 0, quantileLabels, 0, labels.length);
+        quantileLabels[labels.length] = "quantile";
+
+        for (final double quantile : QUANTILES) {
+            quantileLabels[labels.length + 1] = Double.toString(quantile);
+            sample(name, toSeconds(histogram.getPercentile(quantile)), quantileLabels);
+        }
+
+        sample(name + "_sum", toSeconds(histogram.getSum()), labels);
+        sample(name + "_count", histogram.getCount(), labels);
+        return this;
+    }
+
+    private void writeName(@Nonnull final String name, @Nonnull final String[] labels) {
+        if (labels.length % 2 != 0)
+            throw new IllegalArgumentException("The labels must be pairs of name and value !");
+
+        out.append(name);
+        if (labels.length > 0) {
+            out.append('{');
+            for (int i = 0; i < labels.length; i += 2) {
+                if (i > 0)
+                    out.append(',');
+                out.append(labels[i]).append("=\"");
+                escape(labels[i + 1]);
+                out.append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ');
+    }
+
+    private void escape(@Nonnull final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+    }
+
+    /**
+     * Convert nanoseconds to seconds, the base unit of Prometheus.
+     *
+     * @param nanos - The duration in nanoseconds.
+     * @return The duration in seconds.
+     */
+    public static double toSeconds(final long nanos) {
+        return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+}
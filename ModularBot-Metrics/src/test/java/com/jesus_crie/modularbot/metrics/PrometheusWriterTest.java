@@ -0,0 +1,78 @@
+package com.jesus_crie.modularbot.metrics;
+
+import com.jesus_crie.modularbot.core.stats.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.hamcrest.junit.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PrometheusWriterTest {
+
+    @Test
+    void declare() {
+        final PrometheusWriter writer = new PrometheusWriter()
+                .declare("events_total", "counter", "The events.\nAll of them \\o/")
+                .sample("events_total", 3)
+                // Already declared, only the sample is written
+                .declare("events_total", "counter", "Another help")
+                .sample("events_total", 4);
+
+        assertThat(writer.toString(), is("# HELP events_total The events.\\nAll of them \\\\o/\n"
+                + "# TYPE events_total counter\n"
+                + "events_total 3\n"
+                + "events_total 4\n"));
+    }
+
+    @Test
+    void samples() {
+        final PrometheusWriter writer = new PrometheusWriter()
+                .sample("long", Long.MAX_VALUE)
+                .sample("double", 0.25)
+                .sample("nan", Double.NaN)
+                .sample("positive", Double.POSITIVE_INFINITY)
+                .sample("negative", Double.NEGATIVE_INFINITY);
+
+        assertThat(writer.toString(), is("long 9223372036854775807\n"
+                + "double 0.25\n"
+                + "nan NaN\n"
+                + "positive +Inf\n"
+                + "negative -Inf\n"));
+    }
+
+    @Test
+    void labels() {
+        final PrometheusWriter writer = new PrometheusWriter()
+                .sample("commands_total", 1, "command", "say \"hi\"", "path", "C:\\bot\nline");
+
+        assertThat(writer.toString(), is("commands_total{command=\"say \\\"hi\\\"\",path=\"C:\\\\bot\\nline\"} 1\n"));
+        assertThrows(IllegalArgumentException.class, () -> writer.sample("commands_total", 1, "command"));
+    }
+
+    @Test
+    void summary() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++)
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(100));
+        histogram.record(TimeUnit.SECONDS.toNanos(5));
+
+        final PrometheusWriter writer = new PrometheusWriter()
+                .summary("dispatch_seconds", histogram.snapshot(), "shard", "0");
+
+        // The quantiles are the upper bound of the bucket [2^26, 2^27) nanoseconds
+        assertThat(writer.toString(), is("dispatch_seconds{shard=\"0\",quantile=\"0.5\"} 0.134217727\n"
+                + "dispatch_seconds{shard=\"0\",quantile=\"0.9\"} 0.134217727\n"
+                + "dispatch_seconds{shard=\"0\",quantile=\"0.99\"} 0.134217727\n"
+                + "dispatch_seconds_sum{shard=\"0\"} 14.9\n"
+                + "dispatch_seconds_count{shard=\"0\"} 100\n"));
+    }
+
+    @Test
+    void toSeconds() {
+        assertThat(PrometheusWriter.toSeconds(0), is(0.0));
+        assertThat(PrometheusWriter.toSeconds(1_500_000_000), is(1.5));
+        assertThat(PrometheusWriter.toSeconds(1000), closeTo(0.000001, 1e-12));
+    }
+}
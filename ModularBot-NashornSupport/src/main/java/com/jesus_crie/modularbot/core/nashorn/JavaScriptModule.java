@@ -2,9 +2,11 @@ package com.jesus_crie.modularbot.core.nashorn;
 
 import com.jesus_crie.modularbot.core.ModularBot;
 import com.jesus_crie.modularbot.core.ModularBotBuilder;
+import com.jesus_crie.modularbot.core.cache.RequiresCache;
 import com.jesus_crie.modularbot.core.module.Module;
 import com.jesus_crie.modularbot.core.module.ModuleManager;
 import jdk.nashorn.api.scripting.ScriptObjectMirror;
+import net.dv8tion.jda.core.utils.cache.CacheFlag;
 
 import javax.annotation.Nonnull;
 import java.util.function.Supplier;
@@ -12,6 +14,7 @@ import java.util.function.Supplier;
 /**
  * Wrap a JavaScript module to delegate the calls to the underlying JS code.
  */
+@RequiresCache({CacheFlag.GAME, CacheFlag.VOICE_STATE, CacheFlag.EMOTE})
 @Deprecated
 public class JavaScriptModule extends Module {
 
@@ -0,0 +1,57 @@
+#!/usr/bin/env bash
+# Create an AppCDS archive from a training run of a bot, then compare its startup with and without the archive.
+# The main class must build the bot and call ModularBot#login(), it is launched through TrainingRun which exits
+# once the main method returns.
+#
+# Usage: ./appcds.sh <classpath> <main class> [arguments...]
+# The archive is written in build/appcds, or in $APPCDS_DIR.
+# On Oracle JDK 8, add "-XX:+UnlockCommercialFeatures -XX:+UseAppCDS" to $JAVA_OPTS, JDK 10+ works as is.
+
+set -e
+
+if [ $# -lt 2 ]; then
+    echo "Usage: $0 <classpath> <main class> [arguments...]"
+    exit 1
+fi
+
+CLASSPATH_ARG=$1
+MAIN_CLASS=$2
+shift 2
+
+OUT=${APPCDS_DIR:-build/appcds}
+RUNS=${APPCDS_RUNS:-3}
+CLASS_LIST=$OUT/modularbot.classlist
+ARCHIVE=$OUT/modularbot.jsa
+mkdir -p "$OUT"
+
+train() {
+    java $JAVA_OPTS "$@" -cp "$CLASSPATH_ARG" com.jesus_crie.modularbot.core.utils.TrainingRun "$MAIN_CLASS" "${ARGS[@]}"
+}
+
+# Average time of a few training runs, in milliseconds
+measure() {
+    local total=0
+    for _ in $(seq "$RUNS"); do
+        local start=$(date +%s%N)
+        train "$@" > /dev/null 2>&1
+        total=$(( total + ($(date +%s%N) - start) / 1000000 ))
+    done
+    echo $(( total / RUNS ))
+}
+
+ARGS=("$@")
+
+echo "Training run..."
+train -Xshare:off -XX:DumpLoadedClassList="$CLASS_LIST"
+echo "$(wc -l < "$CLASS_LIST") classes listed in $CLASS_LIST"
+
+echo "Dumping the archive..."
+java $JAVA_OPTS -Xshare:dump -XX:SharedClassListFile="$CLASS_LIST" -XX:SharedArchiveFile="$ARCHIVE" \
+    -cp "$CLASSPATH_ARG"
+
+echo "Measuring the startup ($RUNS runs each)..."
+WITHOUT=$(measure -Xshare:off)
+WITH=$(measure -Xshare:on -XX:SharedArchiveFile="$ARCHIVE")
+echo "Without the archive: ${WITHOUT} ms"
+echo "With the archive:    ${WITH} ms"
+echo "Start the bot with -XX:SharedArchiveFile=$ARCHIVE to use it."